@@ -4,5 +4,12 @@ package org.home.realtimeboard.benchmark;
  * Тип действия, выполняемого над хранилищем
  */
 public enum ActionType {
-    ADD, FIND_ONE, UPDATE, FIND_ALL, DELETE
+    ADD, FIND_ONE, UPDATE, FIND_ALL, DELETE;
+
+    /**
+     * Изменяет ли действие хранилище
+     */
+    public boolean isWrite() {
+        return (this == ADD) || (this == UPDATE) || (this == DELETE);
+    }
 }
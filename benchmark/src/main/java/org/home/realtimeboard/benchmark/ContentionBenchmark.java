@@ -0,0 +1,194 @@
+package org.home.realtimeboard.benchmark;
+
+import lombok.extern.slf4j.Slf4j;
+import org.home.realtimeboard.model.Widget;
+import org.home.realtimeboard.store.WidgetStore;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.rest.webmvc.ResourceNotFoundException;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Бенчмарк хранилища под конкурентной нагрузкой.
+ * <p>
+ * Группа {@code readWrite} одновременно запускает читающие и пишущие потоки, которые выполняют соответственно чтения
+ * и изменения из профиля нагрузки. По умолчанию на один пишущий поток приходится три читающих, соотношение задается
+ * при запуске, например {@code -tg 7,1}. Бенчмарк {@code mixed} выполняет в каждом потоке всю смесь операций профиля,
+ * количество потоков задается через {@code -t}, а перебор количества потоков от одного до количества ядер выполняет
+ * {@link ScalingBenchmarkRunner}. Результаты выдаются и пропускной способностью, и средним временем операции.
+ * <p>
+ * Выборки выполняются по случайным областям видимости, как в профиле {@link LoadProfileType#FULL}. Каждый поток
+ * использует собственный ГПСЧ, а идентификаторы виджетов хранятся в общем потокобезопасном наборе {@link IdPool}
+ */
+@Fork(warmups = 0, value = 1)
+@Warmup(iterations = 1, time = 10)
+@Measurement(iterations = 4, time = 10)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(value = Scope.Benchmark)
+@Slf4j
+public class ContentionBenchmark {
+    // Максимальное количество хранимых идентификаторов виджетов
+    private final static Integer ID_CAPACITY = 1 << 20;
+
+    // Начальные значения ГПСЧ потоков, разные для каждого потока
+    private final static AtomicInteger SEEDS = new AtomicInteger();
+
+    /**
+     * Список проверяемых хранилищ. {@link StoreType#SIMPLE_STORE} не проверяется: его выборки выполняются без
+     * блокировки и не рассчитаны на конкурентные изменения
+     */
+    @Param({"MAP_STORE", "TREE_SET_STORE", "COMBINED_STORE", "R_TREE_STORE", "ORDER_STATISTIC_STORE",
+            "LAZY_SHIFT_STORE", "SINGLE_WRITER_STORE", "PERSISTENT_STORE", "COLUMNAR_STORE", "WAL_NO_SYNC_STORE",
+            "WAL_GROUP_COMMIT_STORE", "WAL_PER_OPERATION_STORE", "CACHED_STORE", "GRID_COUNT_STORE",
+            "SPATIAL_HASH_STORE"})
+    public StoreType storeType;
+
+    /**
+     * Профиль нагрузки
+     */
+    @Param({"FULL"})
+    public LoadProfileType profileType;
+
+    /**
+     * Размер ячейки пространственного хеша, используется только для {@link StoreType#SPATIAL_HASH_STORE}
+     */
+    @Param({"500"})
+    public int cellSize;
+
+    /**
+     * Количество виджетов в хранилище перед началом измерений
+     */
+    @Param({"5000"})
+    public int storeSize;
+
+    /**
+     * Наполнение хранилища виджетами поверх уже добавленных, без выпихиваний, для больших хранилищ, см.
+     * {@link StoreBenchmark.ExecutionPlan#stackedPrefill}
+     */
+    @Param({"false"})
+    public boolean stackedPrefill;
+
+    // Тестируемое хранилище
+    private WidgetStore store;
+    // Фабрика хранилищ, освобождает ресурсы хранилища после итерации
+    private final StoreFactory storeFactory = new StoreFactory();
+    // Идентификаторы виджетов, для формирования корректных запросов на обновление/удаление
+    private IdPool ids;
+    // Профили нагрузки потоков бенчмарка mixed, читающих и пишущих потоков
+    private LoadProfile profile;
+    private LoadProfile readProfile;
+    private LoadProfile writeProfile;
+    // Количество обновлений и удалений уже удаленных виджетов, возникающих при гонках пишущих потоков
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Состояние потока
+     */
+    @State(Scope.Thread)
+    public static class ThreadState {
+        private final Random random = new Random(SEEDS.incrementAndGet());
+    }
+
+    /**
+     * Метод подготовки тестового окружения, создает и наполняет нужное хранилище
+     */
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        store = storeFactory.create(storeType, cellSize);
+        ids = new IdPool(ID_CAPACITY);
+        misses.reset();
+
+        profile = LoadProfile.forType(profileType);
+        readProfile = profile.select(action -> !action.isWrite());
+        writeProfile = profile.select(ActionType::isWrite);
+        if (readProfile.isEmpty()) {
+            readProfile = LoadProfile.forType(LoadProfileType.FIND_ONE_ONLY);
+        }
+        if (writeProfile.isEmpty()) {
+            writeProfile = LoadProfile.forType(LoadProfileType.UPDATE_ONLY);
+        }
+
+        // seed всегда одинаковый, чтобы начальное состояние хранилища не менялось
+        Random random = new Random(1);
+        for (int i = 0; i < storeSize; i++) {
+            Widget widget = RandomWorkload.widget(random, false);
+            if (stackedPrefill) {
+                widget = widget.toBuilder().zIndex(null).build();
+            }
+            ids.add(store.add(widget).getId(), random);
+        }
+    }
+
+    /**
+     * Очистка тестового окружения, выводит статистику и освобождает ресурсы хранилища
+     */
+    @TearDown(Level.Iteration)
+    public void printStat() throws IOException {
+        log.info("misses: {}", misses.sum());
+        storeFactory.printStat();
+        storeFactory.close();
+    }
+
+    /**
+     * Каждый поток выполняет смесь операций профиля нагрузки
+     */
+    @Benchmark
+    public Object mixed(ThreadState state) {
+        return execute(profile.nextAction(state.random), state.random);
+    }
+
+    /**
+     * Читающий поток группы
+     */
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(3)
+    public Object read(ThreadState state) {
+        return execute(readProfile.nextAction(state.random), state.random);
+    }
+
+    /**
+     * Пишущий поток группы
+     */
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(1)
+    public Object write(ThreadState state) {
+        return execute(writeProfile.nextAction(state.random), state.random);
+    }
+
+    /**
+     * Выполняет операцию над хранилищем
+     *
+     * @return результат операции, чтобы JIT не мог исключить ее выполнение
+     */
+    private Object execute(ActionType action, Random random) {
+        try {
+            switch (action) {
+                case ADD:
+                    Widget widget = store.add(RandomWorkload.widget(random, true));
+                    ids.add(widget.getId(), random);
+                    return widget;
+                case FIND_ONE:
+                    return store.findOne(random.nextBoolean() ? UUID.randomUUID().toString() : ids.get(random));
+                case UPDATE:
+                    return store.update(ids.get(random), RandomWorkload.widget(random, false));
+                case DELETE:
+                    store.delete(ids.get(random));
+                    return null;
+                case FIND_ALL:
+                    return store.findAll(RandomWorkload.filter(random), RandomWorkload.pageable(random));
+            }
+        } catch (ResourceNotFoundException e) {
+            // Виджет уже удален другим потоком
+            misses.increment();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,141 @@
+package org.home.realtimeboard.benchmark;
+
+import org.home.realtimeboard.model.Filter;
+import org.home.realtimeboard.model.Widget;
+import org.home.realtimeboard.store.WidgetStore;
+import org.springframework.data.domain.PageRequest;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Измеряет память, занимаемую хранилищами, по приросту занятой кучи после сборки мусора: хранилище наполняется
+ * виджетами, и прирост делится на их количество. Результат включает сами виджеты с идентификаторами и индексы
+ * адаптера, для сравнения выводится размер таких же виджетов в обычном списке.
+ * <p>
+ * Аргументы - типы хранилищ ({@link StoreType}), по умолчанию проверяются хранилища на основе адаптеров без журнала.
+ * Количества виджетов задаются свойством {@code sizes}, например {@code -Dsizes=10000,100000}. Для миллионов
+ * виджетов нужна куча в несколько гигабайт ({@code -Xmx4g})
+ */
+public class FootprintRunner {
+    // Максимальная допустимая координата виджета
+    private final static int MAX_COORDINATE = 10000;
+    // Максимальный допустимый размер виджета
+    private final static int MAX_SIZE = 1000;
+    // Размер ячейки пространственного хеша
+    private final static int CELL_SIZE = 500;
+    // Максимальное количество сборок мусора при замере занятой памяти
+    private final static int MAX_GC_ROUNDS = 10;
+    // Количество виджетов в незамеряемом прогоне
+    private final static int WARMUP_SIZE = 10000;
+
+    private final static String DEFAULT_SIZES = "10000,100000,1000000";
+    private final static List<StoreType> DEFAULT_STORE_TYPES = Arrays.asList(StoreType.SIMPLE_STORE,
+            StoreType.MAP_STORE, StoreType.TREE_SET_STORE, StoreType.COMBINED_STORE, StoreType.R_TREE_STORE,
+            StoreType.ORDER_STATISTIC_STORE, StoreType.LAZY_SHIFT_STORE, StoreType.COLUMNAR_STORE,
+            StoreType.GRID_COUNT_STORE, StoreType.SPATIAL_HASH_STORE);
+
+    public static void main(String[] args) throws IOException {
+        List<StoreType> storeTypes = args.length > 0
+                ? Arrays.stream(args).map(StoreType::valueOf).collect(Collectors.toList())
+                : DEFAULT_STORE_TYPES;
+        int[] sizes = Arrays.stream(System.getProperty("sizes", DEFAULT_SIZES).split(","))
+                .mapToInt(Integer::parseInt)
+                .toArray();
+
+        // Первое наполнение хранилищ загружает классы и запускает компиляцию, поэтому не замеряется
+        measureList(WARMUP_SIZE);
+        for (StoreType storeType : storeTypes) {
+            measureStore(storeType, WARMUP_SIZE);
+        }
+
+        System.out.printf("%nMax heap: %d MB%n", Runtime.getRuntime().maxMemory() / (1024 * 1024));
+        System.out.printf("%-24s %10s %14s%n", "Store", "Widgets", "Bytes/widget");
+        for (int size : sizes) {
+            System.out.printf("%-24s %10d %14.1f%n", "WIDGET_LIST", size, (double) measureList(size) / size);
+            for (StoreType storeType : storeTypes) {
+                System.out.printf("%-24s %10d %14.1f%n", storeType, size, (double) measureStore(storeType, size) / size);
+            }
+        }
+    }
+
+    /**
+     * Измеряет память, занимаемую хранилищем с указанным количеством виджетов
+     *
+     * @return прирост занятой памяти в байтах
+     */
+    private static long measureStore(StoreType storeType, int size) throws IOException {
+        StoreFactory storeFactory = new StoreFactory();
+        long before = getUsedMemory();
+
+        WidgetStore store = storeFactory.create(storeType, CELL_SIZE);
+        Random random = new Random(1);
+        for (int i = 0; i < size; i++) {
+            // Виджеты добавляются поверх уже добавленных, без выпихиваний
+            store.add(getWidget(random).build());
+        }
+        long bytes = getUsedMemory() - before;
+
+        // Обращение к хранилищу после замера не дает собрать его раньше времени
+        long count = store.findAll(Filter.builder().build(), PageRequest.of(0, 1)).getTotalElements();
+        if (count != size) {
+            throw new IllegalStateException("Store " + storeType + " contains " + count + " widgets, expected " + size);
+        }
+        storeFactory.close();
+        return bytes;
+    }
+
+    /**
+     * Измеряет память, занимаемую списком таких же виджетов, как в хранилище, со всеми заполненными полями
+     *
+     * @return прирост занятой памяти в байтах
+     */
+    private static long measureList(int size) {
+        long before = getUsedMemory();
+
+        List<Widget> widgets = new ArrayList<>(size);
+        Random random = new Random(1);
+        for (int i = 0; i < size; i++) {
+            widgets.add(getWidget(random)
+                    .id(UUID.randomUUID().toString())
+                    .zIndex(i)
+                    .lastModified(Instant.now())
+                    .version((long) i)
+                    .build());
+        }
+        long bytes = getUsedMemory() - before;
+
+        if (widgets.size() != size) {
+            throw new IllegalStateException("Unexpected list size " + widgets.size());
+        }
+        return bytes;
+    }
+
+    private static Widget.WidgetBuilder getWidget(Random random) {
+        return Widget.builder()
+                .x(random.nextInt(MAX_COORDINATE))
+                .y(random.nextInt(MAX_COORDINATE))
+                .width(random.nextInt(MAX_SIZE) + 1)
+                .height(random.nextInt(MAX_SIZE) + 1);
+    }
+
+    /**
+     * Возвращает занятую память кучи, повторяя сборку мусора, пока занятая память уменьшается
+     */
+    private static long getUsedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < MAX_GC_ROUNDS; i++) {
+            System.gc();
+            System.runFinalization();
+            long current = runtime.totalMemory() - runtime.freeMemory();
+            if (current >= used) {
+                break;
+            }
+            used = current;
+        }
+        return used;
+    }
+}
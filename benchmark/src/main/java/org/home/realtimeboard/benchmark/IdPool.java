@@ -0,0 +1,37 @@
+package org.home.realtimeboard.benchmark;
+
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Потокобезопасный набор идентификаторов виджетов для формирования запросов несколькими потоками. Идентификаторы
+ * удаленных виджетов из набора не убираются, а при переполнении новые идентификаторы замещают случайные старые
+ */
+public class IdPool {
+    private final AtomicReferenceArray<String> ids;
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * @param capacity максимальное количество хранимых идентификаторов
+     */
+    public IdPool(int capacity) {
+        this.ids = new AtomicReferenceArray<>(capacity);
+    }
+
+    public void add(String id, Random random) {
+        int index = size.get() < ids.length() ? size.getAndIncrement() : ids.length();
+        ids.set(index < ids.length() ? index : random.nextInt(ids.length()), id);
+    }
+
+    /**
+     * Возвращает случайный идентификатор из набора или случайный несуществующий, если набор пуст
+     */
+    public String get(Random random) {
+        int count = Math.min(size.get(), ids.length());
+        // Ячейка может быть еще не заполнена добавляющим потоком
+        String id = count > 0 ? ids.get(random.nextInt(count)) : null;
+        return id != null ? id : UUID.randomUUID().toString();
+    }
+}
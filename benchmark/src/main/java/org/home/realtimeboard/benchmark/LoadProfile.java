@@ -3,6 +3,7 @@ package org.home.realtimeboard.benchmark;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Random;
+import java.util.function.Predicate;
 
 /**
  * Профиль нагрузки на хранилище
@@ -13,10 +14,46 @@ public class LoadProfile {
      */
     private Map<ActionType, Integer> profile;
     private Integer total;
+    /**
+     * Выборки выполняются по небольшому набору популярных областей видимости, а не по случайным
+     */
+    private boolean hotViewports;
 
     public LoadProfile(Map<ActionType, Integer> profile) {
+        this(profile, false);
+    }
+
+    public LoadProfile(Map<ActionType, Integer> profile, boolean hotViewports) {
         this.profile = profile;
         this.total = profile.values().stream().mapToInt(i -> i).sum();
+        this.hotViewports = hotViewports;
+    }
+
+    public boolean isHotViewports() {
+        return hotViewports;
+    }
+
+    /**
+     * Нет ли в профиле ни одной операции
+     */
+    public boolean isEmpty() {
+        return total == 0;
+    }
+
+    /**
+     * Формирует профиль из операций этого профиля, удовлетворяющих условию, с теми же относительными частотами
+     *
+     * @param condition условие отбора операций
+     * @return новый профиль нагрузки
+     */
+    public LoadProfile select(Predicate<ActionType> condition) {
+        Map<ActionType, Integer> selected = new HashMap<>();
+        profile.forEach((action, frequency) -> {
+            if (condition.test(action)) {
+                selected.put(action, frequency);
+            }
+        });
+        return new LoadProfile(selected, hotViewports);
     }
 
     /**
@@ -49,6 +86,8 @@ public class LoadProfile {
         Map<ActionType, Integer> profile = new HashMap<>();
 
         switch (profileType) {
+            case HOT_VIEWPORTS:
+                // Смесь операций как в FULL, но выборки повторяются, что позволяет оценить кеш выборок
             case FULL:
                 profile.put(ActionType.ADD, 5);
                 profile.put(ActionType.FIND_ONE, 50);
@@ -75,6 +114,6 @@ public class LoadProfile {
                 break;
         }
 
-        return new LoadProfile(profile);
+        return new LoadProfile(profile, profileType == LoadProfileType.HOT_VIEWPORTS);
     }
 }
@@ -4,5 +4,5 @@ package org.home.realtimeboard.benchmark;
  * Тип профиля нагрузки
  */
 public enum LoadProfileType {
-    FULL, ADD_ONLY, FIND_ONE_ONLY, UPDATE_ONLY, FIND_ALL_ONLY, DELETE_ADD
+    FULL, ADD_ONLY, FIND_ONE_ONLY, UPDATE_ONLY, FIND_ALL_ONLY, DELETE_ADD, HOT_VIEWPORTS
 }
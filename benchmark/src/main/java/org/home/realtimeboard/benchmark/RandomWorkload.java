@@ -0,0 +1,64 @@
+package org.home.realtimeboard.benchmark;
+
+import org.home.realtimeboard.model.Filter;
+import org.home.realtimeboard.model.Widget;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.util.Random;
+
+/**
+ * Случайные параметры операций над хранилищем для многопоточных бенчмарков, каждый поток передает собственный ГПСЧ.
+ * Размеры и z-index'ы виджетов положительны, поэтому те же параметры проходят валидацию REST API
+ */
+public final class RandomWorkload {
+    // Максимальная допустимая координата виджета
+    public final static int MAX_COORDINATE = 10000;
+    // Максимальный допустимый размер виджета
+    public final static int MAX_SIZE = 1000;
+    // Максимальный допустимый номер страницы запрашиваемых данных
+    public final static int MAX_PAGE = 50;
+    // Максимальный допустимый размер страницы данных
+    public final static int MAX_PAGE_SIZE = 100;
+
+    private RandomWorkload() {
+    }
+
+    /**
+     * Формирует случайный виджет
+     *
+     * @param allowNullZIndex факт допустимости пустых zIndex'ов, они допустимы только при добавлении новых виджетов
+     * @return новый виджет
+     */
+    public static Widget widget(Random random, boolean allowNullZIndex) {
+        return Widget.builder()
+                .x(random.nextInt(MAX_COORDINATE))
+                .y(random.nextInt(MAX_COORDINATE))
+                .width(random.nextInt(MAX_SIZE) + 1)
+                .height(random.nextInt(MAX_SIZE) + 1)
+                .zIndex(allowNullZIndex && random.nextBoolean() ? null : random.nextInt(MAX_SIZE) + 1)
+                .build();
+    }
+
+    /**
+     * Формирует случайный фильтр по области видимости, в половине случаев пустой
+     */
+    public static Filter filter(Random random) {
+        if (random.nextBoolean()) {
+            return Filter.builder().build();
+        }
+        return Filter.builder()
+                .top(random.nextInt(MAX_COORDINATE / 2))
+                .bottom(MAX_COORDINATE / 2 + random.nextInt(MAX_COORDINATE / 2))
+                .left(random.nextInt(MAX_COORDINATE / 2))
+                .right(MAX_COORDINATE / 2 + random.nextInt(MAX_COORDINATE / 2))
+                .build();
+    }
+
+    /**
+     * Формирует случайную страницу для запросов с пагинацией
+     */
+    public static Pageable pageable(Random random) {
+        return PageRequest.of(random.nextInt(MAX_PAGE), random.nextInt(MAX_PAGE_SIZE) + 1);
+    }
+}
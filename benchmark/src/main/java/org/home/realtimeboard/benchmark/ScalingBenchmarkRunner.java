@@ -0,0 +1,72 @@
+package org.home.realtimeboard.benchmark;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.*;
+
+/**
+ * Запускает {@link ContentionBenchmark#mixed} для каждого типа хранилища с количеством потоков от одного до
+ * количества ядер (степени двойки и само количество ядер) и выводит сводную таблицу пропускной способности и среднего
+ * времени операции.
+ * <p>
+ * Аргументы - типы хранилищ ({@link StoreType}), по умолчанию проверяются все, кроме
+ * {@link StoreType#SIMPLE_STORE}, не рассчитанного на конкурентный доступ
+ */
+public class ScalingBenchmarkRunner {
+    public static void main(String[] args) throws RunnerException {
+        String[] storeTypes = args.length > 0
+                ? args
+                : Arrays.stream(StoreType.values())
+                .filter(storeType -> storeType != StoreType.SIMPLE_STORE)
+                .map(Enum::name)
+                .toArray(String[]::new);
+
+        // Результаты по хранилищу и количеству потоков, в порядке запуска
+        Map<String, Map<Integer, Map<Mode, RunResult>>> results = new LinkedHashMap<>();
+        for (String storeType : storeTypes) {
+            results.put(storeType, new TreeMap<>());
+        }
+        for (int threads : getThreadCounts(Runtime.getRuntime().availableProcessors())) {
+            Options options = new OptionsBuilder()
+                    .include(ContentionBenchmark.class.getName() + ".mixed$")
+                    .param("storeType", storeTypes)
+                    .threads(threads)
+                    .build();
+            for (RunResult result : new Runner(options).run()) {
+                results.get(result.getParams().getParam("storeType"))
+                        .computeIfAbsent(result.getParams().getThreads(), key -> new EnumMap<>(Mode.class))
+                        .put(result.getParams().getMode(), result);
+            }
+        }
+
+        System.out.printf("%n%-24s %8s %16s %16s%n", "Store", "Threads", "Throughput", "Average time");
+        results.forEach((storeType, byThreads) -> byThreads.forEach((threads, byMode) ->
+                System.out.printf("%-24s %8d %16s %16s%n", storeType, threads,
+                        format(byMode.get(Mode.Throughput)), format(byMode.get(Mode.AverageTime)))));
+    }
+
+    /**
+     * Возвращает количества потоков для перебора: степени двойки, меньшие количества ядер, и само количество ядер
+     */
+    private static List<Integer> getThreadCounts(int cores) {
+        List<Integer> threadCounts = new ArrayList<>();
+        for (int threads = 1; threads < cores; threads *= 2) {
+            threadCounts.add(threads);
+        }
+        threadCounts.add(cores);
+        return threadCounts;
+    }
+
+    private static String format(RunResult result) {
+        if (Objects.isNull(result)) {
+            return "-";
+        }
+        return String.format("%.3f %s", result.getPrimaryResult().getScore(),
+                result.getPrimaryResult().getScoreUnit());
+    }
+}
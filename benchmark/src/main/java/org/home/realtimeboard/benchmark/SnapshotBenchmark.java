@@ -0,0 +1,91 @@
+package org.home.realtimeboard.benchmark;
+
+import org.home.realtimeboard.model.Widget;
+import org.home.realtimeboard.store.AdaptedWidgetStore;
+import org.home.realtimeboard.store.adapter.CombinedStoreAdapter;
+import org.home.realtimeboard.store.id.WidgetIdGenerator;
+import org.home.realtimeboard.store.persistence.StoreSnapshot;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарк восстановления хранилища из снимка: чтение снимка и заполнение хранилища
+ */
+@Fork(warmups = 0, value = 1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(value = Scope.Benchmark)
+public class SnapshotBenchmark {
+    // Максимальная допустимая координата виджета
+    private final static Integer MAX_COORDINATE = 10000;
+    // Максимальный допустимый размер виджета
+    private final static Integer MAX_SIZE = 1000;
+
+    /**
+     * Количество виджетов в снимке
+     */
+    @Param({"1000000"})
+    public int widgetCount;
+
+    // Файл снимка
+    private Path path;
+
+    /**
+     * Формирует снимок со случайными виджетами
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Random random = new Random(1);
+        WidgetIdGenerator idGenerator = new WidgetIdGenerator();
+        Instant now = Instant.now();
+
+        List<Widget> widgets = new ArrayList<>(widgetCount);
+        for (int i = 0; i < widgetCount; i++) {
+            widgets.add(Widget.builder()
+                    .id(idGenerator.next().toString())
+                    .x(random.nextInt(MAX_COORDINATE))
+                    .y(random.nextInt(MAX_COORDINATE))
+                    .width(random.nextInt(MAX_SIZE))
+                    .height(random.nextInt(MAX_SIZE))
+                    .zIndex(i + 1)
+                    .lastModified(now.plusMillis(random.nextInt(1000)))
+                    .build());
+        }
+
+        path = Files.createTempFile("widgets", ".snapshot");
+        new StoreSnapshot(0, widgets).write(path);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    /**
+     * Только чтение и декодирование снимка
+     */
+    @Benchmark
+    public StoreSnapshot readSnapshot() {
+        return StoreSnapshot.read(path);
+    }
+
+    /**
+     * Чтение снимка и заполнение хранилища с построением индексов
+     */
+    @Benchmark
+    public AdaptedWidgetStore loadStore() {
+        AdaptedWidgetStore store = new AdaptedWidgetStore(new CombinedStoreAdapter());
+        store.load(StoreSnapshot.read(path).getWidgets());
+        return store;
+    }
+}
@@ -3,16 +3,12 @@ package org.home.realtimeboard.benchmark;
 import lombok.extern.slf4j.Slf4j;
 import org.home.realtimeboard.model.Filter;
 import org.home.realtimeboard.model.Widget;
-import org.home.realtimeboard.store.AdaptedWidgetStore;
-import org.home.realtimeboard.store.SimpleWidgetStore;
 import org.home.realtimeboard.store.WidgetStore;
-import org.home.realtimeboard.store.adapter.CombinedStoreAdapter;
-import org.home.realtimeboard.store.adapter.MapStoreAdapter;
-import org.home.realtimeboard.store.adapter.SortedSetStoreAdapter;
 import org.openjdk.jmh.annotations.*;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 
+import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
 
@@ -35,9 +31,18 @@ public class StoreBenchmark {
     private final static Integer MAX_PAGE = 50;
     // Максимальный допустимый размер страницы данных
     private final static Integer MAX_PAGE_SIZE = 100;
+    // Количество популярных областей видимости и их размеры
+    private final static Integer HOT_VIEWPORT_COUNT = 32;
+    private final static Integer HOT_VIEWPORT_WIDTH = 2000;
+    private final static Integer HOT_VIEWPORT_HEIGHT = 1200;
+    // Количество страниц и размер страницы выборок по популярным областям
+    private final static Integer HOT_PAGE_COUNT = 3;
+    private final static Integer HOT_PAGE_SIZE = 20;
 
     // Тестируемое хранилище
     private WidgetStore store;
+    // Фабрика хранилищ, освобождает ресурсы хранилища после итерации
+    private final StoreFactory storeFactory = new StoreFactory();
     // Список идентификаторов виджетов, для формирования корректных запросов на обновление/удаление
     private List<String> ids = new ArrayList<>();
     // Глобальный ГПСЧ, используется для сравнительно детерменированного тестирования, т.к. каждый раз инициализируется
@@ -47,6 +52,10 @@ public class StoreBenchmark {
     private LoadProfile loadProfile;
     // Статистика по выполненным операциям
     private Map<ActionType, Integer> statistics;
+    // Популярные области видимости, заполняются только для профиля с повторяющимися выборками
+    private List<Filter> viewports;
+    // Способ наполнения хранилища и удаления идентификаторов, см. ExecutionPlan#stackedPrefill
+    private boolean stackedPrefill;
 
     /**
      * План тестирования, содержит параметры для проведения тестов
@@ -64,6 +73,29 @@ public class StoreBenchmark {
          */
         @Param
         public StoreType storeType;
+
+        /**
+         * Размер ячейки пространственного хеша, используется только для {@link StoreType#SPATIAL_HASH_STORE}.
+         * Для сравнения нескольких размеров задается при запуске, например {@code -p cellSize=125,250,500,1000}
+         */
+        @Param({"500"})
+        public int cellSize;
+
+        /**
+         * Количество виджетов в хранилище перед началом измерений. Для проверки масштабирования задается при запуске,
+         * например {@code -p storeSize=5000,100000,1000000}, а выделение памяти на операцию показывает
+         * {@code -prof gc}
+         */
+        @Param({"5000"})
+        public int storeSize;
+
+        /**
+         * Способ наполнения хранилища, пригодный для больших хранилищ: виджеты добавляются поверх уже добавленных, а
+         * удаленный идентификатор замещается в списке последним. По умолчанию выключен, чтобы результаты оставались
+         * сравнимы с результатами в README, для больших хранилищ задается {@code -p stackedPrefill=true}
+         */
+        @Param({"false"})
+        public boolean stackedPrefill;
     }
 
     /**
@@ -72,30 +104,34 @@ public class StoreBenchmark {
      * @param executionPlan описание сценария тестирования
      */
     @Setup(Level.Iteration)
-    public void setUp(ExecutionPlan executionPlan) {
-        switch (executionPlan.storeType) {
-            case SIMPLE_STORE:
-                store = new SimpleWidgetStore();
-                break;
-            case MAP_STORE:
-                store = new AdaptedWidgetStore(new MapStoreAdapter());
-                break;
-            case TREE_SET_STORE:
-                store = new AdaptedWidgetStore(new SortedSetStoreAdapter());
-                break;
-            case COMBINED_STORE:
-                store = new AdaptedWidgetStore(new CombinedStoreAdapter());
-                break;
-        }
+    public void setUp(ExecutionPlan executionPlan) throws IOException {
+        store = storeFactory.create(executionPlan.storeType, executionPlan.cellSize);
 
-        ids = new ArrayList<>();
         // seed всегда одинаковый, чтобы тесты выполнялись одинакого
         random = new Random(1);
         statistics = new HashMap<>();
         loadProfile = LoadProfile.forType(executionPlan.profileType);
+        viewports = new ArrayList<>();
+        if (loadProfile.isHotViewports()) {
+            for (int i = 0; i < HOT_VIEWPORT_COUNT; i++) {
+                int left = random.nextInt(MAX_COORDINATE - HOT_VIEWPORT_WIDTH);
+                int top = random.nextInt(MAX_COORDINATE - HOT_VIEWPORT_HEIGHT);
+                viewports.add(Filter.builder()
+                        .top(top)
+                        .bottom(top + HOT_VIEWPORT_HEIGHT)
+                        .left(left)
+                        .right(left + HOT_VIEWPORT_WIDTH)
+                        .build());
+            }
+        }
 
-        for (Integer idx = 0; idx < 5000; idx++) {
-            Widget widget = getWidget(false);
+        // Виджеты со случайными z-index'ами выпихивают друг друга, поэтому для больших хранилищ они добавляются поверх
+        // уже добавленных: без выпихиваний наполнение занимает линейное время, а z-index'ы, как и после выпихиваний,
+        // идут подряд
+        stackedPrefill = executionPlan.stackedPrefill;
+        ids = new ArrayList<>(executionPlan.storeSize);
+        for (int idx = 0; idx < executionPlan.storeSize; idx++) {
+            Widget widget = stackedPrefill ? getWidget(false).toBuilder().zIndex(null).build() : getWidget(false);
 
             widget = store.add(widget);
             ids.add(widget.getId());
@@ -104,11 +140,14 @@ public class StoreBenchmark {
 
     /**
      * Очистка тествого окружения
-     * Формально она не нужна, т.к. все делается в инициализации, тут только дебажный вывод статистики
+     * Хранилище пересоздается при инициализации, тут только дебажный вывод статистики, остановка пишущего потока
+     * хранилища и удаление журнала, если они есть
      */
     @TearDown(Level.Iteration)
-    public void printStat() {
+    public void printStat() throws IOException {
         log.info("statistics: {}", statistics);
+        storeFactory.printStat();
+        storeFactory.close();
     }
 
     /**
@@ -140,7 +179,14 @@ public class StoreBenchmark {
                 }
                 break;
             case DELETE:
-                if (!ids.isEmpty()) {
+                if (!ids.isEmpty() && stackedPrefill) {
+                    int index = random.nextInt(ids.size());
+                    store.delete(ids.get(index));
+                    // На место удаленного идентификатора переносится последний, чтобы удаление из списка не зависело
+                    // от размера хранилища
+                    ids.set(index, ids.get(ids.size() - 1));
+                    ids.remove(ids.size() - 1);
+                } else if (!ids.isEmpty()) {
                     String id = getId(false);
                     store.delete(id);
                     ids.remove(id);
@@ -172,6 +218,10 @@ public class StoreBenchmark {
      * Формирует случайных фильтр по области видимости
      */
     private Filter getFilter() {
+        if (loadProfile.isHotViewports()) {
+            // Минимум из двух равномерных индексов: области в начале списка запрашиваются чаще
+            return viewports.get(Math.min(random.nextInt(viewports.size()), random.nextInt(viewports.size())));
+        }
         if (random.nextBoolean()) {
             return Filter.builder().build();
         } else {
@@ -188,6 +238,9 @@ public class StoreBenchmark {
      * Формирует случайную страницу для запросов с пагинацией
      */
     private Pageable getPageable() {
+        if (loadProfile.isHotViewports()) {
+            return PageRequest.of(random.nextInt(HOT_PAGE_COUNT), HOT_PAGE_SIZE);
+        }
         return PageRequest.of(random.nextInt(MAX_PAGE), random.nextInt(MAX_PAGE_SIZE) + 1);
     }
 
@@ -0,0 +1,145 @@
+package org.home.realtimeboard.benchmark;
+
+import lombok.extern.slf4j.Slf4j;
+import org.home.realtimeboard.store.AdaptedWidgetStore;
+import org.home.realtimeboard.store.CachingWidgetStore;
+import org.home.realtimeboard.store.DurableWidgetStore;
+import org.home.realtimeboard.store.PersistentWidgetStore;
+import org.home.realtimeboard.store.SimpleWidgetStore;
+import org.home.realtimeboard.store.SingleWriterWidgetStore;
+import org.home.realtimeboard.store.WidgetStore;
+import org.home.realtimeboard.store.adapter.ColumnarStoreAdapter;
+import org.home.realtimeboard.store.adapter.CombinedStoreAdapter;
+import org.home.realtimeboard.store.adapter.GridCountStoreAdapter;
+import org.home.realtimeboard.store.adapter.LazyShiftStoreAdapter;
+import org.home.realtimeboard.store.adapter.MapStoreAdapter;
+import org.home.realtimeboard.store.adapter.OrderStatisticStoreAdapter;
+import org.home.realtimeboard.store.adapter.RTreeStoreAdapter;
+import org.home.realtimeboard.store.adapter.SortedSetStoreAdapter;
+import org.home.realtimeboard.store.adapter.SpatialHashStoreAdapter;
+import org.home.realtimeboard.store.persistence.Durability;
+import org.home.realtimeboard.store.persistence.WriteAheadLog;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * Создает тестируемое хранилище по его типу, выводит его статистику и освобождает его ресурсы после теста
+ */
+@Slf4j
+public class StoreFactory {
+    // Размер кеша выборок
+    private final static Integer CACHE_SIZE = 1024;
+
+    // Последнее созданное хранилище
+    private WidgetStore store;
+    // Файл журнала для хранилищ с журналом упреждающей записи
+    private Path walPath;
+    // Пространственный хеш, заполняется только для хранилища на его основе, для вывода заполненности ячеек
+    private SpatialHashStoreAdapter spatialHash;
+
+    /**
+     * Создает хранилище, ресурсы предыдущего созданного хранилища должны быть освобождены через
+     * {@link StoreFactory#close()}
+     *
+     * @param storeType тип хранилища
+     * @param cellSize  размер ячейки пространственного хеша, используется только для
+     *                  {@link StoreType#SPATIAL_HASH_STORE}
+     */
+    public WidgetStore create(StoreType storeType, int cellSize) throws IOException {
+        spatialHash = null;
+        walPath = null;
+        switch (storeType) {
+            case SIMPLE_STORE:
+                store = new SimpleWidgetStore();
+                break;
+            case MAP_STORE:
+                store = new AdaptedWidgetStore(new MapStoreAdapter());
+                break;
+            case TREE_SET_STORE:
+                store = new AdaptedWidgetStore(new SortedSetStoreAdapter());
+                break;
+            case COMBINED_STORE:
+                store = new AdaptedWidgetStore(new CombinedStoreAdapter());
+                break;
+            case R_TREE_STORE:
+                store = new AdaptedWidgetStore(new RTreeStoreAdapter());
+                break;
+            case ORDER_STATISTIC_STORE:
+                store = new AdaptedWidgetStore(new OrderStatisticStoreAdapter());
+                break;
+            case LAZY_SHIFT_STORE:
+                store = new AdaptedWidgetStore(new LazyShiftStoreAdapter());
+                break;
+            case SINGLE_WRITER_STORE:
+                store = new SingleWriterWidgetStore(new AdaptedWidgetStore(new CombinedStoreAdapter()));
+                break;
+            case PERSISTENT_STORE:
+                store = new PersistentWidgetStore();
+                break;
+            case COLUMNAR_STORE:
+                store = new AdaptedWidgetStore(new ColumnarStoreAdapter());
+                break;
+            case WAL_NO_SYNC_STORE:
+                store = getDurableStore(Durability.NONE);
+                break;
+            case WAL_GROUP_COMMIT_STORE:
+                store = getDurableStore(Durability.GROUP_COMMIT);
+                break;
+            case WAL_PER_OPERATION_STORE:
+                store = getDurableStore(Durability.PER_OPERATION);
+                break;
+            case CACHED_STORE:
+                store = new CachingWidgetStore(new AdaptedWidgetStore(new CombinedStoreAdapter()), CACHE_SIZE);
+                break;
+            case GRID_COUNT_STORE:
+                store = new AdaptedWidgetStore(new GridCountStoreAdapter());
+                break;
+            case SPATIAL_HASH_STORE:
+                spatialHash = new SpatialHashStoreAdapter(cellSize);
+                store = new AdaptedWidgetStore(spatialHash);
+                break;
+        }
+        return store;
+    }
+
+    /**
+     * Создает хранилище с журналом упреждающей записи во временном файле
+     *
+     * @param durability уровень надежности журнала
+     */
+    private WidgetStore getDurableStore(Durability durability) throws IOException {
+        walPath = Files.createTempFile("widgets", ".wal");
+        return new DurableWidgetStore(new AdaptedWidgetStore(new CombinedStoreAdapter()),
+                new WriteAheadLog(walPath, durability));
+    }
+
+    /**
+     * Выводит статистику хранилища, если она есть
+     */
+    public void printStat() {
+        if (store instanceof CachingWidgetStore) {
+            log.info("cache statistics: {}", ((CachingWidgetStore) store).getStatistics());
+        }
+        if (Objects.nonNull(spatialHash)) {
+            log.info("spatial hash: cells={}, widgets={}", spatialHash.getCellCount(), spatialHash.size());
+        }
+    }
+
+    /**
+     * Останавливает пишущий поток хранилища и удаляет журнал, если они есть
+     */
+    public void close() throws IOException {
+        if (store instanceof SingleWriterWidgetStore) {
+            ((SingleWriterWidgetStore) store).close();
+        }
+        if (store instanceof DurableWidgetStore) {
+            ((DurableWidgetStore) store).close();
+        }
+        if (Objects.nonNull(walPath)) {
+            Files.deleteIfExists(walPath);
+        }
+    }
+}
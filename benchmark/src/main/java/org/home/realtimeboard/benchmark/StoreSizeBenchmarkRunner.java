@@ -0,0 +1,66 @@
+package org.home.realtimeboard.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.*;
+
+/**
+ * Запускает {@link StoreBenchmark} с профилем {@link LoadProfileType#FULL} для каждого типа хранилища и количества
+ * виджетов с профилировщиком сборки мусора и выводит сводную таблицу среднего времени операции и объема памяти,
+ * выделяемой на операцию. Хранилища наполняются способом, пригодным для больших хранилищ, см.
+ * {@link StoreBenchmark.ExecutionPlan#stackedPrefill}.
+ * <p>
+ * Аргументы - типы хранилищ ({@link StoreType}), по умолчанию проверяются все. Количества виджетов задаются свойством
+ * {@code sizes}, например {@code -Dsizes=5000,100000}
+ */
+public class StoreSizeBenchmarkRunner {
+    private final static String DEFAULT_SIZES = "5000,100000,1000000";
+    // Нормированная на операцию скорость выделения памяти профилировщика GCProfiler, в байтах
+    private final static String ALLOCATION_RESULT = "gc.alloc.rate.norm";
+
+    public static void main(String[] args) throws RunnerException {
+        String[] storeTypes = args.length > 0
+                ? args
+                : Arrays.stream(StoreType.values()).map(Enum::name).toArray(String[]::new);
+        String[] sizes = System.getProperty("sizes", DEFAULT_SIZES).split(",");
+
+        Options options = new OptionsBuilder()
+                .include(StoreBenchmark.class.getName() + ".testStore$")
+                .param("profileType", LoadProfileType.FULL.name())
+                .param("storeType", storeTypes)
+                .param("storeSize", sizes)
+                .param("stackedPrefill", "true")
+                .addProfiler(GCProfiler.class)
+                .build();
+        Collection<RunResult> results = new Runner(options).run();
+
+        System.out.printf("%n%-24s %10s %20s %16s%n", "Store", "Widgets", "Average time", "Bytes/op");
+        for (RunResult result : results) {
+            System.out.printf("%-24s %10s %20s %16s%n",
+                    result.getParams().getParam("storeType"),
+                    result.getParams().getParam("storeSize"),
+                    String.format("%.3f %s", result.getPrimaryResult().getScore(),
+                            result.getPrimaryResult().getScoreUnit()),
+                    getAllocation(result));
+        }
+    }
+
+    /**
+     * Возвращает объем памяти, выделяемой на операцию. Имя результата профилировщика в разных версиях JMH
+     * отличается префиксом
+     */
+    private static String getAllocation(RunResult result) {
+        for (Map.Entry<String, Result> entry : result.getSecondaryResults().entrySet()) {
+            if (entry.getKey().endsWith(ALLOCATION_RESULT)) {
+                return String.format("%.1f", entry.getValue().getScore());
+            }
+        }
+        return "-";
+    }
+}
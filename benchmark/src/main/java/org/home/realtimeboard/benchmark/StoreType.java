@@ -4,5 +4,8 @@ package org.home.realtimeboard.benchmark;
  * Тип проверяемого хранилища
  */
 public enum StoreType {
-    SIMPLE_STORE, MAP_STORE, TREE_SET_STORE, COMBINED_STORE;
+    SIMPLE_STORE, MAP_STORE, TREE_SET_STORE, COMBINED_STORE, R_TREE_STORE, ORDER_STATISTIC_STORE, LAZY_SHIFT_STORE,
+    SINGLE_WRITER_STORE, PERSISTENT_STORE, COLUMNAR_STORE, WAL_NO_SYNC_STORE, WAL_GROUP_COMMIT_STORE,
+    WAL_PER_OPERATION_STORE, CACHED_STORE, GRID_COUNT_STORE,
+    SPATIAL_HASH_STORE;
 }
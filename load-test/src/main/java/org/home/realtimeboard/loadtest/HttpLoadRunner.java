@@ -0,0 +1,131 @@
+package org.home.realtimeboard.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.home.realtimeboard.RealtimeboardTestApplication;
+import org.home.realtimeboard.benchmark.ActionType;
+import org.home.realtimeboard.benchmark.IdPool;
+import org.home.realtimeboard.benchmark.LoadProfile;
+import org.home.realtimeboard.benchmark.LoadProfileType;
+import org.home.realtimeboard.benchmark.RandomWorkload;
+import org.home.realtimeboard.store.WidgetStore;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Нагрузочный тест REST API: запускает {@link RealtimeboardTestApplication} на свободном локальном порту, наполняет
+ * хранилище и нагружает {@code /widgets} запросами согласно профилю нагрузки из множества одновременных соединений.
+ * Длительности запросов записываются в HdrHistogram и выводятся перцентилями по типам операций. Сравнение с
+ * {@code StoreBenchmark} на том же профиле показывает затраты Spring MVC, валидации, сборки HAL ресурсов и
+ * сериализации поверх времени хранилища.
+ * <p>
+ * Параметры задаются системными свойствами: {@code profile} - профиль нагрузки ({@link LoadProfileType}, FULL),
+ * {@code connections} - количество соединений (64), {@code storeSize} - начальное количество виджетов (5000),
+ * {@code warmup} и {@code duration} - длительность прогрева и замера в секундах (10 и 30). Аргументы передаются
+ * приложению, например {@code --store.single-writer=true}. При количестве соединений больше 200 нужно также увеличить
+ * {@code --server.tomcat.max-threads}.
+ * <p>
+ * Выборки выполняются по случайным областям видимости, как в профиле {@link LoadProfileType#FULL}. Каждое соединение
+ * отправляет следующий запрос только после ответа на предыдущий, поэтому при задержках сервера запросы не копятся, и
+ * высокие перцентили могут быть занижены (coordinated omission)
+ */
+@Slf4j
+public class HttpLoadRunner {
+    // Максимальное количество хранимых идентификаторов виджетов
+    private final static int ID_CAPACITY = 1 << 20;
+    // Перцентили в отчете
+    private final static double[] PERCENTILES = {50.0, 99.0, 99.9};
+
+    public static void main(String[] args) throws InterruptedException {
+        LoadProfileType profileType = LoadProfileType.valueOf(System.getProperty("profile", "FULL"));
+        int connections = Integer.getInteger("connections", 64);
+        int storeSize = Integer.getInteger("storeSize", 5000);
+        int warmup = Integer.getInteger("warmup", 10);
+        int duration = Integer.getInteger("duration", 30);
+
+        // HttpURLConnection по умолчанию сохраняет для повторного использования только 5 соединений с хостом
+        System.setProperty("http.maxConnections", Integer.toString(connections));
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(RealtimeboardTestApplication.class)
+                .properties("server.port=0")
+                .run(args);
+        try {
+            int port = context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+            IdPool ids = fill(context.getBean(WidgetStore.class), storeSize);
+            log.info("Store filled with {} widgets, starting {} connections to port {}", storeSize, connections, port);
+
+            WidgetClient client = new WidgetClient(port);
+            long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmup);
+            long end = warmupEnd + TimeUnit.SECONDS.toNanos(duration);
+            List<LoadWorker> workers = new ArrayList<>();
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < connections; i++) {
+                LoadWorker worker = new LoadWorker(client, LoadProfile.forType(profileType), ids, new Random(i + 1),
+                        warmupEnd, end);
+                Thread thread = new Thread(worker, "load-" + i);
+                thread.start();
+                workers.add(worker);
+                threads.add(thread);
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            report(workers, duration);
+        } finally {
+            context.close();
+        }
+    }
+
+    /**
+     * Наполняет хранилище напрямую, минуя REST API. Виджеты добавляются поверх уже добавленных, без выпихиваний
+     *
+     * @return идентификаторы добавленных виджетов
+     */
+    private static IdPool fill(WidgetStore store, int storeSize) {
+        IdPool ids = new IdPool(ID_CAPACITY);
+        // seed всегда одинаковый, чтобы начальное состояние хранилища не менялось
+        Random random = new Random(0);
+        for (int i = 0; i < storeSize; i++) {
+            ids.add(store.add(RandomWorkload.widget(random, false).toBuilder().zIndex(null).build()).getId(), random);
+        }
+        return ids;
+    }
+
+    /**
+     * Выводит количество, пропускную способность и перцентили длительности запросов в микросекундах по типам
+     * операций и по всем запросам
+     */
+    private static void report(List<LoadWorker> workers, int duration) {
+        Map<ActionType, Histogram> histograms = new EnumMap<>(ActionType.class);
+        Histogram total = new Histogram(LoadWorker.SIGNIFICANT_DIGITS);
+        long notFound = 0;
+        long errors = 0;
+        for (LoadWorker worker : workers) {
+            worker.getHistograms().forEach((action, histogram) -> {
+                histograms.computeIfAbsent(action, key -> new Histogram(LoadWorker.SIGNIFICANT_DIGITS)).add(histogram);
+                total.add(histogram);
+            });
+            notFound += worker.getNotFound();
+            errors += worker.getErrors();
+        }
+
+        System.out.printf("%n%-10s %10s %10s %10s %10s %10s %10s %10s%n",
+                "Operation", "Count", "Req/s", "Mean, us", "p50, us", "p99, us", "p99.9, us", "Max, us");
+        histograms.forEach((action, histogram) -> print(action.name(), histogram, duration));
+        print("ALL", total, duration);
+        System.out.printf("Not found: %d, errors: %d%n", notFound, errors);
+    }
+
+    private static void print(String operation, Histogram histogram, int duration) {
+        System.out.printf("%-10s %10d %10.1f %10.1f", operation, histogram.getTotalCount(),
+                (double) histogram.getTotalCount() / duration, histogram.getMean());
+        for (double percentile : PERCENTILES) {
+            System.out.printf(" %10d", histogram.getValueAtPercentile(percentile));
+        }
+        System.out.printf(" %10d%n", histogram.getMaxValue());
+    }
+}
@@ -0,0 +1,98 @@
+package org.home.realtimeboard.loadtest;
+
+import lombok.Getter;
+import org.HdrHistogram.Histogram;
+import org.home.realtimeboard.benchmark.ActionType;
+import org.home.realtimeboard.benchmark.IdPool;
+import org.home.realtimeboard.benchmark.LoadProfile;
+import org.home.realtimeboard.benchmark.RandomWorkload;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.RestClientException;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Соединение нагрузочного теста: в замкнутом цикле выполняет запросы согласно профилю нагрузки и записывает их
+ * длительность в микросекундах в гистограммы по типам операций. Запросы, начатые до окончания прогрева, не
+ * учитываются
+ */
+class LoadWorker implements Runnable {
+    // Количество значащих цифр гистограмм, диапазон значений расширяется автоматически
+    static final int SIGNIFICANT_DIGITS = 3;
+
+    private final WidgetClient client;
+    private final LoadProfile profile;
+    private final IdPool ids;
+    private final Random random;
+    // Моменты окончания прогрева и замера по System.nanoTime()
+    private final long warmupEnd;
+    private final long end;
+
+    @Getter
+    private final Map<ActionType, Histogram> histograms = new EnumMap<>(ActionType.class);
+    // Ответы 404 на запросы к удаленным или случайным виджетам, ожидаемы для профилей с поиском и удалением
+    @Getter
+    private long notFound;
+    @Getter
+    private long errors;
+
+    LoadWorker(WidgetClient client, LoadProfile profile, IdPool ids, Random random, long warmupEnd, long end) {
+        this.client = client;
+        this.profile = profile;
+        this.ids = ids;
+        this.random = random;
+        this.warmupEnd = warmupEnd;
+        this.end = end;
+    }
+
+    @Override
+    public void run() {
+        long start;
+        while ((start = System.nanoTime()) < end) {
+            ActionType action = profile.nextAction(random);
+            boolean measured = start >= warmupEnd;
+            try {
+                execute(action);
+            } catch (HttpStatusCodeException e) {
+                if (measured && (e.getStatusCode() == HttpStatus.NOT_FOUND)) {
+                    notFound++;
+                } else if (measured) {
+                    errors++;
+                }
+            } catch (RestClientException e) {
+                if (measured) {
+                    errors++;
+                }
+            }
+            if (measured) {
+                histograms.computeIfAbsent(action, key -> new Histogram(SIGNIFICANT_DIGITS))
+                        .recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+            }
+        }
+    }
+
+    private void execute(ActionType action) {
+        switch (action) {
+            case ADD:
+                ids.add(client.add(RandomWorkload.widget(random, true)), random);
+                break;
+            case FIND_ONE:
+                client.findOne(random.nextBoolean() ? UUID.randomUUID().toString() : ids.get(random));
+                break;
+            case UPDATE:
+                client.update(ids.get(random), RandomWorkload.widget(random, false));
+                break;
+            case DELETE:
+                client.delete(ids.get(random));
+                break;
+            case FIND_ALL:
+                client.findAll(RandomWorkload.filter(random), RandomWorkload.pageable(random));
+                break;
+        }
+    }
+}
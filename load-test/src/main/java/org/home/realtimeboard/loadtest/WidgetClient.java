@@ -0,0 +1,61 @@
+package org.home.realtimeboard.loadtest;
+
+import org.home.realtimeboard.model.Filter;
+import org.home.realtimeboard.model.Widget;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+/**
+ * Клиент REST API виджетов для нагрузочного теста. Ответы читаются целиком, но в объекты преобразуется только ответ на
+ * добавление, из которого нужен идентификатор нового виджета. Ошибки сервера, включая ответ 404 на запрос удаленного
+ * виджета, выбрасываются как {@link org.springframework.web.client.HttpStatusCodeException}
+ */
+class WidgetClient {
+    private final RestTemplate restTemplate = new RestTemplate();
+    private final String widgetsUri;
+
+    /**
+     * @param port порт приложения на локальном хосте
+     */
+    WidgetClient(int port) {
+        this.widgetsUri = "http://localhost:" + port + "/widgets";
+    }
+
+    /**
+     * Добавляет виджет
+     *
+     * @return идентификатор нового виджета
+     */
+    String add(Widget widget) {
+        return restTemplate.postForObject(widgetsUri, widget, Widget.class).getId();
+    }
+
+    String findOne(String id) {
+        return restTemplate.getForObject(widgetsUri + "/{id}", String.class, id);
+    }
+
+    String update(String id, Widget widget) {
+        return restTemplate.exchange(widgetsUri + "/{id}", HttpMethod.PUT, new HttpEntity<>(widget), String.class, id)
+                .getBody();
+    }
+
+    void delete(String id) {
+        restTemplate.delete(widgetsUri + "/{id}", id);
+    }
+
+    String findAll(Filter filter, Pageable pageable) {
+        UriComponentsBuilder uri = UriComponentsBuilder.fromHttpUrl(widgetsUri)
+                .queryParam("page", pageable.getPageNumber())
+                .queryParam("size", pageable.getPageSize());
+        if (!filter.isEmpty()) {
+            uri.queryParam("top", filter.getTop())
+                    .queryParam("bottom", filter.getBottom())
+                    .queryParam("left", filter.getLeft())
+                    .queryParam("right", filter.getRight());
+        }
+        return restTemplate.getForObject(uri.build().toUri(), String.class);
+    }
+}
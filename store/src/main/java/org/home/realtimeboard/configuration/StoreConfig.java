@@ -1,21 +1,73 @@
 package org.home.realtimeboard.configuration;
 
-import org.home.realtimeboard.store.AdaptedWidgetStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.home.realtimeboard.store.BoardRegistry;
 import org.home.realtimeboard.store.WidgetStore;
-import org.home.realtimeboard.store.adapter.CombinedStoreAdapter;
-import org.home.realtimeboard.store.adapter.InnerStoreAdapter;
+import org.home.realtimeboard.store.persistence.Durability;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.nio.file.Paths;
+
 @Configuration
 public class StoreConfig {
+    /**
+     * Фабрика хранилищ виджетов, общая для основного хранилища и хранилищ досок, см. {@link WidgetStoreFactory}.
+     * Журнал упреждающей записи включается заданием {@code store.wal.path}, снимки состояния - заданием
+     * {@code store.snapshot.path}. При {@code store.metrics.enabled=true} метрики публикуются в реестр метрик
+     * Actuator. Реестр требуется только при включенных метриках, а для доступа к ним по HTTP эндпоинт {@code metrics}
+     * нужно открыть в {@code management.endpoints.web.exposure}
+     */
+    @Bean
+    public WidgetStoreFactory widgetStoreFactory(@Value("${store.count-index.tile-size:0}") int tileSize,
+                                                 @Value("${store.single-writer:false}") boolean singleWriter,
+                                                 @Value("${store.wal.path:}") String walPath,
+                                                 @Value("${store.wal.durability:GROUP_COMMIT}") Durability durability,
+                                                 @Value("${store.snapshot.path:}") String snapshotPath,
+                                                 @Value("${store.snapshot.interval-seconds:300}") long snapshotInterval,
+                                                 @Value("${store.cache.size:0}") int cacheSize,
+                                                 @Value("${store.feed.capacity:0}") int feedCapacity,
+                                                 @Value("${store.metrics.enabled:false}") boolean metricsEnabled,
+                                                 ObjectProvider<MeterRegistry> meterRegistryProvider) {
+        return WidgetStoreFactory.builder()
+                .tileSize(tileSize)
+                .singleWriter(singleWriter)
+                .walPath(walPath.isEmpty() ? null : Paths.get(walPath))
+                .durability(durability)
+                .snapshotPath(snapshotPath.isEmpty() ? null : Paths.get(snapshotPath))
+                .snapshotInterval(snapshotInterval)
+                .cacheSize(cacheSize)
+                .feedCapacity(feedCapacity)
+                .meterRegistry(metricsEnabled ? meterRegistryProvider.getObject() : null)
+                .build();
+    }
+
+    /**
+     * Основное хранилище виджетов
+     */
     @Bean
-    public InnerStoreAdapter storeAdapter() {
-        return new CombinedStoreAdapter();
+    public WidgetStore widgetStore(WidgetStoreFactory widgetStoreFactory) {
+        return widgetStoreFactory.createStore();
     }
 
+    /**
+     * Реестр досок, хранилища которых собираются той же фабрикой, что и основное хранилище. Количество досок
+     * ограничено {@code store.boards.max-count}. Доски, журналы которых сохранены на диске, восстанавливаются при
+     * запуске, а если их больше ограничения, запуск завершается ошибкой
+     */
     @Bean
-    public WidgetStore widgetStore() {
-        return new AdaptedWidgetStore(storeAdapter());
+    public BoardRegistry boardRegistry(WidgetStoreFactory widgetStoreFactory,
+                                       @Value("${store.boards.max-count:1000}") int maxBoards) {
+        BoardRegistry boardRegistry = new BoardRegistry(widgetStoreFactory::createBoardStore, maxBoards);
+        widgetStoreFactory.monitor(boardRegistry);
+        try {
+            widgetStoreFactory.findBoardIds().forEach(boardRegistry::getStore);
+        } catch (RuntimeException e) {
+            boardRegistry.close();
+            throw e;
+        }
+        return boardRegistry;
     }
 }
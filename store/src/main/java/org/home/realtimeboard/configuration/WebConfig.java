@@ -1,17 +1,20 @@
 package org.home.realtimeboard.configuration;
 
+import org.home.realtimeboard.integration.BinaryWidgetHttpMessageConverter;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.web.HateoasPageableHandlerMethodArgumentResolver;
 import org.springframework.hateoas.config.EnableHypermediaSupport;
+import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.web.method.support.HandlerMethodArgumentResolver;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 import java.util.List;
 
 /**
- * Конфигурация для Spring MVC, добавляет {@link HandlerMethodArgumentResolver} для запросов с пагинацией
+ * Конфигурация для Spring MVC, добавляет {@link HandlerMethodArgumentResolver} для запросов с пагинацией и конвертер
+ * двоичного формата виджетов
  */
 @Configuration
 @EnableHypermediaSupport(type= {EnableHypermediaSupport.HypermediaType.HAL})
@@ -26,6 +29,12 @@ public class WebConfig implements WebMvcConfigurer {
         resolvers.add(pageableResolver());
     }
 
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        // Добавляется в конец, чтобы при запросах без явного типа содержимого оставался выбор JSON
+        converters.add(new BinaryWidgetHttpMessageConverter());
+    }
+
     @Bean
     public HateoasPageableHandlerMethodArgumentResolver pageableResolver() {
         HateoasPageableHandlerMethodArgumentResolver pageableResolver =
@@ -0,0 +1,284 @@
+package org.home.realtimeboard.configuration;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+import org.home.realtimeboard.store.AdaptedWidgetStore;
+import org.home.realtimeboard.store.BoardRegistry;
+import org.home.realtimeboard.store.CachingWidgetStore;
+import org.home.realtimeboard.store.DurableWidgetStore;
+import org.home.realtimeboard.store.InstrumentedWidgetStore;
+import org.home.realtimeboard.store.InstrumentedWidgetStore.OperationTimers;
+import org.home.realtimeboard.store.SingleWriterWidgetStore;
+import org.home.realtimeboard.store.WidgetStore;
+import org.home.realtimeboard.store.adapter.CombinedStoreAdapter;
+import org.home.realtimeboard.store.adapter.GridCountStoreAdapter;
+import org.home.realtimeboard.store.adapter.InnerStoreAdapter;
+import org.home.realtimeboard.store.feed.ChangeFeed;
+import org.home.realtimeboard.store.metrics.MicrometerStoreMetrics;
+import org.home.realtimeboard.store.persistence.Durability;
+import org.home.realtimeboard.store.persistence.WriteAheadLog;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Фабрика хранилищ виджетов. Собирает общее хранилище и хранилища досок из одинаковых внутренних хранилищ и
+ * декораторов, так что настройки хранилища одинаково действуют на {@code /widgets} и {@code /boards/{boardId}/widgets}:
+ * <ul>
+ * <li>при {@code tileSize > 0} количество виджетов в области подсчитывается по сеточной гистограмме,
+ * см. {@link GridCountStoreAdapter}</li>
+ * <li>при {@code feedCapacity > 0} изменения публикуются в ленте изменений, см. {@link ChangeFeed}</li>
+ * <li>при заданном {@code walPath} изменения сохраняются в журнале, а при заданном {@code snapshotPath} хранилище
+ * периодически сохраняет снимки состояния, см. {@link DurableWidgetStore}</li>
+ * <li>при {@code cacheSize > 0} выборки виджетов кешируются, см. {@link CachingWidgetStore}</li>
+ * <li>при {@code singleWriter} изменения применяются единственным пишущим потоком, см.
+ * {@link SingleWriterWidgetStore}</li>
+ * <li>при заданном {@code meterRegistry} публикуются метрики, см. {@link InstrumentedWidgetStore} и
+ * {@link MicrometerStoreMetrics}. Метрики общего хранилища публикуются с тегом {@code store=widgets}, а метрики
+ * досок - суммарно по всем доскам с тегом {@code store=boards}, чтобы количество метрик не зависело от количества
+ * досок</li>
+ * </ul>
+ * Журналы и снимки досок хранятся в каталоге {@code <walPath>.boards} в файлах {@code <boardId>.wal} и
+ * {@code <boardId>.snapshot}, где идентификатор доски закодирован как в URL, поэтому не может выйти за пределы
+ * каталога. Снимки всех досок сохраняются одним общим потоком
+ */
+@Slf4j
+public class WidgetStoreFactory implements AutoCloseable {
+    private static final String BOARDS_DIRECTORY_SUFFIX = ".boards";
+    private static final String BOARD_WAL_SUFFIX = ".wal";
+    private static final String BOARD_SNAPSHOT_SUFFIX = ".snapshot";
+    // Максимальная длина закодированного идентификатора доски, чтобы имя файла не превышало ограничений файловых систем
+    private static final int MAX_BOARD_FILE_NAME_LENGTH = 200;
+    private static final Tags STORE_TAGS = Tags.of("store", "widgets");
+    private static final Tags BOARD_TAGS = Tags.of("store", "boards");
+
+    private final int tileSize;
+    private final int feedCapacity;
+    private final Path walPath;
+    private final Durability durability;
+    private final Path snapshotPath;
+    // Период сохранения снимков в секундах, 0 отключает периодические снимки
+    private final long snapshotInterval;
+    private final int cacheSize;
+    private final boolean singleWriter;
+    private final MeterRegistry meterRegistry;
+    // Общий поток снимков хранилищ досок, создается при первой доске со снимками
+    private ScheduledExecutorService boardSnapshotExecutor;
+    // Метрики и таймеры, общие для хранилищ всех досок, заданы только вместе с meterRegistry
+    private final MicrometerStoreMetrics boardMetrics;
+    private final OperationTimers boardTimers;
+
+    @Builder
+    private WidgetStoreFactory(int tileSize, int feedCapacity, Path walPath, Durability durability, Path snapshotPath,
+                               long snapshotInterval, int cacheSize, boolean singleWriter,
+                               MeterRegistry meterRegistry) {
+        this.tileSize = tileSize;
+        this.feedCapacity = feedCapacity;
+        this.walPath = walPath;
+        this.durability = Objects.nonNull(durability) ? durability : Durability.GROUP_COMMIT;
+        this.snapshotPath = snapshotPath;
+        this.snapshotInterval = snapshotInterval;
+        this.cacheSize = cacheSize;
+        this.singleWriter = singleWriter;
+        this.meterRegistry = meterRegistry;
+        if (Objects.nonNull(meterRegistry)) {
+            this.boardMetrics = new MicrometerStoreMetrics(meterRegistry, BOARD_TAGS);
+            this.boardTimers = new OperationTimers(meterRegistry, BOARD_TAGS);
+        } else {
+            this.boardMetrics = null;
+            this.boardTimers = null;
+        }
+    }
+
+    /**
+     * Создает общее хранилище виджетов
+     */
+    public WidgetStore createStore() {
+        AdaptedWidgetStore adaptedStore;
+        if (Objects.nonNull(meterRegistry)) {
+            MicrometerStoreMetrics metrics = new MicrometerStoreMetrics(meterRegistry, STORE_TAGS);
+            adaptedStore = new AdaptedWidgetStore(createAdapter(), feedCapacity, metrics);
+            metrics.monitor(adaptedStore);
+        } else {
+            adaptedStore = new AdaptedWidgetStore(createAdapter(), feedCapacity);
+        }
+
+        WidgetStore store = adaptedStore;
+        if (Objects.nonNull(walPath)) {
+            store = createDurableStore(adaptedStore, walPath, snapshotPath);
+        }
+        store = decorate(store);
+        // Замеряются операции в том виде, в котором их видят клиенты, включая очередь пишущего потока и кеш
+        return Objects.nonNull(meterRegistry)
+                ? new InstrumentedWidgetStore(store, new OperationTimers(meterRegistry, STORE_TAGS))
+                : store;
+    }
+
+    /**
+     * Создает хранилище доски. Если журнал доски уже есть, хранилище восстанавливается из него
+     *
+     * @param boardId идентификатор доски
+     * @throws IllegalArgumentException если при заданном {@code walPath} идентификатор доски слишком длинный для
+     *                                  имени файла
+     */
+    public WidgetStore createBoardStore(String boardId) {
+        AdaptedWidgetStore adaptedStore = Objects.nonNull(boardMetrics)
+                ? new AdaptedWidgetStore(createAdapter(), feedCapacity, boardMetrics)
+                : new AdaptedWidgetStore(createAdapter(), feedCapacity);
+        if (Objects.isNull(walPath)) {
+            return instrumentBoard(decorate(adaptedStore));
+        }
+
+        String fileName = encodeBoardId(boardId);
+        if (fileName.length() > MAX_BOARD_FILE_NAME_LENGTH) {
+            throw new IllegalArgumentException("Board id is too long");
+        }
+        Path directory = getBoardsDirectory();
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        Path boardSnapshotPath = Objects.nonNull(snapshotPath)
+                ? directory.resolve(fileName + BOARD_SNAPSHOT_SUFFIX)
+                : null;
+        DurableWidgetStore durableStore = new DurableWidgetStore(adaptedStore,
+                new WriteAheadLog(directory.resolve(fileName + BOARD_WAL_SUFFIX), durability), boardSnapshotPath);
+        if (Objects.nonNull(boardSnapshotPath) && (snapshotInterval > 0)) {
+            durableStore.scheduleSnapshots(getBoardSnapshotExecutor(), snapshotInterval, TimeUnit.SECONDS);
+        }
+        return instrumentBoard(decorate(durableStore));
+    }
+
+    /**
+     * Регистрирует показатель количества досок {@code store.boards}, если задан {@code meterRegistry}
+     */
+    public void monitor(BoardRegistry boardRegistry) {
+        if (Objects.nonNull(meterRegistry)) {
+            Gauge.builder("store.boards", boardRegistry, BoardRegistry::size)
+                    .description("Boards with their own widget store")
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Ищет доски, журналы которых сохранены на диске, чтобы восстановить их при запуске
+     *
+     * @return идентификаторы досок или пустой список, если журнал не используется
+     */
+    public List<String> findBoardIds() {
+        List<String> boardIds = new ArrayList<>();
+        if (Objects.isNull(walPath) || !Files.isDirectory(getBoardsDirectory())) {
+            return boardIds;
+        }
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(getBoardsDirectory(), "*" + BOARD_WAL_SUFFIX)) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                boardIds.add(decodeBoardId(fileName.substring(0, fileName.length() - BOARD_WAL_SUFFIX.length())));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return boardIds;
+    }
+
+    /**
+     * Останавливает общий поток снимков досок, сами хранилища закрываются их владельцами
+     */
+    @Override
+    public synchronized void close() {
+        if (Objects.nonNull(boardSnapshotExecutor)) {
+            boardSnapshotExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Создает внутреннее хранилище, у каждого хранилища оно свое
+     */
+    private InnerStoreAdapter createAdapter() {
+        InnerStoreAdapter storeAdapter = new CombinedStoreAdapter();
+        return tileSize > 0 ? new GridCountStoreAdapter(storeAdapter, tileSize) : storeAdapter;
+    }
+
+    /**
+     * Восстанавливает хранилище из журнала и снимка и запускает периодическое сохранение снимков
+     */
+    private DurableWidgetStore createDurableStore(AdaptedWidgetStore adaptedStore, Path walPath, Path snapshotPath) {
+        DurableWidgetStore durableStore = new DurableWidgetStore(adaptedStore,
+                new WriteAheadLog(walPath, durability), snapshotPath);
+        if (Objects.nonNull(snapshotPath) && (snapshotInterval > 0)) {
+            durableStore.scheduleSnapshots(snapshotInterval, TimeUnit.SECONDS);
+        }
+        return durableStore;
+    }
+
+    /**
+     * Добавляет замер операций хранилища доски общими для всех досок таймерами
+     */
+    private WidgetStore instrumentBoard(WidgetStore store) {
+        return Objects.nonNull(boardTimers) ? new InstrumentedWidgetStore(store, boardTimers) : store;
+    }
+
+    private Path getBoardsDirectory() {
+        return walPath.resolveSibling(walPath.getFileName() + BOARDS_DIRECTORY_SUFFIX);
+    }
+
+    private synchronized ScheduledExecutorService getBoardSnapshotExecutor() {
+        if (Objects.isNull(boardSnapshotExecutor)) {
+            boardSnapshotExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "board-store-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return boardSnapshotExecutor;
+    }
+
+    private static String encodeBoardId(String boardId) {
+        try {
+            return URLEncoder.encode(boardId, StandardCharsets.UTF_8.name());
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String decodeBoardId(String fileName) {
+        try {
+            return URLDecoder.decode(fileName, StandardCharsets.UTF_8.name());
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Добавляет кеш выборок и единственный пишущий поток
+     */
+    private WidgetStore decorate(WidgetStore store) {
+        if (cacheSize > 0) {
+            // Кеш применяет изменения по одному, поэтому располагается под пакетной записью
+            store = new CachingWidgetStore(store, cacheSize);
+        }
+        if (singleWriter) {
+            store = new SingleWriterWidgetStore(store);
+        }
+        return store;
+    }
+}
@@ -1,113 +1,414 @@
 package org.home.realtimeboard.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
+import org.home.realtimeboard.integration.BinaryWidgetHttpMessageConverter;
+import org.home.realtimeboard.integration.ChangeFeedPublisher;
+import org.home.realtimeboard.integration.MutationResultResource;
 import org.home.realtimeboard.integration.WidgetPagedResourcesAssembler;
 import org.home.realtimeboard.integration.WidgetResource;
+import org.home.realtimeboard.integration.WidgetETags;
 import org.home.realtimeboard.integration.WidgetResourceAssembler;
 import org.home.realtimeboard.model.Filter;
 import org.home.realtimeboard.model.Widget;
+import org.home.realtimeboard.model.WidgetCursor;
+import org.home.realtimeboard.store.BoardLimitExceededException;
+import org.home.realtimeboard.store.BoardRegistry;
+import org.home.realtimeboard.store.MutationResult;
+import org.home.realtimeboard.store.WidgetMutation;
 import org.home.realtimeboard.store.WidgetStore;
+import org.home.realtimeboard.store.feed.ChangeFeed;
+import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.rest.webmvc.RepositoryLinksResource;
 import org.springframework.data.rest.webmvc.ResourceNotFoundException;
 import org.springframework.hateoas.ExposesResourceFor;
+import org.springframework.hateoas.Link;
 import org.springframework.hateoas.PagedResources;
+import org.springframework.hateoas.ResourceAssembler;
 import org.springframework.hateoas.ResourceProcessor;
+import org.springframework.hateoas.Resources;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import javax.validation.ConstraintViolation;
 import javax.validation.Valid;
-import java.util.Objects;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static org.springframework.hateoas.mvc.ControllerLinkBuilder.linkTo;
 import static org.springframework.hateoas.mvc.ControllerLinkBuilder.methodOn;
 
 /**
- * REST контроллер для управления виджетами, поддерживает HAL
+ * REST контроллер для управления виджетами, поддерживает HAL.
+ * <p>
+ * Виджеты по адресу {@code /widgets} хранятся в общем хранилище, а по адресу {@code /boards/{boardId}/widgets} -
+ * в независимых хранилищах досок из {@link BoardRegistry}.
+ * <p>
+ * Кроме HAL JSON виджеты, страницы, списки и пакеты изменений передаются в компактном двоичном формате
+ * ({@link BinaryWidgetHttpMessageConverter}) при запросе соответствующего типа содержимого.
+ * <p>
+ * Виджет и выборка виджетов выдаются со слабым ETag ({@link WidgetETags}), построенным по версии хранилища. Запрос
+ * с совпадающим {@code If-None-Match} получает ответ 304, выборка при этом не выполняется вовсе.
+ * <p>
+ * Изменения виджетов после известной клиенту версии хранилища передаются потоком server-sent events по адресу
+ * {@code /widgets/changes}, см. {@link ChangeFeedPublisher}.
  */
 @RestController
-@RequestMapping("widgets")
+@RequestMapping({"widgets", "boards/{boardId}/widgets"})
 @ExposesResourceFor(Widget.class)
 @Slf4j
 public class WidgetController implements ResourceProcessor<RepositoryLinksResource> {
+    /**
+     * Тип содержимого потоковой выдачи виджетов: по одному JSON объекту на строку
+     */
+    public static final String NDJSON_VALUE = "application/x-ndjson";
+
+    /**
+     * Тип содержимого облегченной выдачи виджетов: без HAL оберток и ссылок у каждого виджета
+     */
+    public static final String LEAN_JSON_VALUE = "application/vnd.widgets.lean+json";
+
+    // Максимальное количество изменений в пакете и идентификаторов в одном запросе
+    private static final int MAX_BATCH_SIZE = 500;
+    // Максимальное количество виджетов на странице выборки по курсору, как и при обычной пагинации
+    private static final int MAX_LIMIT = 500;
+
     private final WidgetStore widgetStore;
+    private final BoardRegistry boardRegistry;
     private final WidgetResourceAssembler widgetResourceAssembler;
     private final WidgetPagedResourcesAssembler pagedAssembler;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final ChangeFeedPublisher changeFeedPublisher;
 
     public WidgetController(WidgetStore widgetStore,
+                            BoardRegistry boardRegistry,
                             WidgetResourceAssembler widgetResourceAssembler,
-                            WidgetPagedResourcesAssembler pagedAssembler) {
+                            WidgetPagedResourcesAssembler pagedAssembler,
+                            Validator validator,
+                            ObjectMapper objectMapper,
+                            ChangeFeedPublisher changeFeedPublisher) {
 
         this.widgetStore = widgetStore;
+        this.boardRegistry = boardRegistry;
         this.widgetResourceAssembler = widgetResourceAssembler;
         this.pagedAssembler = pagedAssembler;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.changeFeedPublisher = changeFeedPublisher;
     }
 
     /**
      * Добавляет новый виджет
      *
-     * @param widget описание нового виджета
+     * @param boardId идентификатор доски или {@code null} для общего хранилища
+     * @param widget  описание нового виджета
      * @return HAL ресурс с данными о виджете и доступными операциями над ним
+     * @throws ResponseStatusException 404, если доски нет, а количество досок достигло максимального
      */
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
-    public WidgetResource addWidget(@RequestBody @Validated(Widget.CreateValidation.class) Widget widget) {
-        return widgetResourceAssembler.toResource(widgetStore.add(widget));
+    public WidgetResource addWidget(@PathVariable(required = false) String boardId,
+                                    @RequestBody @Validated(Widget.CreateValidation.class) Widget widget) {
+        return widgetResourceAssembler.toResource(boardId, getStore(boardId).add(widget));
     }
 
     /**
      * Ищет виджет по указанному идентификатору
      *
-     * @param id uuid виджета
-     * @return HAL ресурс с данными о виджете и доступными операциями над ним
+     * @param boardId     идентификатор доски или {@code null} для общего хранилища
+     * @param id          uuid виджета
+     * @param ifNoneMatch ETag'и ранее полученных ответов
+     * @return HAL ресурс с данными о виджете и доступными операциями над ним или ответ 304, если виджет не менялся
      * @throws ResourceNotFoundException если виджет с указанным id не найден
      */
     @GetMapping("{id}")
-    public WidgetResource getWidget(@PathVariable String id) {
-        Widget widget = widgetStore.findOne(id);
-
-        if (Objects.isNull(widget)) {
-            throw new ResourceNotFoundException();
-        }
+    public ResponseEntity<WidgetResource> getWidget(@PathVariable(required = false) String boardId,
+                                                    @PathVariable String id,
+                                                    @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false)
+                                                            String ifNoneMatch) {
+        return findWidget(boardId, id, ifNoneMatch, widget -> widgetResourceAssembler.toResource(boardId, widget));
+    }
 
-        return widgetResourceAssembler.toResource(widget);
+    /**
+     * Ищет виджет по указанному идентификатору, облегченная выдача без ссылок
+     *
+     * @param boardId     идентификатор доски или {@code null} для общего хранилища
+     * @param id          uuid виджета
+     * @param ifNoneMatch ETag'и ранее полученных ответов
+     * @return данные о виджете или ответ 304, если виджет не менялся
+     * @throws ResourceNotFoundException если виджет с указанным id не найден
+     */
+    @GetMapping(path = "{id}", produces = LEAN_JSON_VALUE)
+    public ResponseEntity<Widget> getLeanWidget(@PathVariable(required = false) String boardId,
+                                                @PathVariable String id,
+                                                @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false)
+                                                        String ifNoneMatch) {
+        return findWidget(boardId, id, ifNoneMatch, Function.identity());
     }
 
     /**
      * Обновляет виджет с указанным id переданными данными
      *
-     * @param id     uuid виджета
-     * @param widget обновленные данные виджета
+     * @param boardId идентификатор доски или {@code null} для общего хранилища
+     * @param id      uuid виджета
+     * @param widget  обновленные данные виджета
      * @return HAL ресурс с данными о виджете и доступными операциями над ним
      */
     @PutMapping("{id}")
-    public WidgetResource updateWidget(@PathVariable String id,
+    public WidgetResource updateWidget(@PathVariable(required = false) String boardId,
+                                       @PathVariable String id,
                                        @RequestBody @Validated(Widget.UpdateValidation.class) Widget widget) {
-        return widgetResourceAssembler.toResource(widgetStore.update(id, widget));
+        WidgetStore store = findStore(boardId).orElseThrow(ResourceNotFoundException::new);
+        return widgetResourceAssembler.toResource(boardId, store.update(id, widget));
     }
 
     /**
      * Ищет виджеты, удовлетворяющие фильтрации
      *
-     * @param filter   фильтр для выборки виджетов
-     * @param pageable параметры пагинации
-     * @return HAL ресурс с описанием страницы виджетов и допустимых операций
+     * @param boardId     идентификатор доски или {@code null} для общего хранилища
+     * @param filter      фильтр для выборки виджетов
+     * @param pageable    параметры пагинации
+     * @param ifNoneMatch ETag'и ранее полученных ответов
+     * @return HAL ресурс с описанием страницы виджетов и допустимых операций или ответ 304, если хранилище не менялось
      */
     @GetMapping
-    public PagedResources<WidgetResource> findAllWidgets(@Valid Filter filter, Pageable pageable) {
-        return pagedAssembler.toResource(widgetStore.findAll(filter, pageable), widgetResourceAssembler);
+    public ResponseEntity<PagedResources<WidgetResource>> findAllWidgets(
+            @PathVariable(required = false) String boardId,
+            @Valid Filter filter,
+            Pageable pageable,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return findPage(boardId, filter, pageable, ifNoneMatch,
+                page -> pagedAssembler.toResource(page, widgetResourceAssembler.forBoard(boardId)));
+    }
+
+    /**
+     * Ищет виджеты, удовлетворяющие фильтрации, облегченная выдача: ссылки на соседние страницы сохраняются, а виджеты
+     * выдаются без HAL оберток и ссылок
+     *
+     * @param boardId     идентификатор доски или {@code null} для общего хранилища
+     * @param filter      фильтр для выборки виджетов
+     * @param pageable    параметры пагинации
+     * @param ifNoneMatch ETag'и ранее полученных ответов
+     * @return описание страницы виджетов или ответ 304, если хранилище не менялось
+     */
+    @GetMapping(produces = LEAN_JSON_VALUE)
+    public ResponseEntity<PagedResources<Widget>> findAllLeanWidgets(
+            @PathVariable(required = false) String boardId,
+            @Valid Filter filter,
+            Pageable pageable,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return findPage(boardId, filter, pageable, ifNoneMatch, pagedAssembler::toLeanResource);
+    }
+
+    /**
+     * Ищет виджеты, удовлетворяющие фильтрации, постранично по курсору: страница начинается сразу после виджета из
+     * параметра {@code after} в порядке возрастания z-index. В отличие от
+     * {@link WidgetController#findAllWidgets(String, Filter, Pageable, String)} предыдущие страницы не перебираются,
+     * общее количество не подсчитывается, а выпихивание между запросами не приводит к пропускам или повторам.
+     * Ссылка {@code next} с курсором последнего виджета выдается, если страница заполнена целиком
+     *
+     * @param boardId идентификатор доски или {@code null} для общего хранилища
+     * @param filter  фильтр для выборки виджетов
+     * @param after   курсор {@code <z-index>,<id>} последнего виджета предыдущей страницы или {@code null}
+     * @param limit   максимальное количество виджетов на странице
+     * @return HAL ресурс с найденными виджетами и ссылкой на следующую страницу
+     */
+    @GetMapping(params = "limit")
+    public Resources<WidgetResource> findWidgetsAfter(@PathVariable(required = false) String boardId,
+                                                      @Valid Filter filter,
+                                                      @RequestParam(required = false) String after,
+                                                      @RequestParam int limit) {
+        ResourceAssembler<Widget, WidgetResource> assembler = widgetResourceAssembler.forBoard(boardId);
+        return findAfter(boardId, filter, after, limit, assembler::toResource);
+    }
+
+    /**
+     * Ищет виджеты, удовлетворяющие фильтрации, постранично по курсору, облегченная выдача без ссылок у виджетов
+     *
+     * @param boardId идентификатор доски или {@code null} для общего хранилища
+     * @param filter  фильтр для выборки виджетов
+     * @param after   курсор {@code <z-index>,<id>} последнего виджета предыдущей страницы или {@code null}
+     * @param limit   максимальное количество виджетов на странице
+     * @return найденные виджеты и ссылка на следующую страницу
+     */
+    @GetMapping(params = "limit", produces = LEAN_JSON_VALUE)
+    public Resources<Widget> findLeanWidgetsAfter(@PathVariable(required = false) String boardId,
+                                                  @Valid Filter filter,
+                                                  @RequestParam(required = false) String after,
+                                                  @RequestParam int limit) {
+        return findAfter(boardId, filter, after, limit, Function.identity());
+    }
+
+    /**
+     * Выдает все виджеты, удовлетворяющие фильтрации, потоком в формате NDJSON в порядке возрастания z-index.
+     * В отличие от {@link WidgetController#findAllWidgets(String, Filter, Pageable, String)} ответ не ограничен размером
+     * страницы и не содержит HAL ссылок, а виджеты пишутся в ответ по мере чтения из хранилища, так что память
+     * сервера не зависит от количества виджетов
+     *
+     * @param boardId идентификатор доски или {@code null} для общего хранилища
+     * @param filter  фильтр для выборки виджетов
+     * @return тело ответа, записываемое потоком
+     */
+    @GetMapping(produces = NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamWidgets(@PathVariable(required = false) String boardId,
+                                                               @Valid Filter filter) {
+        Optional<WidgetStore> store = findStore(boardId);
+        StreamingResponseBody body = output -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(output)) {
+                // Виджеты разделяются только переводом строки
+                generator.setRootValueSeparator(null);
+                store.ifPresent(s -> s.forEach(filter, widget -> {
+                    try {
+                        generator.writeObject(widget);
+                        generator.writeRaw('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }));
+            } catch (UncheckedIOException e) {
+                // Ошибка записи в ответ, например, при разрыве соединения клиентом
+                throw e.getCause();
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON_VALUE))
+                .body(body);
+    }
+
+    /**
+     * Подписывает клиента на изменения виджетов. Клиент, переподключающийся после разрыва, продолжает с версии из
+     * {@code Last-Event-ID}, а без указания версии получает только изменения после подписки
+     *
+     * @param boardId     идентификатор доски или {@code null} для общего хранилища
+     * @param since       версия хранилища, известная клиенту, например из ETag выборки
+     * @param lastEventId идентификатор последнего полученного события
+     * @return поток server-sent events
+     * @throws ResourceNotFoundException если доска не найдена
+     * @throws ResponseStatusException 404, если лента изменений отключена
+     */
+    @GetMapping(value = "changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribeToChanges(@PathVariable(required = false) String boardId,
+                                         @RequestParam(required = false) Long since,
+                                         @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        // Подписка не создает доску, иначе любой запрос к неизвестной доске выделял бы хранилище с лентой изменений
+        WidgetStore store = findStore(boardId).orElseThrow(ResourceNotFoundException::new);
+        ChangeFeed feed = store.getChangeFeed()
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Change feed is disabled"));
+
+        long version = feed.getVersion();
+        if (Objects.nonNull(lastEventId)) {
+            version = lastEventId;
+        } else if (Objects.nonNull(since)) {
+            version = since;
+        }
+        return changeFeedPublisher.subscribe(feed, version);
+    }
+
+    /**
+     * Ищет виджеты по указанным идентификаторам. Все виджеты читаются из одной версии хранилища
+     *
+     * @param boardId идентификатор доски или {@code null} для общего хранилища
+     * @param ids     uuid виджетов
+     * @return HAL ресурс с найденными виджетами в порядке идентификаторов, не найденные виджеты пропускаются
+     */
+    @GetMapping(params = "ids")
+    public Resources<WidgetResource> findWidgetsById(@PathVariable(required = false) String boardId,
+                                                     @RequestParam List<String> ids) {
+        ResourceAssembler<Widget, WidgetResource> assembler = widgetResourceAssembler.forBoard(boardId);
+        return new Resources<>(findById(boardId, ids).stream()
+                .map(assembler::toResource)
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Ищет виджеты по указанным идентификаторам, облегченная выдача без ссылок
+     *
+     * @param boardId идентификатор доски или {@code null} для общего хранилища
+     * @param ids     uuid виджетов
+     * @return найденные виджеты в порядке идентификаторов, не найденные виджеты пропускаются
+     */
+    @GetMapping(params = "ids", produces = LEAN_JSON_VALUE)
+    public List<Widget> findLeanWidgetsById(@PathVariable(required = false) String boardId,
+                                            @RequestParam List<String> ids) {
+        return findById(boardId, ids);
+    }
+
+    /**
+     * Отклоняет запрос, совмещающий поиск по идентификаторам и по курсору. Такой запрос подходит под сопоставления
+     * обоих поисков, и без этого более точного сопоставления Spring не может выбрать обработчик
+     *
+     * @throws ResponseStatusException 400
+     */
+    @GetMapping(params = {"ids", "limit"})
+    public void rejectIdsWithLimit() {
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Parameters ids and limit cannot be combined");
+    }
+
+    /**
+     * Применяет пакет изменений: добавления, обновления и удаления. Весь пакет применяется к хранилищу за одну
+     * запись, коллизии z-index'ов выпихиваются для пакета целиком. Ошибка одного изменения не прерывает остальные
+     *
+     * @param boardId   идентификатор доски или {@code null} для общего хранилища
+     * @param mutations список изменений в порядке применения
+     * @return результаты изменений в том же порядке
+     * @throws ResponseStatusException 404, если доски нет, а количество досок достигло максимального
+     */
+    @PostMapping("batch")
+    public List<MutationResultResource> applyBatch(@PathVariable(required = false) String boardId,
+                                                   @RequestBody List<WidgetMutation> mutations) {
+        checkBatchSize(mutations.size());
+
+        // Некорректные изменения не передаются в хранилище, их результаты сразу заполняются ошибками
+        MutationResultResource[] results = new MutationResultResource[mutations.size()];
+        List<WidgetMutation> valid = new ArrayList<>(mutations.size());
+        for (int i = 0; i < mutations.size(); i++) {
+            String error = validate(mutations.get(i));
+            if (Objects.isNull(error)) {
+                valid.add(mutations.get(i));
+            } else {
+                results[i] = new MutationResultResource(HttpStatus.BAD_REQUEST.value(), null, error);
+            }
+        }
+
+        if (!valid.isEmpty()) {
+            Iterator<MutationResult> applied = getStore(boardId).apply(valid).iterator();
+            ResourceAssembler<Widget, WidgetResource> assembler = widgetResourceAssembler.forBoard(boardId);
+            for (int i = 0; i < results.length; i++) {
+                if (Objects.isNull(results[i])) {
+                    results[i] = toResource(assembler, mutations.get(i), applied.next());
+                }
+            }
+        }
+
+        return Arrays.asList(results);
     }
 
     /**
      * Удаляет виджет с указанным идентификатором
      *
-     * @param id uuid виджета для удаления
+     * @param boardId идентификатор доски или {@code null} для общего хранилища
+     * @param id      uuid виджета для удаления
      */
     @DeleteMapping("{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
-    public void deleteWidget(@PathVariable String id) {
-        widgetStore.delete(id);
+    public void deleteWidget(@PathVariable(required = false) String boardId, @PathVariable String id) {
+        findStore(boardId).orElseThrow(ResourceNotFoundException::new).delete(id);
     }
 
     /**
@@ -115,7 +416,213 @@ public class WidgetController implements ResourceProcessor<RepositoryLinksResour
      */
     @Override
     public RepositoryLinksResource process(RepositoryLinksResource resource) {
-        resource.add(linkTo(methodOn(WidgetController.class).findAllWidgets(null, null)).withRel("widgets"));
+        resource.add(linkTo(methodOn(WidgetController.class).findAllWidgets(null, null, null, null)).withRel("widgets"));
         return resource;
     }
+
+    /**
+     * Проверяет изменение из пакета так же, как проверяются одиночные запросы
+     *
+     * @param mutation изменение
+     * @return описание ошибки или {@code null}, если изменение корректно
+     */
+    private String validate(WidgetMutation mutation) {
+        if (Objects.isNull(mutation) || Objects.isNull(mutation.getType())) {
+            return "Mutation must contain field 'type'";
+        }
+        if ((mutation.getType() != WidgetMutation.Type.ADD) && Objects.isNull(mutation.getId())) {
+            return "Mutation must contain field 'id'";
+        }
+        if (mutation.getType() == WidgetMutation.Type.DELETE) {
+            return null;
+        }
+        if (Objects.isNull(mutation.getWidget())) {
+            return "Mutation must contain field 'widget'";
+        }
+
+        Class<?> group = mutation.getType() == WidgetMutation.Type.ADD
+                ? Widget.CreateValidation.class
+                : Widget.UpdateValidation.class;
+        Set<ConstraintViolation<Widget>> violations = validator.validate(mutation.getWidget(), group);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining(", "));
+    }
+
+    /**
+     * Формирует результат изменения из пакета с тем же статусом, что вернул бы одиночный запрос. Ошибки изменения
+     * передаются клиенту только статусом и фиксированным сообщением, а непредвиденные ошибки записываются в журнал
+     */
+    private MutationResultResource toResource(ResourceAssembler<Widget, WidgetResource> assembler,
+                                              WidgetMutation mutation,
+                                              MutationResult result) {
+        if (!result.isSuccess()) {
+            if (result.getError() instanceof ResourceNotFoundException) {
+                return new MutationResultResource(HttpStatus.NOT_FOUND.value(), null, "Widget not found");
+            }
+            if (result.getError() instanceof IllegalArgumentException) {
+                return new MutationResultResource(HttpStatus.BAD_REQUEST.value(), null, "Invalid widget mutation");
+            }
+            log.error("Failed to apply widget mutation {}", mutation, result.getError());
+            return new MutationResultResource(HttpStatus.INTERNAL_SERVER_ERROR.value(), null, "Internal error");
+        }
+
+        switch (mutation.getType()) {
+            case ADD:
+                return new MutationResultResource(HttpStatus.CREATED.value(),
+                        assembler.toResource(result.getWidget()), null);
+            case UPDATE:
+                return new MutationResultResource(HttpStatus.OK.value(),
+                        assembler.toResource(result.getWidget()), null);
+            default:
+                return new MutationResultResource(HttpStatus.NO_CONTENT.value(), null, null);
+        }
+    }
+
+    /**
+     * Ищет виджет в хранилище доски с учетом ETag'ов ранее полученных ответов. Версия хранилища читается до чтения
+     * виджета, поэтому ETag никогда не опережает выданное состояние
+     *
+     * @param mapper преобразование виджета в тело ответа
+     * @throws ResourceNotFoundException если виджет с указанным id не найден
+     */
+    private <T> ResponseEntity<T> findWidget(String boardId, String id, String ifNoneMatch,
+                                             Function<Widget, T> mapper) {
+        WidgetStore store = findStore(boardId).orElseThrow(ResourceNotFoundException::new);
+        long version = store.getVersion();
+
+        // Хранилище не менялось с момента выдачи ETag'а, виджет можно не читать
+        String current = WidgetETags.findCurrent(ifNoneMatch, version);
+        if (Objects.nonNull(current)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(current).build();
+        }
+
+        Widget widget = store.findOne(id);
+        if (Objects.isNull(widget)) {
+            throw new ResourceNotFoundException();
+        }
+
+        String etag = WidgetETags.forWidget(version, widget);
+        if (Objects.isNull(etag)) {
+            return ResponseEntity.ok(mapper.apply(widget));
+        }
+        if (WidgetETags.matchesWidget(ifNoneMatch, widget)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok().eTag(etag).body(mapper.apply(widget));
+    }
+
+    /**
+     * Ищет страницу виджетов в хранилище доски с учетом ETag'ов ранее полученных ответов. Если хранилище не менялось,
+     * выборка не выполняется
+     *
+     * @param mapper преобразование страницы в тело ответа
+     */
+    private <T> ResponseEntity<T> findPage(String boardId, Filter filter, Pageable pageable, String ifNoneMatch,
+                                           Function<Page<Widget>, T> mapper) {
+        Optional<WidgetStore> store = findStore(boardId);
+        if (!store.isPresent()) {
+            // Доска, в которую еще ничего не записывалось, считается пустой
+            return ResponseEntity.ok(mapper.apply(Page.empty(pageable)));
+        }
+
+        String etag = WidgetETags.forStore(store.get().getVersion());
+        if (Objects.isNull(etag)) {
+            return ResponseEntity.ok(mapper.apply(store.get().findAll(filter, pageable)));
+        }
+        if (WidgetETags.matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok().eTag(etag).body(mapper.apply(store.get().findAll(filter, pageable)));
+    }
+
+    /**
+     * Ищет страницу виджетов после курсора в хранилище доски и добавляет ссылку на следующую страницу
+     *
+     * @param mapper преобразование виджета в элемент ответа
+     * @throws ResponseStatusException если курсор или размер страницы некорректны
+     */
+    private <T> Resources<T> findAfter(String boardId, Filter filter, String after, int limit,
+                                       Function<Widget, T> mapper) {
+        if ((limit <= 0) || (limit > MAX_LIMIT)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Limit must be between 1 and " + MAX_LIMIT);
+        }
+        WidgetCursor cursor;
+        try {
+            cursor = Objects.isNull(after) ? null : WidgetCursor.parse(after);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+
+        List<Widget> widgets = findStore(boardId)
+                .map(store -> store.findAfter(filter, cursor, limit))
+                .orElseGet(Collections::emptyList);
+        Resources<T> resources = new Resources<>(widgets.stream()
+                .map(mapper)
+                .collect(Collectors.toList()));
+        if (widgets.size() == limit) {
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("after", WidgetCursor.of(widgets.get(widgets.size() - 1)))
+                    .toUriString();
+            resources.add(new Link(next, Link.REL_NEXT));
+        }
+        return resources;
+    }
+
+    /**
+     * Ищет виджеты по идентификаторам в хранилище доски
+     */
+    private List<Widget> findById(String boardId, List<String> ids) {
+        checkBatchSize(ids.size());
+        return findStore(boardId)
+                .map(store -> store.findAllById(ids))
+                .orElseGet(Collections::emptyList);
+    }
+
+    /**
+     * Ограничивает размер пакетного запроса
+     *
+     * @throws ResponseStatusException если размер превышает {@link WidgetController#MAX_BATCH_SIZE}
+     */
+    private void checkBatchSize(int size) {
+        if (size > MAX_BATCH_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Batch size must not exceed " + MAX_BATCH_SIZE);
+        }
+    }
+
+    /**
+     * Возвращает хранилище доски для записи, создавая доску при первой записи в нее
+     *
+     * @param boardId идентификатор доски или {@code null} для общего хранилища
+     * @throws ResponseStatusException 404, если доски нет, а количество досок достигло максимального, или 400, если
+     *                                 идентификатор доски недопустим для хранилища доски
+     */
+    private WidgetStore getStore(String boardId) {
+        if (Objects.isNull(boardId)) {
+            return widgetStore;
+        }
+        try {
+            return boardRegistry.getStore(boardId);
+        } catch (BoardLimitExceededException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Board not found and board limit is reached", e);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid board id", e);
+        }
+    }
+
+    /**
+     * Ищет хранилище доски
+     *
+     * @param boardId идентификатор доски или {@code null} для общего хранилища
+     * @return хранилище или {@link Optional#empty()}, если в доску еще ничего не записывалось
+     */
+    private Optional<WidgetStore> findStore(String boardId) {
+        return Objects.isNull(boardId) ? Optional.of(widgetStore) : boardRegistry.findStore(boardId);
+    }
 }
@@ -0,0 +1,270 @@
+package org.home.realtimeboard.integration;
+
+import org.home.realtimeboard.model.Widget;
+import org.home.realtimeboard.store.WidgetMutation;
+import org.home.realtimeboard.store.id.WidgetId;
+import org.springframework.hateoas.PagedResources;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Компактный двоичный формат API виджетов, все числа записываются в порядке big-endian.
+ * <p>
+ * Виджет - запись фиксированной длины {@link BinaryWidgetCodec#WIDGET_SIZE}: байт маски заполненных полей, 16 байт
+ * идентификатора, координаты, размеры и z-index по 4 байта, дата модификации - 8 байт миллисекунд от начала эпохи.
+ * Незаполненные поля записываются нулями. Список виджетов - количество (4 байта) и записи виджетов. Страница -
+ * длина заголовка (4 байта), заголовок (номер и размер страницы по 4 байта, общее количество виджетов - 8 байт,
+ * количество виджетов на странице - 4 байта) и записи виджетов. Длина заголовка позволяет расширять его, не
+ * нарушая совместимости: неизвестные поля в конце заголовка пропускаются.
+ * <p>
+ * Пакет изменений - количество и для каждого изменения байт типа ({@link WidgetMutation.Type#ordinal()}) и запись
+ * виджета, у обновления и удаления в записи указывается идентификатор изменяемого виджета. Результаты пакета -
+ * количество и для каждого результата HTTP статус (2 байта), запись виджета и описание ошибки в модифицированном
+ * UTF-8 ({@link DataOutput#writeUTF(String)}), пустое при успехе.
+ */
+public final class BinaryWidgetCodec {
+    /**
+     * Размер записи виджета в байтах
+     */
+    public static final int WIDGET_SIZE = 1 + 16 + 5 * 4 + 8;
+
+    /**
+     * Размер заголовка страницы в байтах
+     */
+    public static final int PAGE_HEADER_SIZE = 4 + 4 + 8 + 4;
+
+    // Биты маски заполненных полей
+    private static final int HAS_ID = 1;
+    private static final int HAS_X = 1 << 1;
+    private static final int HAS_Y = 1 << 2;
+    private static final int HAS_WIDTH = 1 << 3;
+    private static final int HAS_HEIGHT = 1 << 4;
+    private static final int HAS_Z_INDEX = 1 << 5;
+    private static final int HAS_LAST_MODIFIED = 1 << 6;
+
+    private static final WidgetMutation.Type[] TYPES = WidgetMutation.Type.values();
+
+    private BinaryWidgetCodec() {
+    }
+
+    /**
+     * Записывает виджет
+     *
+     * @param widget виджет или {@code null}, записывается как пустая запись
+     * @throws IllegalArgumentException если идентификатор виджета не в формате {@link WidgetId}
+     */
+    public static void writeWidget(DataOutput output, Widget widget) throws IOException {
+        if (Objects.isNull(widget)) {
+            output.write(new byte[WIDGET_SIZE]);
+            return;
+        }
+
+        WidgetId id = null;
+        if (Objects.nonNull(widget.getId())) {
+            id = WidgetId.parse(widget.getId());
+            if (Objects.isNull(id)) {
+                throw new IllegalArgumentException("Widget id must be in UUID format: " + widget.getId());
+            }
+        }
+
+        output.writeByte((Objects.nonNull(id) ? HAS_ID : 0) |
+                (Objects.nonNull(widget.getX()) ? HAS_X : 0) |
+                (Objects.nonNull(widget.getY()) ? HAS_Y : 0) |
+                (Objects.nonNull(widget.getWidth()) ? HAS_WIDTH : 0) |
+                (Objects.nonNull(widget.getHeight()) ? HAS_HEIGHT : 0) |
+                (Objects.nonNull(widget.getZIndex()) ? HAS_Z_INDEX : 0) |
+                (Objects.nonNull(widget.getLastModified()) ? HAS_LAST_MODIFIED : 0));
+        output.writeLong(Objects.nonNull(id) ? id.getMostSignificantBits() : 0);
+        output.writeLong(Objects.nonNull(id) ? id.getLeastSignificantBits() : 0);
+        writeInt(output, widget.getX());
+        writeInt(output, widget.getY());
+        writeInt(output, widget.getWidth());
+        writeInt(output, widget.getHeight());
+        writeInt(output, widget.getZIndex());
+        output.writeLong(Objects.nonNull(widget.getLastModified()) ? widget.getLastModified().toEpochMilli() : 0);
+    }
+
+    /**
+     * Читает виджет, записанный {@link BinaryWidgetCodec#writeWidget(DataOutput, Widget)}
+     *
+     * @return виджет или {@code null} для пустой записи
+     */
+    public static Widget readWidget(DataInput input) throws IOException {
+        int mask = input.readUnsignedByte();
+        long most = input.readLong();
+        long least = input.readLong();
+        int x = input.readInt();
+        int y = input.readInt();
+        int width = input.readInt();
+        int height = input.readInt();
+        int zIndex = input.readInt();
+        long lastModified = input.readLong();
+
+        if (mask == 0) {
+            return null;
+        }
+        return Widget.builder()
+                .id((mask & HAS_ID) != 0 ? new WidgetId(most, least).toString() : null)
+                .x((mask & HAS_X) != 0 ? x : null)
+                .y((mask & HAS_Y) != 0 ? y : null)
+                .width((mask & HAS_WIDTH) != 0 ? width : null)
+                .height((mask & HAS_HEIGHT) != 0 ? height : null)
+                .zIndex((mask & HAS_Z_INDEX) != 0 ? zIndex : null)
+                .lastModified((mask & HAS_LAST_MODIFIED) != 0 ? Instant.ofEpochMilli(lastModified) : null)
+                .build();
+    }
+
+    /**
+     * Записывает список виджетов
+     */
+    public static void writeWidgets(DataOutput output, Collection<? extends Widget> widgets) throws IOException {
+        output.writeInt(widgets.size());
+        for (Widget widget : widgets) {
+            writeWidget(output, widget);
+        }
+    }
+
+    /**
+     * Читает список виджетов, записанный {@link BinaryWidgetCodec#writeWidgets(DataOutput, Collection)}
+     */
+    public static List<Widget> readWidgets(DataInput input) throws IOException {
+        int count = readCount(input);
+        List<Widget> widgets = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            widgets.add(readWidget(input));
+        }
+        return widgets;
+    }
+
+    /**
+     * Записывает страницу виджетов
+     *
+     * @param metadata описание страницы
+     * @param widgets  виджеты страницы
+     */
+    public static void writePage(DataOutput output, PagedResources.PageMetadata metadata,
+                                 Collection<? extends Widget> widgets) throws IOException {
+        output.writeInt(PAGE_HEADER_SIZE);
+        output.writeInt((int) metadata.getNumber());
+        output.writeInt((int) metadata.getSize());
+        output.writeLong(metadata.getTotalElements());
+        output.writeInt(widgets.size());
+        for (Widget widget : widgets) {
+            writeWidget(output, widget);
+        }
+    }
+
+    /**
+     * Читает страницу виджетов, записанную
+     * {@link BinaryWidgetCodec#writePage(DataOutput, PagedResources.PageMetadata, Collection)}
+     */
+    public static PagedResources<Widget> readPage(DataInput input) throws IOException {
+        int headerSize = input.readInt();
+        if (headerSize < PAGE_HEADER_SIZE) {
+            throw new IOException("Invalid page header size: " + headerSize);
+        }
+
+        int number = input.readInt();
+        int size = input.readInt();
+        long totalElements = input.readLong();
+        int count = readCount(input);
+        input.skipBytes(headerSize - PAGE_HEADER_SIZE);
+
+        List<Widget> widgets = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            widgets.add(readWidget(input));
+        }
+        return new PagedResources<>(widgets, new PagedResources.PageMetadata(size, number, totalElements));
+    }
+
+    /**
+     * Записывает пакет изменений
+     */
+    public static void writeMutations(DataOutput output, List<WidgetMutation> mutations) throws IOException {
+        output.writeInt(mutations.size());
+        for (WidgetMutation mutation : mutations) {
+            output.writeByte(mutation.getType().ordinal());
+            Widget widget = Objects.nonNull(mutation.getWidget())
+                    ? mutation.getWidget().toBuilder().id(mutation.getId()).build()
+                    : Widget.builder().id(mutation.getId()).build();
+            writeWidget(output, widget);
+        }
+    }
+
+    /**
+     * Читает пакет изменений, записанный {@link BinaryWidgetCodec#writeMutations(DataOutput, List)}
+     */
+    public static List<WidgetMutation> readMutations(DataInput input) throws IOException {
+        int count = readCount(input);
+        List<WidgetMutation> mutations = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int type = input.readUnsignedByte();
+            if (type >= TYPES.length) {
+                throw new IOException("Invalid mutation type: " + type);
+            }
+
+            Widget widget = readWidget(input);
+            String id = Objects.nonNull(widget) ? widget.getId() : null;
+            switch (TYPES[type]) {
+                case ADD:
+                    mutations.add(WidgetMutation.add(widget));
+                    break;
+                case UPDATE:
+                    mutations.add(WidgetMutation.update(id, widget));
+                    break;
+                case DELETE:
+                    mutations.add(WidgetMutation.delete(id));
+                    break;
+            }
+        }
+        return mutations;
+    }
+
+    /**
+     * Записывает результаты пакета изменений
+     */
+    public static void writeResults(DataOutput output, List<MutationResultResource> results) throws IOException {
+        output.writeInt(results.size());
+        for (MutationResultResource result : results) {
+            output.writeShort(result.getStatus());
+            writeWidget(output, Objects.nonNull(result.getWidget()) ? result.getWidget().getContent() : null);
+            output.writeUTF(Objects.nonNull(result.getError()) ? result.getError() : "");
+        }
+    }
+
+    /**
+     * Читает результаты пакета изменений, записанные {@link BinaryWidgetCodec#writeResults(DataOutput, List)}
+     */
+    public static List<MutationResultResource> readResults(DataInput input) throws IOException {
+        int count = readCount(input);
+        List<MutationResultResource> results = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int status = input.readUnsignedShort();
+            Widget widget = readWidget(input);
+            String error = input.readUTF();
+            results.add(new MutationResultResource(status,
+                    Objects.nonNull(widget) ? new WidgetResource(widget) : null,
+                    error.isEmpty() ? null : error));
+        }
+        return results;
+    }
+
+    private static int readCount(DataInput input) throws IOException {
+        int count = input.readInt();
+        if (count < 0) {
+            throw new IOException("Invalid element count: " + count);
+        }
+        return count;
+    }
+
+    private static void writeInt(DataOutput output, Integer value) throws IOException {
+        output.writeInt(Objects.nonNull(value) ? value : 0);
+    }
+}
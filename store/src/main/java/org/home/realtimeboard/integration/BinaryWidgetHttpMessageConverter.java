@@ -0,0 +1,163 @@
+package org.home.realtimeboard.integration;
+
+import org.home.realtimeboard.model.Widget;
+import org.home.realtimeboard.store.WidgetMutation;
+import org.springframework.core.ResolvableType;
+import org.springframework.hateoas.PagedResources;
+import org.springframework.hateoas.Resource;
+import org.springframework.hateoas.Resources;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+
+import java.io.*;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Конвертер HTTP сообщений в компактный двоичный формат {@link BinaryWidgetCodec}.
+ * <p>
+ * Читает виджет и пакет изменений, записывает виджет, страницу и список виджетов, в том числе обернутые в HAL
+ * ресурсы, и результаты пакета изменений. HAL ссылки в двоичный формат не попадают. Конвертер выбирается только
+ * при явном запросе типа {@link BinaryWidgetHttpMessageConverter#MEDIA_TYPE}, поэтому должен регистрироваться
+ * после JSON конвертеров.
+ */
+public class BinaryWidgetHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+    /**
+     * Тип содержимого двоичного формата
+     */
+    public static final String MEDIA_TYPE_VALUE = "application/vnd.widgets.binary";
+
+    /**
+     * Тип содержимого двоичного формата
+     */
+    public static final MediaType MEDIA_TYPE = MediaType.parseMediaType(MEDIA_TYPE_VALUE);
+
+    public BinaryWidgetHttpMessageConverter() {
+        super(MEDIA_TYPE);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return Widget.class.isAssignableFrom(clazz) || WidgetResource.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        ResolvableType resolved = ResolvableType.forType(type);
+        boolean supported = Widget.class.isAssignableFrom(resolved.resolve(Object.class)) ||
+                (List.class.isAssignableFrom(resolved.resolve(Object.class)) &&
+                        WidgetMutation.class == resolved.resolveGeneric(0));
+        return supported && canRead(mediaType);
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        if (!canWrite(mediaType)) {
+            return false;
+        }
+
+        ResolvableType resolved = ResolvableType.forType(Objects.nonNull(type) ? type : clazz);
+        Class<?> rawClass = resolved.resolve(clazz);
+        if (supports(rawClass)) {
+            return true;
+        }
+
+        // Для коллекций и страниц проверяется тип элементов
+        Class<?> element;
+        if (Resources.class.isAssignableFrom(rawClass)) {
+            element = resolved.as(Resources.class).resolveGeneric(0);
+        } else if (Collection.class.isAssignableFrom(rawClass)) {
+            element = resolved.as(Collection.class).resolveGeneric(0);
+            if (MutationResultResource.class == element) {
+                return true;
+            }
+        } else {
+            return false;
+        }
+        return Objects.nonNull(element) && supports(element);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        return read(clazz, null, inputMessage);
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(inputMessage.getBody()));
+        try {
+            if (Widget.class.isAssignableFrom(ResolvableType.forType(type).resolve(Object.class))) {
+                Widget widget = BinaryWidgetCodec.readWidget(input);
+                if (Objects.isNull(widget)) {
+                    throw new HttpMessageNotReadableException("Widget record is empty");
+                }
+                return widget;
+            }
+            return BinaryWidgetCodec.readMutations(input);
+        } catch (EOFException e) {
+            throw new HttpMessageNotReadableException("Unexpected end of binary message", e);
+        } catch (IOException e) {
+            throw new HttpMessageNotReadableException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage) throws IOException {
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(outputMessage.getBody()));
+        try {
+            if (object instanceof Widget) {
+                BinaryWidgetCodec.writeWidget(output, (Widget) object);
+            } else if (object instanceof Resource) {
+                BinaryWidgetCodec.writeWidget(output, ((Resource<Widget>) object).getContent());
+            } else if (object instanceof PagedResources) {
+                PagedResources<?> page = (PagedResources<?>) object;
+                BinaryWidgetCodec.writePage(output, page.getMetadata(), unwrap(page.getContent()));
+            } else if (object instanceof Resources) {
+                BinaryWidgetCodec.writeWidgets(output, unwrap(((Resources<?>) object).getContent()));
+            } else if (isResults(object, type)) {
+                BinaryWidgetCodec.writeResults(output, (List<MutationResultResource>) object);
+            } else {
+                BinaryWidgetCodec.writeWidgets(output, unwrap((Collection<?>) object));
+            }
+        } catch (IllegalArgumentException e) {
+            throw new HttpMessageNotWritableException(e.getMessage(), e);
+        }
+        output.flush();
+    }
+
+    /**
+     * Является ли коллекция списком результатов пакета изменений. Тип пустой коллекции определяется по объявленному
+     * типу возвращаемого значения
+     */
+    private boolean isResults(Object object, Type type) {
+        if (!(object instanceof List)) {
+            return false;
+        }
+        List<?> list = (List<?>) object;
+        if (!list.isEmpty()) {
+            return list.get(0) instanceof MutationResultResource;
+        }
+        return Objects.nonNull(type) &&
+                (MutationResultResource.class == ResolvableType.forType(type).as(Collection.class).resolveGeneric(0));
+    }
+
+    /**
+     * Извлекает виджеты из HAL ресурсов
+     */
+    @SuppressWarnings("unchecked")
+    private List<Widget> unwrap(Collection<?> content) {
+        List<Widget> widgets = new ArrayList<>(content.size());
+        for (Object element : content) {
+            widgets.add(element instanceof Resource ? ((Resource<Widget>) element).getContent() : (Widget) element);
+        }
+        return widgets;
+    }
+}
@@ -0,0 +1,130 @@
+package org.home.realtimeboard.integration;
+
+import lombok.extern.slf4j.Slf4j;
+import org.home.realtimeboard.store.feed.ChangeBatch;
+import org.home.realtimeboard.store.feed.ChangeFeed;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Рассылает изменения из {@link ChangeFeed} подписчикам в виде server-sent events.
+ * <p>
+ * Каждый подписчик читает ленту со своей версии, событие {@link ChangeFeedPublisher#CHANGES_EVENT} содержит
+ * {@link ChangeBatch}, а его идентификатор - версию, с которой клиент может переподключиться через
+ * {@code Last-Event-ID}. Отправка выполняется в пуле потоков, и пока подписчику отправляется очередной пакет, новые
+ * изменения копятся в ленте. Следующее чтение объединяет их до последнего состояния каждого виджета, поэтому медленный
+ * клиент получает меньше пакетов, а не очередь всех изменений.
+ * <p>
+ * Если клиент отстал дальше вытесненных из ленты изменений, ему отправляется событие
+ * {@link ChangeFeedPublisher#RESYNC_EVENT}, и поток закрывается: клиент должен заново прочитать виджеты и
+ * подписаться с версии прочитанного состояния
+ */
+@Component
+@Slf4j
+public class ChangeFeedPublisher implements AutoCloseable {
+    public static final String CHANGES_EVENT = "changes";
+    public static final String RESYNC_EVENT = "resync";
+
+    private final ExecutorService executor;
+
+    /**
+     * @param threads количество потоков отправки
+     */
+    public ChangeFeedPublisher(@Value("${store.feed.threads:4}") int threads) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "change-feed-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Подписывает клиента на изменения после указанной версии
+     *
+     * @param feed  лента изменений хранилища
+     * @param since версия, известная клиенту
+     * @return поток событий для ответа клиенту
+     */
+    public SseEmitter subscribe(ChangeFeed feed, long since) {
+        SseEmitter emitter = new SseEmitter();
+        Subscription subscription = new Subscription(feed, emitter, since);
+        emitter.onCompletion(subscription::close);
+        emitter.onTimeout(subscription::close);
+        feed.addListener(subscription);
+        // Изменения, накопленные после указанной версии, отправляются сразу
+        subscription.run();
+        return emitter;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Подписка клиента. Слушает запись в ленту и запускает отправку, если она еще не запущена
+     */
+    private class Subscription implements Runnable {
+        private final ChangeFeed feed;
+        private final SseEmitter emitter;
+        // Запущена ли отправка. Позиция изменяется только отправкой, и только одна отправка выполняется в каждый момент
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private long position;
+        private volatile boolean closed;
+
+        Subscription(ChangeFeed feed, SseEmitter emitter, long position) {
+            this.feed = feed;
+            this.emitter = emitter;
+            this.position = position;
+        }
+
+        @Override
+        public void run() {
+            if (!closed && sending.compareAndSet(false, true)) {
+                executor.execute(this::send);
+            }
+        }
+
+        private void send() {
+            try {
+                do {
+                    ChangeBatch batch = feed.read(position);
+                    if (batch.isResync()) {
+                        emitter.send(SseEmitter.event().name(RESYNC_EVENT).data(batch, MediaType.APPLICATION_JSON));
+                        close();
+                        emitter.complete();
+                        return;
+                    }
+                    if (!batch.isEmpty()) {
+                        emitter.send(SseEmitter.event()
+                                .name(CHANGES_EVENT)
+                                .id(Long.toString(batch.getVersion()))
+                                .data(batch, MediaType.APPLICATION_JSON));
+                    }
+                    position = batch.getVersion();
+                    sending.set(false);
+                    // Запись, произошедшая во время отправки, могла не запустить новую отправку
+                } while (!closed && (feed.getVersion() != position) && sending.compareAndSet(false, true));
+            } catch (IOException | RuntimeException e) {
+                // Клиент отключился, поток уже завершен по таймауту или пакет не удалось сериализовать
+                log.debug("Change feed subscription closed: {}", e.getMessage());
+                close();
+                emitter.completeWithError(e);
+            }
+        }
+
+        void close() {
+            closed = true;
+            feed.removeListener(this);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package org.home.realtimeboard.integration;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.fasterxml.jackson.databind.util.NameTransformer;
+import org.home.realtimeboard.model.Widget;
+import org.springframework.hateoas.Link;
+
+import java.io.IOException;
+
+/**
+ * Сериализует ресурс виджета, вложенный в обычный JSON ответ, так же, как HAL: данные виджета на верхнем уровне, а
+ * ссылки в объекте {@code _links} по их rel. HAL сериализация Spring HATEOAS применяется только к ответам, которые
+ * сами являются ресурсами, поэтому без этого вложенный ресурс выдавался бы со списком {@code links}
+ */
+public class HalWidgetResourceSerializer extends StdSerializer<WidgetResource> {
+    public HalWidgetResourceSerializer() {
+        super(WidgetResource.class);
+    }
+
+    @Override
+    public void serialize(WidgetResource resource, JsonGenerator generator, SerializerProvider provider)
+            throws IOException {
+        generator.writeStartObject();
+        provider.findValueSerializer(Widget.class)
+                .unwrappingSerializer(NameTransformer.NOP)
+                .serialize(resource.getContent(), generator, provider);
+        generator.writeObjectFieldStart("_links");
+        for (Link link : resource.getLinks()) {
+            generator.writeObjectFieldStart(link.getRel());
+            generator.writeStringField("href", link.getHref());
+            generator.writeEndObject();
+        }
+        generator.writeEndObject();
+        generator.writeEndObject();
+    }
+}
@@ -0,0 +1,35 @@
+package org.home.realtimeboard.integration;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.Getter;
+
+/**
+ * Результат одного изменения из пакета: HTTP статус, который вернул бы одиночный запрос, и ресурс измененного виджета
+ * или описание ошибки
+ */
+@Getter
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class MutationResultResource {
+    /**
+     * HTTP статус изменения
+     */
+    private final int status;
+
+    /**
+     * Добавленный или обновленный виджет, {@code null} для удаления и для неудачных изменений
+     */
+    @JsonSerialize(using = HalWidgetResourceSerializer.class)
+    private final WidgetResource widget;
+
+    /**
+     * Описание ошибки или {@code null}, если изменение выполнено успешно
+     */
+    private final String error;
+
+    public MutationResultResource(int status, WidgetResource widget, String error) {
+        this.status = status;
+        this.widget = widget;
+        this.error = error;
+    }
+}
@@ -0,0 +1,161 @@
+package org.home.realtimeboard.integration;
+
+import org.home.realtimeboard.model.Widget;
+import org.home.realtimeboard.store.WidgetStore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Слабые ETag'и ответов API виджетов, построенные по версиям хранилища ({@link WidgetStore#getVersion()}).
+ * <p>
+ * ETag выборки виджетов - версия хранилища: пока она не изменилась, не изменился и результат любой выборки.
+ * ETag виджета - {@code <версия хранилища>-<версия виджета>-<z-index>}. Совпадение версии хранилища позволяет
+ * ответить, не читая виджет, а при изменении хранилища виджет считается неизменным, если совпадают его версия и
+ * z-index: выпихивание меняет только z-index и не меняет версию виджета.
+ */
+public final class WidgetETags {
+    private static final String WEAK_PREFIX = "W/";
+    private static final String ANY = "*";
+
+    private WidgetETags() {
+    }
+
+    /**
+     * Формирует ETag выборки виджетов
+     *
+     * @param storeVersion версия хранилища, прочитанная до выполнения выборки
+     * @return ETag или {@code null}, если хранилище не отслеживает изменения
+     */
+    public static String forStore(long storeVersion) {
+        if (storeVersion == WidgetStore.UNVERSIONED) {
+            return null;
+        }
+        return weak(Long.toString(storeVersion));
+    }
+
+    /**
+     * Формирует ETag виджета
+     *
+     * @param storeVersion версия хранилища, прочитанная до чтения виджета
+     * @param widget       найденный виджет
+     * @return ETag или {@code null}, если хранилище не отслеживает изменения
+     */
+    public static String forWidget(long storeVersion, Widget widget) {
+        if ((storeVersion == WidgetStore.UNVERSIONED) || Objects.isNull(widget.getVersion())) {
+            return null;
+        }
+        return weak(storeVersion + "-" + widget.getVersion() + "-" + widget.getZIndex());
+    }
+
+    /**
+     * Проверяет, совпадает ли ETag с одним из значений заголовка {@code If-None-Match}. Сравнение слабое
+     *
+     * @param ifNoneMatch значение заголовка или {@code null}
+     * @param etag        ETag текущего состояния или {@code null}
+     */
+    public static boolean matches(String ifNoneMatch, String etag) {
+        if (Objects.isNull(etag)) {
+            return false;
+        }
+        String opaque = opaque(etag);
+        for (String tag : parse(ifNoneMatch)) {
+            if (ANY.equals(tag) || opaque.equals(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Ищет в заголовке {@code If-None-Match} ETag виджета, выданный при текущей версии хранилища. Такой ETag
+     * подтверждает, что виджет не менялся, без чтения виджета
+     *
+     * @param ifNoneMatch  значение заголовка или {@code null}
+     * @param storeVersion текущая версия хранилища
+     * @return найденный ETag или {@code null}
+     */
+    public static String findCurrent(String ifNoneMatch, long storeVersion) {
+        if (storeVersion == WidgetStore.UNVERSIONED) {
+            return null;
+        }
+        for (String tag : parse(ifNoneMatch)) {
+            long[] parts = parseWidgetTag(tag);
+            if (Objects.nonNull(parts) && (parts[0] == storeVersion)) {
+                return weak(tag);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Проверяет, выдан ли один из ETag'ов заголовка {@code If-None-Match} для текущего состояния виджета, возможно
+     * при более старой версии хранилища
+     *
+     * @param ifNoneMatch значение заголовка или {@code null}
+     * @param widget      найденный виджет
+     */
+    public static boolean matchesWidget(String ifNoneMatch, Widget widget) {
+        if (Objects.isNull(widget.getVersion())) {
+            return false;
+        }
+        for (String tag : parse(ifNoneMatch)) {
+            long[] parts = parseWidgetTag(tag);
+            if (Objects.nonNull(parts) && (parts[1] == widget.getVersion()) &&
+                    (parts[2] == widget.getZIndex())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Разбирает значение заголовка {@code If-None-Match} на ETag'и без признака слабого сравнения и кавычек
+     */
+    private static List<String> parse(String ifNoneMatch) {
+        List<String> tags = new ArrayList<>();
+        if (Objects.isNull(ifNoneMatch)) {
+            return tags;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (!tag.isEmpty()) {
+                tags.add(opaque(tag));
+            }
+        }
+        return tags;
+    }
+
+    /**
+     * Разбирает ETag виджета на версию хранилища, версию виджета и z-index
+     *
+     * @return части ETag'а или {@code null}, если это не ETag виджета
+     */
+    private static long[] parseWidgetTag(String tag) {
+        // z-index может быть отрицательным, поэтому разделитель ищется только дважды
+        String[] parts = tag.split("-", 3);
+        if (parts.length != 3) {
+            return null;
+        }
+        try {
+            return new long[]{Long.parseLong(parts[0]), Long.parseLong(parts[1]), Long.parseLong(parts[2])};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String opaque(String etag) {
+        if (etag.startsWith(WEAK_PREFIX)) {
+            etag = etag.substring(WEAK_PREFIX.length());
+        }
+        if ((etag.length() >= 2) && etag.startsWith("\"") && etag.endsWith("\"")) {
+            etag = etag.substring(1, etag.length() - 1);
+        }
+        return etag;
+    }
+
+    private static String weak(String opaque) {
+        return WEAK_PREFIX + "\"" + opaque + "\"";
+    }
+}
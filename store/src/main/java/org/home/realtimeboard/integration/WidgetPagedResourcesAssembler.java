@@ -1,8 +1,11 @@
 package org.home.realtimeboard.integration;
 
 import org.home.realtimeboard.model.Widget;
+import org.springframework.data.domain.Page;
 import org.springframework.data.web.HateoasPageableHandlerMethodArgumentResolver;
 import org.springframework.data.web.PagedResourcesAssembler;
+import org.springframework.hateoas.PagedResources;
+import org.springframework.hateoas.Resource;
 import org.springframework.stereotype.Component;
 
 /**
@@ -14,4 +17,16 @@ public class WidgetPagedResourcesAssembler extends PagedResourcesAssembler<Widge
     public WidgetPagedResourcesAssembler(HateoasPageableHandlerMethodArgumentResolver resolver) {
         super(resolver, null);
     }
+
+    /**
+     * Собирает облегченный ресурс страницы: ссылки на страницы формируются как обычно, а виджеты выдаются как есть,
+     * без оберток и собственных ссылок
+     *
+     * @param page страница виджетов
+     * @return ресурс страницы виджетов
+     */
+    public PagedResources<Widget> toLeanResource(Page<Widget> page) {
+        PagedResources<Resource<Widget>> resource = toResource(page);
+        return new PagedResources<>(page.getContent(), resource.getMetadata(), resource.getLinks());
+    }
 }
@@ -2,10 +2,16 @@ package org.home.realtimeboard.integration;
 
 import org.home.realtimeboard.model.Widget;
 import org.springframework.hateoas.EntityLinks;
+import org.springframework.hateoas.Link;
 import org.springframework.hateoas.ResourceAssembler;
+import org.springframework.hateoas.TemplateVariables;
+import org.springframework.hateoas.UriTemplate;
+import org.springframework.hateoas.mvc.BasicLinkBuilder;
 import org.springframework.stereotype.Component;
 import org.springframework.util.Assert;
 
+import java.util.Objects;
+
 /**
  * Сборщик HAL ресерса с данными о виджете
  */
@@ -19,15 +25,56 @@ public class WidgetResourceAssembler implements ResourceAssembler<Widget, Widget
 
     @Override
     public WidgetResource toResource(Widget entity) {
-        Assert.notNull(entity, "Entity instance must not be null");
+        return toResource(null, entity);
+    }
+
+    /**
+     * Собирает HAL ресурс виджета, ссылки которого указывают на доску с виджетом
+     *
+     * @param boardId идентификатор доски или {@code null} для виджетов, не привязанных к доске
+     * @param entity  виджет
+     * @return HAL ресурс с данными о виджете и доступными операциями над ним
+     */
+    public WidgetResource toResource(String boardId, Widget entity) {
+        return forBoard(boardId).toResource(entity);
+    }
+
+    /**
+     * Возвращает сборщик ресурсов виджетов указанной доски.
+     * <p>
+     * Базовый адрес виджетов вычисляется по текущему запросу один раз при создании сборщика, поэтому сборщик
+     * создается на каждый запрос. Ссылки каждого виджета получаются добавлением id к базовому адресу, без построителей
+     * ссылок и разбора шаблонов URI, а все три ссылки разделяют один адрес
+     *
+     * @param boardId идентификатор доски или {@code null} для виджетов, не привязанных к доске
+     */
+    public ResourceAssembler<Widget, WidgetResource> forBoard(String boardId) {
+        String prefix = getBaseUri(boardId) + "/";
+        return entity -> {
+            Assert.notNull(entity, "Entity instance must not be null");
 
-        WidgetResource resource = new WidgetResource(entity);
+            // Адрес виджета не содержит переменных шаблона, так что шаблон создается без разбора
+            Link self = new Link(new UriTemplate(prefix + entity.getId(), TemplateVariables.NONE), Link.REL_SELF);
 
-        // Установка ссылок на допустимые методы
-        resource.add(entityLinks.linkToSingleResource(entity).withSelfRel());
-        resource.add(entityLinks.linkToSingleResource(entity).withRel("update"));
-        resource.add(entityLinks.linkToSingleResource(entity).withRel("delete"));
+            // Установка ссылок на допустимые методы
+            WidgetResource resource = new WidgetResource(entity);
+            resource.add(self);
+            resource.add(self.withRel("update"));
+            resource.add(self.withRel("delete"));
+            return resource;
+        };
+    }
 
-        return resource;
+    /**
+     * Возвращает адрес коллекции виджетов для текущего запроса
+     *
+     * @param boardId идентификатор доски или {@code null} для виджетов, не привязанных к доске
+     */
+    private String getBaseUri(String boardId) {
+        return Objects.isNull(boardId)
+                ? entityLinks.linkToCollectionResource(Widget.class).getHref()
+                : BasicLinkBuilder.linkToCurrentMapping()
+                        .slash("boards").slash(boardId)
+                        .slash("widgets").toString();
     }
 }
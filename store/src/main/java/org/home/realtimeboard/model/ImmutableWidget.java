@@ -0,0 +1,84 @@
+package org.home.realtimeboard.model;
+
+import java.time.Instant;
+
+/**
+ * Неизменяемый виджет. Все методы, изменяющие виджет, выбрасывают {@link UnsupportedOperationException}, поэтому
+ * экземпляр можно безопасно разделять между хранилищем и клиентами без копирования.
+ * Для получения измененной копии используется {@link Widget#toBuilder()}
+ */
+public final class ImmutableWidget extends Widget {
+    private ImmutableWidget(String id, Integer x, Integer y, Integer width, Integer height, Integer zIndex,
+                            Instant lastModified, Long version) {
+        super(id, x, y, width, height, zIndex, lastModified, version);
+    }
+
+    /**
+     * Возвращает неизменяемую копию виджета или сам виджет, если он уже неизменяем
+     */
+    public static ImmutableWidget of(Widget widget) {
+        if (widget instanceof ImmutableWidget) {
+            return (ImmutableWidget) widget;
+        }
+        return new ImmutableWidget(widget.getId(), widget.getX(), widget.getY(), widget.getWidth(), widget.getHeight(),
+                widget.getZIndex(), widget.getLastModified(), widget.getVersion());
+    }
+
+    /**
+     * Возвращает копию виджета с указанным z-index
+     */
+    public ImmutableWidget withZIndex(Integer zIndex) {
+        return new ImmutableWidget(getId(), getX(), getY(), getWidth(), getHeight(), zIndex, getLastModified(),
+                getVersion());
+    }
+
+    @Override
+    public void setId(String id) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setX(Integer x) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setY(Integer y) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setWidth(Integer width) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setHeight(Integer height) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setZIndex(Integer zIndex) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setLastModified(Instant lastModified) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setVersion(Long version) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void pushOut() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Widget merge(Widget source) {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -1,7 +1,9 @@
 package org.home.realtimeboard.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import org.springframework.hateoas.Identifiable;
 import org.springframework.hateoas.core.Relation;
 
@@ -64,6 +66,14 @@ public class Widget implements Identifiable {
      */
     private Instant lastModified;
 
+    /**
+     * Версия хранилища, в которой виджет был добавлен или последний раз обновлен. Служебное поле хранилища: не
+     * передается клиентам, не меняется при выпихивании и не участвует в сравнении виджетов
+     */
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    private Long version;
+
     /**
      * Выпихивает виджет на один уровень вверх
      */
@@ -0,0 +1,54 @@
+package org.home.realtimeboard.model;
+
+import lombok.Value;
+
+/**
+ * Курсор постраничного обхода виджетов в порядке возрастания z-index: последний выданный виджет. Следующая страница
+ * начинается сразу после текущего z-index этого виджета, так что выпихивание между запросами не приводит к пропускам
+ * или повторам. Если виджет удален, страница начинается после z-index, сохраненного в курсоре.
+ * <p>
+ * Строковое представление курсора - {@code <z-index>,<id>}
+ */
+@Value
+public class WidgetCursor {
+    private static final String SEPARATOR = ",";
+
+    /**
+     * z-index виджета на момент выдачи
+     */
+    private final int zIndex;
+
+    /**
+     * Идентификатор виджета
+     */
+    private final String id;
+
+    /**
+     * Формирует курсор, указывающий на виджет
+     */
+    public static WidgetCursor of(Widget widget) {
+        return new WidgetCursor(widget.getZIndex(), widget.getId());
+    }
+
+    /**
+     * Разбирает строковое представление курсора
+     *
+     * @throws IllegalArgumentException если строка не является курсором
+     */
+    public static WidgetCursor parse(String value) {
+        int separator = value.indexOf(SEPARATOR);
+        if ((separator <= 0) || (separator == value.length() - 1)) {
+            throw new IllegalArgumentException("Cursor must be in format '<zIndex>,<id>'");
+        }
+        try {
+            return new WidgetCursor(Integer.parseInt(value.substring(0, separator)), value.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Cursor must be in format '<zIndex>,<id>'", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return zIndex + SEPARATOR + id;
+    }
+}
@@ -3,7 +3,13 @@ package org.home.realtimeboard.store;
 import lombok.extern.slf4j.Slf4j;
 import org.home.realtimeboard.model.Filter;
 import org.home.realtimeboard.model.Widget;
+import org.home.realtimeboard.model.WidgetCursor;
 import org.home.realtimeboard.store.adapter.InnerStoreAdapter;
+import org.home.realtimeboard.store.adapter.PushOutSequence;
+import org.home.realtimeboard.store.feed.ChangeFeed;
+import org.home.realtimeboard.store.feed.WidgetChange;
+import org.home.realtimeboard.store.id.WidgetIdGenerator;
+import org.home.realtimeboard.store.metrics.StoreMetrics;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
@@ -12,41 +18,119 @@ import org.springframework.data.rest.webmvc.ResourceNotFoundException;
 
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
  * Реализация {@link WidgetStore}, принимающая {@link InnerStoreAdapter} в качестве внутренней реализации хранилища
+ * <p>
+ * Запись выполняется под глобальной блокировкой, каждая операция записи публикует новую версию хранилища. Чтение
+ * не блокируется: запрос запоминает версию хранилища на момент начала, а по завершении проверяет, что за время его
+ * выполнения не было записи. Если запись была, результат отбрасывается и запрос повторяется, так что чтение никогда
+ * не видит частично выпихнутых z-index'ов, а количество элементов всегда соответствует содержимому страницы.
+ * При постоянной конкуренции с записью чтение после {@link AdaptedWidgetStore#OPTIMISTIC_READ_ATTEMPTS} попыток
+ * выполняется под блокировкой на чтение. Это сознательное отступление от неблокирующего чтения: такой запрос
+ * задерживает запись до своего завершения, зато чтение не голодает при непрерывном потоке записи. Поэтому при
+ * нагрузке, состоящей в основном из записи, читатели снова могут задерживать писателей.
+ * <p>
+ * Пакет изменений ({@link AdaptedWidgetStore#apply(List)}) применяется под одной блокировкой и публикуется как одна
+ * версия хранилища, при этом коллизии идущих подряд добавлений выпихиваются за один проход по хранилищу.
+ * <p>
+ * Номер версии ({@link AdaptedWidgetStore#getVersion()}) увеличивается под блокировкой на запись до начала изменения,
+ * а добавленные и обновленные виджеты помечаются номером версии, в которой они изменились. Поэтому чтение, начатое
+ * после получения номера версии, видит состояние не старше этой версии.
+ * <p>
+ * Если задана емкость ленты изменений, каждая операция записи публикует в {@link ChangeFeed} свои изменения, включая
+ * выпихивания, помеченные номером версии. Коллизия для ленты проверяется до выпихивания через
+ * {@link InnerStoreAdapter#containsZIndex(int)}, так что без ленты запись не выполняет лишних проверок.
+ * <p>
+ * Ожидание блокировок, повторы чтения, выпихивания и выборки страниц сообщаются в {@link StoreMetrics}. Время
+ * ожидания замеряется, только если блокировку не удалось захватить сразу.
  */
 @Slf4j
 public class AdaptedWidgetStore implements WidgetStore {
-    private final Object lock = new Object();
+    // Количество попыток неблокирующего чтения, после которых чтение выполняется под блокировкой
+    private static final int OPTIMISTIC_READ_ATTEMPTS = 3;
+
+    private final StampedLock lock = new StampedLock();
+    private final WidgetIdGenerator idGenerator = new WidgetIdGenerator();
 
     private final InnerStoreAdapter storeAdapter;
+    // Внутреннее хранилище выдает копии виджетов, см. AdaptedWidgetStore#detach
+    private final boolean adapterReturnsCopies;
+
+    // Изменяется только под блокировкой на запись
+    private volatile long version = WidgetStore.initialVersion();
+
+    // null, если лента изменений отключена
+    private final ChangeFeed changeFeed;
+    // Изменения текущей операции записи, еще не опубликованные в ленте, защищены блокировкой на запись
+    private final List<WidgetChange> pendingChanges = new ArrayList<>();
+
+    private final StoreMetrics metrics;
 
     public AdaptedWidgetStore(InnerStoreAdapter storeAdapter) {
+        this(storeAdapter, 0);
+    }
+
+    /**
+     * @param storeAdapter       внутреннее хранилище
+     * @param changeFeedCapacity емкость ленты изменений, {@code 0} отключает ленту
+     */
+    public AdaptedWidgetStore(InnerStoreAdapter storeAdapter, int changeFeedCapacity) {
+        this(storeAdapter, changeFeedCapacity, StoreMetrics.NONE);
+    }
+
+    /**
+     * @param storeAdapter       внутреннее хранилище
+     * @param changeFeedCapacity емкость ленты изменений, {@code 0} отключает ленту
+     * @param metrics            приемник метрик хранилища
+     */
+    public AdaptedWidgetStore(InnerStoreAdapter storeAdapter, int changeFeedCapacity, StoreMetrics metrics) {
         this.storeAdapter = storeAdapter;
+        this.adapterReturnsCopies = storeAdapter.returnsCopies();
+        this.changeFeed = changeFeedCapacity > 0 ? new ChangeFeed(changeFeedCapacity, version) : null;
+        this.metrics = metrics;
     }
 
     @Override
     public Widget add(Widget widget) {
         // Глобальная блокировка нужна для корректного выпихивания списка вышележащих виджетов
-        synchronized (lock) {
-            Widget.WidgetBuilder builder = widget.toBuilder()
-                    .id(UUID.randomUUID().toString())
-                    .lastModified(Instant.now());
+        long stamp = writeLock();
+        try {
+            version++;
+            return wrapResult(addInternal(widget));
+        } finally {
+            publishChanges();
+            lock.unlockWrite(stamp);
+        }
+    }
 
-            if (Objects.isNull(widget.getZIndex())) {
-                builder.zIndex(storeAdapter.getMaxZIndex() + 1);
-            } else {
-                storeAdapter.pushOut(widget.getZIndex(), null);
-            }
-            widget = builder.build();
+    /**
+     * Добавляет виджет во внутреннее хранилище, должен вызываться под блокировкой на запись
+     *
+     * @param widget описание нового виджета
+     * @return сохраненный виджет
+     */
+    private Widget addInternal(Widget widget) {
+        Widget.WidgetBuilder builder = widget.toBuilder()
+                .id(idGenerator.next().toString())
+                .lastModified(Instant.now())
+                .version(version);
 
-            storeAdapter.add(widget);
+        if (Objects.isNull(widget.getZIndex())) {
+            builder.zIndex(storeAdapter.getMaxZIndex() + 1);
+        } else {
+            pushOut(widget.getZIndex(), null, hasCollision(widget.getZIndex(), null));
         }
+        widget = builder.build();
 
-        return wrapResult(widget);
+        storeAdapter.add(widget);
+        recordChange(WidgetChange.upsert(widget));
+        return widget;
     }
 
     /**
@@ -61,53 +145,109 @@ public class AdaptedWidgetStore implements WidgetStore {
 
     @Override
     public Widget findOne(String id) {
-        Optional<Widget> result = findOneInternal(id);
-        return result.isPresent() ? wrapResult(result.get()) : null;
+        return read(() -> findOneInternal(id).map(this::detach).orElse(null));
+    }
+
+    /**
+     * Ищет виджеты по указанным идентификаторам. Все виджеты читаются из одной версии хранилища
+     */
+    @Override
+    public List<Widget> findAllById(Collection<String> ids) {
+        return read(() -> {
+            List<Widget> result = new ArrayList<>(ids.size());
+            for (String id : ids) {
+                findOneInternal(id).map(this::detach).ifPresent(result::add);
+            }
+            return result;
+        });
     }
 
     @Override
     public Widget update(String id, Widget widget) {
         // Глобальная блокировка нужна для корректного выпихивания списка вышележащих виджетов
-        synchronized (lock) {
-            Optional<Widget> persisted = findOneInternal(id);
+        long stamp = writeLock();
+        try {
+            version++;
+            return wrapResult(updateInternal(id, widget));
+        } finally {
+            publishChanges();
+            lock.unlockWrite(stamp);
+        }
+    }
 
-            if (!persisted.isPresent()) {
-                throw new ResourceNotFoundException();
-            }
+    /**
+     * Обновляет виджет во внутреннем хранилище, должен вызываться под блокировкой на запись
+     *
+     * @param id     uuid виджета
+     * @param widget обновленные данные виджета
+     * @return сохраненный виджет
+     * @throws ResourceNotFoundException если виджет с указанным идентификатором не был найден
+     */
+    private Widget updateInternal(String id, Widget widget) {
+        Optional<Widget> persisted = findOneInternal(id);
 
-            // Для корректного обновления позиции виджета в отсортированной коллекции, его нужно перевставить в нее
-            if (storeAdapter.isSortedByZIndex()) {
-                storeAdapter.remove(persisted.get());
-            }
-            widget = persisted.get().merge(widget);
-            storeAdapter.pushOut(widget.getZIndex(), widget.getId());
-            if (storeAdapter.isSortedByZIndex()) {
-                storeAdapter.add(widget);
-            }
+        if (!persisted.isPresent()) {
+            throw new ResourceNotFoundException();
         }
 
-        return wrapResult(widget);
+        // Для корректного обновления позиции виджета в отсортированной коллекции, его нужно перевставить в нее
+        boolean reinsert = storeAdapter.isSortedByZIndex();
+        if (reinsert) {
+            storeAdapter.remove(persisted.get());
+        }
+        // Несортированное хранилище обновляет сохраненный экземпляр, поэтому коллизия проверяется до его изменения
+        boolean collision = hasCollision(widget.getZIndex(), reinsert ? null : persisted.get().getZIndex());
+        widget = persisted.get().merge(widget);
+        widget.setVersion(version);
+        pushOut(widget.getZIndex(), widget.getId(), collision);
+        if (reinsert) {
+            storeAdapter.add(widget);
+        }
+        recordChange(WidgetChange.upsert(widget));
+        return widget;
     }
 
     @Override
     public Page<Widget> findAll(Filter filter, Pageable pageable) {
-        long count = filter.isEmpty() ?
-                storeAdapter.size() : storeAdapter.stream().filter(filter.toPredicate()).count();
+        // Количество и содержимое страницы считаются в рамках одного чтения, т.е. по одной версии хранилища.
+        // Перебранные виджеты учитываются только для принятой попытки чтения
+        long[] scanned = {0};
+        Page<Widget> page = read(() -> {
+            scanned[0] = 0;
+            return findAllInternal(filter, pageable, () -> scanned[0]++);
+        });
+        metrics.pageScanned(scanned[0], page.getNumberOfElements());
+        return page;
+    }
+
+    /**
+     * Ищет страницу виджетов, удовлетворяющих фильтрации, во внутреннем хранилище
+     *
+     * @param filter   фильтр для выборки виджетов
+     * @param pageable параметры пагинации
+     * @param onScan   вызывается для каждого виджета, перебранного потоком внутреннего хранилища
+     * @return найденная страница виджетов
+     */
+    private Page<Widget> findAllInternal(Filter filter, Pageable pageable, Runnable onScan) {
+        long count = storeAdapter.count(filter);
 
         List<Widget> pageContent;
         if (count > pageable.getOffset()) {
-            Stream<Widget> stream = storeAdapter.stream();
-            if (!filter.isEmpty()) {
-                stream = stream.filter(filter.toPredicate());
-            }
-            if (!storeAdapter.isSortedByZIndex()) {
-                stream = stream.sorted(Comparator.comparingInt(Widget::getZIndex));
+            Stream<Widget> stream;
+            if (filter.isEmpty() && storeAdapter.isSortedByZIndex()) {
+                // Отсортированное хранилище может само перейти к началу страницы, не перебирая предыдущие
+                stream = storeAdapter.streamFrom(pageable.getOffset()).peek(w -> onScan.run());
+            } else {
+                stream = storeAdapter.stream(filter).peek(w -> onScan.run());
+                if (!storeAdapter.isSortedByZIndex()) {
+                    stream = stream.sorted(Comparator.comparingInt(Widget::getZIndex));
+                }
+                stream = stream.skip(pageable.getOffset());
             }
 
             pageContent = stream
-                    .skip(pageable.getOffset())
                     .limit(pageable.getPageSize())
-                    .map(this::wrapResult)
+                    .map(this::detach)
                     .collect(Collectors.toList());
         } else {
             pageContent = Collections.emptyList();
@@ -116,16 +256,458 @@ public class AdaptedWidgetStore implements WidgetStore {
         return new PageImpl<>(pageContent, PageRequest.of(pageable.getPageNumber(), pageable.getPageSize()), count);
     }
 
+    /**
+     * Ищет страницу виджетов после курсора. Курсор и страница читаются из одной версии хранилища, а отсортированное
+     * хранилище переходит сразу к первому виджету страницы, см. {@link InnerStoreAdapter#streamAfter(int, Filter)}
+     */
+    @Override
+    public List<Widget> findAfter(Filter filter, WidgetCursor after, int limit) {
+        return read(() -> {
+            Stream<Widget> stream = Objects.isNull(after)
+                    ? storeAdapter.stream(filter)
+                    : storeAdapter.streamAfter(resumeZIndex(after), filter);
+            if (!storeAdapter.isSortedByZIndex()) {
+                stream = stream.sorted(Comparator.comparingInt(Widget::getZIndex));
+            }
+            return stream.limit(limit).map(this::detach).collect(Collectors.toList());
+        });
+    }
+
+    /**
+     * Обходит виджеты порциями по {@link WidgetStore#STREAM_CHUNK_SIZE}. Каждая порция читается отдельным запросом
+     * и продолжает обход после z-index последнего виджета предыдущей порции на момент чтения, так что выпихивание
+     * между порциями не приводит к пропускам или повторам. Обработчик вызывается вне чтения и не задерживает запись
+     */
+    @Override
+    public void forEach(Filter filter, Consumer<? super Widget> action) {
+        if (!storeAdapter.isSortedByZIndex()) {
+            // Несортированное хранилище не может продолжить обход с середины, поэтому читается целиком
+            read(() -> findAllInternal(filter)).forEach(action);
+            return;
+        }
+
+        Widget last = null;
+        List<Widget> chunk;
+        do {
+            Widget after = last;
+            chunk = read(() -> {
+                Stream<Widget> stream = Objects.isNull(after)
+                        ? storeAdapter.stream(filter)
+                        : storeAdapter.streamAfter(resumeZIndex(WidgetCursor.of(after)), filter);
+                return stream.limit(STREAM_CHUNK_SIZE).map(this::detach).collect(Collectors.toList());
+            });
+            chunk.forEach(action);
+            last = chunk.isEmpty() ? null : chunk.get(chunk.size() - 1);
+        } while (chunk.size() == STREAM_CHUNK_SIZE);
+    }
+
+    /**
+     * Ищет все виджеты, удовлетворяющие фильтрации, во внутреннем хранилище
+     *
+     * @param filter фильтр для выборки виджетов
+     * @return копии виджетов в порядке возрастания z-index
+     */
+    private List<Widget> findAllInternal(Filter filter) {
+        Stream<Widget> stream = storeAdapter.stream(filter);
+        if (!storeAdapter.isSortedByZIndex()) {
+            stream = stream.sorted(Comparator.comparingInt(Widget::getZIndex));
+        }
+        return stream.map(this::detach).collect(Collectors.toList());
+    }
+
+    /**
+     * Возвращает текущий z-index виджета курсора, после которого продолжается обход. Виджет мог быть выпихнут после
+     * чтения предыдущей порции, а если он удален - обход продолжается после его последнего известного z-index
+     */
+    private int resumeZIndex(WidgetCursor cursor) {
+        return findOneInternal(cursor.getId()).map(Widget::getZIndex).orElse(cursor.getZIndex());
+    }
+
     @Override
     public void delete(String id) {
         // Глобальная блокировка нужна для корректного выпихивания списка вышележащих виджетов
-        synchronized (lock) {
-            Widget widget = findOne(id);
-            boolean removed = Objects.nonNull(widget) && storeAdapter.remove(widget);
-            if (!removed) {
-                throw new ResourceNotFoundException();
+        long stamp = writeLock();
+        try {
+            version++;
+            deleteInternal(id);
+        } finally {
+            publishChanges();
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Удаляет виджет из внутреннего хранилища, должен вызываться под блокировкой на запись
+     *
+     * @param id uuid виджета для удаления
+     * @throws ResourceNotFoundException если виджет с указанным идентификатором не был найден
+     */
+    private void deleteInternal(String id) {
+        Optional<Widget> widget = findOneInternal(id);
+        boolean removed = widget.isPresent() && storeAdapter.remove(widget.get());
+        if (!removed) {
+            throw new ResourceNotFoundException();
+        }
+        recordChange(WidgetChange.delete(id));
+    }
+
+    /**
+     * Применяет пакет изменений. Результат эквивалентен последовательному применению каждого изменения, но весь пакет
+     * выполняется под одной блокировкой, а коллизии идущих подряд добавлений выпихиваются за один проход по
+     * хранилищу. Ошибка применения одного изменения не прерывает применение остальных
+     *
+     * @param mutations список изменений в порядке применения
+     * @return результаты изменений в том же порядке
+     */
+    @Override
+    public List<MutationResult> apply(List<WidgetMutation> mutations) {
+        List<MutationResult> results = new ArrayList<>(mutations.size());
+
+        long stamp = writeLock();
+        try {
+            version++;
+            AddBatch batch = new AddBatch();
+            for (WidgetMutation mutation : mutations) {
+                try {
+                    switch (mutation.getType()) {
+                        case ADD:
+                            results.add(MutationResult.success(batch.add(mutation.getWidget())));
+                            break;
+                        case UPDATE:
+                            // Обновление и удаление работают с сохраненными виджетами, поэтому перед ними добавления
+                            // применяются к хранилищу
+                            batch.flush();
+                            results.add(MutationResult.success(
+                                    wrapResult(updateInternal(mutation.getId(), mutation.getWidget()))));
+                            break;
+                        case DELETE:
+                            batch.flush();
+                            deleteInternal(mutation.getId());
+                            results.add(MutationResult.success(null));
+                            break;
+                    }
+                } catch (RuntimeException e) {
+                    results.add(MutationResult.failure(e));
+                }
             }
+            batch.flush();
+        } finally {
+            publishChanges();
+            lock.unlockWrite(stamp);
         }
+
+        return results;
+    }
+
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public Optional<ChangeFeed> getChangeFeed() {
+        return Optional.ofNullable(changeFeed);
+    }
+
+    @Override
+    public boolean containsZIndex(int zIndex) {
+        return read(() -> storeAdapter.containsZIndex(zIndex));
+    }
+
+    @Override
+    public long estimateCount(Filter filter) {
+        return read(() -> storeAdapter.estimateCount(filter));
+    }
+
+    /**
+     * Возвращает количество виджетов в хранилище
+     */
+    public int size() {
+        return read(storeAdapter::size);
+    }
+
+    /**
+     * Возвращает максимальный z-index или {@code 0}, если хранилище пусто
+     */
+    public int getMaxZIndex() {
+        return read(storeAdapter::getMaxZIndex);
+    }
+
+    /**
+     * Возвращает копии всех виджетов в порядке возрастания z-index. Копии относятся к одной версии хранилища
+     */
+    public List<Widget> copyAll() {
+        return read(() -> findAllInternal(Filter.builder().build()));
+    }
+
+    /**
+     * Заполняет пустое хранилище виджетами из снимка. Виджеты сохраняются как есть, без генерации идентификаторов
+     *
+     * @param widgets виджеты с уникальными z-index'ами в порядке возрастания z-index
+     * @throws IllegalStateException если хранилище не пусто
+     */
+    public void load(List<Widget> widgets) {
+        long stamp = writeLock();
+        try {
+            if (storeAdapter.size() > 0) {
+                throw new IllegalStateException("Store is not empty");
+            }
+            version++;
+            widgets.forEach(widget -> widget.setVersion(version));
+            storeAdapter.addAll(widgets);
+            if (Objects.nonNull(changeFeed)) {
+                // Снимок не раскладывается на изменения, поэтому читатели ленты должны перечитать виджеты целиком
+                changeFeed.reset(version);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Повторяет изменение, сохраненное в журнале. В отличие от обычных операций, виджет содержит итоговое состояние:
+     * идентификатор, z-index и дата модификации не генерируются заново, а сохраняются как есть. Поэтому повторение
+     * журнала в исходном порядке восстанавливает исходное состояние хранилища, включая все выпихивания
+     *
+     * @param mutation изменение с итоговым состоянием виджета
+     */
+    public void replay(WidgetMutation mutation) {
+        long stamp = writeLock();
+        try {
+            version++;
+            String id = mutation.getType() == WidgetMutation.Type.ADD ? mutation.getWidget().getId() : mutation.getId();
+            findOneInternal(id).ifPresent(storeAdapter::remove);
+
+            if (mutation.getType() != WidgetMutation.Type.DELETE) {
+                Widget widget = mutation.getWidget().toBuilder().version(version).build();
+                pushOut(widget.getZIndex(), widget.getId(), hasCollision(widget.getZIndex(), null));
+                storeAdapter.add(widget);
+                recordChange(WidgetChange.upsert(widget));
+            } else {
+                recordChange(WidgetChange.delete(id));
+            }
+        } finally {
+            publishChanges();
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Проверяет для ленты изменений, вызовет ли изменение выпихивание. Без ленты коллизия не проверяется, и результат
+     * всегда {@code false}
+     *
+     * @param zIndex         запрошенный z-index
+     * @param previousZIndex z-index виджета до изменения, если виджет остался во внутреннем хранилище, иначе
+     *                       {@code null}
+     */
+    private boolean hasCollision(Integer zIndex, Integer previousZIndex) {
+        // z-index'ы уникальны, поэтому собственный z-index оставшегося в хранилище виджета коллизии не вызывает
+        return Objects.nonNull(changeFeed) && Objects.nonNull(zIndex) && !zIndex.equals(previousZIndex) &&
+                storeAdapter.containsZIndex(zIndex);
+    }
+
+    /**
+     * Выпихивает вышележащие виджеты при коллизии, см. {@link InnerStoreAdapter#pushOut(Integer, String)}, и
+     * записывает выпихивание в ленту изменений. Должен вызываться под блокировкой на запись
+     *
+     * @param zIndex     z-index измененного виджета
+     * @param pusherUuid uuid измененного виджета или {@code null} для добавления
+     * @param collision  результат {@link AdaptedWidgetStore#hasCollision(Integer, Integer)} до изменения
+     */
+    private void pushOut(Integer zIndex, String pusherUuid, boolean collision) {
+        metrics.pushedOut(storeAdapter.pushOut(zIndex, pusherUuid));
+        if (collision) {
+            pendingChanges.add(WidgetChange.pushOut(zIndex));
+        }
+    }
+
+    /**
+     * Запоминает изменение для публикации в ленте, должен вызываться под блокировкой на запись
+     */
+    private void recordChange(WidgetChange change) {
+        if (Objects.nonNull(changeFeed)) {
+            pendingChanges.add(change);
+        }
+    }
+
+    /**
+     * Публикует в ленте изменения текущей операции записи, должен вызываться под блокировкой на запись
+     */
+    private void publishChanges() {
+        if (Objects.nonNull(changeFeed)) {
+            changeFeed.append(version, pendingChanges);
+            pendingChanges.clear();
+        }
+    }
+
+    /**
+     * Выполняет запрос на чтение над версией хранилища, не менявшейся за время выполнения запроса.
+     * Сначала запрос выполняется без блокировки и его результат принимается, только если за это время не было записи,
+     * после {@link AdaptedWidgetStore#OPTIMISTIC_READ_ATTEMPTS} неудачных попыток запрос выполняется под блокировкой
+     * на чтение
+     *
+     * @param query запрос к внутреннему хранилищу, не должен изменять его
+     * @return результат запроса
+     */
+    private <T> T read(Supplier<T> query) {
+        for (int attempt = 0; attempt < OPTIMISTIC_READ_ATTEMPTS; attempt++) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp == 0) {
+                // Идет запись
+                metrics.readRetried();
+                continue;
+            }
+
+            try {
+                T result = query.get();
+                if (lock.validate(stamp)) {
+                    return result;
+                }
+            } catch (RuntimeException e) {
+                // Параллельная запись могла привести адаптер в промежуточное состояние, в котором обход внутренних
+                // коллекций невозможен. Такая ошибка не относится к запросу, и он просто повторяется
+                if (lock.validate(stamp)) {
+                    throw e;
+                }
+            }
+            metrics.readRetried();
+        }
+
+        long stamp = readLock();
+        try {
+            return query.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Захватывает блокировку на чтение и сообщает время ее ожидания, см. {@link AdaptedWidgetStore#writeLock()}
+     *
+     * @return штамп блокировки для {@link StampedLock#unlockRead(long)}
+     */
+    private long readLock() {
+        long stamp = lock.tryReadLock();
+        if (stamp != 0) {
+            metrics.lockAcquired(false, 0);
+            return stamp;
+        }
+
+        long start = System.nanoTime();
+        stamp = lock.readLock();
+        metrics.lockAcquired(false, System.nanoTime() - start);
+        return stamp;
+    }
+
+    /**
+     * Захватывает блокировку на запись и сообщает время ее ожидания. Время замеряется, только если блокировка занята
+     *
+     * @return штамп блокировки для {@link StampedLock#unlockWrite(long)}
+     */
+    private long writeLock() {
+        long stamp = lock.tryWriteLock();
+        if (stamp != 0) {
+            metrics.lockAcquired(true, 0);
+            return stamp;
+        }
+
+        long start = System.nanoTime();
+        stamp = lock.writeLock();
+        metrics.lockAcquired(true, System.nanoTime() - start);
+        return stamp;
+    }
+
+    /**
+     * Пакет добавлений, еще не примененный к внутреннему хранилищу.
+     * <p>
+     * Добавления выполняются над виртуальным состоянием хранилища: сохраненные виджеты сдвигаются накопленной
+     * последовательностью выпихиваний, а виджеты пакета хранятся отдельно. При применении пакета сохраненные виджеты
+     * выпихиваются за один проход, после чего в хранилище добавляются виджеты пакета с итоговыми z-index'ами.
+     * <p>
+     * Максимальный z-index, кешируемый адаптером, не уменьшается при удалении виджетов и не выводится из
+     * последовательности выпихиваний, поэтому перед добавлением без z-index накопленные выпихивания применяются к
+     * хранилищу. Так новый виджет получает тот же z-index, что и при последовательном добавлении
+     */
+    private class AddBatch {
+        private final PushOutSequence pushOuts = new PushOutSequence();
+        private final List<Widget> widgets = new ArrayList<>();
+
+        /**
+         * Добавляет виджет в пакет
+         *
+         * @param widget описание нового виджета
+         * @return копию виджета в состоянии на момент добавления
+         */
+        Widget add(Widget widget) {
+            Widget.WidgetBuilder builder = widget.toBuilder()
+                    .id(idGenerator.next().toString())
+                    .lastModified(Instant.now())
+                    .version(version);
+
+            Integer zIndex = widget.getZIndex();
+            if (Objects.isNull(zIndex)) {
+                if (!pushOuts.isEmpty()) {
+                    flush();
+                }
+                builder.zIndex(getMaxZIndex() + 1);
+            } else if (hasCollision(zIndex)) {
+                pushOuts.add(zIndex);
+                widgets.forEach(w -> {
+                    if (w.getZIndex() >= zIndex) {
+                        w.pushOut();
+                    }
+                });
+            }
+
+            Widget created = builder.build();
+            widgets.add(created);
+            return wrapResult(created);
+        }
+
+        /**
+         * Применяет пакет к внутреннему хранилищу
+         */
+        void flush() {
+            storeAdapter.pushOutAll(pushOuts);
+            widgets.forEach(storeAdapter::add);
+            if (Objects.nonNull(changeFeed)) {
+                // Выпихивания пакета записываются порогами в порядке применения, как если бы пакет применялся
+                // последовательно, а виджеты пакета - с итоговыми z-index'ами
+                for (int i = 0; i < pushOuts.size(); i++) {
+                    pendingChanges.add(WidgetChange.pushOut(pushOuts.get(i)));
+                }
+                widgets.forEach(widget -> pendingChanges.add(WidgetChange.upsert(widget)));
+            }
+
+            pushOuts.clear();
+            widgets.clear();
+        }
+
+        private boolean hasCollision(int zIndex) {
+            Integer origin = pushOuts.inverse(zIndex);
+            return (Objects.nonNull(origin) && storeAdapter.containsZIndex(origin)) ||
+                    widgets.stream().anyMatch(w -> w.getZIndex() == zIndex);
+        }
+
+        private int getMaxZIndex() {
+            // Вызывается только без накопленных выпихиваний, см. add
+            int maxZIndex = storeAdapter.getMaxZIndex();
+            for (Widget widget : widgets) {
+                maxZIndex = Math.max(maxZIndex, widget.getZIndex());
+            }
+            return maxZIndex;
+        }
+    }
+
+    /**
+     * Изолирует виджет, прочитанный из внутреннего хранилища, от модификации извне. Виджеты хранилищ, которые сами
+     * выдают копии ({@link InnerStoreAdapter#returnsCopies()}), повторно не копируются
+     *
+     * @param widget виджет из внутреннего хранилища
+     * @return виджет, который можно выдать клиенту
+     */
+    private Widget detach(Widget widget) {
+        return adapterReturnsCopies ? widget : wrapResult(widget);
     }
 
     /**
@@ -0,0 +1,10 @@
+package org.home.realtimeboard.store;
+
+/**
+ * Исключение при попытке создать доску сверх максимального количества досок в {@link BoardRegistry}
+ */
+public class BoardLimitExceededException extends IllegalStateException {
+    public BoardLimitExceededException(int maxBoards) {
+        super("Board limit of " + maxBoards + " is reached");
+    }
+}
@@ -0,0 +1,96 @@
+package org.home.realtimeboard.store;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Реестр досок. Каждая доска хранит виджеты в собственном независимом хранилище со своей блокировкой и своим
+ * пространством z-index'ов, поэтому запись в разные доски выполняется параллельно.
+ * <p>
+ * Хранилище доски создается при первой записи в нее и далее не удаляется. Количество досок ограничено, чтобы
+ * запись в произвольные идентификаторы досок не расходовала память без предела: доска сверх ограничения не
+ * создается, а уже созданные доски продолжают работать
+ */
+@Slf4j
+public class BoardRegistry implements AutoCloseable {
+    private final Map<String, WidgetStore> boards = new ConcurrentHashMap<>();
+    private final Function<String, WidgetStore> storeFactory;
+    private final int maxBoards;
+    // Количество созданных и создаваемых досок, не превышает maxBoards
+    private final AtomicInteger boardCount = new AtomicInteger();
+
+    /**
+     * @param storeFactory фабрика хранилищ для новых досок по идентификатору доски, каждый вызов должен возвращать
+     *                     новое хранилище
+     * @param maxBoards    максимальное количество досок
+     */
+    public BoardRegistry(Function<String, WidgetStore> storeFactory, int maxBoards) {
+        this.storeFactory = storeFactory;
+        this.maxBoards = maxBoards;
+    }
+
+    /**
+     * Возвращает хранилище доски, создавая его, если доски еще нет
+     *
+     * @param boardId идентификатор доски
+     * @throws BoardLimitExceededException если доски нет, а количество досок достигло максимального
+     */
+    public WidgetStore getStore(String boardId) {
+        WidgetStore store = boards.get(boardId);
+        if (Objects.nonNull(store)) {
+            return store;
+        }
+
+        return boards.computeIfAbsent(boardId, id -> {
+            if (boardCount.incrementAndGet() > maxBoards) {
+                boardCount.decrementAndGet();
+                throw new BoardLimitExceededException(maxBoards);
+            }
+            try {
+                return storeFactory.apply(id);
+            } catch (RuntimeException e) {
+                boardCount.decrementAndGet();
+                throw e;
+            }
+        });
+    }
+
+    /**
+     * Ищет хранилище существующей доски
+     *
+     * @param boardId идентификатор доски
+     * @return хранилище доски или {@link Optional#empty()}, если в доску еще ничего не записывалось
+     */
+    public Optional<WidgetStore> findStore(String boardId) {
+        return Optional.ofNullable(boards.get(boardId));
+    }
+
+    /**
+     * Возвращает количество досок
+     */
+    public int size() {
+        return boards.size();
+    }
+
+    /**
+     * Закрывает хранилища досок, которые требуют закрытия
+     */
+    @Override
+    public void close() {
+        boards.forEach((boardId, store) -> {
+            if (store instanceof AutoCloseable) {
+                try {
+                    ((AutoCloseable) store).close();
+                } catch (Exception e) {
+                    log.error("Failed to close store of board {}", boardId, e);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,420 @@
+package org.home.realtimeboard.store;
+
+import lombok.Value;
+import org.home.realtimeboard.model.Filter;
+import org.home.realtimeboard.model.ImmutableWidget;
+import org.home.realtimeboard.model.Widget;
+import org.home.realtimeboard.model.WidgetCursor;
+import org.home.realtimeboard.store.adapter.PushOutSequence;
+import org.home.realtimeboard.store.cache.AdmissionCache;
+import org.home.realtimeboard.store.cache.CacheStatistics;
+import org.home.realtimeboard.store.feed.ChangeFeed;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.rest.webmvc.ResourceNotFoundException;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Хранилище, кеширующее выборки {@link WidgetStore#findAll(Filter, Pageable)} по фильтру, номеру и размеру страницы.
+ * Кеш ограничен по размеру и принимает новые выборки с учетом частоты запросов, см. {@link AdmissionCache}.
+ * <p>
+ * Изменение хранилища удаляет из кеша не все выборки, а только те, в фильтр которых попадает состояние виджета до
+ * или после изменения. Выпихивание не меняет ни состава выборок, ни взаимного порядка виджетов, поэтому выборки
+ * не удаляются, а накапливают последовательность выпихиваний ({@link PushOutSequence}), которая применяется к
+ * z-index'ам виджетов страницы при следующем обращении. Коллизия проверяется до изменения через
+ * {@link WidgetStore#containsZIndex(int)}. Для пакета изменений коллизии не проверяются, и удаляются все выборки,
+ * виджеты которых могли быть выпихнуты.
+ * <p>
+ * Изменения применяются по одному, чтобы состояние виджета до изменения было действительным, поэтому пакетная запись
+ * {@link SingleWriterWidgetStore} должна располагаться поверх этого хранилища. Выборка, во время которой хранилище
+ * изменялось, не кешируется: изменение отмечается до записи в хранилище, так что выборка, прочитавшая уже измененное
+ * хранилище до обновления кеша, не попадает в кеш и не выпихивается повторно. Закешированные страницы содержат
+ * {@link ImmutableWidget} и выдаются без копирования.
+ */
+public class CachingWidgetStore implements WidgetStore {
+    private final WidgetStore store;
+    private final Object writeLock = new Object();
+
+    // Кеш, поколение, признак записи и счетчик удалений защищены блокировкой кеша
+    private final AdmissionCache<QueryKey, CachedPage> cache;
+    // Увеличивается в начале и в конце каждого изменения хранилища
+    private long generation;
+    // Идет изменение хранилища, еще не учтенное в кеше
+    private boolean writing;
+    private long invalidationCount;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+
+    /**
+     * @param store    хранилище, выборки которого кешируются, не должно изменяться в обход этого хранилища
+     * @param capacity максимальное количество закешированных выборок
+     */
+    public CachingWidgetStore(WidgetStore store, int capacity) {
+        this.store = store;
+        this.cache = new AdmissionCache<>(capacity);
+    }
+
+    @Override
+    public Widget add(Widget widget) {
+        synchronized (writeLock) {
+            Integer pushOut = findCollision(null, widget.getZIndex());
+            beginWrite();
+            try {
+                Widget result = store.add(widget);
+                invalidate(null, result, pushOut);
+                return result;
+            } catch (RuntimeException e) {
+                invalidate(e);
+                throw e;
+            } finally {
+                endWrite();
+            }
+        }
+    }
+
+    @Override
+    public Widget findOne(String id) {
+        return store.findOne(id);
+    }
+
+    @Override
+    public List<Widget> findAllById(Collection<String> ids) {
+        return store.findAllById(ids);
+    }
+
+    @Override
+    public Widget update(String id, Widget widget) {
+        synchronized (writeLock) {
+            Widget before = store.findOne(id);
+            Integer pushOut = findCollision(before, widget.getZIndex());
+            beginWrite();
+            try {
+                Widget result = store.update(id, widget);
+                invalidate(before, result, pushOut);
+                return result;
+            } catch (RuntimeException e) {
+                invalidate(e);
+                throw e;
+            } finally {
+                endWrite();
+            }
+        }
+    }
+
+    @Override
+    public Page<Widget> findAll(Filter filter, Pageable pageable) {
+        if (pageable.isUnpaged()) {
+            return store.findAll(filter, pageable);
+        }
+
+        QueryKey key = new QueryKey(filter, pageable.getPageNumber(), pageable.getPageSize());
+        CachedPage cached;
+        long observedGeneration;
+        Page<Widget> cachedPage = null;
+        synchronized (cache) {
+            cached = cache.get(key);
+            if (Objects.nonNull(cached)) {
+                cachedPage = cached.getPage();
+            }
+            observedGeneration = generation;
+        }
+        if (Objects.nonNull(cachedPage)) {
+            hitCount.increment();
+            return cachedPage;
+        }
+
+        missCount.increment();
+        CachedPage loaded = new CachedPage(key.getFilter(), store.findAll(filter, pageable));
+        synchronized (cache) {
+            // Выборка могла прочитать состояние до изменения, удаление которого из кеша уже выполнено, или
+            // состояние после изменения, еще не учтенного в кеше
+            if ((generation == observedGeneration) && !writing) {
+                cache.put(key, loaded);
+            }
+        }
+        return loaded.page;
+    }
+
+    @Override
+    public List<Widget> findAfter(Filter filter, WidgetCursor after, int limit) {
+        return store.findAfter(filter, after, limit);
+    }
+
+    @Override
+    public void forEach(Filter filter, Consumer<? super Widget> action) {
+        store.forEach(filter, action);
+    }
+
+    @Override
+    public void delete(String id) {
+        synchronized (writeLock) {
+            Widget before = store.findOne(id);
+            beginWrite();
+            try {
+                store.delete(id);
+                invalidate(before, null, null);
+            } catch (RuntimeException e) {
+                invalidate(e);
+                throw e;
+            } finally {
+                endWrite();
+            }
+        }
+    }
+
+    /**
+     * Применяет пакет изменений к хранилищу одним вызовом и удаляет из кеша выборки, затронутые успешными изменениями
+     */
+    @Override
+    public List<MutationResult> apply(List<WidgetMutation> mutations) {
+        synchronized (writeLock) {
+            Set<String> ids = mutations.stream()
+                    .filter(mutation -> mutation.getType() != WidgetMutation.Type.ADD)
+                    .map(WidgetMutation::getId)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toSet());
+            Map<String, Widget> before = new HashMap<>();
+            store.findAllById(ids).forEach(widget -> before.put(widget.getId(), widget));
+
+            beginWrite();
+            try {
+                List<MutationResult> results = store.apply(mutations);
+                invalidate(mutations, results, before);
+                return results;
+            } catch (RuntimeException e) {
+                invalidate(e);
+                throw e;
+            } finally {
+                endWrite();
+            }
+        }
+    }
+
+    @Override
+    public long getVersion() {
+        return store.getVersion();
+    }
+
+    @Override
+    public boolean containsZIndex(int zIndex) {
+        return store.containsZIndex(zIndex);
+    }
+
+    @Override
+    public long estimateCount(Filter filter) {
+        return store.estimateCount(filter);
+    }
+
+    @Override
+    public Optional<ChangeFeed> getChangeFeed() {
+        return store.getChangeFeed();
+    }
+
+    /**
+     * Возвращает статистику кеша
+     */
+    public CacheStatistics getStatistics() {
+        synchronized (cache) {
+            return new CacheStatistics(hitCount.sum(), missCount.sum(), cache.getEvictionCount(),
+                    cache.getRejectionCount(), invalidationCount, cache.size());
+        }
+    }
+
+    /**
+     * Проверяет до изменения, вызовет ли оно выпихивание
+     *
+     * @param before состояние виджета до изменения или {@code null} для добавления
+     * @param zIndex запрошенный z-index
+     * @return порог выпихивания или {@code null}, если выпихивания не будет
+     */
+    private Integer findCollision(Widget before, Integer zIndex) {
+        if (Objects.isNull(zIndex)) {
+            return null;
+        }
+        // z-index'ы уникальны, поэтому собственный z-index обновляемого виджета коллизии не вызывает
+        if (Objects.nonNull(before) && zIndex.equals(before.getZIndex())) {
+            return null;
+        }
+        return store.containsZIndex(zIndex) ? zIndex : null;
+    }
+
+    /**
+     * Удаляет из кеша выборки, затронутые изменением, и учитывает выпихивание в остальных
+     *
+     * @param before  состояние виджета до изменения или {@code null} для добавления
+     * @param after   состояние виджета после изменения или {@code null} для удаления
+     * @param pushOut порог выпихивания или {@code null}, если изменение не вызвало выпихивания
+     */
+    private void invalidate(Widget before, Widget after, Integer pushOut) {
+        synchronized (cache) {
+            invalidationCount += cache.removeIf((key, page) -> {
+                if (page.contains(before) || page.contains(after)) {
+                    return true;
+                }
+                if (Objects.nonNull(pushOut)) {
+                    page.pushOut(pushOut);
+                }
+                return false;
+            });
+        }
+    }
+
+    /**
+     * Удаляет из кеша выборки, затронутые успешными изменениями пакета. Коллизии для пакета не проверяются, поэтому
+     * удаляются все выборки, виджеты которых могли быть выпихнуты
+     *
+     * @param mutations изменения пакета
+     * @param results   результаты изменений в том же порядке
+     * @param before    состояния обновляемых и удаляемых виджетов до применения пакета по идентификаторам
+     */
+    private void invalidate(List<WidgetMutation> mutations, List<MutationResult> results, Map<String, Widget> before) {
+        synchronized (cache) {
+            for (int i = 0; i < mutations.size(); i++) {
+                WidgetMutation mutation = mutations.get(i);
+                MutationResult result = results.get(i);
+                if (!result.isSuccess()) {
+                    if (!(result.getError() instanceof ResourceNotFoundException)) {
+                        invalidationCount += cache.clear();
+                    }
+                    continue;
+                }
+
+                Integer zIndex = mutation.getType() == WidgetMutation.Type.DELETE
+                        ? null
+                        : mutation.getWidget().getZIndex();
+                Widget previous = before.get(mutation.getId());
+                invalidationCount += cache.removeIf((key, page) -> page.contains(previous) ||
+                        page.contains(result.getWidget()) || page.mayBePushedOutBy(zIndex));
+            }
+        }
+    }
+
+    /**
+     * Обрабатывает ошибку изменения. Отсутствие виджета означает, что хранилище не изменилось, при любой другой
+     * ошибке изменение могло быть частично применено, и кеш очищается целиком
+     */
+    private void invalidate(RuntimeException error) {
+        if (error instanceof ResourceNotFoundException) {
+            return;
+        }
+        synchronized (cache) {
+            invalidationCount += cache.clear();
+        }
+    }
+
+    /**
+     * Отмечает начало изменения хранилища, должен вызываться до записи в хранилище. Выборки, начатые до этого момента
+     * или во время изменения, не кешируются
+     */
+    private void beginWrite() {
+        synchronized (cache) {
+            generation++;
+            writing = true;
+        }
+    }
+
+    /**
+     * Отмечает завершение изменения хранилища, должен вызываться после обновления кеша
+     */
+    private void endWrite() {
+        synchronized (cache) {
+            generation++;
+            writing = false;
+        }
+    }
+
+    /**
+     * Ключ кеша. Фильтр копируется, т.к. изменяем
+     */
+    @Value
+    private static class QueryKey {
+        private final Filter filter;
+        private final int page;
+        private final int size;
+
+        QueryKey(Filter filter, int page, int size) {
+            this.filter = Filter.builder()
+                    .top(filter.getTop())
+                    .bottom(filter.getBottom())
+                    .left(filter.getLeft())
+                    .right(filter.getRight())
+                    .build();
+            this.page = page;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Закешированная страница выборки, защищена блокировкой кеша
+     */
+    private static class CachedPage {
+        private Page<Widget> page;
+        // null для пустого фильтра, в который попадают все виджеты
+        private final Predicate<Widget> filter;
+        // z-index верхнего виджета страницы с учетом всех выпихиваний
+        private int maxZIndex;
+        // Выпихивания, еще не примененные к виджетам страницы
+        private final PushOutSequence pushOuts = new PushOutSequence();
+
+        CachedPage(Filter filter, Page<Widget> page) {
+            List<Widget> content = page.getContent().stream()
+                    .map(ImmutableWidget::of)
+                    .collect(Collectors.toList());
+            this.page = new PageImpl<>(content, page.getPageable(), page.getTotalElements());
+            this.filter = filter.isEmpty() ? null : filter.toPredicate();
+            this.maxZIndex = content.stream().mapToInt(Widget::getZIndex).max().orElse(Integer.MIN_VALUE);
+        }
+
+        /**
+         * Попадает ли состояние виджета в фильтр выборки
+         */
+        boolean contains(Widget widget) {
+            if (Objects.isNull(widget)) {
+                return false;
+            }
+            if (Objects.isNull(filter)) {
+                return true;
+            }
+            return Objects.nonNull(widget.getX()) && Objects.nonNull(widget.getY()) &&
+                    Objects.nonNull(widget.getWidth()) && Objects.nonNull(widget.getHeight()) && filter.test(widget);
+        }
+
+        /**
+         * Могут ли виджеты страницы быть выпихнуты при коллизии с указанным z-index
+         */
+        boolean mayBePushedOutBy(Integer zIndex) {
+            return Objects.nonNull(zIndex) && (zIndex <= maxZIndex);
+        }
+
+        /**
+         * Учитывает выпихивание виджетов с z-index не меньше указанного
+         */
+        void pushOut(int zIndex) {
+            if (zIndex <= maxZIndex) {
+                pushOuts.add(zIndex);
+                maxZIndex++;
+            }
+        }
+
+        /**
+         * Возвращает страницу, применяя к ней накопленные выпихивания
+         */
+        Page<Widget> getPage() {
+            if (!pushOuts.isEmpty()) {
+                List<Widget> content = page.getContent().stream()
+                        .map(widget -> ((ImmutableWidget) widget).withZIndex(pushOuts.apply(widget.getZIndex())))
+                        .collect(Collectors.toList());
+                page = new PageImpl<>(content, page.getPageable(), page.getTotalElements());
+                pushOuts.clear();
+            }
+            return page;
+        }
+    }
+}
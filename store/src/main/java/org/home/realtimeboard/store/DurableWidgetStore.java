@@ -0,0 +1,327 @@
+package org.home.realtimeboard.store;
+
+import lombok.extern.slf4j.Slf4j;
+import org.home.realtimeboard.model.Filter;
+import org.home.realtimeboard.model.Widget;
+import org.home.realtimeboard.model.WidgetCursor;
+import org.home.realtimeboard.store.feed.ChangeFeed;
+import org.home.realtimeboard.store.persistence.StoreSnapshot;
+import org.home.realtimeboard.store.persistence.WidgetCodec;
+import org.home.realtimeboard.store.persistence.WriteAheadLog;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Хранилище, сохраняющее изменения в журнале упреждающей записи ({@link WriteAheadLog}).
+ * <p>
+ * Каждое изменение применяется к хранилищу и добавляется в журнал под одной блокировкой, так что порядок записей
+ * журнала совпадает с порядком применения. В журнал пишется итоговое состояние виджета, а не запрос на изменение,
+ * поэтому при создании хранилища журнал повторяется через {@link AdaptedWidgetStore#replay(WidgetMutation)} и
+ * восстанавливает исходные идентификаторы, z-index'ы и даты модификации. Ожидание сохранения журнала на диске
+ * выполняется уже вне блокировки, что позволяет конкурентным изменениям разделять один сброс на диск.
+ * <p>
+ * Изменение возвращается вызывающему только после сохранения в журнале, но читатели видят его сразу после применения.
+ * При ошибке записи в журнал изменение остается примененным в памяти, а ошибка передается вызывающему.
+ * <p>
+ * Чтобы не повторять при запуске всю историю изменений, хранилище периодически сохраняет снимок состояния
+ * ({@link StoreSnapshot}) вместе с позицией журнала. Запись приостанавливается только на время копирования виджетов
+ * в памяти, кодирование и запись снимка на диск выполняются без блокировки. После записи снимка вошедшие в него
+ * изменения удаляются из журнала ({@link WriteAheadLog#compact(long)}), так что журнал не растет без предела. При
+ * запуске загружается снимок, а из журнала повторяются только более поздние изменения. Поврежденный снимок
+ * игнорируется, и журнал повторяется целиком, а если журнал уже сжат, создание хранилища завершается ошибкой, чтобы не
+ * запустить его с частью данных.
+ */
+@Slf4j
+public class DurableWidgetStore implements WidgetStore, AutoCloseable {
+    private final Object lock = new Object();
+    // Снимки записываются по одному, чтобы более старый снимок не заменил более новый
+    private final Object snapshotLock = new Object();
+
+    private final AdaptedWidgetStore store;
+    private final WriteAheadLog wal;
+    private final ByteBuffer buffer = ByteBuffer.allocate(WidgetCodec.MAX_MUTATION_SIZE);
+    private final Path snapshotPath;
+    // Собственный поток снимков, создается только при запуске снимков без внешнего планировщика
+    private ScheduledExecutorService snapshotExecutor;
+    private ScheduledFuture<?> snapshotTask;
+
+    /**
+     * Восстанавливает хранилище из журнала
+     *
+     * @param store пустое хранилище, в которое повторяется журнал
+     * @param wal   журнал изменений
+     */
+    public DurableWidgetStore(AdaptedWidgetStore store, WriteAheadLog wal) {
+        this(store, wal, null);
+    }
+
+    /**
+     * Восстанавливает хранилище из снимка, если он есть, и более поздних изменений журнала
+     *
+     * @param store        пустое хранилище, в которое загружается снимок и повторяется журнал
+     * @param wal          журнал изменений
+     * @param snapshotPath путь к файлу снимка или {@code null}, если снимки не используются
+     * @throws IllegalStateException если журнал сжат, а снимок поврежден или отсутствует
+     */
+    public DurableWidgetStore(AdaptedWidgetStore store, WriteAheadLog wal, Path snapshotPath) {
+        this.store = store;
+        this.wal = wal;
+        this.snapshotPath = snapshotPath;
+
+        try {
+            long walPosition = loadSnapshot();
+            long count = wal.replay(walPosition, data -> store.replay(WidgetCodec.readMutation(data)));
+            log.info("Replayed {} widget mutations from write-ahead log", count);
+        } catch (RuntimeException e) {
+            wal.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public Widget add(Widget widget) {
+        Widget result;
+        long position;
+        synchronized (lock) {
+            result = store.add(widget);
+            position = append(WidgetMutation.add(result));
+        }
+        wal.sync(position);
+        return result;
+    }
+
+    @Override
+    public Widget findOne(String id) {
+        return store.findOne(id);
+    }
+
+    @Override
+    public List<Widget> findAllById(Collection<String> ids) {
+        return store.findAllById(ids);
+    }
+
+    @Override
+    public Widget update(String id, Widget widget) {
+        Widget result;
+        long position;
+        synchronized (lock) {
+            result = store.update(id, widget);
+            position = append(WidgetMutation.update(id, result));
+        }
+        wal.sync(position);
+        return result;
+    }
+
+    @Override
+    public Page<Widget> findAll(Filter filter, Pageable pageable) {
+        return store.findAll(filter, pageable);
+    }
+
+    @Override
+    public List<Widget> findAfter(Filter filter, WidgetCursor after, int limit) {
+        return store.findAfter(filter, after, limit);
+    }
+
+    @Override
+    public void forEach(Filter filter, Consumer<? super Widget> action) {
+        store.forEach(filter, action);
+    }
+
+    @Override
+    public long getVersion() {
+        return store.getVersion();
+    }
+
+    @Override
+    public boolean containsZIndex(int zIndex) {
+        return store.containsZIndex(zIndex);
+    }
+
+    @Override
+    public long estimateCount(Filter filter) {
+        return store.estimateCount(filter);
+    }
+
+    @Override
+    public Optional<ChangeFeed> getChangeFeed() {
+        return store.getChangeFeed();
+    }
+
+    @Override
+    public void delete(String id) {
+        long position;
+        synchronized (lock) {
+            store.delete(id);
+            position = append(WidgetMutation.delete(id));
+        }
+        wal.sync(position);
+    }
+
+    /**
+     * Применяет пакет изменений через {@link AdaptedWidgetStore#apply(List)} и сохраняет в журнале результаты
+     * успешных изменений, ожидая одного сброса журнала на диск для всего пакета
+     */
+    @Override
+    public List<MutationResult> apply(List<WidgetMutation> mutations) {
+        List<MutationResult> results;
+        long position = 0;
+        synchronized (lock) {
+            results = store.apply(mutations);
+            for (int i = 0; i < mutations.size(); i++) {
+                WidgetMutation mutation = mutations.get(i);
+                MutationResult result = results.get(i);
+                if (!result.isSuccess()) {
+                    continue;
+                }
+
+                switch (mutation.getType()) {
+                    case ADD:
+                        position = append(WidgetMutation.add(result.getWidget()));
+                        break;
+                    case UPDATE:
+                        position = append(WidgetMutation.update(mutation.getId(), result.getWidget()));
+                        break;
+                    case DELETE:
+                        position = append(mutation);
+                        break;
+                }
+            }
+        }
+        if (position > 0) {
+            wal.sync(position);
+        }
+        return results;
+    }
+
+    /**
+     * Сохраняет снимок состояния хранилища и сжимает журнал до позиции снимка. Запись в хранилище приостанавливается
+     * только на время копирования виджетов, перед записью снимка журнал сбрасывается на диск, чтобы снимок не опережал
+     * сохраненный журнал
+     *
+     * @throws IllegalStateException если путь к снимку не задан
+     */
+    public void snapshot() {
+        if (Objects.isNull(snapshotPath)) {
+            throw new IllegalStateException("Snapshot path is not configured");
+        }
+
+        synchronized (snapshotLock) {
+            long start = System.nanoTime();
+            StoreSnapshot snapshot;
+            synchronized (lock) {
+                snapshot = new StoreSnapshot(wal.getPosition(), store.copyAll());
+            }
+            long copied = System.nanoTime();
+
+            wal.flush();
+            snapshot.write(snapshotPath);
+            wal.compact(snapshot.getWalPosition());
+            log.info("Saved snapshot of {} widgets in {} ms, writers paused for {} ms", snapshot.getWidgets().size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                    TimeUnit.NANOSECONDS.toMillis(copied - start));
+        }
+    }
+
+    /**
+     * Запускает периодическое сохранение снимков в фоновом потоке
+     *
+     * @param period период между снимками
+     * @param unit   единица измерения периода
+     */
+    public synchronized void scheduleSnapshots(long period, TimeUnit unit) {
+        if (Objects.nonNull(snapshotTask)) {
+            throw new IllegalStateException("Snapshots are already scheduled");
+        }
+
+        snapshotExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "widget-store-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduleSnapshots(snapshotExecutor, period, unit);
+    }
+
+    /**
+     * Запускает периодическое сохранение снимков в общем планировщике, например общем для хранилищ всех досок.
+     * Закрытие хранилища отменяет его снимки, но не останавливает планировщик
+     *
+     * @param executor планировщик снимков
+     * @param period   период между снимками
+     * @param unit     единица измерения периода
+     */
+    public synchronized void scheduleSnapshots(ScheduledExecutorService executor, long period, TimeUnit unit) {
+        if (Objects.nonNull(snapshotTask)) {
+            throw new IllegalStateException("Snapshots are already scheduled");
+        }
+
+        snapshotTask = executor.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot();
+            } catch (RuntimeException e) {
+                log.error("Failed to save snapshot {}", snapshotPath, e);
+            }
+        }, period, period, unit);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (Objects.nonNull(snapshotTask)) {
+            snapshotTask.cancel(false);
+        }
+        if (Objects.nonNull(snapshotExecutor)) {
+            snapshotExecutor.shutdownNow();
+        }
+        wal.close();
+    }
+
+    /**
+     * Загружает снимок в хранилище
+     *
+     * @return позиция журнала, с которой нужно повторять изменения
+     */
+    private long loadSnapshot() {
+        if (Objects.isNull(snapshotPath) || !Files.exists(snapshotPath)) {
+            return 0;
+        }
+
+        long start = System.nanoTime();
+        StoreSnapshot snapshot;
+        try {
+            snapshot = StoreSnapshot.read(snapshotPath);
+        } catch (IllegalStateException | UncheckedIOException e) {
+            log.warn("Failed to read snapshot {}, replaying whole write-ahead log", snapshotPath, e);
+            return 0;
+        }
+
+        store.load(snapshot.getWidgets());
+        log.info("Loaded snapshot of {} widgets in {} ms", snapshot.getWidgets().size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return snapshot.getWalPosition();
+    }
+
+    /**
+     * Добавляет изменение в журнал, должен вызываться под блокировкой
+     *
+     * @return позиция конца записи в журнале
+     */
+    private long append(WidgetMutation mutation) {
+        buffer.clear();
+        WidgetCodec.writeMutation(buffer, mutation);
+        buffer.flip();
+        return wal.append(buffer);
+    }
+}
@@ -0,0 +1,190 @@
+package org.home.realtimeboard.store;
+
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.home.realtimeboard.model.Filter;
+import org.home.realtimeboard.model.Widget;
+import org.home.realtimeboard.model.WidgetCursor;
+import org.home.realtimeboard.store.feed.ChangeFeed;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Хранилище, замеряющее длительность операций другого хранилища.
+ * <p>
+ * Длительности публикуются в {@link MeterRegistry} таймером {@code store.operations} с тегом {@code operation},
+ * включая операции, завершившиеся ошибкой. Количество и суммарная длительность операций накапливаются в
+ * {@link LongAdder}, которые реестр читает только при публикации, так что замер не добавляет конкуренции между
+ * потоками. Обход {@link WidgetStore#forEach(Filter, Consumer)} не замеряется, т.к. его длительность определяется
+ * обработчиком.
+ * <p>
+ * Несколько хранилищ могут замеряться общими таймерами ({@link OperationTimers}), тогда длительности публикуются
+ * суммарно по ним
+ */
+public class InstrumentedWidgetStore implements WidgetStore, AutoCloseable {
+    private final WidgetStore store;
+    private final OperationTimers timers;
+
+    /**
+     * @param store    хранилище, операции которого замеряются
+     * @param registry реестр для публикации таймеров
+     */
+    public InstrumentedWidgetStore(WidgetStore store, MeterRegistry registry) {
+        this(store, new OperationTimers(registry, Tags.empty()));
+    }
+
+    /**
+     * @param store  хранилище, операции которого замеряются
+     * @param timers таймеры операций, возможно общие с другими хранилищами
+     */
+    public InstrumentedWidgetStore(WidgetStore store, OperationTimers timers) {
+        this.store = store;
+        this.timers = timers;
+    }
+
+    @Override
+    public Widget add(Widget widget) {
+        return timers.addTimer.record(() -> store.add(widget));
+    }
+
+    @Override
+    public Widget findOne(String id) {
+        return timers.findOneTimer.record(() -> store.findOne(id));
+    }
+
+    @Override
+    public List<Widget> findAllById(Collection<String> ids) {
+        return timers.findAllByIdTimer.record(() -> store.findAllById(ids));
+    }
+
+    @Override
+    public Widget update(String id, Widget widget) {
+        return timers.updateTimer.record(() -> store.update(id, widget));
+    }
+
+    @Override
+    public Page<Widget> findAll(Filter filter, Pageable pageable) {
+        return timers.findAllTimer.record(() -> store.findAll(filter, pageable));
+    }
+
+    @Override
+    public List<Widget> findAfter(Filter filter, WidgetCursor after, int limit) {
+        return timers.findAfterTimer.record(() -> store.findAfter(filter, after, limit));
+    }
+
+    @Override
+    public long estimateCount(Filter filter) {
+        return timers.estimateCountTimer.record(() -> store.estimateCount(filter));
+    }
+
+    @Override
+    public void forEach(Filter filter, Consumer<? super Widget> action) {
+        store.forEach(filter, action);
+    }
+
+    @Override
+    public boolean containsZIndex(int zIndex) {
+        return store.containsZIndex(zIndex);
+    }
+
+    @Override
+    public void delete(String id) {
+        timers.deleteTimer.record(() -> {
+            store.delete(id);
+            return null;
+        });
+    }
+
+    @Override
+    public List<MutationResult> apply(List<WidgetMutation> mutations) {
+        return timers.applyTimer.record(() -> store.apply(mutations));
+    }
+
+    @Override
+    public long getVersion() {
+        return store.getVersion();
+    }
+
+    @Override
+    public Optional<ChangeFeed> getChangeFeed() {
+        return store.getChangeFeed();
+    }
+
+    /**
+     * Закрывает исходное хранилище, если оно требует закрытия
+     */
+    @Override
+    public void close() throws Exception {
+        if (store instanceof AutoCloseable) {
+            ((AutoCloseable) store).close();
+        }
+    }
+
+    /**
+     * Таймеры всех операций хранилища. Micrometer возвращает уже зарегистрированный таймер с тем же именем и тегами,
+     * поэтому хранилища, которые публикуют длительности с одинаковыми тегами, должны использовать один экземпляр
+     */
+    public static class OperationTimers {
+        private final OperationTimer addTimer;
+        private final OperationTimer findOneTimer;
+        private final OperationTimer findAllByIdTimer;
+        private final OperationTimer updateTimer;
+        private final OperationTimer findAllTimer;
+        private final OperationTimer findAfterTimer;
+        private final OperationTimer estimateCountTimer;
+        private final OperationTimer deleteTimer;
+        private final OperationTimer applyTimer;
+
+        /**
+         * @param registry реестр для публикации таймеров
+         * @param tags     теги всех таймеров, например тег, отличающий общее хранилище от хранилищ досок
+         */
+        public OperationTimers(MeterRegistry registry, Tags tags) {
+            this.addTimer = new OperationTimer("add", registry, tags);
+            this.findOneTimer = new OperationTimer("findOne", registry, tags);
+            this.findAllByIdTimer = new OperationTimer("findAllById", registry, tags);
+            this.updateTimer = new OperationTimer("update", registry, tags);
+            this.findAllTimer = new OperationTimer("findAll", registry, tags);
+            this.findAfterTimer = new OperationTimer("findAfter", registry, tags);
+            this.estimateCountTimer = new OperationTimer("estimateCount", registry, tags);
+            this.deleteTimer = new OperationTimer("delete", registry, tags);
+            this.applyTimer = new OperationTimer("apply", registry, tags);
+        }
+    }
+
+    /**
+     * Количество и суммарная длительность одной операции хранилища
+     */
+    private static class OperationTimer {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+
+        OperationTimer(String operation, MeterRegistry registry, Tags tags) {
+            FunctionTimer.builder("store.operations", this, timer -> timer.count.sum(),
+                    timer -> timer.totalNanos.sum(), TimeUnit.NANOSECONDS)
+                    .tags(tags)
+                    .tag("operation", operation)
+                    .description("Widget store operations")
+                    .register(registry);
+        }
+
+        <T> T record(Supplier<T> operation) {
+            long start = System.nanoTime();
+            try {
+                return operation.get();
+            } finally {
+                totalNanos.add(System.nanoTime() - start);
+                count.increment();
+            }
+        }
+    }
+}
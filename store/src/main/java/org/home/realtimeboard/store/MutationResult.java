@@ -0,0 +1,49 @@
+package org.home.realtimeboard.store;
+
+import lombok.Getter;
+import org.home.realtimeboard.model.Widget;
+
+import java.util.Objects;
+
+/**
+ * Результат применения {@link WidgetMutation}
+ */
+@Getter
+public class MutationResult {
+    /**
+     * Добавленный или обновленный виджет, {@code null} для удаления и для неудачных операций
+     */
+    private final Widget widget;
+
+    /**
+     * Ошибка применения операции или {@code null}, если операция выполнена успешно
+     */
+    private final RuntimeException error;
+
+    private MutationResult(Widget widget, RuntimeException error) {
+        this.widget = widget;
+        this.error = error;
+    }
+
+    public static MutationResult success(Widget widget) {
+        return new MutationResult(widget, null);
+    }
+
+    public static MutationResult failure(RuntimeException error) {
+        return new MutationResult(null, error);
+    }
+
+    public boolean isSuccess() {
+        return Objects.isNull(error);
+    }
+
+    /**
+     * Возвращает результат операции или выбрасывает ошибку ее применения
+     */
+    public Widget get() {
+        if (Objects.nonNull(error)) {
+            throw error;
+        }
+        return widget;
+    }
+}
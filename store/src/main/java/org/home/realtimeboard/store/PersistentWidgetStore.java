@@ -0,0 +1,341 @@
+package org.home.realtimeboard.store;
+
+import org.home.realtimeboard.model.Filter;
+import org.home.realtimeboard.model.ImmutableWidget;
+import org.home.realtimeboard.model.Widget;
+import org.home.realtimeboard.model.WidgetCursor;
+import org.home.realtimeboard.store.id.WidgetIdGenerator;
+import org.home.realtimeboard.store.index.OrderStatisticTree;
+import org.home.realtimeboard.store.index.PersistentHashMap;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.rest.webmvc.ResourceNotFoundException;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Хранилище неизменяемых виджетов на основе персистентных структур данных: {@link PersistentHashMap} в качестве индекса
+ * по id и {@link OrderStatisticTree} для порядка по z-index.
+ * <p>
+ * Состояние хранилища - неизменяемый {@link Snapshot}. Запись выполняется под глобальной блокировкой: она строит новое
+ * состояние, разделяющее с предыдущим все незатронутые узлы, и публикует его одной volatile записью. Чтение не
+ * блокируется, всегда видит целостное состояние и возвращает сохраненные экземпляры {@link ImmutableWidget} без
+ * копирования. Снимок состояния ({@link PersistentWidgetStore#snapshot()}) получается за O(1).
+ * <p>
+ * Т.к. виджеты неизменяемы, выпихивание заменяет каждый сдвигаемый виджет новым экземпляром, копируя только
+ * затронутые узлы обеих структур.
+ */
+public class PersistentWidgetStore implements WidgetStore {
+    // Сравнение только по z-index, см. CombinedStoreAdapter
+    private static final Comparator<Widget> Z_ORDER = Comparator.comparingInt(Widget::getZIndex);
+
+    private final Object lock = new Object();
+    private final WidgetIdGenerator idGenerator = new WidgetIdGenerator();
+    private volatile Snapshot state = new Snapshot(PersistentHashMap.empty(), new OrderStatisticTree<>(Z_ORDER),
+            WidgetStore.initialVersion());
+
+    /**
+     * Возвращает текущее состояние хранилища
+     */
+    public Snapshot snapshot() {
+        return state;
+    }
+
+    @Override
+    public Widget add(Widget widget) {
+        // Глобальная блокировка нужна для корректного выпихивания списка вышележащих виджетов
+        synchronized (lock) {
+            Snapshot current = state;
+            Builder builder = new Builder(current);
+
+            Widget.WidgetBuilder created = widget.toBuilder()
+                    .id(idGenerator.next().toString())
+                    .lastModified(Instant.now())
+                    .version(builder.nextVersion());
+
+            if (Objects.isNull(widget.getZIndex())) {
+                created.zIndex(builder.order.isEmpty() ? 1 : builder.order.last().getZIndex() + 1);
+            } else {
+                builder.pushOut(widget.getZIndex());
+            }
+
+            ImmutableWidget result = builder.put(ImmutableWidget.of(created.build()));
+            state = builder.build();
+            return result;
+        }
+    }
+
+    @Override
+    public Widget findOne(String id) {
+        return state.findOne(id);
+    }
+
+    @Override
+    public List<Widget> findAllById(Collection<String> ids) {
+        return state.findAllById(ids);
+    }
+
+    @Override
+    public Widget update(String id, Widget widget) {
+        // Глобальная блокировка нужна для корректного выпихивания списка вышележащих виджетов
+        synchronized (lock) {
+            Snapshot current = state;
+            ImmutableWidget persisted = current.index.get(id);
+
+            if (Objects.isNull(persisted)) {
+                throw new ResourceNotFoundException();
+            }
+
+            Builder builder = new Builder(current);
+            builder.remove(persisted);
+            Widget merged = persisted.toBuilder().build().merge(widget);
+            merged.setVersion(builder.nextVersion());
+            builder.pushOut(merged.getZIndex());
+
+            ImmutableWidget result = builder.put(ImmutableWidget.of(merged));
+            state = builder.build();
+            return result;
+        }
+    }
+
+    @Override
+    public Page<Widget> findAll(Filter filter, Pageable pageable) {
+        return state.findAll(filter, pageable);
+    }
+
+    @Override
+    public long getVersion() {
+        return state.getVersion();
+    }
+
+    @Override
+    public boolean containsZIndex(int zIndex) {
+        return state.containsZIndex(zIndex);
+    }
+
+    /**
+     * Обходит одно состояние хранилища целиком, без порций и копирования виджетов
+     */
+    @Override
+    public List<Widget> findAfter(Filter filter, WidgetCursor after, int limit) {
+        return state.findAfter(filter, after, limit);
+    }
+
+    @Override
+    public void forEach(Filter filter, Consumer<? super Widget> action) {
+        state.forEach(filter, action);
+    }
+
+    @Override
+    public void delete(String id) {
+        // Глобальная блокировка нужна для корректного выпихивания списка вышележащих виджетов
+        synchronized (lock) {
+            Snapshot current = state;
+            ImmutableWidget persisted = current.index.get(id);
+
+            if (Objects.isNull(persisted)) {
+                throw new ResourceNotFoundException();
+            }
+
+            Builder builder = new Builder(current);
+            builder.remove(persisted);
+            state = builder.build();
+        }
+    }
+
+    /**
+     * Неизменяемое состояние хранилища. Все запросы к снимку согласованы между собой независимо от последующих
+     * изменений хранилища
+     */
+    public static final class Snapshot {
+        private final PersistentHashMap<String, ImmutableWidget> index;
+        private final OrderStatisticTree<ImmutableWidget> order;
+        private final long version;
+
+        private Snapshot(PersistentHashMap<String, ImmutableWidget> index, OrderStatisticTree<ImmutableWidget> order,
+                         long version) {
+            this.index = index;
+            this.order = order;
+            this.version = version;
+        }
+
+        /**
+         * Возвращает номер версии хранилища, увеличивается при каждом изменении
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        public int size() {
+            return order.size();
+        }
+
+        /**
+         * Ищет виджет по указанному идентификатору
+         *
+         * @param id uuid виджета
+         * @return найденный виджет или {@code null} если виджет не был найден
+         */
+        public Widget findOne(String id) {
+            return index.get(id);
+        }
+
+        /**
+         * Ищет виджеты по указанным идентификаторам
+         *
+         * @param ids uuid виджетов
+         * @return найденные виджеты в порядке идентификаторов, не найденные виджеты пропускаются
+         */
+        public List<Widget> findAllById(Collection<String> ids) {
+            List<Widget> result = new ArrayList<>(ids.size());
+            for (String id : ids) {
+                ImmutableWidget widget = index.get(id);
+                if (Objects.nonNull(widget)) {
+                    result.add(widget);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Проверяет, занят ли указанный z-index каким-либо виджетом
+         */
+        public boolean containsZIndex(int zIndex) {
+            // Дерево построено по z-index, так что можно создать "поисковую заглушку", см. CombinedStoreAdapter
+            return order.contains(ImmutableWidget.of(Widget.builder().zIndex(zIndex).build()));
+        }
+
+        /**
+         * Ищет виджеты, удовлетворяющие фильтрации
+         *
+         * @param filter   фильтр для выборки виджетов
+         * @param pageable параметры пагинации
+         * @return найденная страница виджетов
+         */
+        public Page<Widget> findAll(Filter filter, Pageable pageable) {
+            long count = filter.isEmpty() ? order.size() : order.stream().filter(filter.toPredicate()).count();
+
+            List<Widget> pageContent;
+            if (count > pageable.getOffset()) {
+                Stream<ImmutableWidget> stream = filter.isEmpty()
+                        ? order.stream(pageable.getOffset())
+                        : order.stream().filter(filter.toPredicate()).skip(pageable.getOffset());
+                pageContent = stream
+                        .limit(pageable.getPageSize())
+                        .collect(Collectors.toList());
+            } else {
+                pageContent = Collections.emptyList();
+            }
+
+            return new PageImpl<>(pageContent, PageRequest.of(pageable.getPageNumber(), pageable.getPageSize()),
+                    count);
+        }
+
+        /**
+         * Ищет виджеты, удовлетворяющие фильтрации, следующие за курсором в порядке возрастания z-index
+         *
+         * @param filter фильтр для выборки виджетов
+         * @param after  курсор, после которого начинается страница, или {@code null} для первой страницы
+         * @param limit  максимальное количество виджетов
+         * @return найденные виджеты
+         */
+        public List<Widget> findAfter(Filter filter, WidgetCursor after, int limit) {
+            int from = 0;
+            if (Objects.nonNull(after)) {
+                ImmutableWidget widget = index.get(after.getId());
+                int zIndex = Objects.nonNull(widget) ? widget.getZIndex() : after.getZIndex();
+                // Количество виджетов с z-index не больше курсора, см. CombinedStoreAdapter
+                from = zIndex == Integer.MAX_VALUE
+                        ? order.size()
+                        : order.rank(ImmutableWidget.of(Widget.builder().zIndex(zIndex + 1).build()));
+            }
+
+            Stream<ImmutableWidget> stream = order.stream(from);
+            if (!filter.isEmpty()) {
+                stream = stream.filter(filter.toPredicate());
+            }
+            return stream.limit(limit).collect(Collectors.toList());
+        }
+
+        /**
+         * Обходит виджеты, удовлетворяющие фильтрации, в порядке возрастания z-index
+         *
+         * @param filter фильтр для выборки виджетов
+         * @param action обработчик виджетов
+         */
+        public void forEach(Filter filter, Consumer<? super Widget> action) {
+            Stream<ImmutableWidget> stream = filter.isEmpty()
+                    ? order.stream()
+                    : order.stream().filter(filter.toPredicate());
+            stream.forEach(action);
+        }
+    }
+
+    /**
+     * Построитель следующего состояния хранилища. Работает с независимой копией дерева, поэтому не влияет на
+     * исходное состояние
+     */
+    private static final class Builder {
+        private final long version;
+        private PersistentHashMap<String, ImmutableWidget> index;
+        private final OrderStatisticTree<ImmutableWidget> order;
+
+        Builder(Snapshot snapshot) {
+            this.version = snapshot.version;
+            this.index = snapshot.index;
+            this.order = snapshot.order.snapshot();
+        }
+
+        ImmutableWidget put(ImmutableWidget widget) {
+            order.add(widget);
+            index = index.put(widget.getId(), widget);
+            return widget;
+        }
+
+        void remove(ImmutableWidget widget) {
+            order.remove(widget);
+            index = index.remove(widget.getId());
+        }
+
+        /**
+         * Выпихивает вышележащие виджеты в случае коллизии
+         *
+         * @param zIndex z-index нового виджета
+         */
+        void pushOut(Integer zIndex) {
+            // Дерево построено по z-index, так что можно создать "поисковую заглушку", см. CombinedStoreAdapter
+            ImmutableWidget probe = ImmutableWidget.of(Widget.builder().zIndex(zIndex).build());
+            if (!order.contains(probe)) {
+                return;
+            }
+
+            // Увеличение z-index'ов всех виджетов начиная с коллизии не меняет их взаимного порядка
+            List<ImmutableWidget> shifted = new ArrayList<>();
+            order.mapFrom(order.rank(probe), w -> {
+                ImmutableWidget pushed = w.withZIndex(w.getZIndex() + 1);
+                shifted.add(pushed);
+                return pushed;
+            });
+            for (ImmutableWidget widget : shifted) {
+                index = index.put(widget.getId(), widget);
+            }
+        }
+
+        /**
+         * Возвращает номер версии строящегося состояния, которым помечаются измененные виджеты
+         */
+        long nextVersion() {
+            return version + 1;
+        }
+
+        Snapshot build() {
+            return new Snapshot(index, order, nextVersion());
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package org.home.realtimeboard.store;
+
+import lombok.extern.slf4j.Slf4j;
+import org.home.realtimeboard.model.Filter;
+import org.home.realtimeboard.model.Widget;
+import org.home.realtimeboard.model.WidgetCursor;
+import org.home.realtimeboard.store.feed.ChangeFeed;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+/**
+ * Хранилище с единственным пишущим потоком.
+ * <p>
+ * Изменения не применяются в вызывающих потоках, а помещаются в ограниченную кольцевую очередь. Пишущий поток забирает
+ * из очереди все накопившиеся изменения и применяет их одним пакетом через {@link WidgetStore#apply(List)},
+ * так что потоки не конкурируют за блокировку хранилища, а {@link AdaptedWidgetStore} выпихивает коллизии
+ * z-index'ов внутри пакета за один проход. Вызывающий поток ожидает применения своего изменения. При заполнении
+ * очереди постановка изменений блокируется до ее освобождения.
+ * <p>
+ * Чтение выполняется напрямую из хранилища и видит состояние после последнего примененного пакета.
+ * <p>
+ * Исключение при применении пакета завершает ошибкой только изменения этого пакета. Если же пишущий поток
+ * завершается из-за {@link Error}, хранилище закрывается: изменения текущего пакета и очереди завершаются ошибкой,
+ * а новые изменения сразу отклоняются, чтобы вызывающие потоки не ждали применения бесконечно.
+ */
+@Slf4j
+public class SingleWriterWidgetStore implements WidgetStore, AutoCloseable {
+    // Емкость очереди изменений по умолчанию
+    private static final int DEFAULT_CAPACITY = 1024;
+    // Максимальный размер пакета изменений по умолчанию
+    private static final int DEFAULT_MAX_BATCH_SIZE = 256;
+
+    private final WidgetStore store;
+    private final BlockingQueue<Command> queue;
+    private final int maxBatchSize;
+    private final Thread writer;
+    private volatile boolean closed;
+
+    public SingleWriterWidgetStore(WidgetStore store) {
+        this(store, DEFAULT_CAPACITY, DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    /**
+     * @param store        хранилище, к которому применяются изменения
+     * @param capacity     емкость очереди изменений
+     * @param maxBatchSize максимальное количество изменений, применяемых одним пакетом
+     */
+    public SingleWriterWidgetStore(WidgetStore store, int capacity, int maxBatchSize) {
+        this.store = store;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.maxBatchSize = maxBatchSize;
+
+        this.writer = new Thread(this::drain, "widget-store-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    @Override
+    public Widget add(Widget widget) {
+        return submit(WidgetMutation.add(widget));
+    }
+
+    @Override
+    public Widget findOne(String id) {
+        return store.findOne(id);
+    }
+
+    @Override
+    public List<Widget> findAllById(Collection<String> ids) {
+        return store.findAllById(ids);
+    }
+
+    @Override
+    public Widget update(String id, Widget widget) {
+        return submit(WidgetMutation.update(id, widget));
+    }
+
+    @Override
+    public Page<Widget> findAll(Filter filter, Pageable pageable) {
+        return store.findAll(filter, pageable);
+    }
+
+    @Override
+    public List<Widget> findAfter(Filter filter, WidgetCursor after, int limit) {
+        return store.findAfter(filter, after, limit);
+    }
+
+    @Override
+    public void forEach(Filter filter, Consumer<? super Widget> action) {
+        store.forEach(filter, action);
+    }
+
+    @Override
+    public long getVersion() {
+        return store.getVersion();
+    }
+
+    @Override
+    public boolean containsZIndex(int zIndex) {
+        return store.containsZIndex(zIndex);
+    }
+
+    @Override
+    public long estimateCount(Filter filter) {
+        return store.estimateCount(filter);
+    }
+
+    @Override
+    public Optional<ChangeFeed> getChangeFeed() {
+        return store.getChangeFeed();
+    }
+
+    @Override
+    public void delete(String id) {
+        submit(WidgetMutation.delete(id));
+    }
+
+    /**
+     * Останавливает пишущий поток. Изменения, не примененные к моменту остановки, завершаются ошибкой
+     */
+    @Override
+    public void close() {
+        closed = true;
+        writer.interrupt();
+    }
+
+    /**
+     * Применяет пакет изменений. Пакет ставится в очередь целиком и применяется пишущим потоком в составе одного
+     * пакета хранилища, не разделяясь с другими изменениями
+     */
+    @Override
+    public List<MutationResult> apply(List<WidgetMutation> mutations) {
+        return enqueue(new Command(mutations));
+    }
+
+    /**
+     * Ставит изменение в очередь и ожидает его применения
+     *
+     * @param mutation изменение
+     * @return результат изменения
+     */
+    private Widget submit(WidgetMutation mutation) {
+        return enqueue(new Command(Collections.singletonList(mutation))).get(0).get();
+    }
+
+    /**
+     * Ставит команду в очередь и ожидает ее применения
+     *
+     * @param command команда с изменениями
+     * @return результаты изменений команды
+     */
+    private List<MutationResult> enqueue(Command command) {
+        if (closed) {
+            throw new IllegalStateException("Store is closed");
+        }
+
+        try {
+            queue.put(command);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the mutation queue", e);
+        }
+
+        // Хранилище могло быть закрыто, пока команда ставилась в очередь
+        if (closed) {
+            rejectPending();
+        }
+
+        try {
+            return command.results.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Widget store writer failed", e.getCause());
+        }
+    }
+
+    /**
+     * Цикл пишущего потока: забирает изменения из очереди пакетами и применяет их. При завершении потока из-за
+     * {@link Error} хранилище закрывается, а текущий пакет и очередь завершаются ошибкой
+     */
+    private void drain() {
+        List<Command> batch = new ArrayList<>(maxBatchSize);
+        List<WidgetMutation> mutations = new ArrayList<>(maxBatchSize);
+
+        try {
+            while (!closed) {
+                try {
+                    batch.add(queue.take());
+                } catch (InterruptedException e) {
+                    break;
+                }
+                queue.drainTo(batch, maxBatchSize - 1);
+
+                batch.forEach(command -> mutations.addAll(command.mutations));
+                try {
+                    List<MutationResult> results = store.apply(mutations);
+                    int offset = 0;
+                    for (Command command : batch) {
+                        int next = offset + command.mutations.size();
+                        command.results.complete(new ArrayList<>(results.subList(offset, next)));
+                        offset = next;
+                    }
+                } catch (RuntimeException e) {
+                    log.error("Failed to apply batch of {} mutations", mutations.size(), e);
+                    batch.forEach(command -> command.results.completeExceptionally(e));
+                }
+
+                batch.clear();
+                mutations.clear();
+            }
+        } catch (Throwable e) {
+            // Новые изменения отклоняются до постановки в очередь, которую больше некому разбирать
+            closed = true;
+            log.error("Widget store writer failed, store is closed", e);
+            batch.forEach(command -> command.results.completeExceptionally(e));
+            throw e;
+        } finally {
+            rejectPending();
+        }
+    }
+
+    /**
+     * Завершает ошибкой все изменения, оставшиеся в очереди
+     */
+    private void rejectPending() {
+        List<Command> pending = new ArrayList<>();
+        queue.drainTo(pending);
+        pending.forEach(command -> command.results.completeExceptionally(new IllegalStateException("Store is closed")));
+    }
+
+    /**
+     * Изменения в очереди вместе с ожидающим их результатов вызовом
+     */
+    private static final class Command {
+        final List<WidgetMutation> mutations;
+        final CompletableFuture<List<MutationResult>> results = new CompletableFuture<>();
+
+        Command(List<WidgetMutation> mutations) {
+            this.mutations = mutations;
+        }
+    }
+}
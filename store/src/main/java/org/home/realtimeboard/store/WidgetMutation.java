@@ -0,0 +1,50 @@
+package org.home.realtimeboard.store;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.home.realtimeboard.model.Widget;
+
+/**
+ * Операция изменения хранилища виджетов, используется для пакетного применения изменений
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WidgetMutation {
+    /**
+     * Тип операции
+     */
+    public enum Type {
+        ADD, UPDATE, DELETE
+    }
+
+    /**
+     * Тип операции
+     */
+    private Type type;
+
+    /**
+     * Идентификатор изменяемого виджета, не используется при добавлении
+     */
+    private String id;
+
+    /**
+     * Данные виджета, не используются при удалении
+     */
+    private Widget widget;
+
+    public static WidgetMutation add(Widget widget) {
+        return new WidgetMutation(Type.ADD, null, widget);
+    }
+
+    public static WidgetMutation update(String id, Widget widget) {
+        return new WidgetMutation(Type.UPDATE, id, widget);
+    }
+
+    public static WidgetMutation delete(String id) {
+        return new WidgetMutation(Type.DELETE, id, null);
+    }
+}
@@ -2,14 +2,34 @@ package org.home.realtimeboard.store;
 
 import org.home.realtimeboard.model.Filter;
 import org.home.realtimeboard.model.Widget;
+import org.home.realtimeboard.model.WidgetCursor;
+import org.home.realtimeboard.store.feed.ChangeFeed;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.rest.webmvc.ResourceNotFoundException;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Consumer;
+
 /**
  * Хранилище виджетов, предоставляет базовые CRUDL операции
  */
 public interface WidgetStore {
+    /**
+     * Количество виджетов, читаемых за один раз при обходе через {@link WidgetStore#forEach(Filter, Consumer)}
+     */
+    int STREAM_CHUNK_SIZE = 256;
+
+    /**
+     * Версия хранилища, не отслеживающего изменения
+     */
+    long UNVERSIONED = -1;
+
     /**
      * Добавляет новый виджет, выпихивает наверх все виджеты с таким же или большим z-index при коллизии
      *
@@ -26,6 +46,23 @@ public interface WidgetStore {
      */
     Widget findOne(String id);
 
+    /**
+     * Ищет виджеты по указанным идентификаторам
+     *
+     * @param ids uuid виджетов
+     * @return найденные виджеты в порядке идентификаторов, не найденные виджеты пропускаются
+     */
+    default List<Widget> findAllById(Collection<String> ids) {
+        List<Widget> result = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Widget widget = findOne(id);
+            if (Objects.nonNull(widget)) {
+                result.add(widget);
+            }
+        }
+        return result;
+    }
+
     /**
      * Обновляет виджет с указанным id переданными данными, выпихивает наверх все виджеты с таким же или большим z-index при коллизии
      *
@@ -45,6 +82,93 @@ public interface WidgetStore {
      */
     Page<Widget> findAll(Filter filter, Pageable pageable);
 
+    /**
+     * Ищет виджеты, удовлетворяющие фильтрации, следующие в порядке возрастания z-index за указанным курсором.
+     * В отличие от {@link WidgetStore#findAll(Filter, Pageable)} не пропускает предыдущие виджеты и не подсчитывает
+     * их количество, а выпихивание между запросами страниц не приводит к пропускам или повторам, см.
+     * {@link WidgetCursor}
+     *
+     * @param filter фильтр для выборки виджетов
+     * @param after  курсор, после которого начинается страница, или {@code null} для первой страницы
+     * @param limit  максимальное количество виджетов
+     * @return виджеты в порядке возрастания z-index, страница последняя, если виджетов меньше {@code limit}
+     */
+    default List<Widget> findAfter(Filter filter, WidgetCursor after, int limit) {
+        // Обход продолжается после текущего z-index виджета курсора, а если он удален - после z-index из курсора
+        int zIndex = Integer.MIN_VALUE;
+        if (Objects.nonNull(after)) {
+            Widget widget = findOne(after.getId());
+            zIndex = Objects.nonNull(widget) ? widget.getZIndex() : after.getZIndex();
+        }
+        List<Widget> result = new ArrayList<>(limit);
+        Pageable pageable = PageRequest.of(0, STREAM_CHUNK_SIZE);
+        Page<Widget> page;
+        do {
+            page = findAll(filter, pageable);
+            for (Widget widget : page) {
+                if (widget.getZIndex() > zIndex) {
+                    result.add(widget);
+                    if (result.size() == limit) {
+                        return result;
+                    }
+                }
+            }
+            pageable = pageable.next();
+        } while (page.hasNext());
+        return result;
+    }
+
+    /**
+     * Оценивает количество виджетов, удовлетворяющих фильтрации, когда точное количество не требуется, например для
+     * отображения. Оценка может быть быстрее подсчета в {@link WidgetStore#findAll(Filter, Pageable)}
+     *
+     * @param filter фильтр для выборки виджетов
+     * @return точное или приблизительное количество виджетов
+     */
+    default long estimateCount(Filter filter) {
+        return findAll(filter, PageRequest.of(0, 1)).getTotalElements();
+    }
+
+    /**
+     * Обходит виджеты, удовлетворяющие фильтрации, в порядке возрастания z-index, не собирая их в одну коллекцию.
+     * Виджеты читаются порциями, каждая порция согласована, но весь обход может затронуть несколько версий
+     * хранилища: виджеты, измененные во время обхода, могут быть пропущены или встретиться повторно
+     *
+     * @param filter фильтр для выборки виджетов
+     * @param action обработчик виджетов
+     */
+    default void forEach(Filter filter, Consumer<? super Widget> action) {
+        Pageable pageable = PageRequest.of(0, STREAM_CHUNK_SIZE);
+        Page<Widget> page;
+        do {
+            page = findAll(filter, pageable);
+            page.forEach(action);
+            pageable = pageable.next();
+        } while (page.hasNext());
+    }
+
+    /**
+     * Проверяет, занят ли указанный z-index каким-либо виджетом, т.е. вызовет ли виджет с этим z-index выпихивание
+     *
+     * @param zIndex z-index
+     * @return факт наличия виджета с указанным z-index
+     */
+    default boolean containsZIndex(int zIndex) {
+        Filter filter = Filter.builder().build();
+        Pageable pageable = PageRequest.of(0, STREAM_CHUNK_SIZE);
+        Page<Widget> page;
+        do {
+            page = findAll(filter, pageable);
+            for (Widget widget : page) {
+                if (widget.getZIndex() >= zIndex) {
+                    return widget.getZIndex() == zIndex;
+                }
+            }
+            pageable = pageable.next();
+        } while (page.hasNext());
+        return false;
+    }
+
     /**
      * Удаляет виджет с указанным идентификатором
      *
@@ -52,4 +176,61 @@ public interface WidgetStore {
      * @throws ResourceNotFoundException если виджет с указанным идентификатором не был найден
      */
     void delete(String id);
+
+    /**
+     * Возвращает текущую версию хранилища. Версия увеличивается при каждом изменении, поэтому совпадение версий
+     * означает, что содержимое хранилища не менялось
+     *
+     * @return версия хранилища или {@link WidgetStore#UNVERSIONED}, если хранилище не отслеживает изменения
+     */
+    default long getVersion() {
+        return UNVERSIONED;
+    }
+
+    /**
+     * Возвращает ленту изменений хранилища
+     *
+     * @return лента изменений или {@link Optional#empty()}, если хранилище не записывает изменения
+     */
+    default Optional<ChangeFeed> getChangeFeed() {
+        return Optional.empty();
+    }
+
+    /**
+     * Возвращает начальную версию для нового хранилища. Версия строится от текущего времени, поэтому версии
+     * хранилища, пересозданного после перезапуска, продолжают расти, и ранее выданные версии не совпадают с новыми
+     */
+    static long initialVersion() {
+        return System.currentTimeMillis() << 20;
+    }
+
+    /**
+     * Применяет пакет изменений. Результат эквивалентен последовательному применению каждого изменения, ошибка
+     * применения одного изменения не прерывает применение остальных
+     *
+     * @param mutations список изменений в порядке применения
+     * @return результаты изменений в том же порядке
+     */
+    default List<MutationResult> apply(List<WidgetMutation> mutations) {
+        List<MutationResult> results = new ArrayList<>(mutations.size());
+        for (WidgetMutation mutation : mutations) {
+            try {
+                switch (mutation.getType()) {
+                    case ADD:
+                        results.add(MutationResult.success(add(mutation.getWidget())));
+                        break;
+                    case UPDATE:
+                        results.add(MutationResult.success(update(mutation.getId(), mutation.getWidget())));
+                        break;
+                    case DELETE:
+                        delete(mutation.getId());
+                        results.add(MutationResult.success(null));
+                        break;
+                }
+            } catch (RuntimeException e) {
+                results.add(MutationResult.failure(e));
+            }
+        }
+        return results;
+    }
 }
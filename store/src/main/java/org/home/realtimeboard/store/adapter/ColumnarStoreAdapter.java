@@ -0,0 +1,418 @@
+package org.home.realtimeboard.store.adapter;
+
+import org.home.realtimeboard.model.Filter;
+import org.home.realtimeboard.model.Widget;
+import org.home.realtimeboard.store.id.WidgetId;
+import org.home.realtimeboard.store.index.LongPairIntHashMap;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Хранилище с поколоночным размещением данных (struct of arrays). Поля виджетов хранятся в параллельных примитивных
+ * массивах, индексируемых номером слота, освободившиеся при удалении слоты переиспользуются. Экземпляры
+ * {@link Widget} создаются только при выдаче результатов, поэтому хранилище всегда возвращает копии виджетов.
+ * <p>
+ * Порядок по z-index поддерживается отдельным массивом слотов, отсортированным по z-index: выпихивание увеличивает
+ * z-index'ы непрерывного хвоста этого массива, а выборка по фильтру и подсчет количества выполняются по примитивным
+ * колонкам без создания виджетов. Виджеты с незаполненными координатами или размерами не попадают в выборку по
+ * фильтру.
+ * <p>
+ * Идентификаторы хранятся в двух long-колонках, индекс по идентификатору - {@link LongPairIntHashMap} из
+ * идентификатора в номер слота. Поэтому хранилище принимает только идентификаторы в формате {@link WidgetId}.
+ * <p>
+ * Дата последней модификации хранится в наносекундах от начала эпохи, что ограничивает допустимые даты
+ * 1677-2262 годами.
+ */
+public class ColumnarStoreAdapter implements InnerStoreAdapter {
+    // Начальная емкость колонок
+    private static final int INITIAL_CAPACITY = 64;
+    // Количество слотов, просматриваемых за один захват блокировки при потоковом обходе хранилища
+    private static final int CHUNK_SIZE = 256;
+
+    // Биты маски незаполненных полей
+    private static final byte NULL_X = 1;
+    private static final byte NULL_Y = 1 << 1;
+    private static final byte NULL_WIDTH = 1 << 2;
+    private static final byte NULL_HEIGHT = 1 << 3;
+    private static final byte NULL_LAST_MODIFIED = 1 << 4;
+    private static final byte NULL_VERSION = 1 << 5;
+    private static final byte NULL_BOUNDS = NULL_X | NULL_Y | NULL_WIDTH | NULL_HEIGHT;
+
+    // Колонки не потокобезопасны, поэтому доступ к ним разграничен блокировкой
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final LongPairIntHashMap index = new LongPairIntHashMap();
+
+    // Колонки, индексируемые номером слота
+    private long[] idHighs = new long[INITIAL_CAPACITY];
+    private long[] idLows = new long[INITIAL_CAPACITY];
+    private int[] x = new int[INITIAL_CAPACITY];
+    private int[] y = new int[INITIAL_CAPACITY];
+    private int[] width = new int[INITIAL_CAPACITY];
+    private int[] height = new int[INITIAL_CAPACITY];
+    private int[] zIndex = new int[INITIAL_CAPACITY];
+    private long[] lastModified = new long[INITIAL_CAPACITY];
+    private long[] versions = new long[INITIAL_CAPACITY];
+    private byte[] nulls = new byte[INITIAL_CAPACITY];
+    // Количество когда-либо занятых слотов
+    private int slotCount;
+
+    // Стек освободившихся слотов
+    private int[] freeSlots = new int[INITIAL_CAPACITY];
+    private int freeCount;
+
+    // Занятые слоты в порядке возрастания z-index
+    private int[] order = new int[INITIAL_CAPACITY];
+    private int size;
+
+    @Override
+    public void add(Widget widget) {
+        WidgetId id = WidgetId.parse(widget.getId());
+        if (Objects.isNull(id)) {
+            throw new IllegalArgumentException("Widget id must be in UUID format: " + widget.getId());
+        }
+
+        lock.writeLock().lock();
+        try {
+            // Как и SortedSet, хранилище не хранит виджеты с одинаковым z-index'ом
+            int position = lowerBound(widget.getZIndex());
+            if ((position < size) && (zIndex[order[position]] == widget.getZIndex())) {
+                return;
+            }
+
+            int slot = allocate();
+            write(slot, id, widget);
+            index.put(id.getMostSignificantBits(), id.getLeastSignificantBits(), slot);
+
+            if (size == order.length) {
+                order = Arrays.copyOf(order, size * 2);
+            }
+            System.arraycopy(order, position, order, position + 1, size - position);
+            order[position] = slot;
+            size++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Widget> get(String id) {
+        WidgetId widgetId = WidgetId.parse(id);
+        if (Objects.isNull(widgetId)) {
+            return Optional.empty();
+        }
+
+        lock.readLock().lock();
+        try {
+            int slot = index.get(widgetId.getMostSignificantBits(), widgetId.getLeastSignificantBits());
+            return slot == LongPairIntHashMap.NO_VALUE ? Optional.empty() : Optional.of(materialize(slot));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Widget widget) {
+        WidgetId id = WidgetId.parse(widget.getId());
+        if (Objects.isNull(id)) {
+            return false;
+        }
+
+        lock.writeLock().lock();
+        try {
+            int slot = index.remove(id.getMostSignificantBits(), id.getLeastSignificantBits());
+            if (slot == LongPairIntHashMap.NO_VALUE) {
+                return false;
+            }
+
+            int position = lowerBound(zIndex[slot]);
+            System.arraycopy(order, position + 1, order, position, size - position - 1);
+            size--;
+
+            freeSlots[freeCount++] = slot;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Stream<Widget> stream() {
+        return stream(0, null);
+    }
+
+    @Override
+    public Stream<Widget> stream(Filter filter) {
+        return filter.isEmpty() ? stream() : stream(0, toSlotPredicate(filter));
+    }
+
+    @Override
+    public Stream<Widget> streamFrom(long offset) {
+        return stream(offset, null);
+    }
+
+    @Override
+    public long count(Filter filter) {
+        if (filter.isEmpty()) {
+            return size();
+        }
+
+        IntPredicate predicate = toSlotPredicate(filter);
+        lock.readLock().lock();
+        try {
+            long count = 0;
+            for (int i = 0; i < size; i++) {
+                if (predicate.test(order[i])) {
+                    count++;
+                }
+            }
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int pushOut(Integer zIndex, String pusherUuid) {
+        lock.writeLock().lock();
+        try {
+            // Массив упорядочен по z-index и выпихивание не меняет порядка, так что сдвигается непрерывный хвост массива
+            int position = lowerBound(zIndex);
+            if ((position < size) && (this.zIndex[order[position]] == zIndex)) {
+                for (int i = position; i < size; i++) {
+                    this.zIndex[order[i]]++;
+                }
+                return size - position;
+            }
+            return 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void pushOutAll(PushOutSequence sequence) {
+        if (sequence.isEmpty()) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (int i = lowerBound(sequence.min()); i < size; i++) {
+                zIndex[order[i]] = sequence.apply(zIndex[order[i]]);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean containsZIndex(int zIndex) {
+        lock.readLock().lock();
+        try {
+            int position = lowerBound(zIndex);
+            return (position < size) && (this.zIndex[order[position]] == zIndex);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean isSortedByZIndex() {
+        return true;
+    }
+
+    /**
+     * Виджеты создаются из колонок при каждой выдаче
+     */
+    @Override
+    public boolean returnsCopies() {
+        return true;
+    }
+
+    @Override
+    public Integer getMaxZIndex() {
+        lock.readLock().lock();
+        try {
+            return size == 0 ? 0 : zIndex[order[size - 1]];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Формирует поток виджетов, отсортированных по z-index. Колонки просматриваются пачками, каждая под отдельным
+     * захватом блокировки, виджеты создаются только для слотов, удовлетворяющих условию
+     *
+     * @param offset    количество пропускаемых слотов
+     * @param predicate условие отбора слотов или {@code null}
+     */
+    private Stream<Widget> stream(long offset, IntPredicate predicate) {
+        Iterator<Widget> iterator = new Iterator<Widget>() {
+            private final Deque<Widget> buffer = new ArrayDeque<>();
+            private long position = offset;
+            private boolean exhausted;
+
+            @Override
+            public boolean hasNext() {
+                while (buffer.isEmpty() && !exhausted) {
+                    fetch();
+                }
+                return !buffer.isEmpty();
+            }
+
+            @Override
+            public Widget next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return buffer.poll();
+            }
+
+            private void fetch() {
+                lock.readLock().lock();
+                try {
+                    if (position >= size) {
+                        exhausted = true;
+                        return;
+                    }
+
+                    int end = (int) Math.min(position + CHUNK_SIZE, size);
+                    for (int i = (int) position; i < end; i++) {
+                        if (Objects.isNull(predicate) || predicate.test(order[i])) {
+                            buffer.add(materialize(order[i]));
+                        }
+                    }
+                    position = end;
+                } finally {
+                    lock.readLock().unlock();
+                }
+            }
+        };
+
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Преобразует фильтр в условие отбора слотов, проверяемое по колонкам. Вызывается без блокировки, само условие
+     * должно проверяться под блокировкой на чтение
+     */
+    private IntPredicate toSlotPredicate(Filter filter) {
+        int left = filter.getLeft();
+        int right = filter.getRight();
+        int top = filter.getTop();
+        int bottom = filter.getBottom();
+
+        return slot -> ((nulls[slot] & NULL_BOUNDS) == 0) &&
+                (x[slot] >= left) && (x[slot] + width[slot] <= right) &&
+                (y[slot] >= top) && (y[slot] + height[slot] <= bottom);
+    }
+
+    /**
+     * Ищет позицию в массиве порядка, начиная с которой z-index'ы не меньше указанного
+     */
+    private int lowerBound(int zIndex) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (this.zIndex[order[middle]] < zIndex) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Выделяет слот, переиспользуя освободившиеся
+     */
+    private int allocate() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+
+        if (slotCount == zIndex.length) {
+            int capacity = slotCount * 2;
+            idHighs = Arrays.copyOf(idHighs, capacity);
+            idLows = Arrays.copyOf(idLows, capacity);
+            x = Arrays.copyOf(x, capacity);
+            y = Arrays.copyOf(y, capacity);
+            width = Arrays.copyOf(width, capacity);
+            height = Arrays.copyOf(height, capacity);
+            zIndex = Arrays.copyOf(zIndex, capacity);
+            lastModified = Arrays.copyOf(lastModified, capacity);
+            versions = Arrays.copyOf(versions, capacity);
+            nulls = Arrays.copyOf(nulls, capacity);
+            freeSlots = Arrays.copyOf(freeSlots, capacity);
+        }
+        return slotCount++;
+    }
+
+    private void write(int slot, WidgetId id, Widget widget) {
+        byte mask = 0;
+        mask |= column(x, slot, widget.getX(), NULL_X);
+        mask |= column(y, slot, widget.getY(), NULL_Y);
+        mask |= column(width, slot, widget.getWidth(), NULL_WIDTH);
+        mask |= column(height, slot, widget.getHeight(), NULL_HEIGHT);
+
+        Instant modified = widget.getLastModified();
+        if (Objects.isNull(modified)) {
+            mask |= NULL_LAST_MODIFIED;
+        } else {
+            lastModified[slot] = modified.getEpochSecond() * 1_000_000_000L + modified.getNano();
+        }
+        if (Objects.isNull(widget.getVersion())) {
+            mask |= NULL_VERSION;
+        } else {
+            versions[slot] = widget.getVersion();
+        }
+
+        idHighs[slot] = id.getMostSignificantBits();
+        idLows[slot] = id.getLeastSignificantBits();
+        zIndex[slot] = widget.getZIndex();
+        nulls[slot] = mask;
+    }
+
+    private static byte column(int[] column, int slot, Integer value, byte nullBit) {
+        if (Objects.isNull(value)) {
+            return nullBit;
+        }
+        column[slot] = value;
+        return 0;
+    }
+
+    /**
+     * Создает виджет по данным слота
+     */
+    private Widget materialize(int slot) {
+        byte mask = nulls[slot];
+        return Widget.builder()
+                .id(new WidgetId(idHighs[slot], idLows[slot]).toString())
+                .x((mask & NULL_X) == 0 ? x[slot] : null)
+                .y((mask & NULL_Y) == 0 ? y[slot] : null)
+                .width((mask & NULL_WIDTH) == 0 ? width[slot] : null)
+                .height((mask & NULL_HEIGHT) == 0 ? height[slot] : null)
+                .zIndex(zIndex[slot])
+                .lastModified((mask & NULL_LAST_MODIFIED) == 0 ? Instant.ofEpochSecond(0, lastModified[slot]) : null)
+                .version((mask & NULL_VERSION) == 0 ? versions[slot] : null)
+                .build();
+    }
+}
@@ -1,9 +1,12 @@
 package org.home.realtimeboard.store.adapter;
 
+import org.home.realtimeboard.model.Filter;
 import org.home.realtimeboard.model.Widget;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.stream.Stream;
 
@@ -36,6 +39,24 @@ public class CombinedStoreAdapter implements InnerStoreAdapter {
         }
     }
 
+    @Override
+    public void addAll(List<Widget> widgets) {
+        if (index instanceof ConcurrentMap) {
+            // Индекс по id заполняется параллельно, пока дерево заполняется в порядке z-index
+            CompletableFuture<Void> indexing = CompletableFuture.runAsync(
+                    () -> widgets.parallelStream().forEach(w -> index.put(w.getId(), w)));
+            store.addAll(widgets);
+            indexing.join();
+        } else {
+            store.addAll(widgets);
+            widgets.forEach(w -> index.put(w.getId(), w));
+        }
+        if (!widgets.isEmpty()) {
+            Integer last = widgets.get(widgets.size() - 1).getZIndex();
+            maxZIndex = Objects.isNull(maxZIndex) ? last : Math.max(maxZIndex, last);
+        }
+    }
+
     @Override
     public Optional<Widget> get(String id) {
         return Optional.ofNullable(this.index.get(id));
@@ -58,11 +79,23 @@ public class CombinedStoreAdapter implements InnerStoreAdapter {
     }
 
     @Override
-    public void pushOut(Integer zIndex, String pusherUuid) {
+    public Stream<Widget> streamAfter(int zIndex, Filter filter) {
+        if (zIndex == Integer.MAX_VALUE) {
+            return Stream.empty();
+        }
+
+        // Обход начинается сразу с первого виджета после указанного z-index, см. pushOut
+        Stream<Widget> stream = store.tailSet(Widget.builder().zIndex(zIndex + 1).build()).stream();
+        return filter.isEmpty() ? stream : stream.filter(filter.toPredicate());
+    }
+
+    @Override
+    public int pushOut(Integer zIndex, String pusherUuid) {
         // Бинарное дерево поиска построено по z-index, именно по нему и происходит сравнение сущностей в этой коллекции,
         // так что можно создать "поисковую заглушку"
         // Решение не самое чистое, но рабочее
         boolean hasCollision = store.contains(Widget.builder().zIndex(zIndex).build());
+        int[] shifted = {0};
 
         // Т.к. дерево поиска построено по z-index, то для изменения его значения нужно сначала удалить элемент из дерева,
         // обновить и снова вставить, чтобы структура дерева не сломалась. Но увеличение больших ключей, равно как и
@@ -72,12 +105,36 @@ public class CombinedStoreAdapter implements InnerStoreAdapter {
             store.forEach(w -> {
                 if ((w.getZIndex() >= zIndex)) {
                     w.pushOut();
+                    shifted[0]++;
                 }
                 if (w.getZIndex() > maxZIndex) {
                     maxZIndex = w.getZIndex();
                 }
             });
         }
+        return shifted[0];
+    }
+
+    @Override
+    public void pushOutAll(PushOutSequence sequence) {
+        if (sequence.isEmpty()) {
+            return;
+        }
+
+        // Как и в pushOut, увеличение z-index'ов без изменения их взаимного порядка не ломает структуру дерева, а обход
+        // начинается сразу с первого затрагиваемого виджета
+        store.tailSet(Widget.builder().zIndex(sequence.min()).build())
+                .forEach(w -> w.setZIndex(sequence.apply(w.getZIndex())));
+        // Кешированный максимум не уменьшается при удалении виджетов, поэтому, как и в pushOut, он не сдвигается, а
+        // только поднимается до нового наибольшего z-index
+        if (Objects.nonNull(maxZIndex) && !store.isEmpty()) {
+            maxZIndex = Math.max(maxZIndex, store.last().getZIndex());
+        }
+    }
+
+    @Override
+    public boolean containsZIndex(int zIndex) {
+        return store.contains(Widget.builder().zIndex(zIndex).build());
     }
 
     @Override
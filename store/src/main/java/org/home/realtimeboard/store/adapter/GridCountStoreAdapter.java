@@ -0,0 +1,195 @@
+package org.home.realtimeboard.store.adapter;
+
+import org.home.realtimeboard.model.Filter;
+import org.home.realtimeboard.model.Widget;
+import org.home.realtimeboard.store.index.GridHistogram;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Хранилище, подсчитывающее количество виджетов в области по сеточной гистограмме ({@link GridHistogram}) вместо
+ * перебора всех виджетов. Виджеты хранятся и выбираются внутренним хранилищем, гистограмма обновляется при каждом
+ * добавлении и удалении.
+ * <p>
+ * Внутреннее хранилище должно быть отсортировано по z-index: тогда обновление виджета всегда выполняется удалением и
+ * повторной вставкой, см. {@link InnerStoreAdapter#isSortedByZIndex()}, и гистограмма видит изменение координат.
+ * Выпихивание меняет только z-index'ы и гистограмму не затрагивает. Виджеты без заданных координат или размеров в
+ * гистограмму не попадают, т.к. не могут удовлетворять ни одному фильтру.
+ */
+public class GridCountStoreAdapter implements InnerStoreAdapter {
+    public static final int DEFAULT_TILE_SIZE = 256;
+
+    private final InnerStoreAdapter store;
+
+    // Гистограмма не потокобезопасна, поэтому доступ к ней разграничен блокировкой, см. RTreeStoreAdapter
+    private final ReadWriteLock histogramLock = new ReentrantReadWriteLock();
+    private final GridHistogram<Widget> histogram;
+
+    public GridCountStoreAdapter() {
+        this(new CombinedStoreAdapter(), DEFAULT_TILE_SIZE);
+    }
+
+    /**
+     * @param store    внутреннее хранилище, отсортированное по z-index
+     * @param tileSize размер стороны ячейки гистограммы
+     */
+    public GridCountStoreAdapter(InnerStoreAdapter store, int tileSize) {
+        if (!store.isSortedByZIndex()) {
+            throw new IllegalArgumentException("Store must be sorted by z-index");
+        }
+        this.store = store;
+        this.histogram = new GridHistogram<>(tileSize);
+    }
+
+    @Override
+    public void add(Widget widget) {
+        store.add(widget);
+        if (hasBounds(widget)) {
+            histogramLock.writeLock().lock();
+            try {
+                insert(widget);
+            } finally {
+                histogramLock.writeLock().unlock();
+            }
+        }
+    }
+
+    @Override
+    public void addAll(List<Widget> widgets) {
+        store.addAll(widgets);
+        histogramLock.writeLock().lock();
+        try {
+            widgets.stream().filter(GridCountStoreAdapter::hasBounds).forEach(this::insert);
+        } finally {
+            histogramLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Widget> get(String id) {
+        return store.get(id);
+    }
+
+    @Override
+    public boolean remove(Widget widget) {
+        // Из гистограммы удаляется именно сохраненный экземпляр, т.к. для удаления может быть передана его копия
+        Optional<Widget> persisted = store.get(widget.getId());
+        if (!persisted.isPresent()) {
+            return false;
+        }
+
+        Widget removed = persisted.get();
+        if (hasBounds(removed)) {
+            histogramLock.writeLock().lock();
+            try {
+                histogram.remove(removed.getX(), removed.getY(), removed.getX() + removed.getWidth(),
+                        removed.getY() + removed.getHeight(), removed);
+            } finally {
+                histogramLock.writeLock().unlock();
+            }
+        }
+        return store.remove(removed);
+    }
+
+    @Override
+    public int size() {
+        return store.size();
+    }
+
+    @Override
+    public Stream<Widget> stream() {
+        return store.stream();
+    }
+
+    @Override
+    public Stream<Widget> stream(Filter filter) {
+        return store.stream(filter);
+    }
+
+    @Override
+    public long count(Filter filter) {
+        if (filter.isEmpty()) {
+            return size();
+        }
+
+        histogramLock.readLock().lock();
+        try {
+            return histogram.countContained(filter.getLeft(), filter.getTop(), filter.getRight(), filter.getBottom());
+        } finally {
+            histogramLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long estimateCount(Filter filter) {
+        if (filter.isEmpty()) {
+            return size();
+        }
+
+        histogramLock.readLock().lock();
+        try {
+            return histogram.estimateContained(filter.getLeft(), filter.getTop(), filter.getRight(),
+                    filter.getBottom());
+        } finally {
+            histogramLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Stream<Widget> streamFrom(long offset) {
+        return store.streamFrom(offset);
+    }
+
+    @Override
+    public Stream<Widget> streamAfter(int zIndex, Filter filter) {
+        return store.streamAfter(zIndex, filter);
+    }
+
+    @Override
+    public int pushOut(Integer zIndex, String pusherUuid) {
+        return store.pushOut(zIndex, pusherUuid);
+    }
+
+    @Override
+    public void pushOutAll(PushOutSequence sequence) {
+        store.pushOutAll(sequence);
+    }
+
+    @Override
+    public boolean containsZIndex(int zIndex) {
+        return store.containsZIndex(zIndex);
+    }
+
+    @Override
+    public boolean isSortedByZIndex() {
+        return true;
+    }
+
+    @Override
+    public boolean returnsCopies() {
+        return store.returnsCopies();
+    }
+
+    @Override
+    public Integer getMaxZIndex() {
+        return store.getMaxZIndex();
+    }
+
+    private void insert(Widget widget) {
+        histogram.insert(widget.getX(), widget.getY(), widget.getX() + widget.getWidth(),
+                widget.getY() + widget.getHeight(), widget);
+    }
+
+    /**
+     * Проверяет, заданы ли у виджета координаты и размеры
+     */
+    private static boolean hasBounds(Widget widget) {
+        return Objects.nonNull(widget.getX()) && Objects.nonNull(widget.getY()) &&
+                Objects.nonNull(widget.getWidth()) && Objects.nonNull(widget.getHeight());
+    }
+}
@@ -1,7 +1,9 @@
 package org.home.realtimeboard.store.adapter;
 
+import org.home.realtimeboard.model.Filter;
 import org.home.realtimeboard.model.Widget;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.stream.Stream;
 
@@ -16,6 +18,15 @@ public interface InnerStoreAdapter {
      */
     void add(Widget widget);
 
+    /**
+     * Добавляет виджеты в пустое хранилище, используется при восстановлении хранилища из снимка
+     *
+     * @param widgets виджеты с уникальными z-index'ами в порядке возрастания z-index
+     */
+    default void addAll(List<Widget> widgets) {
+        widgets.forEach(this::add);
+    }
+
     /**
      * Ищет виджет с указанным идентификатором в хранилище
      *
@@ -42,13 +53,94 @@ public interface InnerStoreAdapter {
      */
     Stream<Widget> stream();
 
+    /**
+     * Возвращает поток виджетов, удовлетворяющих фильтру. Порядок элементов потока такой же, как и у
+     * {@link InnerStoreAdapter#stream()}
+     *
+     * @param filter фильтр для выборки виджетов
+     */
+    default Stream<Widget> stream(Filter filter) {
+        return filter.isEmpty() ? stream() : stream().filter(filter.toPredicate());
+    }
+
+    /**
+     * Подсчитывает количество виджетов, удовлетворяющих фильтру
+     *
+     * @param filter фильтр для выборки виджетов
+     */
+    default long count(Filter filter) {
+        return filter.isEmpty() ? size() : stream(filter).count();
+    }
+
+    /**
+     * Оценивает количество виджетов, удовлетворяющих фильтру, когда точное количество не требуется. По умолчанию
+     * подсчитывает точно
+     *
+     * @param filter фильтр для выборки виджетов
+     */
+    default long estimateCount(Filter filter) {
+        return count(filter);
+    }
+
+    /**
+     * Возвращает поток виджетов, пропуская указанное количество первых элементов. Порядок элементов потока такой же,
+     * как и у {@link InnerStoreAdapter#stream()}
+     *
+     * @param offset количество пропускаемых элементов
+     */
+    default Stream<Widget> streamFrom(long offset) {
+        return stream().skip(offset);
+    }
+
+    /**
+     * Возвращает поток виджетов с z-index больше указанного, удовлетворяющих фильтру. Порядок элементов потока такой
+     * же, как и у {@link InnerStoreAdapter#stream()}
+     *
+     * @param zIndex z-index, после которого начинается поток
+     * @param filter фильтр для выборки виджетов
+     */
+    default Stream<Widget> streamAfter(int zIndex, Filter filter) {
+        return stream(filter).filter(w -> w.getZIndex() > zIndex);
+    }
+
     /**
      * Выпихивает вышележащие виджеты в случаее коллизии
      *
      * @param zIndex     z-index нового виджета
      * @param pusherUuid uuid обновленного виджета для исключения его из обработки
+     * @return количество выпихнутых виджетов, {@code 0} при отсутствии коллизии
+     */
+    int pushOut(Integer zIndex, String pusherUuid);
+
+    /**
+     * Применяет последовательность выпихиваний за один проход по хранилищу. В отличие от
+     * {@link InnerStoreAdapter#pushOut(Integer, String)} коллизии не проверяются, каждый порог последовательности
+     * выпихивает виджеты безусловно.
+     * <p>
+     * Реализация по умолчанию изменяет z-index'ы сохраненных экземпляров виджетов, не меняя их взаимного порядка.
+     * Хранилища, возвращающие копии виджетов или кэширующие максимальный z-index, должны переопределить метод
+     *
+     * @param sequence последовательность выпихиваний
+     */
+    default void pushOutAll(PushOutSequence sequence) {
+        if (sequence.isEmpty()) {
+            return;
+        }
+
+        int min = sequence.min();
+        stream().forEach(w -> {
+            if (w.getZIndex() >= min) {
+                w.setZIndex(sequence.apply(w.getZIndex()));
+            }
+        });
+    }
+
+    /**
+     * Проверяет наличие в хранилище виджета с указанным z-index
      */
-    void pushOut(Integer zIndex, String pusherUuid);
+    default boolean containsZIndex(int zIndex) {
+        return stream().anyMatch(w -> w.getZIndex() == zIndex);
+    }
 
     /**
      * Является ли поток виджетов, переданный в {@link InnerStoreAdapter#stream()} отсортированным по zIndex
@@ -56,7 +148,15 @@ public interface InnerStoreAdapter {
      * обновления и повторная его вставка после).
      */
     boolean isSortedByZIndex();
-    
+
+    /**
+     * Возвращает ли хранилище из {@link InnerStoreAdapter#get(String)} и потоков отдельные копии виджетов, изменение
+     * которых не затрагивает хранилище. Такие виджеты выдаются клиентам без повторного копирования
+     */
+    default boolean returnsCopies() {
+        return false;
+    }
+
     /**
      * Ищет максимальный z-index а хранилище
      *
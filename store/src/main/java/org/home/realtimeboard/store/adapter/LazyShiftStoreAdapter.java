@@ -0,0 +1,208 @@
+package org.home.realtimeboard.store.adapter;
+
+import org.home.realtimeboard.model.Filter;
+import org.home.realtimeboard.model.Widget;
+import org.home.realtimeboard.store.index.LazyShiftTreap;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Хранилище на основе {@link LazyShiftTreap}, хранящее z-index'ы виджетов неявно, в виде ключей дерева с отложенным
+ * сдвигом. Выпихивание при коллизии выполняется за O(log n), вместо перебора всех вышележащих виджетов.
+ * <p>
+ * Т.к. z-index сохраненного экземпляра виджета не обновляется при выпихивании, хранилище всегда возвращает копии
+ * виджетов с актуальным z-index'ом. Удаление выполняется по id, поэтому для удаления можно передавать копию.
+ */
+public class LazyShiftStoreAdapter implements InnerStoreAdapter {
+    // Количество виджетов, копируемых из дерева за один захват блокировки при потоковом обходе хранилища
+    private static final int CHUNK_SIZE = 256;
+
+    // Дерево не потокобезопасно, поэтому доступ к нему и к индексу его узлов разграничен блокировкой
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, LazyShiftTreap.Node<Widget>> index = new HashMap<>();
+    private final LazyShiftTreap<Widget> store = new LazyShiftTreap<>();
+
+    @Override
+    public void add(Widget widget) {
+        lock.writeLock().lock();
+        try {
+            // Как и SortedSet, дерево не хранит виджеты с одинаковым z-index'ом
+            if (!store.containsKey(widget.getZIndex())) {
+                index.put(widget.getId(), store.insert(widget.getZIndex(), widget));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Widget> get(String id) {
+        lock.readLock().lock();
+        try {
+            LazyShiftTreap.Node<Widget> node = index.get(id);
+            return Objects.isNull(node) ? Optional.empty() : Optional.of(materialize(node.getValue(), store.keyOf(node)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Widget widget) {
+        lock.writeLock().lock();
+        try {
+            LazyShiftTreap.Node<Widget> node = index.remove(widget.getId());
+            if (Objects.isNull(node)) {
+                return false;
+            }
+            store.remove(node);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return store.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Stream<Widget> stream() {
+        return stream(0, null);
+    }
+
+    @Override
+    public Stream<Widget> stream(Filter filter) {
+        // Фильтр проверяет только координаты, поэтому применяется до копирования виджетов
+        return filter.isEmpty() ? stream() : stream(0, filter.toPredicate());
+    }
+
+    @Override
+    public Stream<Widget> streamFrom(long offset) {
+        return stream(offset, null);
+    }
+
+    @Override
+    public int pushOut(Integer zIndex, String pusherUuid) {
+        lock.writeLock().lock();
+        try {
+            return store.containsKey(zIndex) ? store.shift(zIndex, 1) : 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void pushOutAll(PushOutSequence sequence) {
+        lock.writeLock().lock();
+        try {
+            // Пороги заданы в z-index'ах на момент применения, т.е. в ключах дерева после предыдущих сдвигов
+            for (int i = 0; i < sequence.size(); i++) {
+                store.shift(sequence.get(i), 1);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean containsZIndex(int zIndex) {
+        lock.readLock().lock();
+        try {
+            return store.containsKey(zIndex);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean isSortedByZIndex() {
+        return true;
+    }
+
+    /**
+     * Виджеты копируются при выдаче, чтобы получить актуальный z-index
+     */
+    @Override
+    public boolean returnsCopies() {
+        return true;
+    }
+
+    @Override
+    public Integer getMaxZIndex() {
+        lock.readLock().lock();
+        try {
+            return store.size() == 0 ? 0 : store.maxKey();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Формирует поток виджетов, отсортированных по z-index. Виджеты копируются из дерева пачками, каждая под отдельным
+     * захватом блокировки, так что долгий обход не блокирует запись
+     *
+     * @param offset    количество пропускаемых виджетов
+     * @param predicate условие отбора виджетов или {@code null}
+     */
+    private Stream<Widget> stream(long offset, Predicate<Widget> predicate) {
+        Iterator<Widget> iterator = new Iterator<Widget>() {
+            private final Deque<Widget> buffer = new ArrayDeque<>();
+            private long position = offset;
+            private boolean exhausted;
+
+            @Override
+            public boolean hasNext() {
+                while (buffer.isEmpty() && !exhausted) {
+                    fetch();
+                }
+                return !buffer.isEmpty();
+            }
+
+            @Override
+            public Widget next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return buffer.poll();
+            }
+
+            private void fetch() {
+                lock.readLock().lock();
+                try {
+                    if (position >= store.size()) {
+                        exhausted = true;
+                        return;
+                    }
+                    position += store.forEach((int) position, CHUNK_SIZE, (widget, zIndex) -> {
+                        if (Objects.isNull(predicate) || predicate.test(widget)) {
+                            buffer.add(materialize(widget, zIndex));
+                        }
+                    });
+                } finally {
+                    lock.readLock().unlock();
+                }
+            }
+        };
+
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Формирует копию сохраненного виджета с актуальным z-index'ом
+     */
+    private static Widget materialize(Widget widget, int zIndex) {
+        return widget.toBuilder().zIndex(zIndex).build();
+    }
+}
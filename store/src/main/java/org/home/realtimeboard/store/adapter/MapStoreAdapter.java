@@ -52,20 +52,42 @@ public class MapStoreAdapter implements InnerStoreAdapter {
     }
 
     @Override
-    public void pushOut(Integer zIndex, String pusherUuid) {
+    public int pushOut(Integer zIndex, String pusherUuid) {
         boolean hasCollision = store.values().stream().anyMatch(w -> Objects.equals(w.getZIndex(), zIndex) &&
                 !Objects.equals(w.getId(), pusherUuid));
 
+        int[] shifted = {0};
         if (hasCollision) {
             store.values().forEach(w -> {
                 if ((w.getZIndex() >= zIndex) && !Objects.equals(w.getId(), pusherUuid)) {
                     w.pushOut();
+                    shifted[0]++;
                 }
                 if (w.getZIndex() > maxZIndex) {
                     maxZIndex = w.getZIndex();
                 }
             });
         }
+        return shifted[0];
+    }
+
+    @Override
+    public void pushOutAll(PushOutSequence sequence) {
+        if (sequence.isEmpty()) {
+            return;
+        }
+
+        // Кешированный максимум не уменьшается при удалении виджетов, поэтому, как и в pushOut, он не сдвигается, а
+        // только поднимается до нового наибольшего z-index выпихнутых виджетов
+        int min = sequence.min();
+        store.values().forEach(w -> {
+            if (w.getZIndex() >= min) {
+                w.setZIndex(sequence.apply(w.getZIndex()));
+                if (Objects.nonNull(maxZIndex) && (w.getZIndex() > maxZIndex)) {
+                    maxZIndex = w.getZIndex();
+                }
+            }
+        });
     }
 
     @Override
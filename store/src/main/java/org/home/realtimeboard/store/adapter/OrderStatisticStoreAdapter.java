@@ -0,0 +1,117 @@
+package org.home.realtimeboard.store.adapter;
+
+import org.home.realtimeboard.model.Filter;
+import org.home.realtimeboard.model.Widget;
+import org.home.realtimeboard.store.index.OrderStatisticTree;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Хранилище на основе дерева порядковых статистик. Как и в {@link CombinedStoreAdapter}, виджеты хранятся
+ * отсортированными по zIndex, а {@link Map} используется как индекс для быстрого доступа к элементам по id.
+ * <p>
+ * В отличие от {@link java.util.concurrent.ConcurrentSkipListSet}, {@link OrderStatisticTree} знает размеры своих
+ * поддеревьев, поэтому размер хранилища возвращается без обхода, переход к началу страницы выполняется за O(log n),
+ * а при выпихивании перебираются только виджеты, лежащие выше коллизии.
+ *
+ * @see CombinedStoreAdapter
+ */
+public class OrderStatisticStoreAdapter implements InnerStoreAdapter {
+    private Map<String, Widget> index;
+    private OrderStatisticTree<Widget> store;
+
+    public OrderStatisticStoreAdapter() {
+        this(new ConcurrentHashMap<>(), new OrderStatisticTree<>(Comparator.comparingInt(Widget::getZIndex)));
+    }
+
+    public OrderStatisticStoreAdapter(Map<String, Widget> index, OrderStatisticTree<Widget> store) {
+        this.index = index;
+        this.store = store;
+    }
+
+    @Override
+    public void add(Widget widget) {
+        this.store.add(widget);
+        this.index.put(widget.getId(), widget);
+    }
+
+    @Override
+    public Optional<Widget> get(String id) {
+        return Optional.ofNullable(this.index.get(id));
+    }
+
+    @Override
+    public boolean remove(Widget widget) {
+        this.index.remove(widget.getId());
+        return this.store.remove(widget);
+    }
+
+    @Override
+    public int size() {
+        return this.store.size();
+    }
+
+    @Override
+    public Stream<Widget> stream() {
+        return this.store.stream();
+    }
+
+    @Override
+    public Stream<Widget> streamFrom(long offset) {
+        return this.store.stream(offset);
+    }
+
+    @Override
+    public Stream<Widget> streamAfter(int zIndex, Filter filter) {
+        if (zIndex == Integer.MAX_VALUE) {
+            return Stream.empty();
+        }
+
+        // Порядковый номер первого виджета после указанного z-index находится за O(log n), см. pushOut
+        Stream<Widget> stream = store.stream(store.rank(Widget.builder().zIndex(zIndex + 1).build()));
+        return filter.isEmpty() ? stream : stream.filter(filter.toPredicate());
+    }
+
+    @Override
+    public int pushOut(Integer zIndex, String pusherUuid) {
+        // Дерево поиска построено по z-index, так что можно создать "поисковую заглушку", см. CombinedStoreAdapter
+        Widget probe = Widget.builder().zIndex(zIndex).build();
+
+        // Увеличение z-index'ов всех виджетов начиная с коллизии не меняет их взаимного порядка, поэтому дерево
+        // остается корректным. Перебор начинается сразу с виджета, вызвавшего коллизию
+        if (!store.contains(probe)) {
+            return 0;
+        }
+        int rank = store.rank(probe);
+        store.iterator(rank).forEachRemaining(Widget::pushOut);
+        return store.size() - rank;
+    }
+
+    @Override
+    public void pushOutAll(PushOutSequence sequence) {
+        if (sequence.isEmpty()) {
+            return;
+        }
+
+        // Порядок виджетов не меняется, поэтому дерево остается корректным, см. pushOut
+        store.iterator(store.rank(Widget.builder().zIndex(sequence.min()).build()))
+                .forEachRemaining(w -> w.setZIndex(sequence.apply(w.getZIndex())));
+    }
+
+    @Override
+    public boolean containsZIndex(int zIndex) {
+        return store.contains(Widget.builder().zIndex(zIndex).build());
+    }
+
+    @Override
+    public boolean isSortedByZIndex() {
+        return true;
+    }
+
+    @Override
+    public Integer getMaxZIndex() {
+        return store.isEmpty() ? 0 : store.last().getZIndex();
+    }
+}
@@ -0,0 +1,124 @@
+package org.home.realtimeboard.store.adapter;
+
+import java.util.Arrays;
+
+/**
+ * Последовательность выпихиваний, накопленная для применения к хранилищу за один проход.
+ * <p>
+ * Каждое выпихивание задается порогом в z-index'ах на момент его применения и сдвигает на 1 все виджеты с z-index не
+ * меньше порога. Для применения за один проход пороги дополнительно хранятся в исходных z-index'ах (до всех
+ * выпихиваний): итоговый z-index виджета равен исходному плюс количество таких порогов, не превышающих исходный.
+ */
+public class PushOutSequence {
+    // Пороги в z-index'ах на момент их применения, в порядке применения
+    private int[] thresholds = new int[8];
+    // Пороги в исходных z-index'ах, отсортированы по возрастанию
+    private int[] origins = new int[8];
+    private int size;
+
+    /**
+     * Добавляет в конец последовательности выпихивание виджетов с z-index не меньше указанного
+     *
+     * @param threshold порог в z-index'ах с учетом всех предыдущих выпихиваний последовательности
+     */
+    public void add(int threshold) {
+        if (size == thresholds.length) {
+            thresholds = Arrays.copyOf(thresholds, size * 2);
+            origins = Arrays.copyOf(origins, size * 2);
+        }
+
+        // Минимальный исходный z-index, который к моменту применения порога окажется не меньше него
+        int origin = threshold;
+        for (int i = size - 1; i >= 0; i--) {
+            if (origin > thresholds[i]) {
+                origin--;
+            }
+        }
+
+        thresholds[size] = threshold;
+        int position = upperBound(origin);
+        System.arraycopy(origins, position, origins, position + 1, size - position);
+        origins[position] = origin;
+        size++;
+    }
+
+    /**
+     * Возвращает итоговый z-index для указанного исходного
+     */
+    public int apply(int zIndex) {
+        return zIndex + upperBound(zIndex);
+    }
+
+    /**
+     * Возвращает исходный z-index, который после применения последовательности станет указанным
+     *
+     * @return исходный z-index или {@code null}, если указанный z-index освободился при выпихивании и не может быть
+     * занят ни одним из исходных виджетов
+     */
+    public Integer inverse(int zIndex) {
+        int origin = zIndex;
+        for (int i = size - 1; i >= 0; i--) {
+            if (origin == thresholds[i]) {
+                return null;
+            }
+            if (origin > thresholds[i]) {
+                origin--;
+            }
+        }
+        return origin;
+    }
+
+    /**
+     * Возвращает минимальный исходный z-index, затрагиваемый последовательностью
+     *
+     * @throws IllegalStateException если последовательность пуста
+     */
+    public int min() {
+        if (size == 0) {
+            throw new IllegalStateException("Push out sequence is empty");
+        }
+        return origins[0];
+    }
+
+    /**
+     * Возвращает порог выпихивания с указанным номером, в z-index'ах на момент его применения
+     */
+    public int get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+        return thresholds[index];
+    }
+
+    /**
+     * Очищает последовательность
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Количество исходных порогов, не превышающих указанный z-index
+     */
+    private int upperBound(int zIndex) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (origins[middle] <= zIndex) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
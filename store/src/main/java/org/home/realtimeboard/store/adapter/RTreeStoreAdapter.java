@@ -0,0 +1,202 @@
+package org.home.realtimeboard.store.adapter;
+
+import org.home.realtimeboard.model.Filter;
+import org.home.realtimeboard.model.Widget;
+import org.home.realtimeboard.store.index.RTree;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Хранилище с пространственным индексом. Как и в {@link CombinedStoreAdapter}, {@link SortedSet} используется как
+ * основное хранилище, поддерживающее сортировку по zIndex, а {@link Map} как индекс для быстрого доступа к элементам
+ * по id. Дополнительно ограничивающие прямоугольники виджетов индексируются {@link RTree}, так что выборка по фильтру
+ * просматривает только узлы дерева, пересекающиеся с областью видимости.
+ * <p>
+ * Виджеты без заданных координат или размеров в пространственный индекс не попадают, т.к. не могут удовлетворять
+ * ни одному фильтру.
+ *
+ * @see CombinedStoreAdapter
+ */
+public class RTreeStoreAdapter implements InnerStoreAdapter {
+    private Map<String, Widget> index;
+    private SortedSet<Widget> store;
+    private Integer maxZIndex;
+
+    // R-дерево не потокобезопасно, поэтому доступ к нему разграничен блокировкой. Под ней же меняются z-index'ы,
+    // чтобы сортировка результатов выборки по фильтру не видела частично выпихнутых виджетов
+    private final ReadWriteLock spatialLock = new ReentrantReadWriteLock();
+    private final RTree<Widget> spatialIndex;
+
+    public RTreeStoreAdapter() {
+        this(new ConcurrentHashMap<>(), new ConcurrentSkipListSet<>(Comparator.comparingInt(Widget::getZIndex)),
+                new RTree<>());
+    }
+
+    public RTreeStoreAdapter(Map<String, Widget> index, SortedSet<Widget> store, RTree<Widget> spatialIndex) {
+        this.index = index;
+        this.store = store;
+        this.spatialIndex = spatialIndex;
+    }
+
+    @Override
+    public void add(Widget widget) {
+        this.store.add(widget);
+        this.index.put(widget.getId(), widget);
+        if (hasBounds(widget)) {
+            spatialLock.writeLock().lock();
+            try {
+                spatialIndex.insert(widget.getX(), widget.getY(), widget.getX() + widget.getWidth(),
+                        widget.getY() + widget.getHeight(), widget);
+            } finally {
+                spatialLock.writeLock().unlock();
+            }
+        }
+        if (Objects.isNull(maxZIndex) || (widget.getZIndex() > maxZIndex)) {
+            maxZIndex = widget.getZIndex();
+        }
+    }
+
+    @Override
+    public Optional<Widget> get(String id) {
+        return Optional.ofNullable(this.index.get(id));
+    }
+
+    @Override
+    public boolean remove(Widget widget) {
+        // Из R-дерева удаляется именно сохраненный экземпляр, т.к. для удаления может быть передана его копия
+        Widget persisted = this.index.remove(widget.getId());
+        if (Objects.isNull(persisted)) {
+            return false;
+        }
+
+        if (hasBounds(persisted)) {
+            spatialLock.writeLock().lock();
+            try {
+                spatialIndex.remove(persisted.getX(), persisted.getY(), persisted.getX() + persisted.getWidth(),
+                        persisted.getY() + persisted.getHeight(), persisted);
+            } finally {
+                spatialLock.writeLock().unlock();
+            }
+        }
+        return this.store.remove(persisted);
+    }
+
+    @Override
+    public int size() {
+        return this.store.size();
+    }
+
+    @Override
+    public Stream<Widget> stream() {
+        return this.store.stream();
+    }
+
+    @Override
+    public Stream<Widget> stream(Filter filter) {
+        if (filter.isEmpty()) {
+            return stream();
+        }
+
+        List<Widget> result = new ArrayList<>();
+        spatialLock.readLock().lock();
+        try {
+            spatialIndex.findContained(filter.getLeft(), filter.getTop(), filter.getRight(), filter.getBottom(),
+                    result::add);
+            result.sort(Comparator.comparingInt(Widget::getZIndex));
+        } finally {
+            spatialLock.readLock().unlock();
+        }
+
+        return result.stream();
+    }
+
+    @Override
+    public Stream<Widget> streamAfter(int zIndex, Filter filter) {
+        if (!filter.isEmpty()) {
+            // Выборка по R-дереву уже ограничена областью видимости и отсортирована
+            return stream(filter).filter(w -> w.getZIndex() > zIndex);
+        }
+        if (zIndex == Integer.MAX_VALUE) {
+            return Stream.empty();
+        }
+
+        // Обход начинается сразу с первого виджета после указанного z-index, см. CombinedStoreAdapter
+        return store.tailSet(Widget.builder().zIndex(zIndex + 1).build()).stream();
+    }
+
+    @Override
+    public int pushOut(Integer zIndex, String pusherUuid) {
+        // Бинарное дерево поиска построено по z-index, см. CombinedStoreAdapter
+        boolean hasCollision = store.contains(Widget.builder().zIndex(zIndex).build());
+        int[] shifted = {0};
+
+        // Выпихивание не меняет координат виджетов, так что R-дерево остается корректным
+        if (hasCollision) {
+            spatialLock.writeLock().lock();
+            try {
+                store.forEach(w -> {
+                    if ((w.getZIndex() >= zIndex)) {
+                        w.pushOut();
+                        shifted[0]++;
+                    }
+                    if (w.getZIndex() > maxZIndex) {
+                        maxZIndex = w.getZIndex();
+                    }
+                });
+            } finally {
+                spatialLock.writeLock().unlock();
+            }
+        }
+        return shifted[0];
+    }
+
+    @Override
+    public void pushOutAll(PushOutSequence sequence) {
+        if (sequence.isEmpty()) {
+            return;
+        }
+
+        spatialLock.writeLock().lock();
+        try {
+            store.tailSet(Widget.builder().zIndex(sequence.min()).build())
+                    .forEach(w -> w.setZIndex(sequence.apply(w.getZIndex())));
+            // Кешированный максимум не уменьшается при удалении виджетов, поэтому, как и в pushOut, он не сдвигается, а
+            // только поднимается до нового наибольшего z-index
+            if (Objects.nonNull(maxZIndex) && !store.isEmpty()) {
+                maxZIndex = Math.max(maxZIndex, store.last().getZIndex());
+            }
+        } finally {
+            spatialLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean containsZIndex(int zIndex) {
+        return store.contains(Widget.builder().zIndex(zIndex).build());
+    }
+
+    @Override
+    public boolean isSortedByZIndex() {
+        return true;
+    }
+
+    public Integer getMaxZIndex() {
+        if (Objects.isNull(maxZIndex)) {
+            maxZIndex = store.stream().map(Widget::getZIndex).reduce(Math::max).orElse(0);
+        }
+        return maxZIndex;
+    }
+
+    /**
+     * Проверяет, заданы ли у виджета координаты и размеры
+     */
+    private static boolean hasBounds(Widget widget) {
+        return Objects.nonNull(widget.getX()) && Objects.nonNull(widget.getY()) &&
+                Objects.nonNull(widget.getWidth()) && Objects.nonNull(widget.getHeight());
+    }
+}
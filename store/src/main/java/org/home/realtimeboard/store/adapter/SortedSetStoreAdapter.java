@@ -1,5 +1,6 @@
 package org.home.realtimeboard.store.adapter;
 
+import org.home.realtimeboard.model.Filter;
 import org.home.realtimeboard.model.Widget;
 
 import java.util.*;
@@ -55,11 +56,23 @@ public class SortedSetStoreAdapter implements InnerStoreAdapter {
     }
 
     @Override
-    public void pushOut(Integer zIndex, String pusherUuid) {
+    public Stream<Widget> streamAfter(int zIndex, Filter filter) {
+        if (zIndex == Integer.MAX_VALUE) {
+            return Stream.empty();
+        }
+
+        // Обход начинается сразу с первого виджета после указанного z-index, см. CombinedStoreAdapter
+        Stream<Widget> stream = store.tailSet(Widget.builder().zIndex(zIndex + 1).build()).stream();
+        return filter.isEmpty() ? stream : stream.filter(filter.toPredicate());
+    }
+
+    @Override
+    public int pushOut(Integer zIndex, String pusherUuid) {
         // Бинарное дерево поиска построено по z-index, именно по нему и происходит сравнение сущностей в этой коллекции,
         // так что можно создать "поисковую заглушку"
         // Решение не самое чистое, но рабочее
         boolean hasCollision = store.contains(Widget.builder().zIndex(zIndex).build());
+        int[] shifted = {0};
 
         // Т.к. дерево поиска построено по z-index, то для изменения его значения нужно сначала удалить элемент из дерева,
         // обновить и снова вставить, чтобы структура дерева не сломалась. Но увеличение больших ключей, равно как и
@@ -69,12 +82,36 @@ public class SortedSetStoreAdapter implements InnerStoreAdapter {
             store.forEach(w -> {
                 if ((w.getZIndex() >= zIndex)) {
                     w.pushOut();
+                    shifted[0]++;
                 }
                 if (w.getZIndex() > maxZIndex) {
                     maxZIndex = w.getZIndex();
                 }
             });
         }
+        return shifted[0];
+    }
+
+    @Override
+    public void pushOutAll(PushOutSequence sequence) {
+        if (sequence.isEmpty()) {
+            return;
+        }
+
+        // Как и в pushOut, увеличение z-index'ов без изменения их взаимного порядка не ломает структуру дерева, а обход
+        // начинается сразу с первого затрагиваемого виджета
+        store.tailSet(Widget.builder().zIndex(sequence.min()).build())
+                .forEach(w -> w.setZIndex(sequence.apply(w.getZIndex())));
+        // Кешированный максимум не уменьшается при удалении виджетов, поэтому, как и в pushOut, он не сдвигается, а
+        // только поднимается до нового наибольшего z-index
+        if (Objects.nonNull(maxZIndex) && !store.isEmpty()) {
+            maxZIndex = Math.max(maxZIndex, store.last().getZIndex());
+        }
+    }
+
+    @Override
+    public boolean containsZIndex(int zIndex) {
+        return store.contains(Widget.builder().zIndex(zIndex).build());
     }
 
     @Override
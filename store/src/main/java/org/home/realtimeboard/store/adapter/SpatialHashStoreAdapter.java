@@ -0,0 +1,368 @@
+package org.home.realtimeboard.store.adapter;
+
+import org.home.realtimeboard.model.Filter;
+import org.home.realtimeboard.model.Widget;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Хранилище с пространственным хешем. Как и в {@link CombinedStoreAdapter}, {@link SortedSet} используется как
+ * основное хранилище, поддерживающее сортировку по zIndex, а {@link Map} как индекс для быстрого доступа к элементам
+ * по id. Дополнительно плоскость разбита на квадратные ячейки фиксированного размера, и каждый виджет попадает в
+ * ячейку своего левого верхнего угла. Виджеты ячейки хранятся в порядке z-index.
+ * <p>
+ * Выборка по фильтру выдает только виджеты, целиком лежащие в области видимости, поэтому их левый верхний угол тоже
+ * лежит в области, и достаточно просмотреть ячейки, пересекающиеся с ней. Каждый виджет находится ровно в одной
+ * ячейке, поэтому повторы не нужно отбрасывать, а отсортированные результаты ячеек сливаются по z-index. В отличие от
+ * {@link RTreeStoreAdapter} вставка и удаление не перестраивают дерево, а размер виджета не влияет на расход памяти
+ * индексом.
+ * <p>
+ * Виджеты без заданных координат или размеров в пространственный индекс не попадают, т.к. не могут удовлетворять
+ * ни одному фильтру.
+ *
+ * @see RTreeStoreAdapter
+ */
+public class SpatialHashStoreAdapter implements InnerStoreAdapter {
+    public static final int DEFAULT_CELL_SIZE = 500;
+
+    private static final Comparator<Widget> Z_ORDER = Comparator.comparingInt(Widget::getZIndex);
+
+    private Map<String, Widget> index;
+    private SortedSet<Widget> store;
+    private Integer maxZIndex;
+
+    // Ячейки не потокобезопасны, поэтому доступ к ним разграничен блокировкой, см. RTreeStoreAdapter. Под ней же
+    // меняются z-index'ы, чтобы результаты ячеек отбирались из согласованного состояния. Слияние выполняется уже без
+    // блокировки, и выборку, во время которой были выпихнуты виджеты, повторяет AdaptedWidgetStore
+    private final ReadWriteLock spatialLock = new ReentrantReadWriteLock();
+    private final int cellSize;
+    private final Map<Long, List<Widget>> cells = new HashMap<>();
+
+    public SpatialHashStoreAdapter() {
+        this(DEFAULT_CELL_SIZE);
+    }
+
+    /**
+     * @param cellSize размер стороны ячейки
+     */
+    public SpatialHashStoreAdapter(int cellSize) {
+        this(new ConcurrentHashMap<>(), new ConcurrentSkipListSet<>(Z_ORDER), cellSize);
+    }
+
+    public SpatialHashStoreAdapter(Map<String, Widget> index, SortedSet<Widget> store, int cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("Cell size must be positive");
+        }
+        this.index = index;
+        this.store = store;
+        this.cellSize = cellSize;
+    }
+
+    @Override
+    public void add(Widget widget) {
+        this.store.add(widget);
+        this.index.put(widget.getId(), widget);
+        if (hasBounds(widget)) {
+            spatialLock.writeLock().lock();
+            try {
+                List<Widget> cell = cells.computeIfAbsent(key(widget), k -> new ArrayList<>());
+                int position = Collections.binarySearch(cell, widget, Z_ORDER);
+                cell.add(position < 0 ? -position - 1 : position, widget);
+            } finally {
+                spatialLock.writeLock().unlock();
+            }
+        }
+        if (Objects.isNull(maxZIndex) || (widget.getZIndex() > maxZIndex)) {
+            maxZIndex = widget.getZIndex();
+        }
+    }
+
+    @Override
+    public Optional<Widget> get(String id) {
+        return Optional.ofNullable(this.index.get(id));
+    }
+
+    @Override
+    public boolean remove(Widget widget) {
+        // Из ячеек удаляется именно сохраненный экземпляр, т.к. для удаления может быть передана его копия
+        Widget persisted = this.index.remove(widget.getId());
+        if (Objects.isNull(persisted)) {
+            return false;
+        }
+
+        if (hasBounds(persisted)) {
+            spatialLock.writeLock().lock();
+            try {
+                long key = key(persisted);
+                List<Widget> cell = cells.get(key);
+                // z-index'ы уникальны, поэтому виджет находится бинарным поиском
+                int position = Collections.binarySearch(cell, persisted, Z_ORDER);
+                if ((position >= 0) && (cell.get(position) == persisted)) {
+                    cell.remove(position);
+                    if (cell.isEmpty()) {
+                        cells.remove(key);
+                    }
+                }
+            } finally {
+                spatialLock.writeLock().unlock();
+            }
+        }
+        return this.store.remove(persisted);
+    }
+
+    @Override
+    public int size() {
+        return this.store.size();
+    }
+
+    @Override
+    public Stream<Widget> stream() {
+        return this.store.stream();
+    }
+
+    @Override
+    public Stream<Widget> stream(Filter filter) {
+        if (filter.isEmpty()) {
+            return stream();
+        }
+
+        Predicate<Widget> predicate = filter.toPredicate();
+        List<List<Widget>> matches = new ArrayList<>();
+        spatialLock.readLock().lock();
+        try {
+            forEachCell(filter, cell -> {
+                List<Widget> result = new ArrayList<>();
+                for (Widget widget : cell) {
+                    if (predicate.test(widget)) {
+                        result.add(widget);
+                    }
+                }
+                if (!result.isEmpty()) {
+                    matches.add(result);
+                }
+            });
+        } finally {
+            spatialLock.readLock().unlock();
+        }
+
+        // Слияние ленивое, так что выборка страницы останавливается, набрав нужное количество виджетов
+        Spliterator<Widget> spliterator = Spliterators.spliteratorUnknownSize(new MergeIterator(matches),
+                Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false);
+    }
+
+    @Override
+    public long count(Filter filter) {
+        if (filter.isEmpty()) {
+            return size();
+        }
+
+        // Подсчет не требует слияния результатов ячеек по z-index
+        Predicate<Widget> predicate = filter.toPredicate();
+        long[] count = new long[1];
+        spatialLock.readLock().lock();
+        try {
+            forEachCell(filter, cell -> {
+                for (Widget widget : cell) {
+                    if (predicate.test(widget)) {
+                        count[0]++;
+                    }
+                }
+            });
+        } finally {
+            spatialLock.readLock().unlock();
+        }
+        return count[0];
+    }
+
+    @Override
+    public Stream<Widget> streamAfter(int zIndex, Filter filter) {
+        if (!filter.isEmpty()) {
+            // Выборка по ячейкам уже ограничена областью видимости и отсортирована
+            return stream(filter).filter(w -> w.getZIndex() > zIndex);
+        }
+        if (zIndex == Integer.MAX_VALUE) {
+            return Stream.empty();
+        }
+
+        // Обход начинается сразу с первого виджета после указанного z-index, см. CombinedStoreAdapter
+        return store.tailSet(Widget.builder().zIndex(zIndex + 1).build()).stream();
+    }
+
+    @Override
+    public int pushOut(Integer zIndex, String pusherUuid) {
+        // Бинарное дерево поиска построено по z-index, см. CombinedStoreAdapter
+        boolean hasCollision = store.contains(Widget.builder().zIndex(zIndex).build());
+        int[] shifted = {0};
+
+        // Выпихивание не меняет координат и взаимного порядка виджетов, так что ячейки остаются корректными
+        if (hasCollision) {
+            spatialLock.writeLock().lock();
+            try {
+                store.forEach(w -> {
+                    if ((w.getZIndex() >= zIndex)) {
+                        w.pushOut();
+                        shifted[0]++;
+                    }
+                    if (w.getZIndex() > maxZIndex) {
+                        maxZIndex = w.getZIndex();
+                    }
+                });
+            } finally {
+                spatialLock.writeLock().unlock();
+            }
+        }
+        return shifted[0];
+    }
+
+    @Override
+    public void pushOutAll(PushOutSequence sequence) {
+        if (sequence.isEmpty()) {
+            return;
+        }
+
+        spatialLock.writeLock().lock();
+        try {
+            store.tailSet(Widget.builder().zIndex(sequence.min()).build())
+                    .forEach(w -> w.setZIndex(sequence.apply(w.getZIndex())));
+            // Кешированный максимум не уменьшается при удалении виджетов, поэтому, как и в pushOut, он не сдвигается, а
+            // только поднимается до нового наибольшего z-index
+            if (Objects.nonNull(maxZIndex) && !store.isEmpty()) {
+                maxZIndex = Math.max(maxZIndex, store.last().getZIndex());
+            }
+        } finally {
+            spatialLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean containsZIndex(int zIndex) {
+        return store.contains(Widget.builder().zIndex(zIndex).build());
+    }
+
+    @Override
+    public boolean isSortedByZIndex() {
+        return true;
+    }
+
+    public Integer getMaxZIndex() {
+        if (Objects.isNull(maxZIndex)) {
+            maxZIndex = store.stream().map(Widget::getZIndex).reduce(Math::max).orElse(0);
+        }
+        return maxZIndex;
+    }
+
+    /**
+     * Возвращает количество непустых ячеек
+     */
+    public int getCellCount() {
+        spatialLock.readLock().lock();
+        try {
+            return cells.size();
+        } finally {
+            spatialLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Обходит непустые ячейки, пересекающиеся с областью видимости. Если область покрывает больше ячеек, чем их
+     * заполнено, перебираются заполненные ячейки, иначе - ячейки области. Должен вызываться под блокировкой
+     */
+    private void forEachCell(Filter filter, Consumer<List<Widget>> consumer) {
+        int fromX = cell(filter.getLeft());
+        int toX = cell(filter.getRight());
+        int fromY = cell(filter.getTop());
+        int toY = cell(filter.getBottom());
+        if ((fromX > toX) || (fromY > toY)) {
+            return;
+        }
+
+        long area = ((long) toX - fromX + 1) * ((long) toY - fromY + 1);
+        if (area > cells.size()) {
+            for (Map.Entry<Long, List<Widget>> entry : cells.entrySet()) {
+                int cellX = (int) (entry.getKey() >> 32);
+                int cellY = (int) (long) entry.getKey();
+                if ((cellX >= fromX) && (cellX <= toX) && (cellY >= fromY) && (cellY <= toY)) {
+                    consumer.accept(entry.getValue());
+                }
+            }
+        } else {
+            for (int cellX = fromX; cellX <= toX; cellX++) {
+                for (int cellY = fromY; cellY <= toY; cellY++) {
+                    List<Widget> cell = cells.get(key(cellX, cellY));
+                    if (Objects.nonNull(cell)) {
+                        consumer.accept(cell);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Возвращает ключ ячейки левого верхнего угла виджета
+     */
+    private long key(Widget widget) {
+        return key(cell(widget.getX()), cell(widget.getY()));
+    }
+
+    private int cell(int coordinate) {
+        return Math.floorDiv(coordinate, cellSize);
+    }
+
+    private static long key(int cellX, int cellY) {
+        return ((long) cellX << 32) | (cellY & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Проверяет, заданы ли у виджета координаты и размеры
+     */
+    private static boolean hasBounds(Widget widget) {
+        return Objects.nonNull(widget.getX()) && Objects.nonNull(widget.getY()) &&
+                Objects.nonNull(widget.getWidth()) && Objects.nonNull(widget.getHeight());
+    }
+
+    /**
+     * Итератор, сливающий отсортированные по z-index списки результатов ячеек
+     */
+    private static class MergeIterator implements Iterator<Widget> {
+        private final List<List<Widget>> lists;
+        // Элемент очереди - номер списка и позиция в нем
+        private final PriorityQueue<int[]> heads;
+
+        MergeIterator(List<List<Widget>> lists) {
+            this.lists = lists;
+            this.heads = new PriorityQueue<>(Math.max(lists.size(), 1),
+                    Comparator.comparingInt(head -> lists.get(head[0]).get(head[1]).getZIndex()));
+            for (int i = 0; i < lists.size(); i++) {
+                heads.add(new int[]{i, 0});
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public Widget next() {
+            int[] head = heads.poll();
+            if (Objects.isNull(head)) {
+                throw new NoSuchElementException();
+            }
+            List<Widget> list = lists.get(head[0]);
+            Widget widget = list.get(head[1]);
+            if (++head[1] < list.size()) {
+                heads.add(head);
+            }
+            return widget;
+        }
+    }
+}
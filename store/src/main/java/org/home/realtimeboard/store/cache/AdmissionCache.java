@@ -0,0 +1,117 @@
+package org.home.realtimeboard.store.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiPredicate;
+
+/**
+ * Ограниченный кеш с учетом частоты обращений (TinyLFU). Все обращения к ключам, включая промахи, учитываются в
+ * {@link FrequencySketch}. Когда кеш заполнен, новый элемент принимается, только если его ключ запрашивался чаще,
+ * чем ключ кандидата на вытеснение - давно не использованного элемента. Поэтому однократные запросы не вытесняют
+ * из кеша популярные элементы.
+ * <p>
+ * Кеш не потокобезопасен.
+ *
+ * @param <K> тип ключа
+ * @param <V> тип значения
+ */
+public class AdmissionCache<K, V> {
+    private final int capacity;
+    // Порядок доступа: первый элемент - давно не использованный
+    private final LinkedHashMap<K, V> entries;
+    private final FrequencySketch sketch;
+    private long evictionCount;
+    private long rejectionCount;
+
+    /**
+     * @param capacity максимальное количество элементов
+     */
+    public AdmissionCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        this.sketch = new FrequencySketch(capacity);
+    }
+
+    /**
+     * Ищет элемент и учитывает обращение к ключу
+     *
+     * @return значение или {@code null}, если элемента нет в кеше
+     */
+    public V get(K key) {
+        sketch.increment(key);
+        return entries.get(key);
+    }
+
+    /**
+     * Добавляет элемент, если он проходит фильтр частоты обращений
+     *
+     * @return принят ли элемент в кеш
+     */
+    public boolean put(K key, V value) {
+        if (entries.containsKey(key) || (entries.size() < capacity)) {
+            entries.put(key, value);
+            return true;
+        }
+
+        Map.Entry<K, V> victim = entries.entrySet().iterator().next();
+        if (sketch.frequency(key) <= sketch.frequency(victim.getKey())) {
+            rejectionCount++;
+            return false;
+        }
+
+        entries.remove(victim.getKey());
+        evictionCount++;
+        entries.put(key, value);
+        return true;
+    }
+
+    /**
+     * Удаляет элементы, удовлетворяющие условию
+     *
+     * @return количество удаленных элементов
+     */
+    public int removeIf(BiPredicate<? super K, ? super V> predicate) {
+        int removed = 0;
+        for (Iterator<Map.Entry<K, V>> iterator = entries.entrySet().iterator(); iterator.hasNext(); ) {
+            Map.Entry<K, V> entry = iterator.next();
+            if (predicate.test(entry.getKey(), entry.getValue())) {
+                iterator.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Удаляет все элементы, частоты обращений сохраняются
+     *
+     * @return количество удаленных элементов
+     */
+    public int clear() {
+        int removed = entries.size();
+        entries.clear();
+        return removed;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Возвращает количество элементов, вытесненных более популярными
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Возвращает количество элементов, не принятых в заполненный кеш из-за редких обращений
+     */
+    public long getRejectionCount() {
+        return rejectionCount;
+    }
+}
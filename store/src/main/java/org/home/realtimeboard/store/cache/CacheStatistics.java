@@ -0,0 +1,47 @@
+package org.home.realtimeboard.store.cache;
+
+import lombok.Value;
+
+/**
+ * Статистика кеша выборок
+ */
+@Value
+public class CacheStatistics {
+    /**
+     * Количество запросов, выполненных из кеша
+     */
+    private final long hitCount;
+
+    /**
+     * Количество запросов, выполненных хранилищем
+     */
+    private final long missCount;
+
+    /**
+     * Количество элементов, вытесненных более популярными
+     */
+    private final long evictionCount;
+
+    /**
+     * Количество результатов, не принятых в заполненный кеш из-за редких обращений
+     */
+    private final long rejectionCount;
+
+    /**
+     * Количество элементов, удаленных из-за изменения хранилища
+     */
+    private final long invalidationCount;
+
+    /**
+     * Текущее количество элементов
+     */
+    private final int size;
+
+    /**
+     * Доля запросов, выполненных из кеша
+     */
+    public double getHitRate() {
+        long requests = hitCount + missCount;
+        return requests == 0 ? 0 : (double) hitCount / requests;
+    }
+}
@@ -0,0 +1,82 @@
+package org.home.realtimeboard.store.cache;
+
+/**
+ * Приблизительный счетчик частот обращений к ключам (count-min sketch). Каждый ключ отображается на счетчик в каждой
+ * из {@link FrequencySketch#DEPTH} строк, частотой ключа считается минимальный из них. Счетчики ограничены
+ * {@link FrequencySketch#MAX_COUNT}, а после {@code sampleSize} обращений все счетчики делятся пополам, так что
+ * оценка отражает недавнюю, а не накопленную за все время популярность ключа.
+ * <p>
+ * Счетчик не потокобезопасен.
+ */
+class FrequencySketch {
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    // Начальные значения хеша для каждой строки
+    private static final int[] SEEDS = {0x97CB3127, 0x6B2E7C5D, 0xC2B2AE35, 0x27D4EB2F};
+
+    private final byte[][] rows;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * @param capacity количество ключей, частоты которых нужно различать
+     */
+    FrequencySketch(int capacity) {
+        int width = Integer.highestOneBit(Math.max(capacity, 8) - 1) << 1;
+        this.rows = new byte[DEPTH][width];
+        this.mask = width - 1;
+        this.sampleSize = 10 * width;
+    }
+
+    /**
+     * Учитывает обращение к ключу
+     */
+    void increment(Object key) {
+        int hash = key.hashCode();
+        for (int i = 0; i < DEPTH; i++) {
+            byte[] row = rows[i];
+            int index = index(hash, i);
+            if (row[index] < MAX_COUNT) {
+                row[index]++;
+            }
+        }
+
+        if (++additions >= sampleSize) {
+            age();
+        }
+    }
+
+    /**
+     * Оценивает частоту обращений к ключу, оценка не меньше действительной частоты
+     */
+    int frequency(Object key) {
+        int hash = key.hashCode();
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < DEPTH; i++) {
+            frequency = Math.min(frequency, rows[i][index(hash, i)]);
+        }
+        return frequency;
+    }
+
+    /**
+     * Делит все счетчики пополам
+     */
+    private void age() {
+        for (byte[] row : rows) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] >>= 1;
+            }
+        }
+        additions /= 2;
+    }
+
+    private int index(int hash, int row) {
+        // Перемешивание murmur3, разное для каждой строки
+        int h = (hash ^ SEEDS[row]) * 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h & mask;
+    }
+}
@@ -0,0 +1,82 @@
+package org.home.realtimeboard.store.feed;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Getter;
+import org.home.realtimeboard.model.Widget;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Изменения хранилища между двумя версиями, объединенные до последнего состояния каждого виджета.
+ * <p>
+ * Чтобы из состояния версии {@link ChangeBatch#since} получить состояние версии {@link ChangeBatch#version},
+ * изменения применяются в следующем порядке: выпихивания {@link ChangeBatch#pushOuts} в порядке следования (каждое
+ * сдвигает на 1 все виджеты с z-index не меньше порога), затем замена виджетов из {@link ChangeBatch#updated} и
+ * удаление виджетов из {@link ChangeBatch#deleted}. Выпихивания затрагивают только z-index'ы, а состояния измененных
+ * виджетов уже учитывают все выпихивания, поэтому итоговое состояние не зависит от пропущенных промежуточных.
+ * <p>
+ * Если изменения после версии {@link ChangeBatch#since} уже вытеснены из ленты или версия неизвестна, пакет содержит
+ * только признак {@link ChangeBatch#resync}: клиент должен заново прочитать виджеты целиком
+ */
+@Getter
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public class ChangeBatch {
+    /**
+     * Версия, после которой начинаются изменения
+     */
+    private final long since;
+
+    /**
+     * Версия хранилища, которой соответствует состояние после применения изменений
+     */
+    private final long version;
+
+    /**
+     * Требуется ли полное перечитывание виджетов
+     */
+    private final boolean resync;
+
+    /**
+     * Пороги выпихиваний в порядке применения
+     */
+    private final List<Integer> pushOuts;
+
+    /**
+     * Последние состояния добавленных и обновленных виджетов
+     */
+    private final List<Widget> updated;
+
+    /**
+     * uuid удаленных виджетов
+     */
+    private final List<String> deleted;
+
+    ChangeBatch(long since, long version, List<Integer> pushOuts, List<Widget> updated, List<String> deleted) {
+        this(since, version, false, pushOuts, updated, deleted);
+    }
+
+    private ChangeBatch(long since, long version, boolean resync, List<Integer> pushOuts, List<Widget> updated,
+                        List<String> deleted) {
+        this.since = since;
+        this.version = version;
+        this.resync = resync;
+        this.pushOuts = pushOuts;
+        this.updated = updated;
+        this.deleted = deleted;
+    }
+
+    static ChangeBatch resync(long since, long version) {
+        return new ChangeBatch(since, version, true, Collections.emptyList(), Collections.emptyList(),
+                Collections.emptyList());
+    }
+
+    /**
+     * Нет ли в пакете изменений
+     */
+    @JsonIgnore
+    public boolean isEmpty() {
+        return !resync && pushOuts.isEmpty() && updated.isEmpty() && deleted.isEmpty();
+    }
+}
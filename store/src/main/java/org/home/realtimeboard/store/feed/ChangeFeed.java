@@ -0,0 +1,172 @@
+package org.home.realtimeboard.store.feed;
+
+import org.home.realtimeboard.model.ImmutableWidget;
+import org.home.realtimeboard.model.Widget;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Лента изменений хранилища: ограниченный кольцевой буфер изменений ({@link WidgetChange}), помеченных версией
+ * хранилища, в которой они произошли. Изменения одной версии записываются вместе и в порядке применения, включая
+ * неявные выпихивания.
+ * <p>
+ * Читатель запрашивает изменения после известной ему версии и получает их объединенными в {@link ChangeBatch}: сколько
+ * бы изменений ни накопилось, передается только последнее состояние каждого виджета. При переполнении буфера
+ * вытесняются самые старые изменения, и читатель, отставший дальше вытесненной версии, получает признак полного
+ * перечитывания.
+ * <p>
+ * Запись выполняется под блокировкой хранилища на запись, поэтому версии в буфере не убывают. Слушатели
+ * ({@link ChangeFeed#addListener(Runnable)}) вызываются в пишущем потоке после записи и не должны блокироваться
+ */
+public class ChangeFeed {
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private final int capacity;
+    private final long[] versions;
+    private final WidgetChange[] changes;
+    // Общее количество записанных изменений, позиция следующего изменения в буфере - остаток от деления на емкость
+    private long count;
+    // Изменения версий не старше этой недоступны
+    private long floorVersion;
+    // Последняя записанная версия хранилища
+    private long version;
+
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param capacity максимальное количество хранимых изменений
+     * @param version  текущая версия хранилища, изменения до нее недоступны
+     */
+    public ChangeFeed(int capacity, long version) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.versions = new long[capacity];
+        this.changes = new WidgetChange[capacity];
+        this.floorVersion = version;
+        this.version = version;
+    }
+
+    /**
+     * Записывает изменения версии хранилища. Версия записывается, даже если изменений нет, чтобы читатель, знающий
+     * ее, не получил признак перечитывания
+     *
+     * @param version версия хранилища, не меньше последней записанной
+     * @param changes изменения в порядке применения
+     */
+    public void append(long version, List<WidgetChange> changes) {
+        synchronized (this) {
+            for (WidgetChange change : changes) {
+                int position = (int) (count % capacity);
+                if (count >= capacity) {
+                    floorVersion = Math.max(floorVersion, versions[position]);
+                }
+                versions[position] = version;
+                this.changes[position] = change;
+                count++;
+            }
+            this.version = version;
+        }
+
+        if (!changes.isEmpty()) {
+            listeners.forEach(Runnable::run);
+        }
+    }
+
+    /**
+     * Отбрасывает все изменения, например после загрузки снимка. Читатели, знающие версию старше указанной, получат
+     * признак перечитывания
+     *
+     * @param version текущая версия хранилища
+     */
+    public synchronized void reset(long version) {
+        Arrays.fill(changes, null);
+        count = 0;
+        floorVersion = version;
+        this.version = version;
+    }
+
+    /**
+     * Возвращает изменения после указанной версии, объединенные до последнего состояния каждого виджета
+     *
+     * @param since версия, известная читателю
+     * @return изменения вплоть до последней записанной версии или признак перечитывания, если часть изменений уже
+     * вытеснена либо версия не выдавалась этой лентой
+     */
+    public ChangeBatch read(long since) {
+        WidgetChange[] pending;
+        long lastVersion;
+        synchronized (this) {
+            lastVersion = version;
+            if ((since < floorVersion) || (since > version)) {
+                return ChangeBatch.resync(since, lastVersion);
+            }
+
+            // Изменения упорядочены по версии, поэтому нужные лежат в конце буфера
+            int size = (int) Math.min(count, capacity);
+            int skip = 0;
+            while ((skip < size) && (versionAt(count - size + skip) <= since)) {
+                skip++;
+            }
+            pending = new WidgetChange[size - skip];
+            for (int i = 0; i < pending.length; i++) {
+                pending[i] = changes[(int) ((count - size + skip + i) % capacity)];
+            }
+        }
+
+        // Объединение выполняется вне блокировки, чтобы не задерживать запись
+        List<Integer> pushOuts = new ArrayList<>();
+        Map<String, ImmutableWidget> updated = new LinkedHashMap<>();
+        Set<String> deleted = new LinkedHashSet<>();
+        for (WidgetChange change : pending) {
+            switch (change.getType()) {
+                case UPSERT:
+                    deleted.remove(change.getWidget().getId());
+                    updated.put(change.getWidget().getId(), change.getWidget());
+                    break;
+                case DELETE:
+                    // Виджет мог быть добавлен после известной читателю версии, удаление неизвестного виджета
+                    // клиентом игнорируется
+                    updated.remove(change.getId());
+                    deleted.add(change.getId());
+                    break;
+                case PUSH_OUT:
+                    // Клиент заменяет измененные виджеты после всех выпихиваний, поэтому их состояния сдвигаются
+                    // сразу
+                    pushOuts.add(change.getThreshold());
+                    for (Map.Entry<String, ImmutableWidget> entry : updated.entrySet()) {
+                        if (entry.getValue().getZIndex() >= change.getThreshold()) {
+                            entry.setValue(entry.getValue().withZIndex(entry.getValue().getZIndex() + 1));
+                        }
+                    }
+                    break;
+            }
+        }
+        return new ChangeBatch(since, lastVersion, pushOuts, new ArrayList<Widget>(updated.values()),
+                new ArrayList<>(deleted));
+    }
+
+    /**
+     * Возвращает последнюю записанную версию хранилища
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Регистрирует слушателя, вызываемого после записи каждой версии с изменениями
+     */
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Runnable listener) {
+        listeners.remove(listener);
+    }
+
+    private long versionAt(long index) {
+        return versions[(int) (index % capacity)];
+    }
+}
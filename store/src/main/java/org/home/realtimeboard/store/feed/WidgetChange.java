@@ -0,0 +1,65 @@
+package org.home.realtimeboard.store.feed;
+
+import lombok.Getter;
+import org.home.realtimeboard.model.ImmutableWidget;
+import org.home.realtimeboard.model.Widget;
+
+/**
+ * Изменение хранилища, записанное в {@link ChangeFeed}
+ */
+@Getter
+public class WidgetChange {
+    public enum Type {
+        /**
+         * Виджет добавлен или обновлен
+         */
+        UPSERT,
+        /**
+         * Виджет удален
+         */
+        DELETE,
+        /**
+         * Все виджеты с z-index не меньше порога выпихнуты на один уровень вверх
+         */
+        PUSH_OUT
+    }
+
+    private final Type type;
+
+    /**
+     * Состояние виджета после изменения, только для {@link Type#UPSERT}
+     */
+    private final ImmutableWidget widget;
+
+    /**
+     * uuid удаленного виджета, только для {@link Type#DELETE}
+     */
+    private final String id;
+
+    /**
+     * Порог выпихивания, только для {@link Type#PUSH_OUT}
+     */
+    private final int threshold;
+
+    private WidgetChange(Type type, ImmutableWidget widget, String id, int threshold) {
+        this.type = type;
+        this.widget = widget;
+        this.id = id;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Добавление или обновление виджета, сохраняется неизменяемая копия его текущего состояния
+     */
+    public static WidgetChange upsert(Widget widget) {
+        return new WidgetChange(Type.UPSERT, ImmutableWidget.of(widget), null, 0);
+    }
+
+    public static WidgetChange delete(String id) {
+        return new WidgetChange(Type.DELETE, null, id, 0);
+    }
+
+    public static WidgetChange pushOut(int threshold) {
+        return new WidgetChange(Type.PUSH_OUT, null, null, threshold);
+    }
+}
@@ -0,0 +1,106 @@
+package org.home.realtimeboard.store.id;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.util.Objects;
+
+/**
+ * Компактное представление идентификатора виджета - 128 бит в двух long'ах. Строковое представление совпадает с
+ * {@link java.util.UUID#toString()}, так что внешнее представление идентификатора не меняется.
+ * <p>
+ * Разбор и форматирование выполняются без промежуточных объектов и без регулярных выражений.
+ */
+@Getter
+@EqualsAndHashCode
+public final class WidgetId implements Comparable<WidgetId> {
+    // Длина строкового представления: 32 шестнадцатеричные цифры и 4 дефиса
+    private static final int LENGTH = 36;
+    private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+
+    private final long mostSignificantBits;
+    private final long leastSignificantBits;
+
+    public WidgetId(long mostSignificantBits, long leastSignificantBits) {
+        this.mostSignificantBits = mostSignificantBits;
+        this.leastSignificantBits = leastSignificantBits;
+    }
+
+    /**
+     * Разбирает строковое представление идентификатора
+     *
+     * @param id строка в формате {@code xxxxxxxx-xxxx-xxxx-xxxx-xxxxxxxxxxxx}
+     * @return идентификатор или {@code null}, если строка не является корректным идентификатором
+     */
+    public static WidgetId parse(String id) {
+        if (Objects.isNull(id) || (id.length() != LENGTH) ||
+                (id.charAt(8) != '-') || (id.charAt(13) != '-') || (id.charAt(18) != '-') || (id.charAt(23) != '-')) {
+            return null;
+        }
+
+        long most = 0;
+        long least = 0;
+        for (int i = 0; i < LENGTH; i++) {
+            if ((i == 8) || (i == 13) || (i == 18) || (i == 23)) {
+                continue;
+            }
+
+            int digit = digit(id.charAt(i));
+            if (digit < 0) {
+                return null;
+            }
+            if (i < 19) {
+                most = (most << 4) | digit;
+            } else {
+                least = (least << 4) | digit;
+            }
+        }
+        return new WidgetId(most, least);
+    }
+
+    @Override
+    public int compareTo(WidgetId other) {
+        // Беззнаковое сравнение, чтобы порядок совпадал с порядком строковых представлений
+        int result = Long.compareUnsigned(mostSignificantBits, other.mostSignificantBits);
+        return result != 0 ? result : Long.compareUnsigned(leastSignificantBits, other.leastSignificantBits);
+    }
+
+    @Override
+    public String toString() {
+        char[] chars = new char[LENGTH];
+        format(chars, 0, mostSignificantBits >>> 32, 8);
+        chars[8] = '-';
+        format(chars, 9, mostSignificantBits >>> 16, 4);
+        chars[13] = '-';
+        format(chars, 14, mostSignificantBits, 4);
+        chars[18] = '-';
+        format(chars, 19, leastSignificantBits >>> 48, 4);
+        chars[23] = '-';
+        format(chars, 24, leastSignificantBits, 12);
+        return new String(chars);
+    }
+
+    /**
+     * Возвращает значение шестнадцатеричной цифры. Принимаются только строчные буквы, т.к. иначе разные строки
+     * соответствовали бы одному идентификатору
+     */
+    private static int digit(char c) {
+        if ((c >= '0') && (c <= '9')) {
+            return c - '0';
+        }
+        if ((c >= 'a') && (c <= 'f')) {
+            return c - 'a' + 10;
+        }
+        return -1;
+    }
+
+    /**
+     * Записывает младшие {@code digits} шестнадцатеричных цифр значения
+     */
+    private static void format(char[] chars, int offset, long value, int digits) {
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            chars[i] = DIGITS[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+    }
+}
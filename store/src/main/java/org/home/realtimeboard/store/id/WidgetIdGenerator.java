@@ -0,0 +1,46 @@
+package org.home.realtimeboard.store.id;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Неблокирующий генератор упорядоченных по времени идентификаторов в формате UUID версии 7: старшие 48 бит -
+ * время в миллисекундах, затем 12-битный счетчик внутри миллисекунды и 62 случайных бита.
+ * <p>
+ * В отличие от {@link java.util.UUID#randomUUID()} генератор не обращается к {@link java.security.SecureRandom},
+ * поэтому может вызываться под блокировкой хранилища. Время и счетчик хранятся в одном {@link AtomicLong}, так что
+ * идентификаторы одного генератора строго возрастают даже при переполнении счетчика или переводе часов назад:
+ * в этих случаях время идентификатора забегает вперед.
+ */
+public class WidgetIdGenerator {
+    private static final int COUNTER_BITS = 12;
+    private static final long COUNTER_MASK = (1L << COUNTER_BITS) - 1;
+    private static final long VERSION = 7L << COUNTER_BITS;
+    private static final long VARIANT = 0x8000000000000000L;
+    private static final long VARIANT_MASK = 0x3FFFFFFFFFFFFFFFL;
+
+    private final LongSupplier clock;
+    // Время в миллисекундах и счетчик последнего выданного идентификатора
+    private final AtomicLong lastTimestamp = new AtomicLong();
+
+    public WidgetIdGenerator() {
+        this(System::currentTimeMillis);
+    }
+
+    WidgetIdGenerator(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Возвращает новый идентификатор
+     */
+    public WidgetId next() {
+        long now = clock.getAsLong() << COUNTER_BITS;
+        long timestamp = lastTimestamp.updateAndGet(last -> Math.max(last + 1, now));
+
+        long most = ((timestamp >>> COUNTER_BITS) << 16) | VERSION | (timestamp & COUNTER_MASK);
+        long least = (ThreadLocalRandom.current().nextLong() & VARIANT_MASK) | VARIANT;
+        return new WidgetId(most, least);
+    }
+}
@@ -0,0 +1,235 @@
+package org.home.realtimeboard.store.index;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Сеточная гистограмма прямоугольников для подсчета количества прямоугольников, целиком лежащих в области.
+ * <p>
+ * Плоскость разбита на квадратные ячейки, каждый прямоугольник относится к ячейке, в которую попадает его левый
+ * верхний угол. Для каждой ячейки хранится количество прямоугольников и наибольшие правая и нижняя координаты их
+ * правых нижних углов. Ячейка, лежащая в области целиком вместе со всеми своими прямоугольниками, учитывается
+ * количеством без проверки прямоугольников. Прямоугольники проверяются только в граничных ячейках, которые область
+ * пересекает частично. Приблизительный подсчет не проверяет и граничные ячейки, а учитывает их количество
+ * пропорционально доле площади ячейки внутри области.
+ * <p>
+ * Прямоугольник задается координатами левого верхнего и правого нижнего углов. Гистограмма не потокобезопасна,
+ * синхронизация доступа лежит на вызывающей стороне.
+ *
+ * @param <T> тип индексируемых значений
+ */
+public class GridHistogram<T> {
+    private final int tileSize;
+    private final Map<Long, Tile<T>> tiles = new HashMap<>();
+    private int size;
+
+    /**
+     * @param tileSize размер стороны ячейки
+     */
+    public GridHistogram(int tileSize) {
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("Tile size must be positive");
+        }
+        this.tileSize = tileSize;
+    }
+
+    /**
+     * Добавляет прямоугольник
+     */
+    public void insert(int minX, int minY, int maxX, int maxY, T value) {
+        tiles.computeIfAbsent(key(tile(minX), tile(minY)), key -> new Tile<>())
+                .add(new Entry<>(minX, minY, maxX, maxY, value));
+        size++;
+    }
+
+    /**
+     * Удаляет прямоугольник с указанными координатами и значением (сравнение значений по ссылке)
+     *
+     * @return факт удаления
+     */
+    public boolean remove(int minX, int minY, int maxX, int maxY, T value) {
+        long key = key(tile(minX), tile(minY));
+        Tile<T> tile = tiles.get(key);
+        if ((tile == null) || !tile.remove(minX, minY, maxX, maxY, value)) {
+            return false;
+        }
+
+        if (tile.entries.isEmpty()) {
+            tiles.remove(key);
+        }
+        size--;
+        return true;
+    }
+
+    /**
+     * Подсчитывает прямоугольники, целиком лежащие в указанной области
+     */
+    public long countContained(int minX, int minY, int maxX, int maxY) {
+        long[] count = new long[1];
+        forEachCandidate(minX, minY, maxX, maxY, (tileX, tileY, tile) -> {
+            if (isInterior(tileX, tileY, tile, minX, minY, maxX, maxY)) {
+                count[0] += tile.entries.size();
+            } else {
+                for (Entry<T> entry : tile.entries) {
+                    if (entry.isContained(minX, minY, maxX, maxY)) {
+                        count[0]++;
+                    }
+                }
+            }
+        });
+        return count[0];
+    }
+
+    /**
+     * Оценивает количество прямоугольников, целиком лежащих в указанной области, без проверки отдельных
+     * прямоугольников
+     */
+    public long estimateContained(int minX, int minY, int maxX, int maxY) {
+        double[] count = new double[1];
+        forEachCandidate(minX, minY, maxX, maxY, (tileX, tileY, tile) -> {
+            if (isInterior(tileX, tileY, tile, minX, minY, maxX, maxY)) {
+                count[0] += tile.entries.size();
+            } else {
+                // Доля ячейки, в которой левый верхний угол прямоугольника может лежать внутри области
+                long tileMinX = (long) tileX * tileSize;
+                long tileMinY = (long) tileY * tileSize;
+                long width = Math.min(tileMinX + tileSize - 1, maxX) - Math.max(tileMinX, minX) + 1;
+                long height = Math.min(tileMinY + tileSize - 1, maxY) - Math.max(tileMinY, minY) + 1;
+                count[0] += tile.entries.size() * ((double) width * height / ((double) tileSize * tileSize));
+            }
+        });
+        return Math.round(count[0]);
+    }
+
+    /**
+     * Возвращает количество прямоугольников
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Обходит непустые ячейки, в которые может попасть левый верхний угол прямоугольника, лежащего в области. Если
+     * область покрывает больше ячеек, чем их заполнено, перебираются заполненные ячейки, иначе - ячейки области
+     */
+    private void forEachCandidate(int minX, int minY, int maxX, int maxY, TileConsumer<T> consumer) {
+        if ((minX > maxX) || (minY > maxY)) {
+            return;
+        }
+
+        int fromX = tile(minX);
+        int toX = tile(maxX);
+        int fromY = tile(minY);
+        int toY = tile(maxY);
+        long area = ((long) toX - fromX + 1) * ((long) toY - fromY + 1);
+        if (area > tiles.size()) {
+            for (Map.Entry<Long, Tile<T>> entry : tiles.entrySet()) {
+                int tileX = (int) (entry.getKey() >> 32);
+                int tileY = (int) (long) entry.getKey();
+                if ((tileX >= fromX) && (tileX <= toX) && (tileY >= fromY) && (tileY <= toY)) {
+                    consumer.accept(tileX, tileY, entry.getValue());
+                }
+            }
+        } else {
+            for (int tileX = fromX; tileX <= toX; tileX++) {
+                for (int tileY = fromY; tileY <= toY; tileY++) {
+                    Tile<T> tile = tiles.get(key(tileX, tileY));
+                    if (tile != null) {
+                        consumer.accept(tileX, tileY, tile);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Лежат ли в области все прямоугольники ячейки. Это так, если ячейка не выходит за левую и верхнюю границы
+     * области, а правые нижние углы прямоугольников - за правую и нижнюю
+     */
+    private boolean isInterior(int tileX, int tileY, Tile<T> tile, int minX, int minY, int maxX, int maxY) {
+        return ((long) tileX * tileSize >= minX) && ((long) tileY * tileSize >= minY) &&
+                (tile.maxX <= maxX) && (tile.maxY <= maxY);
+    }
+
+    private int tile(int coordinate) {
+        return Math.floorDiv(coordinate, tileSize);
+    }
+
+    private static long key(int tileX, int tileY) {
+        return ((long) tileX << 32) | (tileY & 0xFFFFFFFFL);
+    }
+
+    @FunctionalInterface
+    private interface TileConsumer<T> {
+        void accept(int tileX, int tileY, Tile<T> tile);
+    }
+
+    /**
+     * Ячейка сетки
+     */
+    private static class Tile<T> {
+        private final List<Entry<T>> entries = new ArrayList<>();
+        // Наибольшие координаты правых нижних углов прямоугольников ячейки
+        private int maxX = Integer.MIN_VALUE;
+        private int maxY = Integer.MIN_VALUE;
+
+        void add(Entry<T> entry) {
+            entries.add(entry);
+            maxX = Math.max(maxX, entry.maxX);
+            maxY = Math.max(maxY, entry.maxY);
+        }
+
+        boolean remove(int minX, int minY, int maxX, int maxY, T value) {
+            for (int i = 0; i < entries.size(); i++) {
+                Entry<T> entry = entries.get(i);
+                if ((entry.value == value) && (entry.minX == minX) && (entry.minY == minY) &&
+                        (entry.maxX == maxX) && (entry.maxY == maxY)) {
+                    // Порядок прямоугольников в ячейке не важен, поэтому удаленный заменяется последним
+                    Entry<T> last = entries.remove(entries.size() - 1);
+                    if (i < entries.size()) {
+                        entries.set(i, last);
+                    }
+                    if ((entry.maxX == this.maxX) || (entry.maxY == this.maxY)) {
+                        updateBounds();
+                    }
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void updateBounds() {
+            maxX = Integer.MIN_VALUE;
+            maxY = Integer.MIN_VALUE;
+            for (Entry<T> entry : entries) {
+                maxX = Math.max(maxX, entry.maxX);
+                maxY = Math.max(maxY, entry.maxY);
+            }
+        }
+    }
+
+    /**
+     * Прямоугольник со значением
+     */
+    private static class Entry<T> {
+        private final int minX;
+        private final int minY;
+        private final int maxX;
+        private final int maxY;
+        private final T value;
+
+        Entry(int minX, int minY, int maxX, int maxY, T value) {
+            this.minX = minX;
+            this.minY = minY;
+            this.maxX = maxX;
+            this.maxY = maxY;
+            this.value = value;
+        }
+
+        boolean isContained(int minX, int minY, int maxX, int maxY) {
+            return (this.minX >= minX) && (this.minY >= minY) && (this.maxX <= maxX) && (this.maxY <= maxY);
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package org.home.realtimeboard.store.index;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Декартово дерево (treap) с целочисленными уникальными ключами и отложенным сдвигом ключей.
+ * <p>
+ * Сдвиг всех ключей начиная с заданного ({@link LazyShiftTreap#shift(int, int)}) выполняется за O(log n): дерево
+ * разрезается по ключу, а корню правой части назначается отложенная добавка, которая спускается к потомкам только
+ * при последующих модификациях. Истинный ключ узла равен сумме его собственного ключа и отложенных добавок всех его
+ * предков, поэтому чтение ключей и обход не изменяют дерево.
+ * <p>
+ * Дерево не потокобезопасно: модифицирующие операции должны выполняться эксклюзивно, читающие операции можно выполнять
+ * параллельно друг с другом.
+ *
+ * @param <V> тип хранимых значений
+ */
+public class LazyShiftTreap<V> {
+    private Node<V> root;
+
+    /**
+     * Добавляет значение с указанным ключом. Ключ не должен присутствовать в дереве
+     *
+     * @param key   ключ
+     * @param value значение
+     * @return узел дерева, по которому в дальнейшем можно получить актуальный ключ значения или удалить его
+     */
+    public Node<V> insert(int key, V value) {
+        Node<V> node = new Node<>(key, value);
+        Split<V> split = new Split<>();
+        split(root, key, split);
+        root = detach(merge(merge(split.less, node), split.greaterOrEqual));
+        return node;
+    }
+
+    /**
+     * Удаляет узел из дерева
+     *
+     * @param node узел, полученный при вставке значения
+     */
+    public void remove(Node<V> node) {
+        int key = keyOf(node);
+        Split<V> split = new Split<>();
+        split(root, key, split);
+        Node<V> less = split.less;
+        split(split.greaterOrEqual, key + 1, split);
+        root = detach(merge(less, split.greaterOrEqual));
+        node.parent = null;
+    }
+
+    /**
+     * Прибавляет указанную величину ко всем ключам, не меньшим заданного
+     *
+     * @param fromKey минимальный сдвигаемый ключ
+     * @param delta   величина сдвига
+     * @return количество сдвинутых ключей
+     */
+    public int shift(int fromKey, int delta) {
+        Split<V> split = new Split<>();
+        split(root, fromKey, split);
+        int shifted = size(split.greaterOrEqual);
+        apply(split.greaterOrEqual, delta);
+        root = detach(merge(split.less, split.greaterOrEqual));
+        return shifted;
+    }
+
+    /**
+     * Возвращает актуальный ключ узла с учетом всех отложенных сдвигов
+     */
+    public int keyOf(Node<V> node) {
+        int key = node.key;
+        for (Node<V> parent = node.parent; parent != null; parent = parent.parent) {
+            key += parent.lazy;
+        }
+        return key;
+    }
+
+    /**
+     * Проверяет наличие указанного ключа в дереве
+     */
+    public boolean containsKey(int key) {
+        int pending = 0;
+        Node<V> node = root;
+        while (node != null) {
+            int nodeKey = node.key + pending;
+            if (nodeKey == key) {
+                return true;
+            }
+            pending += node.lazy;
+            node = key < nodeKey ? node.left : node.right;
+        }
+        return false;
+    }
+
+    /**
+     * Возвращает максимальный ключ дерева
+     *
+     * @throws NoSuchElementException если дерево пусто
+     */
+    public int maxKey() {
+        if (root == null) {
+            throw new NoSuchElementException();
+        }
+
+        int pending = 0;
+        Node<V> node = root;
+        while (node.right != null) {
+            pending += node.lazy;
+            node = node.right;
+        }
+        return node.key + pending;
+    }
+
+    public int size() {
+        return size(root);
+    }
+
+    /**
+     * Передает в обработчик значения в порядке возрастания ключей вместе с их актуальными ключами. Переход к первому
+     * значению выполняется за O(log n), дерево при обходе не изменяется
+     *
+     * @param fromIndex порядковый номер первого значения
+     * @param limit     максимальное количество обрабатываемых значений
+     * @param consumer  обработчик значений
+     * @return количество переданных в обработчик значений
+     */
+    public int forEach(int fromIndex, int limit, EntryConsumer<? super V> consumer) {
+        Deque<Frame<V>> stack = new ArrayDeque<>();
+
+        int pending = 0;
+        int index = fromIndex;
+        Node<V> node = root;
+        while (node != null) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                stack.push(new Frame<>(node, pending));
+                pending += node.lazy;
+                node = node.left;
+            } else if (index == leftSize) {
+                stack.push(new Frame<>(node, pending));
+                break;
+            } else {
+                index -= leftSize + 1;
+                pending += node.lazy;
+                node = node.right;
+            }
+        }
+
+        int count = 0;
+        while ((count < limit) && !stack.isEmpty()) {
+            Frame<V> frame = stack.pop();
+            consumer.accept(frame.node.value, frame.node.key + frame.pending);
+            count++;
+
+            int childPending = frame.pending + frame.node.lazy;
+            for (Node<V> next = frame.node.right; next != null; next = next.left) {
+                stack.push(new Frame<>(next, childPending));
+                childPending += next.lazy;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Разрезает дерево на узлы с ключами меньше указанного и все остальные
+     */
+    private void split(Node<V> node, int key, Split<V> result) {
+        if (node == null) {
+            result.less = null;
+            result.greaterOrEqual = null;
+            return;
+        }
+
+        pushDown(node);
+        if (node.key < key) {
+            split(node.right, key, result);
+            node.right = result.less;
+            if (node.right != null) {
+                node.right.parent = node;
+            }
+            update(node);
+            result.less = node;
+        } else {
+            split(node.left, key, result);
+            node.left = result.greaterOrEqual;
+            if (node.left != null) {
+                node.left.parent = node;
+            }
+            update(node);
+            result.greaterOrEqual = node;
+        }
+    }
+
+    /**
+     * Сливает два дерева, все ключи первого из которых меньше ключей второго
+     */
+    private Node<V> merge(Node<V> left, Node<V> right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+
+        if (left.priority > right.priority) {
+            pushDown(left);
+            left.right = merge(left.right, right);
+            left.right.parent = left;
+            update(left);
+            return left;
+        } else {
+            pushDown(right);
+            right.left = merge(left, right.left);
+            right.left.parent = right;
+            update(right);
+            return right;
+        }
+    }
+
+    /**
+     * Спускает отложенный сдвиг узла к его потомкам
+     */
+    private static <V> void pushDown(Node<V> node) {
+        if (node.lazy != 0) {
+            apply(node.left, node.lazy);
+            apply(node.right, node.lazy);
+            node.lazy = 0;
+        }
+    }
+
+    private static <V> void apply(Node<V> node, int delta) {
+        if (node != null) {
+            node.key += delta;
+            node.lazy += delta;
+        }
+    }
+
+    private static <V> void update(Node<V> node) {
+        node.size = 1 + size(node.left) + size(node.right);
+    }
+
+    private static <V> Node<V> detach(Node<V> node) {
+        if (node != null) {
+            node.parent = null;
+        }
+        return node;
+    }
+
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    /**
+     * Обработчик значений при обходе дерева
+     */
+    @FunctionalInterface
+    public interface EntryConsumer<V> {
+        /**
+         * @param value значение
+         * @param key   актуальный ключ значения
+         */
+        void accept(V value, int key);
+    }
+
+    /**
+     * Узел дерева. Ключ узла актуален только с учетом отложенных сдвигов предков, см.
+     * {@link LazyShiftTreap#keyOf(Node)}
+     */
+    public static final class Node<V> {
+        private final V value;
+        private final int priority = ThreadLocalRandom.current().nextInt();
+        private int key;
+        private int lazy;
+        private int size = 1;
+        private Node<V> left;
+        private Node<V> right;
+        private Node<V> parent;
+
+        private Node(int key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        public V getValue() {
+            return value;
+        }
+    }
+
+    private static final class Split<V> {
+        Node<V> less;
+        Node<V> greaterOrEqual;
+    }
+
+    private static final class Frame<V> {
+        final Node<V> node;
+        final int pending;
+
+        Frame(Node<V> node, int pending) {
+            this.node = node;
+            this.pending = pending;
+        }
+    }
+}
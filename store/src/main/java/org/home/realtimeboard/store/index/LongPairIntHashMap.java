@@ -0,0 +1,153 @@
+package org.home.realtimeboard.store.index;
+
+import java.util.Arrays;
+
+/**
+ * Хеш-таблица с открытой адресацией, отображающая пару long'ов (например, 128-битный идентификатор) на
+ * неотрицательный int (например, номер слота). Ключи и значения хранятся в примитивных массивах без упаковки,
+ * коллизии разрешаются линейным пробированием, удаление сдвигает следующие записи цепочки назад вместо
+ * использования "надгробий", поэтому поиск не деградирует при частых удалениях.
+ * <p>
+ * Таблица не потокобезопасна.
+ */
+public class LongPairIntHashMap {
+    // Значение, означающее отсутствие ключа
+    public static final int NO_VALUE = -1;
+
+    private static final int INITIAL_CAPACITY = 16;
+    // Заполнение таблицы не превышает половины, чтобы цепочки пробирования оставались короткими
+    private static final int MAX_LOAD_SHIFT = 1;
+
+    private long[] highs;
+    private long[] lows;
+    // NO_VALUE в ячейке означает, что ячейка свободна
+    private int[] values;
+    private int mask;
+    private int size;
+
+    public LongPairIntHashMap() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Ищет значение по ключу
+     *
+     * @return значение или {@link LongPairIntHashMap#NO_VALUE}, если ключ отсутствует
+     */
+    public int get(long high, long low) {
+        for (int i = index(high, low); values[i] != NO_VALUE; i = (i + 1) & mask) {
+            if ((highs[i] == high) && (lows[i] == low)) {
+                return values[i];
+            }
+        }
+        return NO_VALUE;
+    }
+
+    /**
+     * Сопоставляет ключу значение
+     *
+     * @param value неотрицательное значение
+     * @return предыдущее значение или {@link LongPairIntHashMap#NO_VALUE}, если ключа не было
+     */
+    public int put(long high, long low, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Value must not be negative");
+        }
+
+        int i = index(high, low);
+        for (; values[i] != NO_VALUE; i = (i + 1) & mask) {
+            if ((highs[i] == high) && (lows[i] == low)) {
+                int previous = values[i];
+                values[i] = value;
+                return previous;
+            }
+        }
+
+        highs[i] = high;
+        lows[i] = low;
+        values[i] = value;
+        if (++size > (values.length >> MAX_LOAD_SHIFT)) {
+            rehash(values.length << 1);
+        }
+        return NO_VALUE;
+    }
+
+    /**
+     * Удаляет ключ
+     *
+     * @return удаленное значение или {@link LongPairIntHashMap#NO_VALUE}, если ключа не было
+     */
+    public int remove(long high, long low) {
+        int i = index(high, low);
+        for (; values[i] != NO_VALUE; i = (i + 1) & mask) {
+            if ((highs[i] == high) && (lows[i] == low)) {
+                int removed = values[i];
+                shiftBack(i);
+                size--;
+                return removed;
+            }
+        }
+        return NO_VALUE;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Освобождает ячейку, перенося на ее место записи цепочки, которые иначе стали бы недостижимы
+     */
+    private void shiftBack(int free) {
+        for (int i = (free + 1) & mask; values[i] != NO_VALUE; i = (i + 1) & mask) {
+            int home = index(highs[i], lows[i]);
+            // Запись можно перенести, если свободная ячейка лежит на пути от ее исходной позиции до текущей
+            if (((i - home) & mask) >= ((i - free) & mask)) {
+                highs[free] = highs[i];
+                lows[free] = lows[i];
+                values[free] = values[i];
+                free = i;
+            }
+        }
+        values[free] = NO_VALUE;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldHighs = highs;
+        long[] oldLows = lows;
+        int[] oldValues = values;
+        allocate(capacity);
+
+        for (int j = 0; j < oldValues.length; j++) {
+            if (oldValues[j] != NO_VALUE) {
+                int i = index(oldHighs[j], oldLows[j]);
+                while (values[i] != NO_VALUE) {
+                    i = (i + 1) & mask;
+                }
+                highs[i] = oldHighs[j];
+                lows[i] = oldLows[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        highs = new long[capacity];
+        lows = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, NO_VALUE);
+        mask = capacity - 1;
+    }
+
+    private int index(long high, long low) {
+        // Перемешивание всех бит ключа (финализатор MurmurHash3), т.к. биты времени в идентификаторах почти совпадают
+        long hash = high * 0x9E3779B97F4A7C15L ^ low;
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        return (int) hash & mask;
+    }
+}
@@ -0,0 +1,356 @@
+package org.home.realtimeboard.store.index;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Дерево порядковых статистик - декартово дерево поиска (treap), каждый узел которого хранит размер своего поддерева.
+ * Это позволяет за O(log n) находить элемент по его порядковому номеру и начинать обход с произвольной позиции,
+ * а размер дерева получать без обхода.
+ * <p>
+ * Узлы дерева неизменяемы: модификация копирует только путь от корня до измененного узла и публикует новый корень,
+ * поэтому чтение не требует блокировок и всегда видит целостное дерево на момент начала операции. Модификации должны
+ * выполняться не более чем одним потоком одновременно.
+ * <p>
+ * Как и {@link TreeSet}, дерево не хранит элементы, равные с точки зрения компаратора. Допускается изменение ключей
+ * элементов "на месте", если оно не меняет их взаимный порядок.
+ *
+ * @param <E> тип элементов
+ */
+public class OrderStatisticTree<E> implements Iterable<E> {
+    private final Comparator<? super E> comparator;
+    private volatile Node<E> root;
+
+    public OrderStatisticTree(Comparator<? super E> comparator) {
+        this(comparator, null);
+    }
+
+    private OrderStatisticTree(Comparator<? super E> comparator, Node<E> root) {
+        this.comparator = comparator;
+        this.root = root;
+    }
+
+    /**
+     * Возвращает независимую копию дерева за O(1). Копия разделяет с деревом все узлы, т.к. они неизменяемы, поэтому
+     * последующие модификации дерева не видны в копии и наоборот
+     */
+    public OrderStatisticTree<E> snapshot() {
+        return new OrderStatisticTree<>(comparator, root);
+    }
+
+    /**
+     * Добавляет элемент
+     *
+     * @param element новый элемент
+     * @return {@code false}, если равный элемент уже есть в дереве
+     */
+    public boolean add(E element) {
+        Node<E> current = root;
+        Node<E> updated = insert(current, element, ThreadLocalRandom.current().nextInt());
+        if (updated == current) {
+            return false;
+        }
+        root = updated;
+        return true;
+    }
+
+    /**
+     * Удаляет элемент, равный указанному
+     *
+     * @param element образец удаляемого элемента
+     * @return факт удаления элемента
+     */
+    public boolean remove(E element) {
+        Node<E> current = root;
+        Node<E> updated = delete(current, element);
+        if (updated == current) {
+            return false;
+        }
+        root = updated;
+        return true;
+    }
+
+    /**
+     * Заменяет все элементы начиная с указанного порядкового номера результатом функции. Функция не должна менять
+     * взаимный порядок элементов и их порядок относительно предшествующих элементов. Копируются только затронутые узлы
+     * и путь к ним, т.е. O(k + log n) узлов для k заменяемых элементов
+     *
+     * @param fromIndex порядковый номер первого заменяемого элемента
+     * @param mapper    функция замены, вызывается для элементов в порядке возрастания
+     */
+    public void mapFrom(int fromIndex, UnaryOperator<E> mapper) {
+        Node<E> current = root;
+        if (fromIndex < size(current)) {
+            root = mapFrom(current, Math.max(fromIndex, 0), mapper);
+        }
+    }
+
+    /**
+     * Проверяет наличие в дереве элемента, равного указанному
+     */
+    public boolean contains(E element) {
+        Node<E> node = root;
+        while (node != null) {
+            int cmp = comparator.compare(element, node.value);
+            if (cmp == 0) {
+                return true;
+            }
+            node = cmp < 0 ? node.left : node.right;
+        }
+        return false;
+    }
+
+    /**
+     * Возвращает элемент с указанным порядковым номером
+     *
+     * @param index порядковый номер элемента, начиная с нуля
+     * @throws IndexOutOfBoundsException если номер выходит за границы дерева
+     */
+    public E get(int index) {
+        Node<E> node = root;
+        if ((index < 0) || (index >= size(node))) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size(node));
+        }
+
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index == leftSize) {
+                return node.value;
+            } else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    /**
+     * Возвращает количество элементов дерева, строго меньших указанного. Для элемента, присутствующего в дереве, это его
+     * порядковый номер
+     */
+    public int rank(E element) {
+        int rank = 0;
+        Node<E> node = root;
+        while (node != null) {
+            if (comparator.compare(element, node.value) <= 0) {
+                node = node.left;
+            } else {
+                rank += size(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * Возвращает последний (наибольший) элемент
+     *
+     * @throws NoSuchElementException если дерево пусто
+     */
+    public E last() {
+        Node<E> node = root;
+        if (node == null) {
+            throw new NoSuchElementException();
+        }
+        while (node.right != null) {
+            node = node.right;
+        }
+        return node.value;
+    }
+
+    /**
+     * Возвращает количество элементов дерева, не требует обхода
+     */
+    public int size() {
+        return size(root);
+    }
+
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return iterator(0);
+    }
+
+    /**
+     * Возвращает итератор по элементам дерева в порядке возрастания, начиная с элемента с указанным порядковым
+     * номером. Переход к начальному элементу выполняется за O(log n), итератор обходит состояние дерева на момент
+     * своего создания
+     *
+     * @param fromIndex порядковый номер первого элемента
+     */
+    public Iterator<E> iterator(int fromIndex) {
+        return new TreeIterator<>(root, fromIndex);
+    }
+
+    /**
+     * Возвращает поток элементов дерева в порядке возрастания, начиная с элемента с указанным порядковым номером
+     *
+     * @param fromIndex порядковый номер первого элемента
+     */
+    public Stream<E> stream(long fromIndex) {
+        Node<E> snapshot = root;
+        int size = size(snapshot);
+        int from = (int) Math.min(Math.max(fromIndex, 0), size);
+        Spliterator<E> spliterator = Spliterators.spliterator(new TreeIterator<>(snapshot, from), size - from,
+                Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false);
+    }
+
+    public Stream<E> stream() {
+        return stream(0);
+    }
+
+    private Node<E> insert(Node<E> node, E element, int priority) {
+        if (node == null) {
+            return new Node<>(element, priority, null, null);
+        }
+
+        int cmp = comparator.compare(element, node.value);
+        if (cmp == 0) {
+            return node;
+        }
+
+        if (cmp < 0) {
+            Node<E> left = insert(node.left, element, priority);
+            if (left == node.left) {
+                return node;
+            }
+            if (left.priority > node.priority) {
+                // Правый поворот
+                return new Node<>(left.value, left.priority, left.left,
+                        new Node<>(node.value, node.priority, left.right, node.right));
+            }
+            return new Node<>(node.value, node.priority, left, node.right);
+        } else {
+            Node<E> right = insert(node.right, element, priority);
+            if (right == node.right) {
+                return node;
+            }
+            if (right.priority > node.priority) {
+                // Левый поворот
+                return new Node<>(right.value, right.priority,
+                        new Node<>(node.value, node.priority, node.left, right.left), right.right);
+            }
+            return new Node<>(node.value, node.priority, node.left, right);
+        }
+    }
+
+    private Node<E> mapFrom(Node<E> node, int fromIndex, UnaryOperator<E> mapper) {
+        if (node == null) {
+            return null;
+        }
+
+        int leftSize = size(node.left);
+        if (fromIndex > leftSize) {
+            return new Node<>(node.value, node.priority, node.left, mapFrom(node.right, fromIndex - leftSize - 1, mapper));
+        }
+
+        // Узел и все его правое поддерево затрагиваются заменой, левое - начиная с fromIndex
+        Node<E> left = mapFrom(node.left, fromIndex, mapper);
+        E value = mapper.apply(node.value);
+        return new Node<>(value, node.priority, left, mapFrom(node.right, 0, mapper));
+    }
+
+    private Node<E> delete(Node<E> node, E element) {
+        if (node == null) {
+            return null;
+        }
+
+        int cmp = comparator.compare(element, node.value);
+        if (cmp < 0) {
+            Node<E> left = delete(node.left, element);
+            return left == node.left ? node : new Node<>(node.value, node.priority, left, node.right);
+        } else if (cmp > 0) {
+            Node<E> right = delete(node.right, element);
+            return right == node.right ? node : new Node<>(node.value, node.priority, node.left, right);
+        }
+        return merge(node.left, node.right);
+    }
+
+    /**
+     * Сливает два дерева, все элементы первого из которых меньше элементов второго
+     */
+    private Node<E> merge(Node<E> left, Node<E> right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            return new Node<>(left.value, left.priority, left.left, merge(left.right, right));
+        }
+        return new Node<>(right.value, right.priority, merge(left, right.left), right.right);
+    }
+
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static final class Node<E> {
+        final E value;
+        final int priority;
+        final int size;
+        final Node<E> left;
+        final Node<E> right;
+
+        Node(E value, int priority, Node<E> left, Node<E> right) {
+            this.value = value;
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+            this.size = 1 + size(left) + size(right);
+        }
+    }
+
+    /**
+     * Итератор по неизменяемому снимку дерева. Стек хранит узлы, которые еще предстоит вернуть, вместе с правыми
+     * поддеревьями
+     */
+    private static final class TreeIterator<E> implements Iterator<E> {
+        private final Deque<Node<E>> stack = new ArrayDeque<>();
+
+        TreeIterator(Node<E> root, int fromIndex) {
+            Node<E> node = root;
+            int index = fromIndex;
+            while (node != null) {
+                int leftSize = size(node.left);
+                if (index < leftSize) {
+                    stack.push(node);
+                    node = node.left;
+                } else if (index == leftSize) {
+                    stack.push(node);
+                    break;
+                } else {
+                    index -= leftSize + 1;
+                    node = node.right;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !stack.isEmpty();
+        }
+
+        @Override
+        public E next() {
+            if (stack.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+
+            Node<E> node = stack.pop();
+            for (Node<E> next = node.right; next != null; next = next.left) {
+                stack.push(next);
+            }
+            return node.value;
+        }
+    }
+}
@@ -0,0 +1,356 @@
+package org.home.realtimeboard.store.index;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Неизменяемое ассоциативное отображение на основе Hash Array Mapped Trie (HAMT).
+ * <p>
+ * Каждый уровень дерева индексируется очередными 5 битами хеша ключа, узел хранит битовую маску занятых позиций и
+ * компактный массив только занятых позиций. Модификация возвращает новое отображение, копируя лишь путь от корня до
+ * измененного узла (не более 7 узлов), остальные узлы разделяются с исходным отображением. Ключи с полностью
+ * совпадающим хешем хранятся в отдельном узле коллизий.
+ *
+ * @param <K> тип ключей
+ * @param <V> тип значений
+ */
+public final class PersistentHashMap<K, V> {
+    // Количество бит хеша на один уровень дерева
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private static final PersistentHashMap<?, ?> EMPTY = new PersistentHashMap<>(null, 0);
+
+    private final Node<K, V> root;
+    private final int size;
+
+    private PersistentHashMap(Node<K, V> root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Возвращает пустое отображение
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentHashMap<K, V> empty() {
+        return (PersistentHashMap<K, V>) EMPTY;
+    }
+
+    /**
+     * Ищет значение по ключу
+     *
+     * @return значение или {@code null}, если ключ отсутствует
+     */
+    public V get(K key) {
+        return root == null ? null : root.get(0, hash(key), key);
+    }
+
+    public boolean containsKey(K key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Возвращает отображение, в котором ключу сопоставлено указанное значение
+     *
+     * @param key   ключ
+     * @param value значение, не может быть {@code null}
+     */
+    public PersistentHashMap<K, V> put(K key, V value) {
+        Objects.requireNonNull(value, "Value must not be null");
+
+        Entry<K, V> entry = new Entry<>(hash(key), key, value);
+        if (root == null) {
+            return new PersistentHashMap<>(BitmapNode.<K, V>empty().put(0, entry), 1);
+        }
+
+        Node<K, V> updated = root.put(0, entry);
+        if (updated == root) {
+            return this;
+        }
+        // Размер не меняется при замене значения существующего ключа
+        return new PersistentHashMap<>(updated, root.get(0, entry.hash, key) == null ? size + 1 : size);
+    }
+
+    /**
+     * Возвращает отображение без указанного ключа
+     */
+    public PersistentHashMap<K, V> remove(K key) {
+        if (root == null) {
+            return this;
+        }
+
+        Node<K, V> updated = root.remove(0, hash(key), key);
+        if (updated == root) {
+            return this;
+        }
+        return updated == null ? empty() : new PersistentHashMap<>(updated, size - 1);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private static int hash(Object key) {
+        // Перемешивание старших бит, как и в HashMap, т.к. нижние уровни дерева используют старшие биты хеша
+        int hash = Objects.hashCode(key);
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Узел дерева
+     */
+    private interface Node<K, V> {
+        V get(int shift, int hash, K key);
+
+        /**
+         * @return новый узел с добавленной записью или этот же узел, если запись в нем уже есть
+         */
+        Node<K, V> put(int shift, Entry<K, V> entry);
+
+        /**
+         * @return новый узел без ключа, этот же узел, если ключа нет, или {@code null}, если узел стал пуст
+         */
+        Node<K, V> remove(int shift, int hash, K key);
+
+        /**
+         * @return единственную запись узла или {@code null}, если в узле больше одной записи или есть вложенные узлы
+         */
+        Entry<K, V> singleEntry();
+    }
+
+    private static final class Entry<K, V> {
+        final int hash;
+        final K key;
+        final V value;
+
+        Entry(int hash, K key, V value) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+        }
+
+        boolean matches(int hash, Object key) {
+            return (this.hash == hash) && Objects.equals(this.key, key);
+        }
+    }
+
+    /**
+     * Узел с битовой маской занятых позиций. Элемент массива - либо {@link Entry}, либо вложенный {@link Node}
+     */
+    private static final class BitmapNode<K, V> implements Node<K, V> {
+        private static final BitmapNode<?, ?> EMPTY = new BitmapNode<>(0, new Object[0]);
+
+        final int bitmap;
+        final Object[] slots;
+
+        BitmapNode(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        @SuppressWarnings("unchecked")
+        static <K, V> BitmapNode<K, V> empty() {
+            return (BitmapNode<K, V>) EMPTY;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V get(int shift, int hash, K key) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+
+            Object slot = slots[index(bit)];
+            if (slot instanceof Entry) {
+                Entry<K, V> entry = (Entry<K, V>) slot;
+                return entry.matches(hash, key) ? entry.value : null;
+            }
+            return ((Node<K, V>) slot).get(shift + BITS, hash, key);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Node<K, V> put(int shift, Entry<K, V> entry) {
+            int bit = bit(entry.hash, shift);
+            int index = index(bit);
+
+            if ((bitmap & bit) == 0) {
+                Object[] updated = new Object[slots.length + 1];
+                System.arraycopy(slots, 0, updated, 0, index);
+                updated[index] = entry;
+                System.arraycopy(slots, index, updated, index + 1, slots.length - index);
+                return new BitmapNode<>(bitmap | bit, updated);
+            }
+
+            Object slot = slots[index];
+            Object replacement;
+            if (slot instanceof Entry) {
+                Entry<K, V> existing = (Entry<K, V>) slot;
+                if (existing.matches(entry.hash, entry.key)) {
+                    if (existing.value == entry.value) {
+                        return this;
+                    }
+                    replacement = entry;
+                } else {
+                    replacement = merge(shift + BITS, existing, entry);
+                }
+            } else {
+                Node<K, V> child = (Node<K, V>) slot;
+                Node<K, V> updatedChild = child.put(shift + BITS, entry);
+                if (updatedChild == child) {
+                    return this;
+                }
+                replacement = updatedChild;
+            }
+
+            Object[] updated = slots.clone();
+            updated[index] = replacement;
+            return new BitmapNode<>(bitmap, updated);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Node<K, V> remove(int shift, int hash, K key) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+
+            int index = index(bit);
+            Object slot = slots[index];
+            if (slot instanceof Entry) {
+                return ((Entry<K, V>) slot).matches(hash, key) ? without(bit, index) : this;
+            }
+
+            Node<K, V> child = (Node<K, V>) slot;
+            Node<K, V> updatedChild = child.remove(shift + BITS, hash, key);
+            if (updatedChild == child) {
+                return this;
+            }
+            if (updatedChild == null) {
+                return without(bit, index);
+            }
+
+            // Узел с единственной записью заменяется самой записью, чтобы дерево не вырождалось в цепочки
+            Entry<K, V> single = updatedChild.singleEntry();
+            Object[] updated = slots.clone();
+            updated[index] = single != null ? single : updatedChild;
+            return new BitmapNode<>(bitmap, updated);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Entry<K, V> singleEntry() {
+            return (slots.length == 1) && (slots[0] instanceof Entry) ? (Entry<K, V>) slots[0] : null;
+        }
+
+        private Node<K, V> without(int bit, int index) {
+            if (slots.length == 1) {
+                return null;
+            }
+
+            Object[] updated = new Object[slots.length - 1];
+            System.arraycopy(slots, 0, updated, 0, index);
+            System.arraycopy(slots, index + 1, updated, index, slots.length - index - 1);
+            return new BitmapNode<>(bitmap & ~bit, updated);
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        private static int bit(int hash, int shift) {
+            return 1 << ((hash >>> shift) & MASK);
+        }
+
+        /**
+         * Формирует узел из двух записей с разными ключами
+         */
+        private static <K, V> Node<K, V> merge(int shift, Entry<K, V> first, Entry<K, V> second) {
+            if (first.hash == second.hash) {
+                @SuppressWarnings({"unchecked", "rawtypes"})
+                Entry<K, V>[] entries = new Entry[]{first, second};
+                return new CollisionNode<>(first.hash, entries);
+            }
+            return BitmapNode.<K, V>empty().put(shift, first).put(shift, second);
+        }
+    }
+
+    /**
+     * Узел для ключей с полностью совпадающим хешем
+     */
+    private static final class CollisionNode<K, V> implements Node<K, V> {
+        final int hash;
+        final Entry<K, V>[] entries;
+
+        CollisionNode(int hash, Entry<K, V>[] entries) {
+            this.hash = hash;
+            this.entries = entries;
+        }
+
+        @Override
+        public V get(int shift, int hash, K key) {
+            int index = find(hash, key);
+            return index < 0 ? null : entries[index].value;
+        }
+
+        @Override
+        public Node<K, V> put(int shift, Entry<K, V> entry) {
+            if (entry.hash != hash) {
+                // Ключ с другим хешем: узел коллизий опускается на уровень ниже под новым узлом с маской
+                Node<K, V> nested = new BitmapNode<>(BitmapNode.bit(hash, shift), new Object[]{this});
+                return nested.put(shift, entry);
+            }
+
+            int index = find(entry.hash, entry.key);
+            if (index >= 0) {
+                if (entries[index].value == entry.value) {
+                    return this;
+                }
+                Entry<K, V>[] updated = entries.clone();
+                updated[index] = entry;
+                return new CollisionNode<>(hash, updated);
+            }
+
+            Entry<K, V>[] updated = Arrays.copyOf(entries, entries.length + 1);
+            updated[entries.length] = entry;
+            return new CollisionNode<>(hash, updated);
+        }
+
+        @Override
+        public Node<K, V> remove(int shift, int hash, K key) {
+            int index = find(hash, key);
+            if (index < 0) {
+                return this;
+            }
+            if (entries.length == 1) {
+                return null;
+            }
+
+            // Копия без последнего элемента уже содержит записи до удаляемой, остальные сдвигаются на ее место
+            Entry<K, V>[] updated = Arrays.copyOf(entries, entries.length - 1);
+            System.arraycopy(entries, index + 1, updated, index, entries.length - index - 1);
+            return new CollisionNode<>(this.hash, updated);
+        }
+
+        @Override
+        public Entry<K, V> singleEntry() {
+            return entries.length == 1 ? entries[0] : null;
+        }
+
+        private int find(int hash, Object key) {
+            for (int i = 0; i < entries.length; i++) {
+                if (entries[i].matches(hash, key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,418 @@
+package org.home.realtimeboard.store.index;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * R-дерево для индексации прямоугольников (алгоритм Guttman'а с квадратичным разбиением узлов)
+ * <p>
+ * Прямоугольник задается координатами левого верхнего и правого нижнего углов. Дерево не потокобезопасно,
+ * синхронизация доступа лежит на вызывающей стороне.
+ *
+ * @param <T> тип индексируемых значений
+ */
+public class RTree<T> {
+    // Максимальное количество элементов в узле по умолчанию
+    private static final int DEFAULT_MAX_ENTRIES = 16;
+
+    private final int maxEntries;
+    private final int minEntries;
+
+    private Node root;
+    private int size;
+
+    public RTree() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    public RTree(int maxEntries) {
+        if (maxEntries < 4) {
+            throw new IllegalArgumentException("Node capacity must be at least 4");
+        }
+        this.maxEntries = maxEntries;
+        this.minEntries = Math.max(2, maxEntries * 2 / 5);
+        this.root = new Node(true);
+    }
+
+    /**
+     * Добавляет значение с указанным ограничивающим прямоугольником
+     *
+     * @param minX  минимальная X координата
+     * @param minY  минимальная Y координата
+     * @param maxX  максимальная X координата
+     * @param maxY  максимальная Y координата
+     * @param value индексируемое значение
+     */
+    public void insert(int minX, int minY, int maxX, int maxY, T value) {
+        insert(new Entry<>(minX, minY, maxX, maxY, value));
+        size++;
+    }
+
+    /**
+     * Удаляет значение из дерева. Значение ищется по ссылке, прямоугольник должен совпадать с указанным при вставке
+     *
+     * @param minX  минимальная X координата
+     * @param minY  минимальная Y координата
+     * @param maxX  максимальная X координата
+     * @param maxY  максимальная Y координата
+     * @param value удаляемое значение
+     * @return факт удаления значения
+     */
+    public boolean remove(int minX, int minY, int maxX, int maxY, T value) {
+        Box box = new Box(minX, minY, maxX, maxY);
+        Node leaf = findLeaf(root, box, value);
+        if (leaf == null) {
+            return false;
+        }
+
+        leaf.children.removeIf(e -> ((Entry<?>) e).value == value);
+        condenseTree(leaf);
+        size--;
+
+        return true;
+    }
+
+    /**
+     * Передает в обработчик все значения, прямоугольники которых полностью лежат внутри указанной области.
+     * Просматриваются только узлы, пересекающиеся с областью
+     *
+     * @param minX     минимальная X координата области
+     * @param minY     минимальная Y координата области
+     * @param maxX     максимальная X координата области
+     * @param maxY     максимальная Y координата области
+     * @param consumer обработчик найденных значений
+     */
+    @SuppressWarnings("unchecked")
+    public void findContained(int minX, int minY, int maxX, int maxY, Consumer<T> consumer) {
+        if (size == 0) {
+            return;
+        }
+
+        Box query = new Box(minX, minY, maxX, maxY);
+        Deque<Node> nodes = new ArrayDeque<>();
+        nodes.push(root);
+        while (!nodes.isEmpty()) {
+            Node node = nodes.pop();
+            for (Box child : node.children) {
+                if (node.leaf) {
+                    if (query.contains(child)) {
+                        consumer.accept(((Entry<T>) child).value);
+                    }
+                } else if (query.intersects(child)) {
+                    nodes.push((Node) child);
+                }
+            }
+        }
+    }
+
+    /**
+     * Возвращает количество значений в дереве
+     */
+    public int size() {
+        return size;
+    }
+
+    private void insert(Entry<T> entry) {
+        Node leaf = chooseLeaf(entry);
+        leaf.children.add(entry);
+        adjustTree(leaf, leaf.children.size() > maxEntries ? split(leaf) : null);
+    }
+
+    /**
+     * Выбирает лист для вставки: на каждом уровне спускается в узел, требующий минимального расширения
+     */
+    private Node chooseLeaf(Box box) {
+        Node node = root;
+        while (!node.leaf) {
+            Node best = null;
+            long bestEnlargement = Long.MAX_VALUE;
+            long bestArea = Long.MAX_VALUE;
+            for (Box child : node.children) {
+                long area = child.area();
+                long enlargement = child.enlargement(box);
+                if ((enlargement < bestEnlargement) || ((enlargement == bestEnlargement) && (area < bestArea))) {
+                    best = (Node) child;
+                    bestEnlargement = enlargement;
+                    bestArea = area;
+                }
+            }
+            node = best;
+        }
+        return node;
+    }
+
+    /**
+     * Пересчитывает границы узлов от указанного до корня, распространяя разбиения узлов вверх по дереву
+     *
+     * @param node    измененный узел
+     * @param sibling новый узел, полученный при разбиении измененного, или {@code null}
+     */
+    private void adjustTree(Node node, Node sibling) {
+        while (true) {
+            node.recalculate();
+
+            Node parent = node.parent;
+            if (parent == null) {
+                if (sibling != null) {
+                    Node newRoot = new Node(false);
+                    newRoot.addChild(node);
+                    newRoot.addChild(sibling);
+                    newRoot.recalculate();
+                    root = newRoot;
+                }
+                return;
+            }
+
+            if (sibling != null) {
+                parent.addChild(sibling);
+                sibling = parent.children.size() > maxEntries ? split(parent) : null;
+            }
+            node = parent;
+        }
+    }
+
+    /**
+     * Разбивает переполненный узел на два по квадратичному алгоритму
+     *
+     * @param node переполненный узел, после разбиения в нем остается первая группа элементов
+     * @return новый узел со второй группой элементов
+     */
+    private Node split(Node node) {
+        List<Box> items = new ArrayList<>(node.children);
+        node.children.clear();
+        Node sibling = new Node(node.leaf);
+
+        // Выбор "затравок" - пары элементов, объединение которых дает наибольшую бесполезную площадь
+        int first = 0;
+        int second = 1;
+        long worstWaste = Long.MIN_VALUE;
+        for (int i = 0; i < items.size(); i++) {
+            for (int j = i + 1; j < items.size(); j++) {
+                Box a = items.get(i);
+                Box b = items.get(j);
+                long waste = a.union(b).area() - a.area() - b.area();
+                if (waste > worstWaste) {
+                    worstWaste = waste;
+                    first = i;
+                    second = j;
+                }
+            }
+        }
+
+        // Сначала удаляется элемент с большим индексом, чтобы не сдвинуть второй
+        Box siblingSeed = items.remove(second);
+        Box nodeSeed = items.remove(first);
+        node.addChild(nodeSeed).set(nodeSeed);
+        sibling.addChild(siblingSeed).set(siblingSeed);
+
+        while (!items.isEmpty()) {
+            // Оставшиеся элементы целиком уходят в группу, которой иначе не хватит до минимального заполнения
+            if (node.children.size() + items.size() <= minEntries) {
+                items.forEach(item -> node.addChild(item).extend(item));
+                break;
+            }
+            if (sibling.children.size() + items.size() <= minEntries) {
+                items.forEach(item -> sibling.addChild(item).extend(item));
+                break;
+            }
+
+            // Следующим распределяется элемент с наибольшей разницей в расширении групп
+            int next = 0;
+            long maxDifference = -1;
+            for (int i = 0; i < items.size(); i++) {
+                long difference = Math.abs(node.enlargement(items.get(i)) - sibling.enlargement(items.get(i)));
+                if (difference > maxDifference) {
+                    maxDifference = difference;
+                    next = i;
+                }
+            }
+
+            Box item = items.remove(next);
+            long nodeEnlargement = node.enlargement(item);
+            long siblingEnlargement = sibling.enlargement(item);
+            Node target;
+            if (nodeEnlargement != siblingEnlargement) {
+                target = nodeEnlargement < siblingEnlargement ? node : sibling;
+            } else if (node.area() != sibling.area()) {
+                target = node.area() < sibling.area() ? node : sibling;
+            } else {
+                target = node.children.size() <= sibling.children.size() ? node : sibling;
+            }
+            target.addChild(item).extend(item);
+        }
+
+        return sibling;
+    }
+
+    /**
+     * Ищет лист, содержащий указанное значение
+     */
+    private Node findLeaf(Node node, Box box, T value) {
+        if (node.leaf) {
+            for (Box child : node.children) {
+                if (((Entry<?>) child).value == value) {
+                    return node;
+                }
+            }
+            return null;
+        }
+
+        for (Box child : node.children) {
+            if (child.contains(box)) {
+                Node leaf = findLeaf((Node) child, box, value);
+                if (leaf != null) {
+                    return leaf;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Удаляет недозаполненные узлы на пути от листа к корню, их элементы вставляются в дерево заново
+     *
+     * @param leaf лист, из которого было удалено значение
+     */
+    @SuppressWarnings("unchecked")
+    private void condenseTree(Node leaf) {
+        List<Entry<T>> orphans = new ArrayList<>();
+
+        Node node = leaf;
+        while (node.parent != null) {
+            Node parent = node.parent;
+            if (node.children.size() < minEntries) {
+                parent.children.remove(node);
+                collectEntries(node, orphans);
+            } else {
+                node.recalculate();
+            }
+            node = parent;
+        }
+
+        if (!root.leaf && root.children.isEmpty()) {
+            root = new Node(true);
+        }
+        root.recalculate();
+
+        for (Entry<T> orphan : orphans) {
+            insert(orphan);
+        }
+
+        // Корень с единственным потомком не нужен, дерево становится ниже на уровень
+        while (!root.leaf && (root.children.size() == 1)) {
+            root = (Node) root.children.get(0);
+            root.parent = null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void collectEntries(Node node, List<Entry<T>> entries) {
+        for (Box child : node.children) {
+            if (node.leaf) {
+                entries.add((Entry<T>) child);
+            } else {
+                collectEntries((Node) child, entries);
+            }
+        }
+    }
+
+    /**
+     * Прямоугольник, ограничивающий элемент дерева
+     */
+    private static class Box {
+        int minX;
+        int minY;
+        int maxX;
+        int maxY;
+
+        Box(int minX, int minY, int maxX, int maxY) {
+            this.minX = minX;
+            this.minY = minY;
+            this.maxX = maxX;
+            this.maxY = maxY;
+        }
+
+        long area() {
+            return ((long) maxX - minX) * ((long) maxY - minY);
+        }
+
+        long enlargement(Box other) {
+            return union(other).area() - area();
+        }
+
+        Box union(Box other) {
+            return new Box(Math.min(minX, other.minX), Math.min(minY, other.minY),
+                    Math.max(maxX, other.maxX), Math.max(maxY, other.maxY));
+        }
+
+        boolean contains(Box other) {
+            return (other.minX >= minX) && (other.maxX <= maxX) && (other.minY >= minY) && (other.maxY <= maxY);
+        }
+
+        boolean intersects(Box other) {
+            return (other.minX <= maxX) && (other.maxX >= minX) && (other.minY <= maxY) && (other.maxY >= minY);
+        }
+
+        void set(Box other) {
+            this.minX = other.minX;
+            this.minY = other.minY;
+            this.maxX = other.maxX;
+            this.maxY = other.maxY;
+        }
+
+        void extend(Box other) {
+            this.minX = Math.min(minX, other.minX);
+            this.minY = Math.min(minY, other.minY);
+            this.maxX = Math.max(maxX, other.maxX);
+            this.maxY = Math.max(maxY, other.maxY);
+        }
+    }
+
+    /**
+     * Значение, хранящееся в листе дерева
+     */
+    private static final class Entry<T> extends Box {
+        final T value;
+
+        Entry(int minX, int minY, int maxX, int maxY, T value) {
+            super(minX, minY, maxX, maxY);
+            this.value = value;
+        }
+    }
+
+    /**
+     * Узел дерева. Потомками листа являются {@link Entry}, потомками внутреннего узла - другие узлы
+     */
+    private static final class Node extends Box {
+        final boolean leaf;
+        final List<Box> children = new ArrayList<>();
+        Node parent;
+
+        Node(boolean leaf) {
+            super(0, 0, 0, 0);
+            this.leaf = leaf;
+        }
+
+        Node addChild(Box child) {
+            children.add(child);
+            if (child instanceof Node) {
+                ((Node) child).parent = this;
+            }
+            return this;
+        }
+
+        void recalculate() {
+            if (children.isEmpty()) {
+                set(new Box(0, 0, 0, 0));
+                return;
+            }
+            set(children.get(0));
+            for (Box child : children) {
+                extend(child);
+            }
+        }
+    }
+}
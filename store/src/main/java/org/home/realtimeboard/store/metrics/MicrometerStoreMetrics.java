@@ -0,0 +1,131 @@
+package org.home.realtimeboard.store.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.home.realtimeboard.store.AdaptedWidgetStore;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Публикует метрики хранилища в {@link MeterRegistry}:
+ * <ul>
+ * <li>{@code store.lock.wait} - количество захватов блокировки хранилища и суммарное время ожидания с тегом
+ * {@code mode} ({@code read} или {@code write})</li>
+ * <li>{@code store.read.retries} - количество повторов неблокирующего чтения из-за параллельной записи</li>
+ * <li>{@code store.pushout.shifted} - распределение количества виджетов, выпихнутых одним изменением</li>
+ * <li>{@code store.findall.rows} - количество виджетов, перебранных ({@code result=scanned}) и возвращенных
+ * ({@code result=returned}) при выборке страниц</li>
+ * </ul>
+ * Счетчики горячего пути накапливаются в {@link LongAdder}, которые реестр читает только при публикации, так что
+ * параллельные операции не конкурируют за одну ячейку памяти. Распределение выпихиваний записывается под
+ * блокировкой на запись, поэтому конкуренции за него нет.
+ * <p>
+ * Один экземпляр можно передать нескольким хранилищам, тогда метрики публикуются суммарно по ним
+ */
+public class MicrometerStoreMetrics implements StoreMetrics {
+    private final MeterRegistry registry;
+    private final Tags tags;
+
+    private final LongAdder readLockCount = new LongAdder();
+    private final LongAdder readLockWaitNanos = new LongAdder();
+    private final LongAdder writeLockCount = new LongAdder();
+    private final LongAdder writeLockWaitNanos = new LongAdder();
+    private final LongAdder readRetries = new LongAdder();
+    private final LongAdder scannedRows = new LongAdder();
+    private final LongAdder returnedRows = new LongAdder();
+    private final DistributionSummary pushOutShifted;
+
+    public MicrometerStoreMetrics(MeterRegistry registry) {
+        this(registry, Tags.empty());
+    }
+
+    /**
+     * @param registry реестр для публикации метрик
+     * @param tags     теги всех метрик, например тег, отличающий общее хранилище от хранилищ досок
+     */
+    public MicrometerStoreMetrics(MeterRegistry registry, Tags tags) {
+        this.registry = registry;
+        this.tags = tags;
+
+        registerLockTimer("read", readLockCount, readLockWaitNanos);
+        registerLockTimer("write", writeLockCount, writeLockWaitNanos);
+        FunctionCounter.builder("store.read.retries", readRetries, LongAdder::sum)
+                .tags(tags)
+                .description("Optimistic reads discarded because of a concurrent write")
+                .register(registry);
+        registerRowCounter("scanned", scannedRows);
+        registerRowCounter("returned", returnedRows);
+        pushOutShifted = DistributionSummary.builder("store.pushout.shifted")
+                .tags(tags)
+                .description("Widgets shifted by a single push out")
+                .baseUnit("widgets")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    /**
+     * Регистрирует показатели состояния хранилища: количество виджетов {@code store.size} и максимальный z-index
+     * {@code store.max.zindex}. Показатели читаются при публикации метрик и относятся к одному хранилищу, поэтому
+     * регистрируются только для метрик, не общих для нескольких хранилищ
+     */
+    public void monitor(AdaptedWidgetStore store) {
+        Gauge.builder("store.size", store, AdaptedWidgetStore::size)
+                .tags(tags)
+                .description("Widgets in the store")
+                .baseUnit("widgets")
+                .register(registry);
+        Gauge.builder("store.max.zindex", store, AdaptedWidgetStore::getMaxZIndex)
+                .tags(tags)
+                .description("Maximum z-index in the store")
+                .register(registry);
+    }
+
+    @Override
+    public void lockAcquired(boolean write, long waitNanos) {
+        if (write) {
+            writeLockCount.increment();
+            writeLockWaitNanos.add(waitNanos);
+        } else {
+            readLockCount.increment();
+            readLockWaitNanos.add(waitNanos);
+        }
+    }
+
+    @Override
+    public void readRetried() {
+        readRetries.increment();
+    }
+
+    @Override
+    public void pushedOut(int shifted) {
+        pushOutShifted.record(shifted);
+    }
+
+    @Override
+    public void pageScanned(long scanned, int returned) {
+        scannedRows.add(scanned);
+        returnedRows.add(returned);
+    }
+
+    private void registerLockTimer(String mode, LongAdder count, LongAdder waitNanos) {
+        FunctionTimer.builder("store.lock.wait", count, LongAdder::sum, c -> waitNanos.sum(), TimeUnit.NANOSECONDS)
+                .tags(tags)
+                .tag("mode", mode)
+                .description("Time spent waiting for the store lock")
+                .register(registry);
+    }
+
+    private void registerRowCounter(String result, LongAdder rows) {
+        FunctionCounter.builder("store.findall.rows", rows, LongAdder::sum)
+                .tags(tags)
+                .tag("result", result)
+                .description("Widgets scanned and returned by page queries")
+                .baseUnit("widgets")
+                .register(registry);
+    }
+}
@@ -0,0 +1,46 @@
+package org.home.realtimeboard.store.metrics;
+
+/**
+ * Приемник внутренних метрик {@link org.home.realtimeboard.store.AdaptedWidgetStore}. Методы вызываются на горячем
+ * пути операций хранилища, в том числе под блокировкой на запись, поэтому реализация не должна блокироваться и
+ * выполнять заметную работу. По умолчанию метрики не собираются
+ */
+public interface StoreMetrics {
+    /**
+     * Метрики отключены
+     */
+    StoreMetrics NONE = new StoreMetrics() {
+    };
+
+    /**
+     * Блокировка хранилища захвачена
+     *
+     * @param write     блокировка на запись, иначе на чтение
+     * @param waitNanos время ожидания блокировки в наносекундах, {@code 0}, если блокировка была свободна
+     */
+    default void lockAcquired(boolean write, long waitNanos) {
+    }
+
+    /**
+     * Неблокирующее чтение отброшено из-за параллельной записи и будет повторено
+     */
+    default void readRetried() {
+    }
+
+    /**
+     * Выполнено выпихивание, вызывается под блокировкой на запись
+     *
+     * @param shifted количество выпихнутых виджетов, {@code 0} при отсутствии коллизии
+     */
+    default void pushedOut(int shifted) {
+    }
+
+    /**
+     * Выбрана страница виджетов
+     *
+     * @param scanned  количество виджетов, перебранных для формирования страницы
+     * @param returned количество виджетов на странице
+     */
+    default void pageScanned(long scanned, int returned) {
+    }
+}
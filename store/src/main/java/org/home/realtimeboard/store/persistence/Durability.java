@@ -0,0 +1,21 @@
+package org.home.realtimeboard.store.persistence;
+
+/**
+ * Уровень надежности записи в журнал {@link WriteAheadLog}
+ */
+public enum Durability {
+    /**
+     * Запись без сброса на диск, данные теряются при сбое ОС, но не при перезапуске приложения
+     */
+    NONE,
+
+    /**
+     * Групповая фиксация: один сброс на диск подтверждает все записи, накопившиеся к его началу
+     */
+    GROUP_COMMIT,
+
+    /**
+     * Отдельный сброс на диск для каждой записи
+     */
+    PER_OPERATION
+}
@@ -0,0 +1,398 @@
+package org.home.realtimeboard.store.persistence;
+
+import lombok.Getter;
+import org.home.realtimeboard.model.Widget;
+import org.home.realtimeboard.store.id.WidgetId;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+
+/**
+ * Снимок состояния хранилища в компактном поколоночном двоичном формате.
+ * <p>
+ * Виджеты хранятся в порядке z-index, каждое поле - отдельной колонкой: идентификаторы - упакованными парами long'ов,
+ * маски заполненных полей - по байту, z-index'ы, координаты и даты модификации - разностями с предыдущим виджетом в
+ * формате varint (zig-zag), размеры - значениями в том же формате. Заголовок содержит позицию журнала, до которой
+ * снимок отражает изменения, и каталог колонок с их длинами и контрольными суммами, и сам защищен контрольной суммой.
+ * <p>
+ * При чтении файл отображается в память, колонки проверяются и декодируются параллельно. Любое повреждение файла,
+ * обнаруженное при чтении, приводит к {@link IllegalStateException}.
+ */
+@Getter
+public class StoreSnapshot {
+    // "WSNP"
+    private static final int MAGIC = 0x57534E50;
+    private static final int VERSION = 2;
+
+    // Колонки в порядке записи в файл
+    private static final int IDS = 0;
+    private static final int MASKS = 1;
+    private static final int Z_INDEXES = 2;
+    private static final int XS = 3;
+    private static final int YS = 4;
+    private static final int WIDTHS = 5;
+    private static final int HEIGHTS = 6;
+    private static final int LAST_MODIFIED = 7;
+    private static final int COLUMN_COUNT = 8;
+
+    // Размер заголовка: сигнатура, версия, позиция журнала, количество виджетов, каталог колонок и контрольная сумма
+    // заголовка
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 4 + COLUMN_COUNT * (4 + 4) + 4;
+
+    // Биты маски заполненных полей
+    private static final int HAS_X = 1;
+    private static final int HAS_Y = 1 << 1;
+    private static final int HAS_WIDTH = 1 << 2;
+    private static final int HAS_HEIGHT = 1 << 3;
+    private static final int HAS_LAST_MODIFIED = 1 << 4;
+
+    /**
+     * Позиция журнала изменений, до которой снимок отражает состояние хранилища
+     */
+    private final long walPosition;
+
+    /**
+     * Виджеты в порядке возрастания z-index
+     */
+    private final List<Widget> widgets;
+
+    public StoreSnapshot(long walPosition, List<Widget> widgets) {
+        this.walPosition = walPosition;
+        this.widgets = widgets;
+    }
+
+    /**
+     * Записывает снимок во временный файл и атомарно заменяет им указанный, так что при сбое во время записи
+     * сохраняется предыдущий снимок
+     *
+     * @param path путь к файлу снимка
+     */
+    public void write(Path path) {
+        int count = widgets.size();
+        ColumnWriter[] columns = new ColumnWriter[COLUMN_COUNT];
+        for (int i = 0; i < COLUMN_COUNT; i++) {
+            columns[i] = new ColumnWriter(i == IDS ? count * 16 : count);
+        }
+
+        int previousZIndex = 0;
+        int previousX = 0;
+        int previousY = 0;
+        long previousSecond = 0;
+        for (Widget widget : widgets) {
+            WidgetId id = WidgetId.parse(widget.getId());
+            if (Objects.isNull(id)) {
+                throw new IllegalArgumentException("Widget id must be in UUID format: " + widget.getId());
+            }
+            columns[IDS].writeLong(id.getMostSignificantBits());
+            columns[IDS].writeLong(id.getLeastSignificantBits());
+
+            int mask = (Objects.nonNull(widget.getX()) ? HAS_X : 0) |
+                    (Objects.nonNull(widget.getY()) ? HAS_Y : 0) |
+                    (Objects.nonNull(widget.getWidth()) ? HAS_WIDTH : 0) |
+                    (Objects.nonNull(widget.getHeight()) ? HAS_HEIGHT : 0) |
+                    (Objects.nonNull(widget.getLastModified()) ? HAS_LAST_MODIFIED : 0);
+            columns[MASKS].writeByte(mask);
+
+            columns[Z_INDEXES].writeVarLong(widget.getZIndex() - (long) previousZIndex);
+            previousZIndex = widget.getZIndex();
+
+            if (Objects.nonNull(widget.getX())) {
+                columns[XS].writeVarLong(widget.getX() - (long) previousX);
+                previousX = widget.getX();
+            }
+            if (Objects.nonNull(widget.getY())) {
+                columns[YS].writeVarLong(widget.getY() - (long) previousY);
+                previousY = widget.getY();
+            }
+            if (Objects.nonNull(widget.getWidth())) {
+                columns[WIDTHS].writeVarLong(widget.getWidth());
+            }
+            if (Objects.nonNull(widget.getHeight())) {
+                columns[HEIGHTS].writeVarLong(widget.getHeight());
+            }
+            if (Objects.nonNull(widget.getLastModified())) {
+                columns[LAST_MODIFIED].writeVarLong(widget.getLastModified().getEpochSecond() - previousSecond);
+                columns[LAST_MODIFIED].writeVarLong(widget.getLastModified().getNano());
+                previousSecond = widget.getLastModified().getEpochSecond();
+            }
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putLong(walPosition).putInt(count);
+        for (ColumnWriter column : columns) {
+            header.putInt(column.size).putInt(column.checksum());
+        }
+        header.putInt(headerChecksum(header));
+        header.flip();
+
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(channel, header);
+            for (ColumnWriter column : columns) {
+                writeFully(channel, ByteBuffer.wrap(column.bytes, 0, column.size));
+            }
+            channel.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        try {
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Читает снимок, отображая файл в память. Колонки проверяются и декодируются параллельно
+     *
+     * @param path путь к файлу снимка
+     * @return снимок
+     * @throws IllegalStateException если файл снимка поврежден
+     * @throws UncheckedIOException   если файл снимка не удалось прочитать
+     */
+    public static StoreSnapshot read(Path path) {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        try {
+            return decode(path, buffer);
+        } catch (IllegalStateException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            // Контрольные суммы не исключают любых повреждений, ошибка декодирования означает поврежденный снимок
+            throw new IllegalStateException("Snapshot is corrupted: " + path, e);
+        }
+    }
+
+    private static StoreSnapshot decode(Path path, ByteBuffer buffer) {
+        if ((buffer.remaining() < HEADER_SIZE) || (buffer.getInt() != MAGIC)) {
+            throw new IllegalStateException("Not a widget store snapshot: " + path);
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IllegalStateException("Unsupported snapshot version: " + version);
+        }
+        ByteBuffer header = buffer.duplicate();
+        header.position(HEADER_SIZE - 4);
+        if (headerChecksum(header) != buffer.getInt(HEADER_SIZE - 4)) {
+            throw new IllegalStateException("Snapshot header checksum mismatch: " + path);
+        }
+        long walPosition = buffer.getLong();
+        int count = buffer.getInt();
+
+        ByteBuffer[] columns = new ByteBuffer[COLUMN_COUNT];
+        int[] checksums = new int[COLUMN_COUNT];
+        int offset = HEADER_SIZE;
+        for (int i = 0; i < COLUMN_COUNT; i++) {
+            int size = buffer.getInt();
+            checksums[i] = buffer.getInt();
+            if ((size < 0) || (offset + (long) size > buffer.limit())) {
+                throw new IllegalStateException("Snapshot is truncated: " + path);
+            }
+
+            ByteBuffer column = buffer.duplicate();
+            column.position(offset).limit(offset + size);
+            columns[i] = column.slice();
+            offset += size;
+        }
+        // У каждого виджета ровно один байт маски
+        if ((count < 0) || (columns[MASKS].remaining() != count)) {
+            throw new IllegalStateException("Snapshot widget count mismatch: " + path);
+        }
+
+        // Маски нужны для декодирования остальных колонок, поэтому читаются первыми
+        byte[] masks = new byte[count];
+        verify(columns[MASKS], checksums[MASKS]).get(masks);
+
+        CompletableFuture<long[]> ids = CompletableFuture.supplyAsync(() -> {
+            long[] values = new long[count * 2];
+            verify(columns[IDS], checksums[IDS]).asLongBuffer().get(values);
+            return values;
+        });
+        CompletableFuture<int[]> zIndexes = decodeAsync(columns[Z_INDEXES], checksums[Z_INDEXES], masks, -1, true);
+        CompletableFuture<int[]> xs = decodeAsync(columns[XS], checksums[XS], masks, HAS_X, true);
+        CompletableFuture<int[]> ys = decodeAsync(columns[YS], checksums[YS], masks, HAS_Y, true);
+        CompletableFuture<int[]> widths = decodeAsync(columns[WIDTHS], checksums[WIDTHS], masks, HAS_WIDTH, false);
+        CompletableFuture<int[]> heights = decodeAsync(columns[HEIGHTS], checksums[HEIGHTS], masks, HAS_HEIGHT, false);
+        CompletableFuture<Instant[]> lastModified = CompletableFuture.supplyAsync(() -> {
+            ByteBuffer column = verify(columns[LAST_MODIFIED], checksums[LAST_MODIFIED]);
+            Instant[] values = new Instant[count];
+            long second = 0;
+            for (int i = 0; i < count; i++) {
+                if ((masks[i] & HAS_LAST_MODIFIED) != 0) {
+                    second += readVarLong(column);
+                    values[i] = Instant.ofEpochSecond(second, readVarLong(column));
+                }
+            }
+            return values;
+        });
+
+        try {
+            long[] idValues = ids.join();
+            int[] zValues = zIndexes.join();
+            int[] xValues = xs.join();
+            int[] yValues = ys.join();
+            int[] widthValues = widths.join();
+            int[] heightValues = heights.join();
+            Instant[] lastModifiedValues = lastModified.join();
+
+            List<Widget> widgets = IntStream.range(0, count)
+                    .parallel()
+                    .mapToObj(i -> Widget.builder()
+                            .id(new WidgetId(idValues[i * 2], idValues[i * 2 + 1]).toString())
+                            .x((masks[i] & HAS_X) != 0 ? xValues[i] : null)
+                            .y((masks[i] & HAS_Y) != 0 ? yValues[i] : null)
+                            .width((masks[i] & HAS_WIDTH) != 0 ? widthValues[i] : null)
+                            .height((masks[i] & HAS_HEIGHT) != 0 ? heightValues[i] : null)
+                            .zIndex(zValues[i])
+                            .lastModified(lastModifiedValues[i])
+                            .build())
+                    .collect(Collectors.toList());
+            return new StoreSnapshot(walPosition, widgets);
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Вычисляет контрольную сумму заголовка от начала буфера до его текущей позиции
+     */
+    private static int headerChecksum(ByteBuffer header) {
+        ByteBuffer data = header.duplicate();
+        data.flip();
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Декодирует колонку целых чисел в отдельном потоке
+     *
+     * @param mask  бит маски, при котором значение присутствует в колонке, или -1, если значение есть всегда
+     * @param delta факт хранения разностей с предыдущим значением
+     */
+    private static CompletableFuture<int[]> decodeAsync(ByteBuffer column, int checksum, byte[] masks, int mask,
+                                                        boolean delta) {
+        return CompletableFuture.supplyAsync(() -> {
+            ByteBuffer data = verify(column, checksum);
+            int[] values = new int[masks.length];
+            long previous = 0;
+            for (int i = 0; i < masks.length; i++) {
+                if ((mask == -1) || ((masks[i] & mask) != 0)) {
+                    long value = readVarLong(data);
+                    previous = delta ? previous + value : value;
+                    values[i] = (int) previous;
+                }
+            }
+            return values;
+        });
+    }
+
+    /**
+     * Проверяет контрольную сумму колонки
+     *
+     * @return колонку, готовую к чтению
+     */
+    private static ByteBuffer verify(ByteBuffer column, int checksum) {
+        CRC32 crc = new CRC32();
+        crc.update(column.duplicate());
+        if ((int) crc.getValue() != checksum) {
+            throw new IllegalStateException("Snapshot column checksum mismatch");
+        }
+        return column.duplicate();
+    }
+
+    private static long readVarLong(ByteBuffer buffer) {
+        long raw = 0;
+        for (int shift = 0; ; shift += 7) {
+            if (shift > 63) {
+                throw new IllegalStateException("Malformed varint in snapshot");
+            }
+            byte b = buffer.get();
+            raw |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                break;
+            }
+        }
+        // zig-zag: младший бит - знак
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Буфер одной колонки при записи снимка
+     */
+    private static final class ColumnWriter {
+        byte[] bytes;
+        int size;
+
+        ColumnWriter(int capacity) {
+            bytes = new byte[Math.max(capacity, 16)];
+        }
+
+        void writeByte(int value) {
+            ensureCapacity(1);
+            bytes[size++] = (byte) value;
+        }
+
+        void writeLong(long value) {
+            ensureCapacity(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                bytes[size++] = (byte) (value >>> shift);
+            }
+        }
+
+        void writeVarLong(long value) {
+            ensureCapacity(10);
+            // zig-zag: небольшие по модулю отрицательные числа кодируются так же коротко, как положительные
+            long raw = (value << 1) ^ (value >> 63);
+            while ((raw & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((raw & 0x7F) | 0x80);
+                raw >>>= 7;
+            }
+            bytes[size++] = (byte) raw;
+        }
+
+        int checksum() {
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 0, size);
+            return (int) crc.getValue();
+        }
+
+        private void ensureCapacity(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+    }
+}
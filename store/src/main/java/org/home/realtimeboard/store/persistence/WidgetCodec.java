@@ -0,0 +1,130 @@
+package org.home.realtimeboard.store.persistence;
+
+import org.home.realtimeboard.model.Widget;
+import org.home.realtimeboard.store.WidgetMutation;
+import org.home.realtimeboard.store.id.WidgetId;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * Компактное двоичное представление виджетов и изменений хранилища.
+ * <p>
+ * Виджет записывается как 16 байт идентификатора, байт маски заполненных полей и значения только заполненных полей:
+ * координаты, размеры и z-index по 4 байта, дата модификации - 8 байт секунд и 4 байта наносекунд.
+ */
+public final class WidgetCodec {
+    /**
+     * Максимальный размер записи изменения в байтах
+     */
+    public static final int MAX_MUTATION_SIZE = 1 + 16 + 1 + 5 * 4 + 12;
+
+    // Биты маски заполненных полей
+    private static final int HAS_X = 1;
+    private static final int HAS_Y = 1 << 1;
+    private static final int HAS_WIDTH = 1 << 2;
+    private static final int HAS_HEIGHT = 1 << 3;
+    private static final int HAS_Z_INDEX = 1 << 4;
+    private static final int HAS_LAST_MODIFIED = 1 << 5;
+
+    private static final WidgetMutation.Type[] TYPES = WidgetMutation.Type.values();
+
+    private WidgetCodec() {
+    }
+
+    /**
+     * Записывает изменение с итоговым состоянием виджета
+     *
+     * @throws IllegalArgumentException если идентификатор виджета не в формате {@link WidgetId}
+     */
+    public static void writeMutation(ByteBuffer buffer, WidgetMutation mutation) {
+        buffer.put((byte) mutation.getType().ordinal());
+        if (mutation.getType() == WidgetMutation.Type.DELETE) {
+            writeId(buffer, mutation.getId());
+        } else {
+            writeWidget(buffer, mutation.getWidget());
+        }
+    }
+
+    /**
+     * Читает изменение, записанное {@link WidgetCodec#writeMutation(ByteBuffer, WidgetMutation)}
+     */
+    public static WidgetMutation readMutation(ByteBuffer buffer) {
+        WidgetMutation.Type type = TYPES[buffer.get()];
+        if (type == WidgetMutation.Type.DELETE) {
+            return WidgetMutation.delete(readId(buffer));
+        }
+
+        Widget widget = readWidget(buffer);
+        return type == WidgetMutation.Type.ADD
+                ? WidgetMutation.add(widget)
+                : WidgetMutation.update(widget.getId(), widget);
+    }
+
+    /**
+     * Записывает виджет
+     *
+     * @throws IllegalArgumentException если идентификатор виджета не в формате {@link WidgetId}
+     */
+    public static void writeWidget(ByteBuffer buffer, Widget widget) {
+        writeId(buffer, widget.getId());
+
+        int mask = (Objects.nonNull(widget.getX()) ? HAS_X : 0) |
+                (Objects.nonNull(widget.getY()) ? HAS_Y : 0) |
+                (Objects.nonNull(widget.getWidth()) ? HAS_WIDTH : 0) |
+                (Objects.nonNull(widget.getHeight()) ? HAS_HEIGHT : 0) |
+                (Objects.nonNull(widget.getZIndex()) ? HAS_Z_INDEX : 0) |
+                (Objects.nonNull(widget.getLastModified()) ? HAS_LAST_MODIFIED : 0);
+        buffer.put((byte) mask);
+
+        writeInt(buffer, widget.getX());
+        writeInt(buffer, widget.getY());
+        writeInt(buffer, widget.getWidth());
+        writeInt(buffer, widget.getHeight());
+        writeInt(buffer, widget.getZIndex());
+        if (Objects.nonNull(widget.getLastModified())) {
+            buffer.putLong(widget.getLastModified().getEpochSecond());
+            buffer.putInt(widget.getLastModified().getNano());
+        }
+    }
+
+    /**
+     * Читает виджет, записанный {@link WidgetCodec#writeWidget(ByteBuffer, Widget)}
+     */
+    public static Widget readWidget(ByteBuffer buffer) {
+        String id = readId(buffer);
+        int mask = buffer.get();
+
+        return Widget.builder()
+                .id(id)
+                .x((mask & HAS_X) != 0 ? buffer.getInt() : null)
+                .y((mask & HAS_Y) != 0 ? buffer.getInt() : null)
+                .width((mask & HAS_WIDTH) != 0 ? buffer.getInt() : null)
+                .height((mask & HAS_HEIGHT) != 0 ? buffer.getInt() : null)
+                .zIndex((mask & HAS_Z_INDEX) != 0 ? buffer.getInt() : null)
+                .lastModified((mask & HAS_LAST_MODIFIED) != 0
+                        ? Instant.ofEpochSecond(buffer.getLong(), buffer.getInt())
+                        : null)
+                .build();
+    }
+
+    private static void writeId(ByteBuffer buffer, String id) {
+        WidgetId widgetId = WidgetId.parse(id);
+        if (Objects.isNull(widgetId)) {
+            throw new IllegalArgumentException("Widget id must be in UUID format: " + id);
+        }
+        buffer.putLong(widgetId.getMostSignificantBits());
+        buffer.putLong(widgetId.getLeastSignificantBits());
+    }
+
+    private static String readId(ByteBuffer buffer) {
+        return new WidgetId(buffer.getLong(), buffer.getLong()).toString();
+    }
+
+    private static void writeInt(ByteBuffer buffer, Integer value) {
+        if (Objects.nonNull(value)) {
+            buffer.putInt(value);
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package org.home.realtimeboard.store.persistence;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал упреждающей записи. Файл журнала - последовательность записей вида {@code [длина][CRC32][данные]}.
+ * <p>
+ * Добавление записи ({@link WriteAheadLog#append(ByteBuffer)}) только пишет ее в файл, а сброс на диск выполняется
+ * отдельно ({@link WriteAheadLog#sync(long)}) в соответствии с {@link Durability}. При групповой фиксации потоки,
+ * ожидающие сброса, не выполняют каждый свой сброс: один поток сбрасывает все записи, добавленные к этому моменту,
+ * а остальные ждут его завершения, так что при конкурентной записи один сброс подтверждает сразу много записей.
+ * <p>
+ * При чтении журнала ({@link WriteAheadLog#replay(long, Consumer)}) записи читаются до первой неполной или
+ * поврежденной, она и все последующие данные считаются недописанными при сбое и отрезаются. Чтение можно начать с
+ * позиции, до которой состояние восстановлено из снимка.
+ * <p>
+ * Записи, вошедшие в снимок, удаляются сжатием журнала ({@link WriteAheadLog#compact(long)}). Позиции записей
+ * сквозные и при сжатии не меняются: файл сжатого журнала начинается с заголовка {@code [сигнатура][позиция]} с
+ * позицией его первой записи, а журнал без заголовка начинается с позиции 0.
+ */
+@Slf4j
+public class WriteAheadLog implements Closeable {
+    // Размер заголовка записи: длина и контрольная сумма
+    private static final int HEADER_SIZE = 8;
+    // Максимальный размер данных одной записи, больший размер в заголовке означает повреждение журнала
+    private static final int MAX_RECORD_SIZE = 1 << 20;
+    // "WALC", больше максимального размера записи, поэтому не совпадает с заголовком первой записи несжатого журнала
+    private static final int COMPACTED_MAGIC = 0x57414C43;
+    // Размер заголовка сжатого журнала: сигнатура и позиция первой записи
+    private static final int COMPACTED_HEADER_SIZE = 4 + 8;
+
+    private final Path path;
+    private final Durability durability;
+
+    // Файл журнала заменяется при сжатии: запись и замена выполняются под блокировкой журнала, а сброс на диск вне
+    // нее удерживает channelLock на чтение, чтобы файл не был закрыт во время сброса
+    private final ReadWriteLock channelLock = new ReentrantReadWriteLock();
+    private FileChannel channel;
+    // Позиция первой записи файла и ее смещение в файле
+    private long basePosition;
+    private long baseOffset;
+
+    // Позиция конца последней добавленной записи
+    private volatile long writtenPosition;
+
+    // Состояние групповой фиксации, защищено syncLock
+    private final Object syncLock = new Object();
+    private long syncedPosition;
+    private boolean syncing;
+
+    /**
+     * Открывает журнал, создавая файл при необходимости. Перед добавлением записей журнал должен быть прочитан
+     * через {@link WriteAheadLog#replay(long, Consumer)}
+     *
+     * @param path       путь к файлу журнала
+     * @param durability уровень надежности записи
+     */
+    public WriteAheadLog(Path path, Durability durability) {
+        this.path = path;
+        this.durability = durability;
+        try {
+            this.channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (channel.size() >= COMPACTED_HEADER_SIZE) {
+                ByteBuffer header = ByteBuffer.allocate(COMPACTED_HEADER_SIZE);
+                while (header.hasRemaining()) {
+                    channel.read(header, header.position());
+                }
+                header.flip();
+                if (header.getInt() == COMPACTED_MAGIC) {
+                    basePosition = header.getLong();
+                    baseOffset = COMPACTED_HEADER_SIZE;
+                }
+            }
+        } catch (IOException e) {
+            close(channel);
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * Возвращает позицию конца последней добавленной записи
+     */
+    public long getPosition() {
+        return writtenPosition;
+    }
+
+    /**
+     * Читает все корректные записи журнала и отрезает недописанный хвост
+     *
+     * @param consumer обработчик данных записи, буфер доступен только на время вызова
+     * @return количество прочитанных записей
+     */
+    public long replay(Consumer<ByteBuffer> consumer) {
+        return replay(0, consumer);
+    }
+
+    /**
+     * Читает корректные записи журнала, начиная с указанной позиции, и отрезает недописанный хвост
+     *
+     * @param fromPosition позиция начала записи, с которой начинается чтение
+     * @param consumer     обработчик данных записи, буфер доступен только на время вызова
+     * @return количество прочитанных записей
+     * @throws IllegalStateException если журнал короче указанной позиции или сжат после нее
+     */
+    public synchronized long replay(long fromPosition, Consumer<ByteBuffer> consumer) {
+        try {
+            if (fromPosition < basePosition) {
+                throw new IllegalStateException("Write-ahead log is compacted up to position " + basePosition);
+            }
+            if (toOffset(fromPosition) > channel.size()) {
+                throw new IllegalStateException("Write-ahead log is shorter than " + fromPosition + " bytes");
+            }
+
+            channel.position(toOffset(fromPosition));
+            DataInputStream input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            CRC32 crc = new CRC32();
+            byte[] data = new byte[0];
+            long position = fromPosition;
+            long count = 0;
+
+            while (true) {
+                int length;
+                int checksum;
+                try {
+                    length = input.readInt();
+                    checksum = input.readInt();
+                    if ((length < 0) || (length > MAX_RECORD_SIZE)) {
+                        break;
+                    }
+                    if (data.length < length) {
+                        data = new byte[length];
+                    }
+                    input.readFully(data, 0, length);
+                } catch (EOFException e) {
+                    break;
+                }
+
+                crc.reset();
+                crc.update(data, 0, length);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+
+                consumer.accept(ByteBuffer.wrap(data, 0, length).asReadOnlyBuffer());
+                position += HEADER_SIZE + length;
+                count++;
+            }
+
+            if (toOffset(position) < channel.size()) {
+                log.warn("Write-ahead log is truncated from {} to {} bytes", channel.size(), toOffset(position));
+                channel.truncate(toOffset(position));
+            }
+            channel.position(toOffset(position));
+            writtenPosition = position;
+            synchronized (syncLock) {
+                syncedPosition = position;
+            }
+            return count;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Добавляет запись в журнал без сброса на диск
+     *
+     * @param data данные записи от текущей позиции до предела буфера
+     * @return позиция конца записи, передаваемая в {@link WriteAheadLog#sync(long)}
+     */
+    public synchronized long append(ByteBuffer data) {
+        int length = data.remaining();
+        if (length > MAX_RECORD_SIZE) {
+            throw new IllegalArgumentException("Record is too large: " + length);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(data.duplicate());
+
+        ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + length);
+        record.putInt(length).putInt((int) crc.getValue()).put(data).flip();
+        try {
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        writtenPosition += record.limit();
+        return writtenPosition;
+    }
+
+    /**
+     * Удаляет из журнала записи до указанной позиции, например уже вошедшие в сохраненный снимок. Оставшиеся записи
+     * копируются в новый файл, который сбрасывается на диск и атомарно заменяет текущий, так что при сбое во время
+     * сжатия сохраняется прежний журнал. После сжатия журнал можно читать только с указанной позиции и далее
+     *
+     * @param position позиция начала записи, с которой записи сохраняются
+     * @throws IllegalArgumentException если позиция больше позиции конца последней записи
+     */
+    public synchronized void compact(long position) {
+        if (position <= basePosition) {
+            return;
+        }
+        if (position > writtenPosition) {
+            throw new IllegalArgumentException("Position " + position + " is beyond the end of write-ahead log");
+        }
+
+        Path temporary = path.resolveSibling(path.getFileName() + ".compact");
+        FileChannel compacted = null;
+        try {
+            compacted = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            ByteBuffer header = ByteBuffer.allocate(COMPACTED_HEADER_SIZE);
+            header.putInt(COMPACTED_MAGIC).putLong(position).flip();
+            while (header.hasRemaining()) {
+                compacted.write(header);
+            }
+            long from = toOffset(position);
+            long count = toOffset(writtenPosition) - from;
+            for (long copied = 0; copied < count; ) {
+                copied += channel.transferTo(from + copied, count - copied, compacted);
+            }
+            compacted.force(false);
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            close(compacted);
+            throw new UncheckedIOException(e);
+        }
+
+        FileChannel previous;
+        channelLock.writeLock().lock();
+        try {
+            previous = channel;
+            channel = compacted;
+            basePosition = position;
+            baseOffset = COMPACTED_HEADER_SIZE;
+        } finally {
+            channelLock.writeLock().unlock();
+        }
+        close(previous);
+    }
+
+    /**
+     * Ожидает сохранения журнала до указанной позиции в соответствии с уровнем надежности
+     *
+     * @param position позиция, возвращенная {@link WriteAheadLog#append(ByteBuffer)}
+     */
+    public void sync(long position) {
+        switch (durability) {
+            case NONE:
+                break;
+            case GROUP_COMMIT:
+                groupCommit(position);
+                break;
+            case PER_OPERATION:
+                force();
+                break;
+        }
+    }
+
+    /**
+     * Сбрасывает журнал на диск, если до указанной позиции он еще не сброшен другим потоком. Пока идет сброс,
+     * остальные потоки ждут его завершения, после чего при необходимости один из них выполняет следующий
+     */
+    private void groupCommit(long position) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                long target;
+                synchronized (syncLock) {
+                    while (syncing && (syncedPosition < position)) {
+                        try {
+                            syncLock.wait();
+                        } catch (InterruptedException e) {
+                            // Запись уже добавлена в журнал, так что ожидание ее сохранения не прерывается
+                            interrupted = true;
+                        }
+                    }
+                    if (syncedPosition >= position) {
+                        return;
+                    }
+                    syncing = true;
+                    target = writtenPosition;
+                }
+
+                boolean forced = false;
+                try {
+                    force();
+                    forced = true;
+                } finally {
+                    synchronized (syncLock) {
+                        syncing = false;
+                        if (forced) {
+                            syncedPosition = Math.max(syncedPosition, target);
+                        }
+                        syncLock.notifyAll();
+                    }
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Сбрасывает на диск все добавленные записи независимо от уровня надежности
+     */
+    public void flush() {
+        force();
+    }
+
+    private void force() {
+        channelLock.readLock().lock();
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            channelLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Переводит позицию журнала в смещение в текущем файле
+     */
+    private long toOffset(long position) {
+        return position - basePosition + baseOffset;
+    }
+
+    private static void close(FileChannel channel) {
+        if (Objects.isNull(channel)) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Failed to close write-ahead log file", e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package org.home.realtimeboard.configuration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.home.realtimeboard.model.Widget;
+import org.home.realtimeboard.store.AdaptedWidgetStore;
+import org.home.realtimeboard.store.BoardRegistry;
+import org.home.realtimeboard.store.DurableWidgetStore;
+import org.home.realtimeboard.store.InstrumentedWidgetStore;
+import org.home.realtimeboard.store.SingleWriterWidgetStore;
+import org.home.realtimeboard.store.WidgetStore;
+import org.springframework.util.FileSystemUtils;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import static org.testng.Assert.*;
+
+/**
+ * Тесты для {@link WidgetStoreFactory}
+ */
+public class WidgetStoreFactoryTests {
+    @Test
+    public void testBoardStoreConfiguration() throws Exception {
+        WidgetStoreFactory factory = WidgetStoreFactory.builder()
+                .singleWriter(true)
+                .cacheSize(16)
+                .feedCapacity(16)
+                .build();
+
+        // Хранилище доски собирается с теми же декораторами, что и основное
+        WidgetStore store = factory.createBoardStore("board");
+        assertTrue(store instanceof SingleWriterWidgetStore);
+        assertTrue(store.getChangeFeed().isPresent());
+        Widget widget = store.add(Widget.builder().zIndex(1).build());
+        assertEquals(store.findOne(widget.getId()), widget);
+        ((AutoCloseable) store).close();
+    }
+
+    @Test
+    public void testIndependentBoardStores() {
+        WidgetStoreFactory factory = WidgetStoreFactory.builder().tileSize(100).build();
+
+        WidgetStore first = factory.createBoardStore("first");
+        WidgetStore second = factory.createBoardStore("second");
+        assertTrue(first instanceof AdaptedWidgetStore);
+        Widget widget = first.add(Widget.builder().zIndex(1).build());
+        assertNull(second.findOne(widget.getId()));
+    }
+
+    @Test
+    public void testBoardMetrics() {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        WidgetStoreFactory factory = WidgetStoreFactory.builder().meterRegistry(registry).build();
+        WidgetStore store = factory.createStore();
+        BoardRegistry boardRegistry = new StoreConfig().boardRegistry(factory, 10);
+
+        WidgetStore first = boardRegistry.getStore("first");
+        WidgetStore second = boardRegistry.getStore("second");
+        assertTrue(first instanceof InstrumentedWidgetStore);
+        first.add(Widget.builder().zIndex(1).build());
+        second.add(Widget.builder().zIndex(1).build());
+        store.add(Widget.builder().zIndex(1).build());
+
+        // Метрики досок публикуются суммарно, без тега доски, так что их количество не растет с количеством досок
+        assertEquals(registry.get("store.operations").tags("store", "boards", "operation", "add")
+                .functionTimer().count(), 2.0);
+        assertEquals(registry.get("store.operations").tags("store", "widgets", "operation", "add")
+                .functionTimer().count(), 1.0);
+        assertEquals(registry.get("store.lock.wait").tags("store", "boards", "mode", "write")
+                .functionTimer().count(), 2.0);
+        assertEquals(registry.get("store.size").tag("store", "widgets").gauge().value(), 1.0);
+        assertEquals(registry.get("store.boards").gauge().value(), 2.0);
+        long meterCount = registry.getMeters().size();
+        boardRegistry.getStore("third").add(Widget.builder().zIndex(1).build());
+        assertEquals(registry.getMeters().size(), meterCount);
+    }
+
+    @Test
+    public void testBoardRecovery() throws Exception {
+        Path directory = Files.createTempDirectory("widgets");
+        try {
+            WidgetStoreFactory factory = createDurableFactory(directory);
+            StoreConfig config = new StoreConfig();
+            // Идентификатор доски с символами, недопустимыми в имени файла
+            String boardId = "../board/1";
+
+            BoardRegistry boardRegistry = config.boardRegistry(factory, 10);
+            WidgetStore store = boardRegistry.getStore(boardId);
+            assertTrue(store instanceof DurableWidgetStore);
+            Widget widget = store.add(Widget.builder().zIndex(1).build());
+            ((DurableWidgetStore) store).snapshot();
+            Widget updated = store.update(widget.getId(), Widget.builder().x(10).zIndex(2).build());
+            Widget deleted = store.add(Widget.builder().zIndex(3).build());
+            store.delete(deleted.getId());
+            boardRegistry.close();
+            factory.close();
+
+            // После перезапуска доска восстанавливается из снимка и журнала, не дожидаясь записи в нее
+            factory = createDurableFactory(directory);
+            assertEquals(factory.findBoardIds(), Collections.singletonList(boardId));
+            boardRegistry = config.boardRegistry(factory, 10);
+            assertEquals(boardRegistry.size(), 1);
+            store = boardRegistry.findStore(boardId).orElseThrow(AssertionError::new);
+            assertEquals(store.findOne(widget.getId()), updated);
+            assertNull(store.findOne(deleted.getId()));
+            WidgetStore mainStore = config.widgetStore(factory);
+            assertNull(mainStore.findOne(widget.getId()));
+            ((AutoCloseable) mainStore).close();
+            boardRegistry.close();
+            factory.close();
+        } finally {
+            FileSystemUtils.deleteRecursively(directory);
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testBoardIdTooLong() throws IOException {
+        Path directory = Files.createTempDirectory("widgets");
+        try {
+            createDurableFactory(directory).createBoardStore(String.join("", Collections.nCopies(100, "/")));
+        } finally {
+            FileSystemUtils.deleteRecursively(directory);
+        }
+    }
+
+    private WidgetStoreFactory createDurableFactory(Path directory) {
+        return WidgetStoreFactory.builder()
+                .walPath(directory.resolve("widgets.wal"))
+                .snapshotPath(directory.resolve("widgets.snapshot"))
+                .snapshotInterval(300)
+                .build();
+    }
+}
@@ -2,31 +2,59 @@ package org.home.realtimeboard.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.home.realtimeboard.configuration.WebConfig;
+import org.home.realtimeboard.integration.BinaryWidgetCodec;
+import org.home.realtimeboard.integration.BinaryWidgetHttpMessageConverter;
+import org.home.realtimeboard.integration.MutationResultResource;
 import org.home.realtimeboard.model.Widget;
+import org.home.realtimeboard.model.WidgetCursor;
+import org.home.realtimeboard.store.AdaptedWidgetStore;
+import org.home.realtimeboard.store.BoardLimitExceededException;
+import org.home.realtimeboard.store.BoardRegistry;
+import org.home.realtimeboard.store.MutationResult;
+import org.home.realtimeboard.store.WidgetMutation;
 import org.home.realtimeboard.store.WidgetStore;
+import org.home.realtimeboard.store.adapter.CombinedStoreAdapter;
+import org.home.realtimeboard.store.feed.ChangeFeed;
 import org.mockito.ArgumentMatchers;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.rest.webmvc.ResourceNotFoundException;
 import org.springframework.hateoas.MediaTypes;
+import org.springframework.hateoas.PagedResources;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 import static org.hamcrest.Matchers.*;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
 
 /**
  * Тесты для {@link WidgetController}
@@ -40,6 +68,14 @@ public class WidgetControllerTests extends AbstractTestNGSpringContextTests {
     private WidgetStore widgetStore;
     @Autowired
     private ObjectMapper objectMapper;
+    @Autowired
+    private BoardRegistry boardRegistry;
+
+    @BeforeMethod
+    public void setUp() {
+        // Слушатели тестового контекста TestNG не сбрасывают mock-бины между тестами
+        Mockito.reset(widgetStore);
+    }
 
     @Test
     public void testAddWidget() throws Exception {
@@ -96,6 +132,63 @@ public class WidgetControllerTests extends AbstractTestNGSpringContextTests {
                 .andExpect(jsonPath("$._links.delete", notNullValue()));
     }
 
+    @Test
+    public void testGetWidgetLinks() throws Exception {
+        Widget widget = getWidget();
+
+        Mockito.when(widgetStore.findOne(anyString())).thenReturn(widget);
+        mvc.perform(get("/widgets/1").contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$._links.self.href", is("http://localhost/widgets/" + widget.getId())))
+                .andExpect(jsonPath("$._links.update.href", is("http://localhost/widgets/" + widget.getId())))
+                .andExpect(jsonPath("$._links.delete.href", is("http://localhost/widgets/" + widget.getId())));
+    }
+
+    @Test
+    public void testGetLeanWidget() throws Exception {
+        Widget widget = getWidget();
+
+        Mockito.when(widgetStore.findOne(anyString())).thenReturn(widget);
+        mvc.perform(get("/widgets/1").accept(WidgetController.LEAN_JSON_VALUE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(WidgetController.LEAN_JSON_VALUE))
+                .andExpect(jsonPath("$.id", is(widget.getId())))
+                .andExpect(jsonPath("$.zindex", is(widget.getZIndex())))
+                .andExpect(jsonPath("$._links").doesNotExist())
+                .andExpect(jsonPath("$.links").doesNotExist());
+    }
+
+    @Test
+    public void testGetBinaryWidget() throws Exception {
+        Widget widget = getWidget();
+
+        Mockito.when(widgetStore.findOne(anyString())).thenReturn(widget);
+        byte[] body = mvc.perform(get("/widgets/1").accept(BinaryWidgetHttpMessageConverter.MEDIA_TYPE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(BinaryWidgetHttpMessageConverter.MEDIA_TYPE))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        assertEquals(body.length, BinaryWidgetCodec.WIDGET_SIZE);
+        assertEquals(BinaryWidgetCodec.readWidget(new DataInputStream(new ByteArrayInputStream(body))), widget);
+    }
+
+    @Test
+    public void testAddBinaryWidget() throws Exception {
+        Widget widget = getWidget();
+        Mockito.when(widgetStore.add(ArgumentMatchers.any())).thenReturn(widget);
+
+        ByteArrayOutputStream request = new ByteArrayOutputStream();
+        BinaryWidgetCodec.writeWidget(new DataOutputStream(request), widget.toBuilder().id(null).build());
+
+        mvc.perform(post("/widgets")
+                .content(request.toByteArray())
+                .contentType(BinaryWidgetHttpMessageConverter.MEDIA_TYPE)
+                .accept(MediaTypes.HAL_JSON))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.id", is(widget.getId())));
+        Mockito.verify(widgetStore).add(widget.toBuilder().id(null).build());
+    }
+
     @Test
     public void testGetWidgetMissing() throws Exception {
         Mockito.when(widgetStore.findOne(anyString())).thenReturn(null);
@@ -103,6 +196,63 @@ public class WidgetControllerTests extends AbstractTestNGSpringContextTests {
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    public void testGetWidgetNotModified() throws Exception {
+        Widget widget = getWidget();
+        widget.setVersion(7L);
+        String etag = "W/\"10-7-" + widget.getZIndex() + "\"";
+
+        Mockito.when(widgetStore.getVersion()).thenReturn(10L);
+        Mockito.when(widgetStore.findOne(anyString())).thenReturn(widget);
+        mvc.perform(get("/widgets/1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, etag));
+
+        // Хранилище не менялось, виджет не читается
+        mvc.perform(get("/widgets/1").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag));
+        Mockito.verify(widgetStore, Mockito.times(1)).findOne(anyString());
+
+        // Хранилище менялось, но виджет остался прежним
+        Mockito.when(widgetStore.getVersion()).thenReturn(11L);
+        mvc.perform(get("/widgets/1").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, "W/\"11-7-" + widget.getZIndex() + "\""));
+
+        // Виджет выпихнут
+        widget.setZIndex(widget.getZIndex() + 1);
+        mvc.perform(get("/widgets/1").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.zindex", is(widget.getZIndex())));
+    }
+
+    @Test
+    public void testFindAllWidgetsNotModified() throws Exception {
+        Widget widget = getWidget();
+
+        Mockito.when(widgetStore.getVersion()).thenReturn(10L);
+        Mockito.when(widgetStore.findAll(ArgumentMatchers.any(), ArgumentMatchers.any()))
+                .thenReturn(new PageImpl<>(Collections.singletonList(widget), PageRequest.of(0, 20), 1));
+        mvc.perform(get("/widgets"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "W/\"10\""));
+
+        // Хранилище не менялось, выборка не выполняется
+        mvc.perform(get("/widgets").header(HttpHeaders.IF_NONE_MATCH, "\"5\", W/\"10\""))
+                .andExpect(status().isNotModified());
+        mvc.perform(get("/widgets").accept(WidgetController.LEAN_JSON_VALUE)
+                .header(HttpHeaders.IF_NONE_MATCH, "W/\"10\""))
+                .andExpect(status().isNotModified());
+        Mockito.verify(widgetStore, Mockito.times(1)).findAll(ArgumentMatchers.any(), ArgumentMatchers.any());
+
+        Mockito.when(widgetStore.getVersion()).thenReturn(11L);
+        mvc.perform(get("/widgets").header(HttpHeaders.IF_NONE_MATCH, "W/\"10\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "W/\"11\""))
+                .andExpect(jsonPath("$._embedded.content", hasSize(1)));
+    }
+
     @Test
     public void testUpdateWidget() throws Exception {
         Widget widget = getWidget();
@@ -170,6 +320,38 @@ public class WidgetControllerTests extends AbstractTestNGSpringContextTests {
                 .andExpect(jsonPath("$.page.number", is(0)));
     }
 
+    @Test
+    public void testFindAllLeanWidgets() throws Exception {
+        Widget widget = getWidget();
+        Mockito.when(widgetStore.findAll(ArgumentMatchers.any(), ArgumentMatchers.any()))
+                .thenReturn(new PageImpl<>(Collections.singletonList(widget), PageRequest.of(0, 20), 40));
+
+        mvc.perform(get("/widgets").accept(WidgetController.LEAN_JSON_VALUE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(WidgetController.LEAN_JSON_VALUE))
+                .andExpect(jsonPath("$.content", hasSize(1)))
+                .andExpect(jsonPath("$.content[0].id", is(widget.getId())))
+                .andExpect(jsonPath("$.content[0].links").doesNotExist())
+                .andExpect(jsonPath("$.links[?(@.rel == 'next')]", hasSize(1)))
+                .andExpect(jsonPath("$.page.totalElements", is(40)));
+    }
+
+    @Test
+    public void testFindAllBinaryWidgets() throws Exception {
+        Widget widget = getWidget();
+        Mockito.when(widgetStore.findAll(ArgumentMatchers.any(), ArgumentMatchers.any()))
+                .thenReturn(new PageImpl<>(Collections.singletonList(widget), PageRequest.of(0, 20), 40));
+
+        byte[] body = mvc.perform(get("/widgets").accept(BinaryWidgetHttpMessageConverter.MEDIA_TYPE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(BinaryWidgetHttpMessageConverter.MEDIA_TYPE))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        PagedResources<Widget> page = BinaryWidgetCodec.readPage(new DataInputStream(new ByteArrayInputStream(body)));
+        assertEquals(page.getMetadata().getTotalElements(), 40);
+        assertEquals(new ArrayList<>(page.getContent()), Collections.singletonList(widget));
+    }
+
     @Test
     public void testFindAllWidgetsInvalid() throws Exception {
         Widget widget = getWidget();
@@ -180,12 +362,334 @@ public class WidgetControllerTests extends AbstractTestNGSpringContextTests {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testStreamWidgets() throws Exception {
+        Widget first = getWidget();
+        Widget second = getWidget();
+        Mockito.doAnswer(invocation -> {
+            Consumer<Widget> action = invocation.getArgument(1);
+            action.accept(first);
+            action.accept(second);
+            return null;
+        }).when(widgetStore).forEach(ArgumentMatchers.any(), ArgumentMatchers.any());
+
+        MvcResult result = mvc.perform(get("/widgets").accept(WidgetController.NDJSON_VALUE))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String[] lines = mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(WidgetController.NDJSON_VALUE))
+                .andReturn().getResponse().getContentAsString().split("\n");
+        assertEquals(lines.length, 2);
+        assertEquals(objectMapper.readTree(lines[0]).get("id").asText(), first.getId());
+        assertEquals(objectMapper.readTree(lines[1]).get("id").asText(), second.getId());
+        assertEquals(objectMapper.readTree(lines[1]).get("zindex").asInt(), second.getZIndex().intValue());
+    }
+
+    @Test
+    public void testStreamWidgetsInvalid() throws Exception {
+        mvc.perform(get("/widgets?top=1").accept(WidgetController.NDJSON_VALUE))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testFindWidgetsById() throws Exception {
+        Widget widget = getWidget();
+        Mockito.when(widgetStore.findAllById(ArgumentMatchers.any()))
+                .thenReturn(Collections.singletonList(widget));
+
+        mvc.perform(get("/widgets?ids=" + widget.getId() + "," + UUID.randomUUID())
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaTypes.HAL_JSON_UTF8))
+                .andExpect(jsonPath("$._embedded.content", hasSize(1)))
+                .andExpect(jsonPath("$._embedded.content[0].id", is(widget.getId())))
+                .andExpect(jsonPath("$._embedded.content[0]._links.*", hasSize(3)));
+    }
+
+    @Test
+    public void testFindWidgetsAfter() throws Exception {
+        Widget widget = getWidget();
+        WidgetCursor cursor = new WidgetCursor(10, UUID.randomUUID().toString());
+        Mockito.when(widgetStore.findAfter(ArgumentMatchers.any(), ArgumentMatchers.eq(cursor), ArgumentMatchers.eq(1)))
+                .thenReturn(Collections.singletonList(widget));
+
+        mvc.perform(get("/widgets?limit=1&after=" + cursor).contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaTypes.HAL_JSON_UTF8))
+                .andExpect(jsonPath("$._embedded.content[0].id", is(widget.getId())))
+                .andExpect(jsonPath("$._embedded.content[0]._links.*", hasSize(3)))
+                .andExpect(jsonPath("$._links.next.href", containsString("after=" + WidgetCursor.of(widget))))
+                .andExpect(jsonPath("$._links.next.href", containsString("limit=1")));
+    }
+
+    @Test
+    public void testFindWidgetsAfterLastPage() throws Exception {
+        Mockito.when(widgetStore.findAfter(ArgumentMatchers.any(), ArgumentMatchers.isNull(), ArgumentMatchers.eq(10)))
+                .thenReturn(Collections.singletonList(getWidget()));
+
+        mvc.perform(get("/widgets?limit=10").accept(WidgetController.LEAN_JSON_VALUE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(WidgetController.LEAN_JSON_VALUE))
+                .andExpect(jsonPath("$.content", hasSize(1)))
+                .andExpect(jsonPath("$.links", hasSize(0)));
+    }
+
+    @Test
+    public void testFindWidgetsAfterInvalid() throws Exception {
+        mvc.perform(get("/widgets?limit=10&after=abc").contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+        mvc.perform(get("/widgets?limit=0").contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testFindWidgetsByIdWithLimit() throws Exception {
+        mvc.perform(get("/widgets?ids=" + UUID.randomUUID() + "&limit=10").contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+        mvc.perform(get("/widgets?ids=" + UUID.randomUUID() + "&limit=10").accept(WidgetController.LEAN_JSON_VALUE))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testApplyBatch() throws Exception {
+        Widget widget = getWidget();
+        Mockito.when(widgetStore.apply(ArgumentMatchers.any())).thenReturn(Arrays.asList(
+                MutationResult.success(widget),
+                MutationResult.success(widget),
+                MutationResult.failure(new ResourceNotFoundException())));
+
+        Widget invalid = getWidget();
+        invalid.setX(null);
+        List<WidgetMutation> mutations = Arrays.asList(
+                WidgetMutation.add(widget),
+                WidgetMutation.update(widget.getId(), widget),
+                WidgetMutation.add(invalid),
+                WidgetMutation.delete("1"));
+
+        mvc.perform(post("/widgets/batch")
+                .content(objectMapper.writeValueAsString(mutations))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(4)))
+                .andExpect(jsonPath("$[0].status", is(201)))
+                .andExpect(jsonPath("$[0].widget.id", is(widget.getId())))
+                .andExpect(jsonPath("$[0].widget._links.*", hasSize(3)))
+                .andExpect(jsonPath("$[1].status", is(200)))
+                .andExpect(jsonPath("$[2].status", is(400)))
+                .andExpect(jsonPath("$[2].error", containsString("x")))
+                .andExpect(jsonPath("$[3].status", is(404)));
+
+        // Некорректное изменение не передается в хранилище
+        Mockito.verify(widgetStore).apply(ArgumentMatchers.argThat(list -> list.size() == 3));
+    }
+
+    @Test
+    public void testApplyBatchErrors() throws Exception {
+        Mockito.when(widgetStore.apply(ArgumentMatchers.any())).thenReturn(Arrays.asList(
+                MutationResult.failure(new IllegalArgumentException("Widget id must be in UUID format: 1")),
+                MutationResult.failure(new IllegalStateException("Store internals"))));
+
+        List<WidgetMutation> mutations = Arrays.asList(
+                WidgetMutation.delete("1"),
+                WidgetMutation.delete("2"));
+
+        // Клиент получает только статус и фиксированное сообщение, а не текст исключения хранилища
+        mvc.perform(post("/widgets/batch")
+                .content(objectMapper.writeValueAsString(mutations))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status", is(400)))
+                .andExpect(jsonPath("$[0].error", is("Invalid widget mutation")))
+                .andExpect(jsonPath("$[1].status", is(500)))
+                .andExpect(jsonPath("$[1].error", is("Internal error")));
+    }
+
+    @Test
+    public void testApplyBinaryBatch() throws Exception {
+        Widget widget = getWidget();
+        Mockito.when(widgetStore.apply(ArgumentMatchers.any())).thenReturn(Arrays.asList(
+                MutationResult.success(widget),
+                MutationResult.failure(new ResourceNotFoundException())));
+
+        List<WidgetMutation> mutations = Arrays.asList(
+                WidgetMutation.add(widget.toBuilder().id(null).build()),
+                WidgetMutation.delete(widget.getId()));
+        ByteArrayOutputStream request = new ByteArrayOutputStream();
+        BinaryWidgetCodec.writeMutations(new DataOutputStream(request), mutations);
+
+        byte[] body = mvc.perform(post("/widgets/batch")
+                .content(request.toByteArray())
+                .contentType(BinaryWidgetHttpMessageConverter.MEDIA_TYPE)
+                .accept(BinaryWidgetHttpMessageConverter.MEDIA_TYPE))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+
+        List<MutationResultResource> results =
+                BinaryWidgetCodec.readResults(new DataInputStream(new ByteArrayInputStream(body)));
+        assertEquals(results.size(), 2);
+        assertEquals(results.get(0).getStatus(), 201);
+        assertEquals(results.get(0).getWidget().getContent(), widget);
+        assertEquals(results.get(1).getStatus(), 404);
+        Mockito.verify(widgetStore).apply(mutations);
+    }
+
+    @Test
+    public void testApplyBoardBatch() throws Exception {
+        String boardId = UUID.randomUUID().toString();
+        List<WidgetMutation> mutations = Arrays.asList(
+                WidgetMutation.add(getWidget()),
+                WidgetMutation.add(getWidget()));
+
+        mvc.perform(post("/boards/" + boardId + "/widgets/batch")
+                .content(objectMapper.writeValueAsString(mutations))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status", is(201)))
+                .andExpect(jsonPath("$[1].widget.zindex", is(40)))
+                .andExpect(jsonPath("$[1].widget._links.self.href",
+                        containsString("/boards/" + boardId + "/widgets/")));
+
+        // Второй виджет выпихнул первый
+        mvc.perform(get("/boards/" + boardId + "/widgets").contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$._embedded.content[*].zindex", contains(40, 41)));
+    }
+
     @Test
     public void testDelete() throws Exception {
         mvc.perform(delete("/widgets/1"))
                 .andExpect(status().isNoContent());
     }
 
+    @Test
+    public void testAddBoardWidget() throws Exception {
+        String boardId = UUID.randomUUID().toString();
+        Widget widget = getWidget();
+
+        mvc.perform(post("/boards/" + boardId + "/widgets")
+                .content(objectMapper.writeValueAsString(widget))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated())
+                .andExpect(content().contentType(MediaTypes.HAL_JSON_UTF8))
+                .andExpect(jsonPath("$.zindex", is(widget.getZIndex())))
+                .andExpect(jsonPath("$._links.*", hasSize(3)))
+                .andExpect(jsonPath("$._links.self.href", containsString("/boards/" + boardId + "/widgets/")))
+                .andExpect(jsonPath("$._links.update.href", containsString("/boards/" + boardId + "/widgets/")))
+                .andExpect(jsonPath("$._links.delete.href", containsString("/boards/" + boardId + "/widgets/")));
+
+        mvc.perform(get("/boards/" + boardId + "/widgets").contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$._embedded.content[0].zindex", is(widget.getZIndex())))
+                .andExpect(jsonPath("$.page.totalElements", is(1)));
+
+        // Доски не видят виджеты друг друга
+        mvc.perform(get("/boards/" + UUID.randomUUID() + "/widgets").contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.page.totalElements", is(0)));
+    }
+
+    @Test
+    public void testAddBoardWidgetOverLimit() throws Exception {
+        String boardId = UUID.randomUUID().toString();
+        Mockito.doThrow(new BoardLimitExceededException(1)).when(boardRegistry).getStore(boardId);
+
+        mvc.perform(post("/boards/" + boardId + "/widgets")
+                .content(objectMapper.writeValueAsString(getWidget()))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotFound());
+        mvc.perform(post("/boards/" + boardId + "/widgets/batch")
+                .content(objectMapper.writeValueAsString(Collections.singletonList(WidgetMutation.add(getWidget()))))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotFound());
+        assertFalse(boardRegistry.findStore(boardId).isPresent());
+    }
+
+    @Test
+    public void testAddBoardWidgetInvalidBoardId() throws Exception {
+        String boardId = UUID.randomUUID().toString();
+        Mockito.doThrow(new IllegalArgumentException("Board id is too long")).when(boardRegistry).getStore(boardId);
+
+        mvc.perform(post("/boards/" + boardId + "/widgets")
+                .content(objectMapper.writeValueAsString(getWidget()))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+        assertFalse(boardRegistry.findStore(boardId).isPresent());
+    }
+
+    @Test
+    public void testGetBoardWidgetMissing() throws Exception {
+        mvc.perform(get("/boards/" + UUID.randomUUID() + "/widgets/1").contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void testDeleteBoardWidgetMissing() throws Exception {
+        mvc.perform(delete("/boards/" + UUID.randomUUID() + "/widgets/1"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void testSubscribeToChanges() throws Exception {
+        String boardId = UUID.randomUUID().toString();
+        WidgetStore store = boardRegistry.getStore(boardId);
+        long since = store.getVersion();
+        Widget widget = store.add(getWidget());
+
+        MvcResult result = mvc.perform(get("/boards/" + boardId + "/widgets/changes")
+                .param("since", Long.toString(since))
+                .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Изменения после указанной версии отправляются сразу после подписки
+        long deadline = System.currentTimeMillis() + 5000;
+        String content = result.getResponse().getContentAsString();
+        // Событие пишется в ответ по частям, поэтому ожидается его завершающая пустая строка
+        while (!content.endsWith("\n\n") && (System.currentTimeMillis() < deadline)) {
+            Thread.sleep(10);
+            content = result.getResponse().getContentAsString();
+        }
+        assertTrue(content.contains("event:changes"));
+        assertTrue(content.contains("id:" + store.getVersion()));
+        assertTrue(content.contains(widget.getId()));
+    }
+
+    @Test
+    public void testSubscribeToChangesResync() throws Exception {
+        String boardId = UUID.randomUUID().toString();
+        boardRegistry.getStore(boardId);
+
+        // Версия, не выдававшаяся хранилищем, требует полного перечитывания, после чего поток закрывается
+        MvcResult result = mvc.perform(get("/boards/" + boardId + "/widgets/changes")
+                .param("since", "1")
+                .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("event:resync")));
+    }
+
+    @Test
+    public void testSubscribeToChangesUnknownBoard() throws Exception {
+        String boardId = UUID.randomUUID().toString();
+
+        // Подписка на неизвестную доску не создает ее
+        mvc.perform(get("/boards/" + boardId + "/widgets/changes").accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(status().isNotFound());
+        assertFalse(boardRegistry.findStore(boardId).isPresent());
+    }
+
+    @Test
+    public void testSubscribeToChangesDisabled() throws Exception {
+        mvc.perform(get("/widgets/changes").accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(status().isNotFound());
+    }
+
     private Widget getWidget() {
         return Widget.builder()
                 .id(UUID.randomUUID().toString())
@@ -203,5 +707,11 @@ public class WidgetControllerTests extends AbstractTestNGSpringContextTests {
     public static class ContextConfig {
         @MockBean
         public WidgetStore widgetStore;
+
+        @Bean
+        public BoardRegistry boardRegistry() {
+            return Mockito.spy(new BoardRegistry(boardId -> new AdaptedWidgetStore(new CombinedStoreAdapter(),
+                    ChangeFeed.DEFAULT_CAPACITY), Integer.MAX_VALUE));
+        }
     }
 }
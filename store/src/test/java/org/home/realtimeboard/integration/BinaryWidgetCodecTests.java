@@ -0,0 +1,173 @@
+package org.home.realtimeboard.integration;
+
+import org.home.realtimeboard.model.Widget;
+import org.home.realtimeboard.store.WidgetMutation;
+import org.springframework.hateoas.PagedResources;
+import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.*;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.testng.Assert.*;
+
+/**
+ * Тесты для {@link BinaryWidgetCodec}
+ */
+public class BinaryWidgetCodecTests extends AbstractTestNGSpringContextTests {
+    @DataProvider(name = "testWidgetData")
+    public Object[][] getTestWidgetData() {
+        return new Object[][] {
+                {Widget.builder().x(0).build()},
+                {Widget.builder().id(UUID.randomUUID().toString()).x(-1).height(Integer.MAX_VALUE).zIndex(3).build()},
+                {getWidget()}
+        };
+    }
+
+    @Test(dataProvider = "testWidgetData")
+    public void testWidget(Widget widget) throws IOException {
+        byte[] data = write(output -> BinaryWidgetCodec.writeWidget(output, widget));
+
+        assertEquals(data.length, BinaryWidgetCodec.WIDGET_SIZE);
+        assertEquals(BinaryWidgetCodec.readWidget(read(data)), widget);
+    }
+
+    @Test
+    public void testEmptyWidget() throws IOException {
+        byte[] data = write(output -> BinaryWidgetCodec.writeWidget(output, null));
+
+        assertEquals(data.length, BinaryWidgetCodec.WIDGET_SIZE);
+        assertNull(BinaryWidgetCodec.readWidget(read(data)));
+    }
+
+    @Test
+    public void testLastModifiedMillis() throws IOException {
+        Widget widget = getWidget();
+        widget.setLastModified(Instant.ofEpochSecond(1_500_000_000L, 123_456_789));
+        byte[] data = write(output -> BinaryWidgetCodec.writeWidget(output, widget));
+
+        assertEquals(BinaryWidgetCodec.readWidget(read(data)).getLastModified(),
+                Instant.ofEpochSecond(1_500_000_000L, 123_000_000));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidId() throws IOException {
+        write(output -> BinaryWidgetCodec.writeWidget(output, Widget.builder().id("1").build()));
+    }
+
+    @Test
+    public void testWidgets() throws IOException {
+        List<Widget> widgets = Arrays.asList(getWidget(), getWidget());
+        byte[] data = write(output -> BinaryWidgetCodec.writeWidgets(output, widgets));
+
+        assertEquals(data.length, 4 + 2 * BinaryWidgetCodec.WIDGET_SIZE);
+        assertEquals(BinaryWidgetCodec.readWidgets(read(data)), widgets);
+    }
+
+    @Test
+    public void testPage() throws IOException {
+        List<Widget> widgets = Arrays.asList(getWidget(), getWidget());
+        PagedResources.PageMetadata metadata = new PagedResources.PageMetadata(20, 3, 62);
+        byte[] data = write(output -> BinaryWidgetCodec.writePage(output, metadata, widgets));
+
+        assertEquals(data.length, 4 + BinaryWidgetCodec.PAGE_HEADER_SIZE + 2 * BinaryWidgetCodec.WIDGET_SIZE);
+        PagedResources<Widget> page = BinaryWidgetCodec.readPage(read(data));
+        assertEquals(page.getMetadata(), metadata);
+        assertEquals(new ArrayList<>(page.getContent()), widgets);
+    }
+
+    @Test
+    public void testPageHeaderExtension() throws IOException {
+        Widget widget = getWidget();
+        byte[] data = write(output -> {
+            // Заголовок с дополнительным полем, неизвестным читателю
+            output.writeInt(BinaryWidgetCodec.PAGE_HEADER_SIZE + 4);
+            output.writeInt(0);
+            output.writeInt(10);
+            output.writeLong(1);
+            output.writeInt(1);
+            output.writeInt(42);
+            BinaryWidgetCodec.writeWidget(output, widget);
+        });
+
+        PagedResources<Widget> page = BinaryWidgetCodec.readPage(read(data));
+        assertEquals(page.getMetadata().getTotalElements(), 1);
+        assertEquals(new ArrayList<>(page.getContent()), Collections.singletonList(widget));
+    }
+
+    @Test
+    public void testMutations() throws IOException {
+        Widget widget = getWidget();
+        Widget created = widget.toBuilder().id(null).build();
+        List<WidgetMutation> mutations = Arrays.asList(
+                WidgetMutation.add(created),
+                WidgetMutation.update(widget.getId(), widget),
+                WidgetMutation.delete(widget.getId())
+        );
+        byte[] data = write(output -> BinaryWidgetCodec.writeMutations(output, mutations));
+
+        assertEquals(data.length, 4 + 3 * (1 + BinaryWidgetCodec.WIDGET_SIZE));
+        assertEquals(BinaryWidgetCodec.readMutations(read(data)), mutations);
+    }
+
+    @Test
+    public void testResults() throws IOException {
+        Widget widget = getWidget();
+        List<MutationResultResource> results = Arrays.asList(
+                new MutationResultResource(201, new WidgetResource(widget), null),
+                new MutationResultResource(204, null, null),
+                new MutationResultResource(404, null, "Widget not found")
+        );
+        byte[] data = write(output -> BinaryWidgetCodec.writeResults(output, results));
+
+        List<MutationResultResource> read = BinaryWidgetCodec.readResults(read(data));
+        assertEquals(read.size(), 3);
+        assertEquals(read.get(0).getStatus(), 201);
+        assertEquals(read.get(0).getWidget().getContent(), widget);
+        assertNull(read.get(0).getError());
+        assertEquals(read.get(1).getStatus(), 204);
+        assertNull(read.get(1).getWidget());
+        assertEquals(read.get(2).getStatus(), 404);
+        assertEquals(read.get(2).getError(), "Widget not found");
+    }
+
+    @Test(expectedExceptions = EOFException.class)
+    public void testTruncated() throws IOException {
+        byte[] data = write(output -> BinaryWidgetCodec.writeWidgets(output, Arrays.asList(getWidget(), getWidget())));
+        BinaryWidgetCodec.readWidgets(read(Arrays.copyOf(data, data.length - 1)));
+    }
+
+    private Widget getWidget() {
+        return Widget.builder()
+                .id(UUID.randomUUID().toString())
+                .x(1)
+                .y(2)
+                .width(3)
+                .height(4)
+                .zIndex(Integer.MIN_VALUE)
+                .lastModified(Instant.ofEpochMilli(1_500_000_000_123L))
+                .build();
+    }
+
+    private byte[] write(Writer writer) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        writer.write(output);
+        output.flush();
+        return bytes.toByteArray();
+    }
+
+    private DataInput read(byte[] data) {
+        return new DataInputStream(new ByteArrayInputStream(data));
+    }
+
+    private interface Writer {
+        void write(DataOutput output) throws IOException;
+    }
+}
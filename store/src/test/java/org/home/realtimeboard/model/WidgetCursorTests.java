@@ -0,0 +1,35 @@
+package org.home.realtimeboard.model;
+
+import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Тесты для {@link WidgetCursor}
+ */
+public class WidgetCursorTests extends AbstractTestNGSpringContextTests {
+    @DataProvider(name = "parseTestData")
+    public Object[][] getParseTestData() {
+        return new Object[][]{
+                {"10,abc", new WidgetCursor(10, "abc")},
+                {"-5,a,b", new WidgetCursor(-5, "a,b")}
+        };
+    }
+
+    @Test(dataProvider = "parseTestData")
+    public void parseTest(String value, WidgetCursor cursor) {
+        Assert.assertEquals(WidgetCursor.parse(value), cursor);
+        Assert.assertEquals(WidgetCursor.parse(cursor.toString()), cursor);
+    }
+
+    @DataProvider(name = "parseInvalidTestData")
+    public Object[][] getParseInvalidTestData() {
+        return new Object[][]{{""}, {"10"}, {",abc"}, {"10,"}, {"x,abc"}};
+    }
+
+    @Test(dataProvider = "parseInvalidTestData", expectedExceptions = IllegalArgumentException.class)
+    public void parseInvalidTest(String value) {
+        WidgetCursor.parse(value);
+    }
+}
@@ -3,9 +3,11 @@ package org.home.realtimeboard.store;
 import lombok.extern.slf4j.Slf4j;
 import org.home.realtimeboard.model.Filter;
 import org.home.realtimeboard.model.Widget;
+import org.home.realtimeboard.model.WidgetCursor;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.rest.webmvc.ResourceNotFoundException;
+import org.testng.SkipException;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
@@ -75,6 +77,16 @@ public abstract class AbstractWidgetStoreTests {
         assertNull(getWidgetStore().findOne(UUID.randomUUID().toString()));
     }
 
+    @Test
+    public void testFindAllById() {
+        Widget first = getWidgetStore().add(getWidget());
+        Widget second = getWidgetStore().add(getWidget());
+
+        List<Widget> widgets = getWidgetStore().findAllById(Arrays.asList(
+                second.getId(), UUID.randomUUID().toString(), first.getId()));
+        assertEquals(widgets, Arrays.asList(second, first));
+    }
+
     @Test
     public void testUpdate() {
         Integer x = 10;
@@ -265,6 +277,22 @@ public abstract class AbstractWidgetStoreTests {
         assertEquals(searchResult, expected);
     }
 
+    @Test
+    public void testForEach() {
+        // Больше одной порции обхода, каждый второй виджет вне фильтра
+        for (int i = 0; i < WidgetStore.STREAM_CHUNK_SIZE * 2 + 10; i++) {
+            getWidgetStore().add(getWidget((i % 2) * 100, 0, 10, 10, null));
+        }
+        Filter filter = Filter.builder().top(0).bottom(10).left(0).right(10).build();
+
+        List<Widget> widgets = new ArrayList<>();
+        getWidgetStore().forEach(filter, widgets::add);
+
+        List<Widget> expected = getWidgetStore().findAll(filter, PageRequest.of(0, 1000)).getContent();
+        assertEquals(widgets.size(), WidgetStore.STREAM_CHUNK_SIZE + 5);
+        assertEquals(widgets, expected);
+    }
+
     @Test
     public void testDelete() {
         Widget widget = getWidgetStore().add(getWidget());
@@ -278,6 +306,88 @@ public abstract class AbstractWidgetStoreTests {
         getWidgetStore().delete(UUID.randomUUID().toString());
     }
 
+    @Test
+    public void testFindAfter() {
+        for (int i = 1; i <= 5; i++) {
+            getWidgetStore().add(getWidget(10 * i));
+        }
+        Filter filter = Filter.builder().build();
+
+        List<Widget> first = getWidgetStore().findAfter(filter, null, 2);
+        assertEquals(first.stream().map(Widget::getZIndex).collect(Collectors.toList()), Arrays.asList(10, 20));
+
+        // Выпихивание между страницами сдвигает и виджет курсора, так что виджеты не пропускаются и не повторяются
+        getWidgetStore().add(getWidget(20));
+        List<Widget> second = getWidgetStore().findAfter(filter, WidgetCursor.of(first.get(1)), 2);
+        assertEquals(second.stream().map(Widget::getZIndex).collect(Collectors.toList()), Arrays.asList(31, 41));
+
+        // Курсор удаленного виджета продолжает обход после сохраненного в нем z-index
+        getWidgetStore().delete(second.get(1).getId());
+        List<Widget> last = getWidgetStore().findAfter(filter, WidgetCursor.of(second.get(1)), 2);
+        assertEquals(last.stream().map(Widget::getZIndex).collect(Collectors.toList()), Collections.singletonList(51));
+        assertTrue(getWidgetStore().findAfter(filter, WidgetCursor.of(last.get(0)), 2).isEmpty());
+    }
+
+    @Test
+    public void testFindAfterFilter() {
+        Widget inside = getWidgetStore().add(getWidget(0, 0, 10, 10, 1));
+        getWidgetStore().add(getWidget(50, 50, 10, 10, 2));
+        Widget last = getWidgetStore().add(getWidget(5, 5, 10, 10, 3));
+        Filter filter = Filter.builder().top(0).bottom(20).left(0).right(20).build();
+
+        List<Widget> page = getWidgetStore().findAfter(filter, WidgetCursor.of(inside), 10);
+        assertEquals(page.stream().map(Widget::getId).collect(Collectors.toList()),
+                Collections.singletonList(last.getId()));
+    }
+
+    @Test
+    public void testContainsZIndex() {
+        assertFalse(getWidgetStore().containsZIndex(1));
+        Widget widget = getWidgetStore().add(getWidget(5));
+        getWidgetStore().add(getWidget(-3));
+        assertTrue(getWidgetStore().containsZIndex(5));
+        assertTrue(getWidgetStore().containsZIndex(-3));
+        assertFalse(getWidgetStore().containsZIndex(4));
+        assertFalse(getWidgetStore().containsZIndex(6));
+
+        getWidgetStore().delete(widget.getId());
+        assertFalse(getWidgetStore().containsZIndex(5));
+    }
+
+    @Test
+    public void testVersion() {
+        long initial = getWidgetStore().getVersion();
+        if (initial == WidgetStore.UNVERSIONED) {
+            throw new SkipException("Store is not versioned");
+        }
+
+        Widget widget = getWidgetStore().add(getWidget(5));
+        long added = getWidgetStore().getVersion();
+        assertTrue(added > initial);
+        assertEquals(widget.getVersion().longValue(), added);
+
+        // Чтение не меняет версию
+        getWidgetStore().findOne(widget.getId());
+        getWidgetStore().findAll(Filter.builder().build(), PageRequest.of(0, 10));
+        assertEquals(getWidgetStore().getVersion(), added);
+
+        Widget updated = getWidgetStore().update(widget.getId(), getWidget(10));
+        long modified = getWidgetStore().getVersion();
+        assertTrue(modified > added);
+        assertEquals(updated.getVersion().longValue(), modified);
+
+        // Выпихивание меняет версию хранилища, но не версию выпихнутого виджета
+        getWidgetStore().add(getWidget(10));
+        assertTrue(getWidgetStore().getVersion() > modified);
+        Widget pushed = getWidgetStore().findOne(widget.getId());
+        assertEquals(pushed.getZIndex().intValue(), 11);
+        assertEquals(pushed.getVersion().longValue(), modified);
+
+        long beforeDelete = getWidgetStore().getVersion();
+        getWidgetStore().delete(widget.getId());
+        assertTrue(getWidgetStore().getVersion() > beforeDelete);
+    }
+
     private Widget getWidget() {
         return Widget.builder().build();
     }
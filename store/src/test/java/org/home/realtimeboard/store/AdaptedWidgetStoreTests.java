@@ -1,8 +1,38 @@
 package org.home.realtimeboard.store;
 
 import lombok.Getter;
+import org.home.realtimeboard.model.Filter;
+import org.home.realtimeboard.model.Widget;
 import org.home.realtimeboard.store.adapter.CombinedStoreAdapter;
+import org.home.realtimeboard.store.adapter.InnerStoreAdapter;
+import org.home.realtimeboard.store.adapter.MapStoreAdapter;
+import org.home.realtimeboard.store.adapter.OrderStatisticStoreAdapter;
+import org.home.realtimeboard.store.adapter.RTreeStoreAdapter;
+import org.home.realtimeboard.store.adapter.SortedSetStoreAdapter;
+import org.home.realtimeboard.store.adapter.SpatialHashStoreAdapter;
+import org.home.realtimeboard.store.feed.ChangeBatch;
+import org.home.realtimeboard.store.feed.ChangeFeed;
+import org.home.realtimeboard.store.metrics.StoreMetrics;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.rest.webmvc.ResourceNotFoundException;
 import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.testng.Assert.*;
 
 /**
  * Тесты для {@link AdaptedWidgetStore}
@@ -15,4 +45,363 @@ public class AdaptedWidgetStoreTests extends AbstractWidgetStoreTests {
     public void setUp() {
         widgetStore = new AdaptedWidgetStore(new CombinedStoreAdapter());
     }
+
+    @Test
+    public void testDetachedReads() {
+        Widget widget = widgetStore.add(Widget.builder().zIndex(1).build());
+        Filter filter = Filter.builder().build();
+
+        // Виджеты хранилища, выдающего сохраненные экземпляры, копируются при каждом чтении
+        assertNotSame(widgetStore.findOne(widget.getId()), widgetStore.findOne(widget.getId()));
+        assertNotSame(widgetStore.findAll(filter, PageRequest.of(0, 1)).getContent().get(0),
+                widgetStore.findAll(filter, PageRequest.of(0, 1)).getContent().get(0));
+
+        // Виджеты хранилища, выдающего копии, выдаются без повторного копирования
+        AdaptedWidgetStore copyingStore = new AdaptedWidgetStore(new CombinedStoreAdapter() {
+            @Override
+            public boolean returnsCopies() {
+                return true;
+            }
+        });
+        widget = copyingStore.add(Widget.builder().zIndex(1).build());
+        assertSame(copyingStore.findOne(widget.getId()), copyingStore.findOne(widget.getId()));
+        assertSame(copyingStore.findAll(filter, PageRequest.of(0, 1)).getContent().get(0),
+                copyingStore.findOne(widget.getId()));
+    }
+
+    @Test
+    public void testConsistentReadDuringPush() {
+        int widgetCount = 2000;
+        int pageSize = 100;
+
+        // Каждое добавление на первый слой выпихивает все виджеты, так что в любой целостной версии хранилища
+        // z-index'ы идут подряд, начиная с 1
+        CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> {
+            for (int i = 0; i < widgetCount; i++) {
+                widgetStore.add(Widget.builder().zIndex(1).build());
+            }
+        });
+
+        while (!writer.isDone()) {
+            Page<Widget> page = widgetStore.findAll(Filter.builder().build(), PageRequest.of(0, pageSize));
+            int expectedSize = (int) Math.min(page.getTotalElements(), pageSize);
+
+            List<Integer> zIndexes = page.getContent().stream()
+                    .map(Widget::getZIndex)
+                    .collect(Collectors.toList());
+            List<Integer> expected = IntStream.rangeClosed(1, expectedSize).boxed().collect(Collectors.toList());
+            assertEquals(zIndexes, expected);
+        }
+        writer.join();
+
+        assertEquals(widgetStore.findAll(Filter.builder().build(), PageRequest.of(0, pageSize)).getTotalElements(),
+                widgetCount);
+    }
+
+    @Test
+    public void testApplyBatch() {
+        Random random = new Random(1);
+        AdaptedWidgetStore sequentialStore = new AdaptedWidgetStore(new CombinedStoreAdapter());
+
+        List<String> ids = new ArrayList<>();
+        List<String> sequentialIds = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Widget widget = Widget.builder().zIndex(random.nextInt(30) + 1).build();
+            ids.add(widgetStore.add(widget).getId());
+            sequentialIds.add(sequentialStore.add(widget).getId());
+        }
+
+        // Добавления с коллизиями, перемежающиеся обновлениями и удалениями
+        List<WidgetMutation> mutations = new ArrayList<>();
+        List<WidgetMutation> sequentialMutations = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            int action = random.nextInt(10);
+            int index = random.nextInt(ids.size());
+            Widget widget = Widget.builder().zIndex(random.nextInt(5) == 0 ? null : random.nextInt(40) + 1).build();
+            if (action == 0) {
+                mutations.add(WidgetMutation.delete(ids.get(index)));
+                sequentialMutations.add(WidgetMutation.delete(sequentialIds.get(index)));
+            } else if (action == 1) {
+                widget.setZIndex(random.nextInt(40) + 1);
+                mutations.add(WidgetMutation.update(ids.get(index), widget));
+                sequentialMutations.add(WidgetMutation.update(sequentialIds.get(index), widget));
+            } else {
+                mutations.add(WidgetMutation.add(widget));
+                sequentialMutations.add(WidgetMutation.add(widget));
+            }
+        }
+
+        List<MutationResult> results = widgetStore.apply(mutations);
+        assertEquals(results.size(), mutations.size());
+        for (int i = 0; i < sequentialMutations.size(); i++) {
+            WidgetMutation mutation = sequentialMutations.get(i);
+            MutationResult result = results.get(i);
+            switch (mutation.getType()) {
+                case ADD:
+                    assertEquals(result.getWidget().getZIndex(), sequentialStore.add(mutation.getWidget()).getZIndex());
+                    break;
+                case UPDATE:
+                    try {
+                        Widget updated = sequentialStore.update(mutation.getId(), mutation.getWidget());
+                        assertEquals(result.getWidget().getZIndex(), updated.getZIndex());
+                    } catch (ResourceNotFoundException e) {
+                        assertTrue(result.getError() instanceof ResourceNotFoundException);
+                    }
+                    break;
+                case DELETE:
+                    try {
+                        sequentialStore.delete(mutation.getId());
+                        assertTrue(result.isSuccess());
+                    } catch (ResourceNotFoundException e) {
+                        assertTrue(result.getError() instanceof ResourceNotFoundException);
+                    }
+                    break;
+            }
+        }
+
+        assertEquals(getZIndexes(widgetStore), getZIndexes(sequentialStore));
+    }
+
+    @Test
+    public void testApplyBatchAutoZIndexAfterDelete() {
+        widgetStore.add(Widget.builder().zIndex(1).build());
+        widgetStore.add(Widget.builder().zIndex(2).build());
+        widgetStore.delete(widgetStore.add(Widget.builder().zIndex(10).build()).getId());
+
+        // Кешированный максимум остается 10 после удаления и не сдвигается выпихиванием 1 и 2, как и при
+        // последовательном добавлении
+        List<MutationResult> results = widgetStore.apply(Arrays.asList(
+                WidgetMutation.add(Widget.builder().zIndex(1).build()),
+                WidgetMutation.add(Widget.builder().build())
+        ));
+
+        assertEquals(results.get(1).getWidget().getZIndex().intValue(), 11);
+        assertEquals(getZIndexes(widgetStore), Arrays.asList(1, 2, 3, 11));
+    }
+
+    @DataProvider(name = "storeAdapters")
+    public Object[][] getStoreAdapters() {
+        return new Object[][] {
+                {(Supplier<InnerStoreAdapter>) CombinedStoreAdapter::new},
+                {(Supplier<InnerStoreAdapter>) SortedSetStoreAdapter::new},
+                {(Supplier<InnerStoreAdapter>) MapStoreAdapter::new},
+                {(Supplier<InnerStoreAdapter>) RTreeStoreAdapter::new},
+                {(Supplier<InnerStoreAdapter>) SpatialHashStoreAdapter::new},
+                {(Supplier<InnerStoreAdapter>) OrderStatisticStoreAdapter::new}
+        };
+    }
+
+    @Test(dataProvider = "storeAdapters")
+    public void testApplyBatchAutoZIndex(Supplier<InnerStoreAdapter> adapterFactory) {
+        for (int seed = 0; seed < 50; seed++) {
+            Random random = new Random(seed);
+            AdaptedWidgetStore batchStore = new AdaptedWidgetStore(adapterFactory.get());
+            AdaptedWidgetStore sequentialStore = new AdaptedWidgetStore(adapterFactory.get());
+
+            // Удаление верхних виджетов оставляет кешированный максимум выше фактического
+            List<String> ids = new ArrayList<>();
+            List<String> sequentialIds = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                Widget widget = getAreaWidget(random).zIndex(random.nextInt(20) + 1).build();
+                ids.add(batchStore.add(widget).getId());
+                sequentialIds.add(sequentialStore.add(widget).getId());
+            }
+            for (int i = 0; i < 3; i++) {
+                Widget top = batchStore.findAll(Filter.builder().build(), PageRequest.of(0, 100)).getContent()
+                        .stream().reduce((a, b) -> b).orElseThrow(IllegalStateException::new);
+                int index = ids.indexOf(top.getId());
+                batchStore.delete(ids.remove(index));
+                sequentialStore.delete(sequentialIds.remove(index));
+            }
+
+            // Добавления с z-index и без него вперемешку с коллизиями
+            List<WidgetMutation> mutations = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                Integer zIndex = random.nextBoolean() ? null : random.nextInt(20) + 1;
+                mutations.add(WidgetMutation.add(getAreaWidget(random).zIndex(zIndex).build()));
+            }
+
+            List<MutationResult> results = batchStore.apply(mutations);
+            for (int i = 0; i < mutations.size(); i++) {
+                assertEquals(results.get(i).getWidget().getZIndex(),
+                        sequentialStore.add(mutations.get(i).getWidget()).getZIndex(), "Seed " + seed);
+            }
+            assertEquals(getZIndexes(batchStore), getZIndexes(sequentialStore), "Seed " + seed);
+        }
+    }
+
+    @Test
+    public void testForEachDuringPush() {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < WidgetStore.STREAM_CHUNK_SIZE * 3; i++) {
+            ids.add(widgetStore.add(Widget.builder().build()).getId());
+        }
+
+        // Каждый обработанный виджет выпихивает все сохраненные, но обход продолжается с текущего положения
+        // последнего прочитанного виджета, поэтому каждый исходный виджет встречается ровно один раз
+        List<String> visited = new ArrayList<>();
+        widgetStore.forEach(Filter.builder().build(), widget -> {
+            visited.add(widget.getId());
+            widgetStore.add(Widget.builder().zIndex(1).build());
+        });
+
+        List<String> original = visited.stream().filter(ids::contains).collect(Collectors.toList());
+        assertEquals(original, ids);
+    }
+
+    @Test
+    public void testApplyBatchFailure() {
+        List<MutationResult> results = widgetStore.apply(Arrays.asList(
+                WidgetMutation.add(Widget.builder().zIndex(1).build()),
+                WidgetMutation.delete(UUID.randomUUID().toString()),
+                WidgetMutation.add(Widget.builder().zIndex(1).build())
+        ));
+
+        assertTrue(results.get(0).isSuccess());
+        assertFalse(results.get(1).isSuccess());
+        assertTrue(results.get(1).getError() instanceof ResourceNotFoundException);
+        assertTrue(results.get(2).isSuccess());
+        assertEquals(getZIndexes(widgetStore), Arrays.asList(1, 2));
+    }
+
+    @Test
+    public void testApplyBatchVersion() {
+        Widget existing = widgetStore.add(Widget.builder().zIndex(1).build());
+        long before = widgetStore.getVersion();
+
+        List<MutationResult> results = widgetStore.apply(Arrays.asList(
+                WidgetMutation.add(Widget.builder().zIndex(1).build()),
+                WidgetMutation.update(existing.getId(), Widget.builder().zIndex(5).build())
+        ));
+
+        // Пакет публикуется как одна версия хранилища
+        assertEquals(widgetStore.getVersion(), before + 1);
+        assertEquals(results.get(0).getWidget().getVersion().longValue(), before + 1);
+        assertEquals(results.get(1).getWidget().getVersion().longValue(), before + 1);
+    }
+
+    @Test
+    public void testChangeFeed() {
+        assertFalse(widgetStore.getChangeFeed().isPresent());
+
+        // Лента должна восстанавливать состояние как отсортированного, так и несортированного хранилища
+        for (AdaptedWidgetStore store : Arrays.asList(
+                new AdaptedWidgetStore(new CombinedStoreAdapter(), 10000),
+                new AdaptedWidgetStore(new MapStoreAdapter(), 10000))) {
+            Random random = new Random(1);
+            List<String> ids = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                ids.add(store.add(Widget.builder().zIndex(random.nextInt(30) + 1).build()).getId());
+            }
+
+            ChangeFeed feed = store.getChangeFeed().orElseThrow(IllegalStateException::new);
+            long since = store.getVersion();
+            Map<String, Integer> conflated = getZIndexes(store.copyAll());
+            Map<String, Integer> incremental = new HashMap<>(conflated);
+            long position = since;
+
+            for (int i = 0; i < 200; i++) {
+                String id = ids.get(random.nextInt(ids.size()));
+                Widget widget = Widget.builder().zIndex(random.nextInt(40) + 1).build();
+                switch (random.nextInt(4)) {
+                    case 0:
+                        ids.add(store.add(widget).getId());
+                        break;
+                    case 1:
+                        if (store.findOne(id) != null) {
+                            store.update(id, widget);
+                        }
+                        break;
+                    case 2:
+                        if (store.findOne(id) != null) {
+                            store.delete(id);
+                        }
+                        break;
+                    default:
+                        store.apply(Arrays.asList(WidgetMutation.add(widget), WidgetMutation.update(id, widget),
+                                WidgetMutation.add(Widget.builder().zIndex(widget.getZIndex()).build())));
+                        break;
+                }
+
+                // Быстрый читатель получает изменения каждой версии
+                ChangeBatch batch = feed.read(position);
+                applyChanges(incremental, batch);
+                position = batch.getVersion();
+                assertEquals(incremental, getZIndexes(store.copyAll()));
+            }
+
+            // Медленный читатель получает все изменения одним объединенным пакетом
+            ChangeBatch batch = feed.read(since);
+            assertFalse(batch.isResync());
+            applyChanges(conflated, batch);
+            assertEquals(conflated, getZIndexes(store.copyAll()));
+        }
+    }
+
+    @Test
+    public void testMetrics() {
+        List<Integer> shifted = new ArrayList<>();
+        long[] writeLocks = {0};
+        long[] rows = {0, 0};
+        StoreMetrics metrics = new StoreMetrics() {
+            @Override
+            public void lockAcquired(boolean write, long waitNanos) {
+                if (write) {
+                    writeLocks[0]++;
+                }
+            }
+
+            @Override
+            public void pushedOut(int count) {
+                shifted.add(count);
+            }
+
+            @Override
+            public void pageScanned(long scanned, int returned) {
+                rows[0] += scanned;
+                rows[1] += returned;
+            }
+        };
+
+        // Несортированное хранилище перебирает все виджеты, чтобы отсортировать их для выборки страницы
+        AdaptedWidgetStore store = new AdaptedWidgetStore(new MapStoreAdapter(), 0, metrics);
+        Arrays.asList(1, 2, 3, 2).forEach(z -> store.add(Widget.builder().zIndex(z).build()));
+        store.findAll(Filter.builder().build(), PageRequest.of(0, 2));
+
+        assertEquals(shifted, Arrays.asList(0, 0, 0, 2));
+        assertEquals(writeLocks[0], 4);
+        assertEquals(rows[0], 4);
+        assertEquals(rows[1], 2);
+        assertEquals(store.size(), 4);
+        assertEquals(store.getMaxZIndex(), 4);
+    }
+
+    private Widget.WidgetBuilder getAreaWidget(Random random) {
+        return Widget.builder()
+                .x(random.nextInt(1000))
+                .y(random.nextInt(1000))
+                .width(random.nextInt(100) + 1)
+                .height(random.nextInt(100) + 1);
+    }
+
+    private Map<String, Integer> getZIndexes(List<Widget> widgets) {
+        return widgets.stream().collect(Collectors.toMap(Widget::getId, Widget::getZIndex));
+    }
+
+    /**
+     * Применяет пакет изменений так же, как это делает клиент ленты изменений
+     */
+    private void applyChanges(Map<String, Integer> zIndexes, ChangeBatch batch) {
+        for (int threshold : batch.getPushOuts()) {
+            zIndexes.replaceAll((id, zIndex) -> zIndex >= threshold ? zIndex + 1 : zIndex);
+        }
+        batch.getUpdated().forEach(widget -> zIndexes.put(widget.getId(), widget.getZIndex()));
+        batch.getDeleted().forEach(zIndexes::remove);
+    }
+
+    private List<Integer> getZIndexes(WidgetStore store) {
+        return store.findAll(Filter.builder().build(), PageRequest.of(0, 1000)).stream()
+                .map(Widget::getZIndex)
+                .collect(Collectors.toList());
+    }
 }
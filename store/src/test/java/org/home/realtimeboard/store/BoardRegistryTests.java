@@ -0,0 +1,80 @@
+package org.home.realtimeboard.store;
+
+import org.home.realtimeboard.model.Widget;
+import org.home.realtimeboard.store.adapter.CombinedStoreAdapter;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+/**
+ * Тесты для {@link BoardRegistry}
+ */
+public class BoardRegistryTests {
+    private BoardRegistry boardRegistry;
+
+    @BeforeMethod
+    public void setUp() {
+        boardRegistry = new BoardRegistry(boardId -> new AdaptedWidgetStore(new CombinedStoreAdapter()), 2);
+    }
+
+    @Test
+    public void testGetStore() {
+        WidgetStore store = boardRegistry.getStore("first");
+        assertSame(boardRegistry.getStore("first"), store);
+        assertNotSame(boardRegistry.getStore("second"), store);
+        assertEquals(boardRegistry.size(), 2);
+    }
+
+    @Test
+    public void testFindStore() {
+        assertFalse(boardRegistry.findStore("first").isPresent());
+        WidgetStore store = boardRegistry.getStore("first");
+        assertSame(boardRegistry.findStore("first").orElse(null), store);
+    }
+
+    @Test
+    public void testIndependentZIndexes() {
+        Widget first = boardRegistry.getStore("first").add(Widget.builder().zIndex(1).build());
+        Widget second = boardRegistry.getStore("second").add(Widget.builder().zIndex(1).build());
+
+        // Виджет другой доски не выпихивается
+        assertEquals(boardRegistry.getStore("first").findOne(first.getId()).getZIndex().intValue(), 1);
+        assertEquals(boardRegistry.getStore("second").findOne(second.getId()).getZIndex().intValue(), 1);
+        assertNull(boardRegistry.getStore("second").findOne(first.getId()));
+    }
+
+    @Test
+    public void testBoardLimit() {
+        WidgetStore first = boardRegistry.getStore("first");
+        boardRegistry.getStore("second");
+        try {
+            boardRegistry.getStore("third");
+            fail("Board over the limit must not be created");
+        } catch (BoardLimitExceededException e) {
+            assertFalse(boardRegistry.findStore("third").isPresent());
+        }
+
+        // Существующие доски доступны и после достижения ограничения
+        assertSame(boardRegistry.getStore("first"), first);
+        assertEquals(boardRegistry.size(), 2);
+    }
+
+    @Test
+    public void testFailedStoreCreation() {
+        // Неудачное создание не расходует ограничение количества досок
+        BoardRegistry registry = new BoardRegistry(boardId -> {
+            if ("first".equals(boardId)) {
+                throw new IllegalArgumentException(boardId);
+            }
+            return new AdaptedWidgetStore(new CombinedStoreAdapter());
+        }, 1);
+        try {
+            registry.getStore("first");
+            fail("Store must not be created");
+        } catch (IllegalArgumentException e) {
+            assertEquals(registry.size(), 0);
+            assertNotNull(registry.getStore("second"));
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package org.home.realtimeboard.store;
+
+import lombok.Getter;
+import org.home.realtimeboard.model.Filter;
+import org.home.realtimeboard.model.Widget;
+import org.home.realtimeboard.store.adapter.CombinedStoreAdapter;
+import org.home.realtimeboard.store.cache.CacheStatistics;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.rest.webmvc.ResourceNotFoundException;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.testng.Assert.*;
+
+/**
+ * Тесты для {@link CachingWidgetStore}
+ */
+public class CachingWidgetStoreTests extends AbstractWidgetStoreTests {
+    // Выборка по области 0..100, верхний виджет страницы имеет z-index 10
+    private static final Filter VIEWPORT = Filter.builder().top(0).bottom(100).left(0).right(100).build();
+
+    @Getter
+    private CachingWidgetStore widgetStore;
+
+    @BeforeMethod
+    public void setUp() {
+        widgetStore = new CachingWidgetStore(new AdaptedWidgetStore(new CombinedStoreAdapter()), 16);
+    }
+
+    @Test
+    public void testHit() {
+        widgetStore.add(getWidget(10, 10, 10));
+
+        Page<Widget> first = widgetStore.findAll(VIEWPORT, PageRequest.of(0, 10));
+        Page<Widget> second = widgetStore.findAll(copy(VIEWPORT), PageRequest.of(0, 10));
+        assertSame(second, first);
+        widgetStore.findAll(VIEWPORT, PageRequest.of(1, 10));
+
+        CacheStatistics statistics = widgetStore.getStatistics();
+        assertEquals(statistics.getHitCount(), 1);
+        assertEquals(statistics.getMissCount(), 2);
+        assertEquals(statistics.getSize(), 2);
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testCachedWidgetsImmutable() {
+        widgetStore.add(getWidget(10, 10, 10));
+        widgetStore.findAll(VIEWPORT, PageRequest.of(0, 10)).getContent().get(0).setX(0);
+    }
+
+    @Test
+    public void testMutationOutsideViewport() {
+        widgetStore.add(getWidget(10, 10, 10));
+        Page<Widget> cached = widgetStore.findAll(VIEWPORT, PageRequest.of(0, 10));
+
+        // Виджеты вне области выше страницы и без коллизий не затрагивают выборку
+        Widget outside = widgetStore.add(getWidget(500, 500, null));
+        widgetStore.add(getWidget(500, 500, 20));
+        widgetStore.update(outside.getId(), getWidget(600, 600, 30));
+        widgetStore.delete(outside.getId());
+
+        assertSame(widgetStore.findAll(VIEWPORT, PageRequest.of(0, 10)), cached);
+        assertEquals(widgetStore.getStatistics().getInvalidationCount(), 0);
+    }
+
+    @Test
+    public void testAddInsideViewport() {
+        widgetStore.add(getWidget(10, 10, 10));
+        widgetStore.findAll(VIEWPORT, PageRequest.of(0, 10));
+
+        widgetStore.add(getWidget(20, 20, null));
+        Page<Widget> page = widgetStore.findAll(VIEWPORT, PageRequest.of(0, 10));
+        assertEquals(page.getTotalElements(), 2);
+        assertEquals(widgetStore.getStatistics().getInvalidationCount(), 1);
+    }
+
+    @Test
+    public void testPushOutsideViewport() {
+        widgetStore.add(getWidget(10, 10, 10));
+        widgetStore.findAll(VIEWPORT, PageRequest.of(0, 10));
+
+        // Виджет вне области выпихивает виджет страницы, выборка остается в кеше
+        widgetStore.add(getWidget(500, 500, 10));
+        Page<Widget> page = widgetStore.findAll(VIEWPORT, PageRequest.of(0, 10));
+        assertEquals(page.getContent().get(0).getZIndex().intValue(), 11);
+
+        CacheStatistics statistics = widgetStore.getStatistics();
+        assertEquals(statistics.getHitCount(), 1);
+        assertEquals(statistics.getInvalidationCount(), 0);
+    }
+
+    @Test
+    public void testPushOutSequence() {
+        widgetStore.add(getWidget(10, 10, 5));
+        widgetStore.add(getWidget(20, 20, 10));
+        widgetStore.findAll(VIEWPORT, PageRequest.of(0, 10));
+
+        // Цепочка выпихиваний вне области: 10 -> 11, затем 5 -> 6 и 11 -> 12, затем 12 -> 13
+        widgetStore.add(getWidget(500, 500, 10));
+        widgetStore.add(getWidget(500, 500, 5));
+        widgetStore.add(getWidget(500, 500, 12));
+        // Без коллизии выпихивания нет
+        widgetStore.add(getWidget(500, 500, 3));
+
+        Page<Widget> page = widgetStore.findAll(VIEWPORT, PageRequest.of(0, 10));
+        assertEquals(page.getContent(), widgetStore.findAll(copy(VIEWPORT), PageRequest.of(0, 10)).getContent());
+        assertEquals(page.getContent().get(0).getZIndex().intValue(), 6);
+        assertEquals(page.getContent().get(1).getZIndex().intValue(), 13);
+        assertEquals(widgetStore.getStatistics().getMissCount(), 1);
+    }
+
+    @Test
+    public void testMoveOutOfViewport() {
+        Widget widget = widgetStore.add(getWidget(10, 10, 10));
+        widgetStore.add(getWidget(20, 20, 20));
+        widgetStore.findAll(VIEWPORT, PageRequest.of(0, 1));
+
+        // Виджет вне страницы, но в области выборки, меняет количество
+        Widget other = widgetStore.findAll(VIEWPORT, PageRequest.of(1, 1)).getContent().get(0);
+        widgetStore.update(other.getId(), getWidget(500, 500, 30));
+        assertEquals(widgetStore.findAll(VIEWPORT, PageRequest.of(0, 1)).getTotalElements(), 1);
+
+        widgetStore.delete(widget.getId());
+        assertEquals(widgetStore.findAll(VIEWPORT, PageRequest.of(0, 1)).getTotalElements(), 0);
+    }
+
+    @Test
+    public void testEmptyFilter() {
+        Filter filter = Filter.builder().build();
+        widgetStore.findAll(filter, PageRequest.of(0, 10));
+
+        widgetStore.add(getWidget(500, 500, null));
+        assertEquals(widgetStore.findAll(filter, PageRequest.of(0, 10)).getTotalElements(), 1);
+    }
+
+    @Test
+    public void testApplyBatch() {
+        Widget widget = widgetStore.add(getWidget(10, 10, 10));
+        Widget outside = widgetStore.add(getWidget(500, 500, 20));
+        Page<Widget> cached = widgetStore.findAll(VIEWPORT, PageRequest.of(0, 10));
+
+        widgetStore.apply(Arrays.asList(
+                WidgetMutation.update(outside.getId(), getWidget(600, 600, 30)),
+                WidgetMutation.delete(UUID.randomUUID().toString())));
+        assertSame(widgetStore.findAll(VIEWPORT, PageRequest.of(0, 10)), cached);
+
+        widgetStore.apply(Arrays.asList(
+                WidgetMutation.update(outside.getId(), getWidget(600, 600, 40)),
+                WidgetMutation.update(widget.getId(), getWidget(700, 700, 50))));
+        assertEquals(widgetStore.findAll(VIEWPORT, PageRequest.of(0, 10)).getTotalElements(), 0);
+    }
+
+    @Test
+    public void testMissingWidget() {
+        widgetStore.add(getWidget(10, 10, 10));
+        Page<Widget> cached = widgetStore.findAll(VIEWPORT, PageRequest.of(0, 10));
+
+        try {
+            widgetStore.update(UUID.randomUUID().toString(), getWidget(10, 10, 1));
+            fail("Widget must be missing");
+        } catch (ResourceNotFoundException e) {
+            // Хранилище не изменилось
+        }
+        assertSame(widgetStore.findAll(VIEWPORT, PageRequest.of(0, 10)), cached);
+    }
+
+    @Test
+    public void testFindAllDuringWrite() throws Exception {
+        PausingWidgetStore store = new PausingWidgetStore();
+        widgetStore = new CachingWidgetStore(store, 16);
+        widgetStore.add(getWidget(10, 10, 1));
+        widgetStore.add(getWidget(20, 20, 2));
+
+        // Добавление вне области выпихивает виджеты выборки и останавливается до обновления кеша
+        store.pause();
+        CompletableFuture<Widget> writer = CompletableFuture.supplyAsync(() -> widgetStore.add(getWidget(500, 500, 1)));
+        store.awaitWritten();
+
+        // Выборка читает уже измененное хранилище и не должна попасть в кеш, иначе выпихивание применится дважды
+        assertEquals(getZIndexes(widgetStore.findAll(VIEWPORT, PageRequest.of(0, 10))), Arrays.asList(2, 3));
+        store.resume();
+        writer.get(10, TimeUnit.SECONDS);
+
+        assertEquals(getZIndexes(widgetStore.findAll(VIEWPORT, PageRequest.of(0, 10))), Arrays.asList(2, 3));
+        assertEquals(getZIndexes(widgetStore.findAll(VIEWPORT, PageRequest.of(0, 10))),
+                getZIndexes(store.findAll(VIEWPORT, PageRequest.of(0, 10))));
+    }
+
+    private List<Integer> getZIndexes(Page<Widget> page) {
+        return page.getContent().stream().map(Widget::getZIndex).collect(Collectors.toList());
+    }
+
+    private Filter copy(Filter filter) {
+        return Filter.builder()
+                .top(filter.getTop())
+                .bottom(filter.getBottom())
+                .left(filter.getLeft())
+                .right(filter.getRight())
+                .build();
+    }
+
+    private Widget getWidget(int x, int y, Integer zIndex) {
+        return Widget.builder()
+                .x(x)
+                .y(y)
+                .width(10)
+                .height(10)
+                .zIndex(zIndex)
+                .build();
+    }
+
+    /**
+     * Хранилище, которое может остановить добавление после записи, до возврата управления кешу
+     */
+    private static class PausingWidgetStore extends AdaptedWidgetStore {
+        private volatile CountDownLatch written;
+        private volatile CountDownLatch resumed;
+
+        PausingWidgetStore() {
+            super(new CombinedStoreAdapter());
+        }
+
+        void pause() {
+            written = new CountDownLatch(1);
+            resumed = new CountDownLatch(1);
+        }
+
+        void awaitWritten() throws InterruptedException {
+            assertTrue(written.await(10, TimeUnit.SECONDS));
+        }
+
+        void resume() {
+            resumed.countDown();
+        }
+
+        @Override
+        public Widget add(Widget widget) {
+            Widget result = super.add(widget);
+            if (Objects.nonNull(written)) {
+                written.countDown();
+                try {
+                    resumed.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return result;
+        }
+    }
+}
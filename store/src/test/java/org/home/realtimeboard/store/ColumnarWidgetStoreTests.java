@@ -0,0 +1,18 @@
+package org.home.realtimeboard.store;
+
+import lombok.Getter;
+import org.home.realtimeboard.store.adapter.ColumnarStoreAdapter;
+import org.testng.annotations.BeforeMethod;
+
+/**
+ * Тесты для {@link AdaptedWidgetStore} с {@link ColumnarStoreAdapter}, возвращающим копии сохраненных виджетов
+ */
+public class ColumnarWidgetStoreTests extends AbstractWidgetStoreTests {
+    @Getter
+    private AdaptedWidgetStore widgetStore;
+
+    @BeforeMethod
+    public void setUp() {
+        widgetStore = new AdaptedWidgetStore(new ColumnarStoreAdapter());
+    }
+}
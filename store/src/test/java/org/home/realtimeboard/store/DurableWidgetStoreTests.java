@@ -0,0 +1,210 @@
+package org.home.realtimeboard.store;
+
+import lombok.Getter;
+import org.home.realtimeboard.model.Filter;
+import org.home.realtimeboard.model.Widget;
+import org.home.realtimeboard.store.adapter.CombinedStoreAdapter;
+import org.home.realtimeboard.store.persistence.Durability;
+import org.home.realtimeboard.store.persistence.WriteAheadLog;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.rest.webmvc.ResourceNotFoundException;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.testng.Assert.*;
+
+/**
+ * Тесты для {@link DurableWidgetStore}
+ */
+public class DurableWidgetStoreTests extends AbstractWidgetStoreTests {
+    @Getter
+    private DurableWidgetStore widgetStore;
+    private Path path;
+    private Path snapshotPath;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        path = Files.createTempFile("widgets", ".wal");
+        snapshotPath = path.resolveSibling(path.getFileName() + ".snapshot");
+        widgetStore = open(Durability.GROUP_COMMIT);
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        widgetStore.close();
+        Files.deleteIfExists(path);
+        Files.deleteIfExists(snapshotPath);
+    }
+
+    @Test
+    public void testRecovery() {
+        Random random = new Random(1);
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            int action = random.nextInt(10);
+            if ((action == 0) && !ids.isEmpty()) {
+                widgetStore.delete(ids.remove(random.nextInt(ids.size())));
+            } else if ((action < 3) && !ids.isEmpty()) {
+                widgetStore.update(ids.get(random.nextInt(ids.size())), Widget.builder()
+                        .x(random.nextInt(100))
+                        .zIndex(random.nextInt(50) + 1)
+                        .build());
+            } else {
+                Widget widget = widgetStore.add(Widget.builder()
+                        .x(random.nextInt(100))
+                        .y(random.nextInt(100))
+                        .width(10)
+                        .height(10)
+                        .zIndex(random.nextInt(3) == 0 ? null : random.nextInt(50) + 1)
+                        .build());
+                ids.add(widget.getId());
+            }
+        }
+
+        List<Widget> expected = getAll(widgetStore);
+        widgetStore.close();
+        widgetStore = open(Durability.GROUP_COMMIT);
+
+        assertEquals(getAll(widgetStore), expected);
+        for (String id : ids) {
+            assertNotNull(widgetStore.findOne(id));
+        }
+    }
+
+    @Test
+    public void testApplyRecovery() {
+        String id = widgetStore.add(Widget.builder().zIndex(1).build()).getId();
+        List<MutationResult> results = widgetStore.apply(Arrays.asList(
+                WidgetMutation.add(Widget.builder().zIndex(1).build()),
+                WidgetMutation.update(id, Widget.builder().x(10).zIndex(1).build()),
+                WidgetMutation.delete(UUID.randomUUID().toString()),
+                WidgetMutation.add(Widget.builder().zIndex(1).build())
+        ));
+        assertTrue(results.get(2).getError() instanceof ResourceNotFoundException);
+
+        List<Widget> expected = getAll(widgetStore);
+        widgetStore.close();
+        widgetStore = open(Durability.NONE);
+
+        assertEquals(getAll(widgetStore), expected);
+        assertEquals(widgetStore.findOne(id).getX(), Integer.valueOf(10));
+    }
+
+    @Test
+    public void testConcurrentAdd() {
+        int threadCount = 8;
+        int widgetsPerThread = 50;
+
+        List<CompletableFuture<Void>> writers = IntStream.range(0, threadCount)
+                .mapToObj(i -> CompletableFuture.runAsync(() -> {
+                    for (int j = 0; j < widgetsPerThread; j++) {
+                        widgetStore.add(Widget.builder().zIndex(1).build());
+                    }
+                }))
+                .collect(Collectors.toList());
+        writers.forEach(CompletableFuture::join);
+
+        List<Widget> expected = getAll(widgetStore);
+        assertEquals(expected.size(), threadCount * widgetsPerThread);
+        widgetStore.close();
+        widgetStore = open(Durability.PER_OPERATION);
+
+        assertEquals(getAll(widgetStore), expected);
+    }
+
+    @Test
+    public void testSnapshotRecovery() throws IOException {
+        widgetStore.close();
+        widgetStore = openWithSnapshot();
+
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            ids.add(widgetStore.add(Widget.builder().x(i).zIndex(i % 10 + 1).build()).getId());
+        }
+        long walSize = Files.size(path);
+        widgetStore.snapshot();
+        // Изменения, вошедшие в снимок, удаляются из журнала
+        assertTrue(Files.size(path) < walSize / 10);
+
+        // Изменения после снимка восстанавливаются из хвоста журнала
+        widgetStore.delete(ids.get(0));
+        widgetStore.update(ids.get(1), Widget.builder().x(-1).zIndex(5).build());
+        widgetStore.add(Widget.builder().zIndex(1).build());
+
+        List<Widget> expected = getAll(widgetStore);
+        widgetStore.close();
+        widgetStore = openWithSnapshot();
+        assertEquals(getAll(widgetStore), expected);
+
+        // Сжатый журнал сжимается повторно при следующем снимке
+        widgetStore.update(ids.get(2), Widget.builder().x(-2).zIndex(7).build());
+        widgetStore.snapshot();
+        widgetStore.delete(ids.get(3));
+
+        expected = getAll(widgetStore);
+        widgetStore.close();
+        widgetStore = openWithSnapshot();
+        assertEquals(getAll(widgetStore), expected);
+    }
+
+    @Test
+    public void testCorruptedSnapshot() throws IOException {
+        widgetStore.close();
+        widgetStore = openWithSnapshot();
+        for (int i = 0; i < 100; i++) {
+            widgetStore.add(Widget.builder().zIndex(1).build());
+        }
+
+        List<Widget> expected = getAll(widgetStore);
+        widgetStore.close();
+        Files.write(snapshotPath, new byte[10]);
+        widgetStore = openWithSnapshot();
+
+        // Поврежденный снимок игнорируется, несжатый журнал повторяется целиком
+        assertEquals(getAll(widgetStore), expected);
+    }
+
+    @Test
+    public void testCorruptedSnapshotOfCompactedLog() throws IOException {
+        widgetStore.close();
+        widgetStore = openWithSnapshot();
+        for (int i = 0; i < 100; i++) {
+            widgetStore.add(Widget.builder().zIndex(1).build());
+        }
+        widgetStore.snapshot();
+        widgetStore.add(Widget.builder().zIndex(1).build());
+        widgetStore.close();
+        Files.write(snapshotPath, new byte[10]);
+
+        // Сжатый журнал не содержит вошедших в снимок изменений, поэтому хранилище не создается с частью данных
+        expectThrows(IllegalStateException.class, this::openWithSnapshot);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testSnapshotNotConfigured() {
+        widgetStore.snapshot();
+    }
+
+    private DurableWidgetStore open(Durability durability) {
+        return new DurableWidgetStore(new AdaptedWidgetStore(new CombinedStoreAdapter()),
+                new WriteAheadLog(path, durability));
+    }
+
+    private DurableWidgetStore openWithSnapshot() {
+        return new DurableWidgetStore(new AdaptedWidgetStore(new CombinedStoreAdapter()),
+                new WriteAheadLog(path, Durability.NONE), snapshotPath);
+    }
+
+    private List<Widget> getAll(WidgetStore store) {
+        return store.findAll(Filter.builder().build(), PageRequest.of(0, 1000)).getContent();
+    }
+}
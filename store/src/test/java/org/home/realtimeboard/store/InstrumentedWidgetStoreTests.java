@@ -0,0 +1,72 @@
+package org.home.realtimeboard.store;
+
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.Getter;
+import org.home.realtimeboard.model.Filter;
+import org.home.realtimeboard.model.Widget;
+import org.home.realtimeboard.store.adapter.CombinedStoreAdapter;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.rest.webmvc.ResourceNotFoundException;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.*;
+
+/**
+ * Тесты для {@link InstrumentedWidgetStore}
+ */
+public class InstrumentedWidgetStoreTests extends AbstractWidgetStoreTests {
+    @Getter
+    private InstrumentedWidgetStore widgetStore;
+    private MeterRegistry registry;
+
+    @BeforeMethod
+    public void setUp() {
+        registry = new SimpleMeterRegistry();
+        widgetStore = new InstrumentedWidgetStore(new AdaptedWidgetStore(new CombinedStoreAdapter()), registry);
+    }
+
+    @Test
+    public void testOperationTimers() {
+        Widget widget = widgetStore.add(Widget.builder().zIndex(1).build());
+        widgetStore.add(Widget.builder().zIndex(1).build());
+        widgetStore.findOne(widget.getId());
+        widgetStore.findAll(Filter.builder().build(), PageRequest.of(0, 10));
+
+        assertEquals(getTimer("add").count(), 2.0);
+        assertEquals(getTimer("findOne").count(), 1.0);
+        assertEquals(getTimer("findAll").count(), 1.0);
+        assertEquals(getTimer("delete").count(), 0.0);
+        assertTrue(getTimer("add").totalTime(TimeUnit.NANOSECONDS) > 0);
+    }
+
+    @Test
+    public void testFailedOperationTimer() {
+        // Операция, завершившаяся ошибкой, тоже замеряется
+        try {
+            widgetStore.delete(UUID.randomUUID().toString());
+            fail("Widget must not be found");
+        } catch (ResourceNotFoundException e) {
+            assertEquals(getTimer("delete").count(), 1.0);
+        }
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testCloseDelegate() throws Exception {
+        SingleWriterWidgetStore singleWriterStore =
+                new SingleWriterWidgetStore(new AdaptedWidgetStore(new CombinedStoreAdapter()));
+        new InstrumentedWidgetStore(singleWriterStore, registry).close();
+
+        // Закрытое хранилище с единственным пишущим потоком отклоняет изменения
+        singleWriterStore.add(Widget.builder().build());
+    }
+
+    private FunctionTimer getTimer(String operation) {
+        return registry.get("store.operations").tag("operation", operation).functionTimer();
+    }
+}
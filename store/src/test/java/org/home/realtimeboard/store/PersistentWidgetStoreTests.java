@@ -0,0 +1,119 @@
+package org.home.realtimeboard.store;
+
+import lombok.Getter;
+import org.home.realtimeboard.model.Filter;
+import org.home.realtimeboard.model.ImmutableWidget;
+import org.home.realtimeboard.model.Widget;
+import org.springframework.data.domain.PageRequest;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.testng.Assert.*;
+
+/**
+ * Тесты для {@link PersistentWidgetStore}.
+ * Хранилище возвращает неизменяемые виджеты, поэтому тесты, изменяющие возвращенный виджет, работают с его копией
+ */
+public class PersistentWidgetStoreTests extends AbstractWidgetStoreTests {
+    @Getter
+    private PersistentWidgetStore widgetStore;
+
+    @BeforeMethod
+    public void setUp() {
+        widgetStore = new PersistentWidgetStore();
+    }
+
+    @Test
+    @Override
+    public void testUpdate() {
+        Widget widget = widgetStore.add(Widget.builder().build());
+        Widget update = widget.toBuilder().x(10).y(20).width(40).height(30).zIndex(50).build();
+
+        String id = widget.getId();
+        widget = widgetStore.update(id, update);
+
+        assertEquals(widget.getId(), id);
+        assertEquals(widget.getX(), Integer.valueOf(10));
+        assertEquals(widget.getY(), Integer.valueOf(20));
+        assertEquals(widget.getWidth(), Integer.valueOf(40));
+        assertEquals(widget.getHeight(), Integer.valueOf(30));
+        assertEquals(widget.getZIndex(), Integer.valueOf(50));
+    }
+
+    @Test
+    @Override
+    public void testUpdatePush() {
+        widgetStore.add(Widget.builder().zIndex(1).build());
+        widgetStore.add(Widget.builder().zIndex(1).build());
+        widgetStore.add(Widget.builder().zIndex(1).build());
+
+        widgetStore.add(Widget.builder().zIndex(5).build());
+        widgetStore.add(Widget.builder().zIndex(5).build());
+        widgetStore.add(Widget.builder().zIndex(5).build());
+
+        widgetStore.add(Widget.builder().zIndex(10).build());
+        widgetStore.add(Widget.builder().zIndex(10).build());
+        Widget widget = widgetStore.add(Widget.builder().zIndex(10).build());
+
+        widgetStore.update(widget.getId(), widget.toBuilder().zIndex(5).build());
+
+        assertEquals(getZIndexes(), Arrays.asList(1, 2, 3, 5, 6, 7, 8, 12, 13));
+    }
+
+    @Test
+    @Override
+    public void testImmutability() {
+        Widget widget = widgetStore.add(Widget.builder().x(10).zIndex(50).build());
+        assertTrue(widget instanceof ImmutableWidget);
+
+        for (Runnable mutation : Arrays.<Runnable>asList(
+                () -> widget.setX(20),
+                () -> widget.setZIndex(100),
+                widget::pushOut,
+                () -> widget.merge(Widget.builder().build()))) {
+            try {
+                mutation.run();
+                fail("Widget must be immutable");
+            } catch (UnsupportedOperationException e) {
+                // Ожидаемое поведение
+            }
+        }
+
+        assertEquals(widgetStore.findOne(widget.getId()).getX(), Integer.valueOf(10));
+        assertEquals(widgetStore.findOne(widget.getId()).getZIndex(), Integer.valueOf(50));
+    }
+
+    @Test
+    public void testNoCopy() {
+        Widget widget = widgetStore.add(Widget.builder().zIndex(1).build());
+        assertSame(widgetStore.findOne(widget.getId()), widget);
+        assertSame(widgetStore.findAll(Filter.builder().build(), PageRequest.of(0, 10)).getContent().get(0), widget);
+    }
+
+    @Test
+    public void testSnapshot() {
+        Widget first = widgetStore.add(Widget.builder().zIndex(1).build());
+        PersistentWidgetStore.Snapshot snapshot = widgetStore.snapshot();
+
+        widgetStore.add(Widget.builder().zIndex(1).build());
+        widgetStore.delete(first.getId());
+
+        // Снимок не видит последующих изменений
+        assertEquals(snapshot.size(), 1);
+        assertEquals(snapshot.findOne(first.getId()), first);
+        assertEquals(snapshot.findOne(first.getId()).getZIndex(), Integer.valueOf(1));
+        assertEquals(widgetStore.snapshot().size(), 1);
+        assertNull(widgetStore.findOne(first.getId()));
+        assertEquals(widgetStore.snapshot().getVersion(), snapshot.getVersion() + 2);
+    }
+
+    private List<Integer> getZIndexes() {
+        return widgetStore.findAll(Filter.builder().build(), PageRequest.of(0, 100)).stream()
+                .map(Widget::getZIndex)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,113 @@
+package org.home.realtimeboard.store;
+
+import lombok.Getter;
+import org.home.realtimeboard.model.Filter;
+import org.home.realtimeboard.model.Widget;
+import org.home.realtimeboard.store.adapter.CombinedStoreAdapter;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.rest.webmvc.ResourceNotFoundException;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * Тесты для {@link SingleWriterWidgetStore}
+ */
+public class SingleWriterWidgetStoreTests extends AbstractWidgetStoreTests {
+    @Getter
+    private SingleWriterWidgetStore widgetStore;
+
+    @BeforeMethod
+    public void setUp() {
+        widgetStore = new SingleWriterWidgetStore(new AdaptedWidgetStore(new CombinedStoreAdapter()), 16, 8);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        widgetStore.close();
+    }
+
+    @Test
+    public void testConcurrentAdd() {
+        int threadCount = 8;
+        int widgetsPerThread = 100;
+
+        List<CompletableFuture<Void>> writers = IntStream.range(0, threadCount)
+                .mapToObj(i -> CompletableFuture.runAsync(() -> {
+                    for (int j = 0; j < widgetsPerThread; j++) {
+                        widgetStore.add(Widget.builder().zIndex(1).build());
+                    }
+                }))
+                .collect(Collectors.toList());
+        writers.forEach(CompletableFuture::join);
+
+        // Все виджеты добавлены на первый слой, так что z-index'ы идут подряд
+        List<Integer> zIndexes = widgetStore.findAll(Filter.builder().build(), PageRequest.of(0, 1000)).stream()
+                .map(Widget::getZIndex)
+                .collect(Collectors.toList());
+        List<Integer> expected = IntStream.rangeClosed(1, threadCount * widgetsPerThread)
+                .boxed()
+                .collect(Collectors.toList());
+        assertEquals(zIndexes, expected);
+    }
+
+    @Test
+    public void testApplyBatch() {
+        Widget persisted = widgetStore.add(Widget.builder().zIndex(1).build());
+
+        List<MutationResult> results = widgetStore.apply(Arrays.asList(
+                WidgetMutation.add(Widget.builder().zIndex(1).build()),
+                WidgetMutation.delete(persisted.getId()),
+                WidgetMutation.delete(persisted.getId())
+        ));
+
+        assertEquals(results.size(), 3);
+        assertEquals(results.get(0).getWidget().getZIndex().intValue(), 1);
+        assertTrue(results.get(1).isSuccess());
+        assertTrue(results.get(2).getError() instanceof ResourceNotFoundException);
+        assertEquals(widgetStore.findAll(Filter.builder().build(), PageRequest.of(0, 10)).getTotalElements(), 1);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testClosed() {
+        widgetStore.close();
+        widgetStore.add(Widget.builder().build());
+    }
+
+    @Test(timeOut = 10000)
+    public void testWriterError() {
+        // Error внутреннего хранилища завершает пишущий поток
+        SingleWriterWidgetStore failingStore = new SingleWriterWidgetStore(
+                new AdaptedWidgetStore(new CombinedStoreAdapter()) {
+                    @Override
+                    public List<MutationResult> apply(List<WidgetMutation> mutations) {
+                        throw new AssertionError("Broken adapter");
+                    }
+                }, 16, 8);
+
+        try {
+            failingStore.add(Widget.builder().build());
+            fail("Mutation must fail");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getCause() instanceof AssertionError);
+        }
+
+        // Следующие изменения отклоняются сразу, а не ожидают остановленный пишущий поток
+        try {
+            failingStore.add(Widget.builder().build());
+            fail("Store must be closed");
+        } catch (IllegalStateException e) {
+            assertEquals(e.getMessage(), "Store is closed");
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package org.home.realtimeboard.store.adapter;
 
+import org.home.realtimeboard.model.Filter;
 import org.home.realtimeboard.model.Widget;
 import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
 import org.testng.annotations.BeforeMethod;
@@ -7,6 +8,7 @@ import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 import java.util.UUID;
 import java.util.stream.Collectors;
@@ -60,6 +62,23 @@ public abstract class AbstractStoreAdapterTests extends AbstractTestNGSpringCont
         assertEquals(getStoreAdapter().size(), 3);
     }
 
+    @Test
+    public void testAddAll() {
+        List<Widget> widgets = Arrays.asList(getWidget(1), getWidget(3), getWidget(7));
+        getStoreAdapter().addAll(widgets);
+
+        assertEquals(getStoreAdapter().size(), 3);
+        assertEquals(getStoreAdapter().getMaxZIndex().intValue(), 7);
+        for (Widget widget : widgets) {
+            assertEquals(getStoreAdapter().get(widget.getId()).get(), widget);
+        }
+        List<Integer> zIndexes = getStoreAdapter().stream()
+                .map(Widget::getZIndex)
+                .sorted()
+                .collect(Collectors.toList());
+        assertEquals(zIndexes, Arrays.asList(1, 3, 7));
+    }
+
     @Test
     public void testStream() {
         getStoreAdapter().add(getWidget());
@@ -69,6 +88,78 @@ public abstract class AbstractStoreAdapterTests extends AbstractTestNGSpringCont
         assertEquals(getStoreAdapter().stream().count(), 3);
     }
 
+    @Test
+    public void testStreamFrom() {
+        getStoreAdapter().add(getWidget(100));
+        getStoreAdapter().add(getWidget(10));
+        getStoreAdapter().add(getWidget(200));
+        getStoreAdapter().add(getWidget(50));
+
+        for (int offset = 0; offset <= 5; offset++) {
+            List<Widget> expected = getStoreAdapter().stream().skip(offset).collect(Collectors.toList());
+            assertEquals(getStoreAdapter().streamFrom(offset).collect(Collectors.toList()), expected);
+        }
+    }
+
+    @Test
+    public void testStreamAfter() {
+        getStoreAdapter().add(getWidget(0, 0, 5, 5, 100));
+        getStoreAdapter().add(getWidget(0, 0, 5, 5, 10));
+        getStoreAdapter().add(getWidget(50, 50, 5, 5, 200));
+        getStoreAdapter().add(getWidget(0, 0, 5, 5, 50));
+
+        Filter filter = Filter.builder().top(0).bottom(10).left(0).right(10).build();
+        for (int zIndex : new int[] {0, 10, 49, 50, 100, 200}) {
+            List<Widget> expected = getStoreAdapter().stream(filter)
+                    .filter(w -> w.getZIndex() > zIndex)
+                    .collect(Collectors.toList());
+            assertEquals(getStoreAdapter().streamAfter(zIndex, filter).collect(Collectors.toList()), expected);
+        }
+        assertEquals(getStoreAdapter().streamAfter(10, Filter.builder().build()).count(), 3);
+    }
+
+    @DataProvider(name = "testStreamFilterData")
+    public Object[][] getTestStreamFilterData() {
+        return new Object[][] {
+                {Filter.builder().build(), Arrays.asList(0, 1, 2, 3, 4, 5)},
+                {Filter.builder().top(0).bottom(10).left(0).right(10).build(), Arrays.asList(0, 1, 2)},
+                {Filter.builder().top(5).bottom(10).left(5).right(10).build(), Arrays.asList(2)},
+                {Filter.builder().top(-100).bottom(100).left(-100).right(100).build(), Arrays.asList(0, 1, 2, 3, 4)},
+                {Filter.builder().top(20).bottom(30).left(20).right(30).build(), Arrays.asList()}
+        };
+    }
+
+    @Test(dataProvider = "testStreamFilterData")
+    public void testStreamFilter(Filter filter, List<Integer> expectedIndexes) {
+        List<Widget> widgets = Arrays.asList(
+                getWidget(0, 0, 5, 5, 30),
+                getWidget(0, 5, 5, 5, 10),
+                getWidget(5, 5, 5, 5, 20),
+                getWidget(6, 0, 5, 5, 40),
+                getWidget(-50, -50, 5, 5, 50),
+                getWidget(100, 100, 5, 5, 60)
+        );
+        widgets.forEach(w -> getStoreAdapter().add(w));
+
+        List<String> ids = getStoreAdapter().stream(filter)
+                .sorted(Comparator.comparingInt(Widget::getZIndex))
+                .map(Widget::getId)
+                .collect(Collectors.toList());
+        List<String> expected = expectedIndexes.stream()
+                .map(widgets::get)
+                .sorted(Comparator.comparingInt(Widget::getZIndex))
+                .map(Widget::getId)
+                .collect(Collectors.toList());
+        assertEquals(ids, expected);
+        assertEquals(getStoreAdapter().count(filter), expected.size());
+
+        if (getStoreAdapter().isSortedByZIndex()) {
+            List<Integer> zIndexes = getStoreAdapter().stream(filter).map(Widget::getZIndex).collect(Collectors.toList());
+            List<Integer> zIndexesSorted = zIndexes.stream().sorted().collect(Collectors.toList());
+            assertEquals(zIndexes, zIndexesSorted);
+        }
+    }
+
     @DataProvider(name = "testPushOutData")
     public Object[][] getTestPushOutData() {
         Widget fixedWidget = getWidget(5);
@@ -78,29 +169,32 @@ public abstract class AbstractStoreAdapterTests extends AbstractTestNGSpringCont
                         Arrays.asList(getWidget(1), getWidget(5), getWidget(10)),
                         3,
                         UUID.randomUUID().toString(),
-                        Arrays.asList(1, 5, 10)
+                        Arrays.asList(1, 5, 10),
+                        0
                 },
                 {
                         Arrays.asList(getWidget(1), getWidget(5), getWidget(10)),
                         5,
                         UUID.randomUUID().toString(),
-                        Arrays.asList(1, 6, 11)
+                        Arrays.asList(1, 6, 11),
+                        2
                 },
                 {
                         Arrays.asList(getWidget(1), fixedWidget, getWidget(10)),
                         fixedWidget.getZIndex(),
                         fixedWidget.getId(),
-                        getStoreAdapter().isSortedByZIndex() ? Arrays.asList(1, 6, 11) : Arrays.asList(1, 5, 10)
+                        getStoreAdapter().isSortedByZIndex() ? Arrays.asList(1, 6, 11) : Arrays.asList(1, 5, 10),
+                        getStoreAdapter().isSortedByZIndex() ? 2 : 0
                 }
         };
     }
 
     @Test(dataProvider = "testPushOutData")
     public void testPushOut(List<Widget> widgets, Integer pusherZIndex, String pusherId,
-                            List<Integer> expectedIndexes) {
+                            List<Integer> expectedIndexes, int expectedShifted) {
 
         widgets.forEach(w -> getStoreAdapter().add(w));
-        getStoreAdapter().pushOut(pusherZIndex, pusherId);
+        assertEquals(getStoreAdapter().pushOut(pusherZIndex, pusherId), expectedShifted);
         List<Integer> zIndexes = getStoreAdapter().stream()
                 .map(Widget::getZIndex)
                 .sorted()
@@ -108,6 +202,34 @@ public abstract class AbstractStoreAdapterTests extends AbstractTestNGSpringCont
         assertEquals(zIndexes, expectedIndexes);
     }
 
+    @Test
+    public void testPushOutAll() {
+        Arrays.asList(1, 3, 5, 6, 10).forEach(z -> getStoreAdapter().add(getWidget(z)));
+
+        // Первый порог сдвигает 5, 6 и 10, второй - 3 и уже сдвинутые виджеты: 3 -> 4, 5 -> 7, 6 -> 8, 10 -> 12
+        PushOutSequence sequence = new PushOutSequence();
+        sequence.add(5);
+        sequence.add(3);
+        getStoreAdapter().pushOutAll(sequence);
+
+        List<Integer> zIndexes = getStoreAdapter().stream()
+                .map(Widget::getZIndex)
+                .sorted()
+                .collect(Collectors.toList());
+        assertEquals(zIndexes, Arrays.asList(1, 4, 7, 8, 12));
+        assertEquals(getStoreAdapter().getMaxZIndex().intValue(), 12);
+        assertTrue(getStoreAdapter().containsZIndex(7));
+        assertFalse(getStoreAdapter().containsZIndex(5));
+    }
+
+    @Test
+    public void testContainsZIndex() {
+        assertFalse(getStoreAdapter().containsZIndex(10));
+        getStoreAdapter().add(getWidget(10));
+        assertTrue(getStoreAdapter().containsZIndex(10));
+        assertFalse(getStoreAdapter().containsZIndex(11));
+    }
+
     @Test
     public void testIsSortedByZIndex() {
         if (getStoreAdapter().isSortedByZIndex()) {
@@ -127,6 +249,19 @@ public abstract class AbstractStoreAdapterTests extends AbstractTestNGSpringCont
         }
     }
 
+    @Test
+    public void testReturnsCopies() {
+        if (getStoreAdapter().returnsCopies()) {
+            Widget widget = getWidget(10);
+            getStoreAdapter().add(widget);
+
+            // Изменение выданных виджетов не затрагивает хранилище
+            getStoreAdapter().get(widget.getId()).get().setX(100);
+            getStoreAdapter().stream().forEach(w -> w.setY(100));
+            assertEquals(getStoreAdapter().get(widget.getId()).get(), widget);
+        }
+    }
+
     @Test
     public void testGetMaxZIndex() {
         assertEquals(getStoreAdapter().getMaxZIndex().intValue(), 0);
@@ -157,4 +292,15 @@ public abstract class AbstractStoreAdapterTests extends AbstractTestNGSpringCont
                 .zIndex(zIndex)
                 .build();
     }
+
+    protected Widget getWidget(Integer x, Integer y, Integer width, Integer height, Integer zIndex) {
+        return Widget.builder()
+                .id(UUID.randomUUID().toString())
+                .x(x)
+                .y(y)
+                .width(width)
+                .height(height)
+                .zIndex(zIndex)
+                .build();
+    }
 }
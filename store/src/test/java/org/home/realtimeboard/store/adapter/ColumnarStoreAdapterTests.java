@@ -0,0 +1,97 @@
+package org.home.realtimeboard.store.adapter;
+
+import lombok.Getter;
+import org.home.realtimeboard.model.Widget;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.testng.Assert.*;
+
+/**
+ * Тесты для {@link ColumnarStoreAdapter}
+ */
+public class ColumnarStoreAdapterTests extends AbstractStoreAdapterTests {
+    @Getter
+    private ColumnarStoreAdapter storeAdapter;
+
+    @BeforeMethod
+    public void setUp() {
+        storeAdapter = new ColumnarStoreAdapter();
+    }
+
+    @Test
+    public void testMaterialize() {
+        Widget full = Widget.builder()
+                .id(UUID.randomUUID().toString())
+                .x(-10)
+                .y(20)
+                .width(30)
+                .height(40)
+                .zIndex(5)
+                .lastModified(Instant.ofEpochSecond(1_500_000_000L, 123_456_789))
+                .version(42L)
+                .build();
+        Widget partial = Widget.builder()
+                .id(UUID.randomUUID().toString())
+                .y(0)
+                .zIndex(6)
+                .build();
+        storeAdapter.add(full);
+        storeAdapter.add(partial);
+
+        assertEquals(storeAdapter.get(full.getId()).get(), full);
+        assertEquals(storeAdapter.get(partial.getId()).get(), partial);
+        // Версия не участвует в сравнении виджетов, поэтому проверяется отдельно
+        assertEquals(storeAdapter.get(full.getId()).get().getVersion(), full.getVersion());
+        assertNull(storeAdapter.get(partial.getId()).get().getVersion());
+        assertNotSame(storeAdapter.get(full.getId()).get(), full);
+    }
+
+    @Test
+    public void testSlotReuse() {
+        // Количество превышает начальную емкость колонок, удаление каждого второго освобождает слоты для повторного
+        // использования
+        List<Widget> widgets = IntStream.rangeClosed(1, 200)
+                .mapToObj(i -> Widget.builder().id(UUID.randomUUID().toString()).zIndex(i * 2).build())
+                .collect(Collectors.toList());
+        widgets.forEach(storeAdapter::add);
+
+        List<Widget> expected = new ArrayList<>();
+        for (int i = 0; i < widgets.size(); i++) {
+            if (i % 2 == 0) {
+                assertTrue(storeAdapter.remove(widgets.get(i)));
+            } else {
+                expected.add(widgets.get(i));
+            }
+        }
+        for (int i = 0; i < 100; i++) {
+            Widget widget = Widget.builder().id(UUID.randomUUID().toString()).zIndex(i * 4 + 1).build();
+            storeAdapter.add(widget);
+            expected.add(widget);
+        }
+        expected.sort((a, b) -> Integer.compare(a.getZIndex(), b.getZIndex()));
+
+        assertEquals(storeAdapter.size(), expected.size());
+        assertEquals(storeAdapter.stream().collect(Collectors.toList()), expected);
+        assertFalse(storeAdapter.remove(widgets.get(0)));
+        assertFalse(storeAdapter.get(widgets.get(0).getId()).isPresent());
+    }
+
+    @Test
+    public void testInvalidId() {
+        assertFalse(storeAdapter.get("not-an-id").isPresent());
+        assertFalse(storeAdapter.remove(Widget.builder().id("not-an-id").zIndex(1).build()));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testAddInvalidId() {
+        storeAdapter.add(Widget.builder().id("not-an-id").zIndex(1).build());
+    }
+}
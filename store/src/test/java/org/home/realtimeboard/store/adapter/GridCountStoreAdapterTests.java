@@ -0,0 +1,61 @@
+package org.home.realtimeboard.store.adapter;
+
+import lombok.Getter;
+import org.home.realtimeboard.model.Filter;
+import org.home.realtimeboard.model.Widget;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Тесты для {@link GridCountStoreAdapter}. Мелкие ячейки гистограммы, чтобы выборки в тестах пересекали границы ячеек
+ */
+public class GridCountStoreAdapterTests extends AbstractStoreAdapterTests {
+    @Getter
+    private GridCountStoreAdapter storeAdapter;
+
+    @BeforeMethod
+    public void setUp() {
+        storeAdapter = new GridCountStoreAdapter(new CombinedStoreAdapter(), 4);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testUnsortedStore() {
+        new GridCountStoreAdapter(new MapStoreAdapter(), 4);
+    }
+
+    @Test
+    public void testCountAfterMove() {
+        Widget widget = getWidget(0, 0, 5, 5, 1);
+        storeAdapter.add(widget);
+        Filter filter = Filter.builder().top(0).bottom(10).left(0).right(10).build();
+        assertEquals(storeAdapter.count(filter), 1);
+
+        // Обновление виджета в отсортированном хранилище - удаление копии и повторная вставка
+        storeAdapter.remove(widget.toBuilder().build());
+        widget.setX(20);
+        storeAdapter.add(widget);
+        assertEquals(storeAdapter.count(filter), 0);
+        assertEquals(storeAdapter.count(Filter.builder().top(0).bottom(10).left(20).right(30).build()), 1);
+    }
+
+    @Test
+    public void testEstimateCount() {
+        for (int x = 0; x < 16; x += 4) {
+            for (int y = 0; y < 16; y += 4) {
+                storeAdapter.add(getWidget(x, y, 2, 2, x * 16 + y + 1));
+            }
+        }
+
+        // Область по границам ячеек оценивается точно
+        Filter filter = Filter.builder().top(0).bottom(7).left(0).right(7).build();
+        assertEquals(storeAdapter.estimateCount(filter), 4);
+        assertEquals(storeAdapter.estimateCount(Filter.builder().build()), 16);
+        // Граничные ячейки учитываются по доле площади в области: 4 ячейки внутри, 4 ячейки наполовину и одна на
+        // четверть, хотя виджеты граничных ячеек выходят за область
+        filter = Filter.builder().top(0).bottom(9).left(0).right(9).build();
+        assertEquals(storeAdapter.count(filter), 4);
+        assertEquals(storeAdapter.estimateCount(filter), 6);
+    }
+}
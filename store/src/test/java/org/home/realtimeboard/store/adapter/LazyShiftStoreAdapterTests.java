@@ -0,0 +1,17 @@
+package org.home.realtimeboard.store.adapter;
+
+import lombok.Getter;
+import org.testng.annotations.BeforeMethod;
+
+/**
+ * Тесты для {@link LazyShiftStoreAdapter}
+ */
+public class LazyShiftStoreAdapterTests extends AbstractStoreAdapterTests {
+    @Getter
+    private LazyShiftStoreAdapter storeAdapter;
+
+    @BeforeMethod
+    public void setUp() {
+        storeAdapter = new LazyShiftStoreAdapter();
+    }
+}
@@ -0,0 +1,17 @@
+package org.home.realtimeboard.store.adapter;
+
+import lombok.Getter;
+import org.testng.annotations.BeforeMethod;
+
+/**
+ * Тесты для {@link OrderStatisticStoreAdapter}
+ */
+public class OrderStatisticStoreAdapterTests extends AbstractStoreAdapterTests {
+    @Getter
+    private OrderStatisticStoreAdapter storeAdapter;
+
+    @BeforeMethod
+    public void setUp() {
+        storeAdapter = new OrderStatisticStoreAdapter();
+    }
+}
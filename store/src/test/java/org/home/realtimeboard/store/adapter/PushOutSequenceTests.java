@@ -0,0 +1,86 @@
+package org.home.realtimeboard.store.adapter;
+
+import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
+import org.testng.annotations.Test;
+
+import java.util.*;
+
+import static org.testng.Assert.*;
+
+/**
+ * Тесты для {@link PushOutSequence}
+ */
+public class PushOutSequenceTests extends AbstractTestNGSpringContextTests {
+    @Test
+    public void testEmpty() {
+        PushOutSequence sequence = new PushOutSequence();
+        assertTrue(sequence.isEmpty());
+        assertEquals(sequence.apply(10), 10);
+        assertEquals(sequence.inverse(10), Integer.valueOf(10));
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testMinEmpty() {
+        new PushOutSequence().min();
+    }
+
+    @Test
+    public void testApply() {
+        PushOutSequence sequence = new PushOutSequence();
+        sequence.add(5);
+        sequence.add(3);
+        sequence.add(7);
+
+        assertEquals(sequence.size(), 3);
+        assertEquals(sequence.min(), 3);
+        assertEquals(sequence.apply(1), 1);
+        assertEquals(sequence.apply(3), 4);
+        assertEquals(sequence.apply(5), 8);
+        assertEquals(sequence.apply(6), 9);
+
+        // Порог 3 освобожден последним выпихиванием с ним
+        assertNull(sequence.inverse(3));
+        assertEquals(sequence.inverse(4), Integer.valueOf(3));
+        assertEquals(sequence.inverse(9), Integer.valueOf(6));
+    }
+
+    @Test
+    public void testRandomSequence() {
+        Random random = new Random(1);
+        for (int round = 0; round < 50; round++) {
+            PushOutSequence sequence = new PushOutSequence();
+            List<Integer> thresholds = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                int threshold = random.nextInt(60);
+                sequence.add(threshold);
+                thresholds.add(threshold);
+            }
+
+            // Эталон - последовательное выпихивание каждого z-index'а
+            Map<Integer, Integer> finalZIndexes = new HashMap<>();
+            for (int zIndex = -5; zIndex < 100; zIndex++) {
+                int shifted = zIndex;
+                for (Integer threshold : thresholds) {
+                    if (shifted >= threshold) {
+                        shifted++;
+                    }
+                }
+                finalZIndexes.put(shifted, zIndex);
+                assertEquals(sequence.apply(zIndex), shifted);
+            }
+
+            for (int zIndex = 0; zIndex < 100; zIndex++) {
+                assertEquals(sequence.inverse(zIndex), finalZIndexes.get(zIndex));
+            }
+        }
+    }
+
+    @Test
+    public void testClear() {
+        PushOutSequence sequence = new PushOutSequence();
+        sequence.add(5);
+        sequence.clear();
+        assertTrue(sequence.isEmpty());
+        assertEquals(sequence.apply(10), 10);
+    }
+}
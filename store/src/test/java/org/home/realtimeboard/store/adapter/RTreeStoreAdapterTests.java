@@ -0,0 +1,17 @@
+package org.home.realtimeboard.store.adapter;
+
+import lombok.Getter;
+import org.testng.annotations.BeforeMethod;
+
+/**
+ * Тесты для {@link RTreeStoreAdapter}
+ */
+public class RTreeStoreAdapterTests extends AbstractStoreAdapterTests {
+    @Getter
+    private RTreeStoreAdapter storeAdapter;
+
+    @BeforeMethod
+    public void setUp() {
+        storeAdapter = new RTreeStoreAdapter();
+    }
+}
@@ -0,0 +1,84 @@
+package org.home.realtimeboard.store.adapter;
+
+import lombok.Getter;
+import org.home.realtimeboard.model.Filter;
+import org.home.realtimeboard.model.Widget;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Тесты для {@link SpatialHashStoreAdapter}. Мелкие ячейки, чтобы виджеты в тестах пересекали несколько ячеек
+ */
+public class SpatialHashStoreAdapterTests extends AbstractStoreAdapterTests {
+    @Getter
+    private SpatialHashStoreAdapter storeAdapter;
+
+    @BeforeMethod
+    public void setUp() {
+        storeAdapter = new SpatialHashStoreAdapter(4);
+    }
+
+    @Test
+    public void testSpanningWidget() {
+        // Виджет пересекает 3x3 ячейки, но хранится только в ячейке своего левого верхнего угла
+        Widget wide = getWidget(2, 2, 8, 8, 2);
+        Widget small = getWidget(5, 5, 1, 1, 1);
+        Widget negative = getWidget(-3, -3, 1, 1, 3);
+        storeAdapter.add(wide);
+        storeAdapter.add(small);
+        storeAdapter.add(negative);
+        assertEquals(storeAdapter.getCellCount(), 3);
+
+        Filter filter = Filter.builder().top(-5).bottom(10).left(-5).right(10).build();
+        assertEquals(getIds(filter), Arrays.asList(small.getId(), wide.getId(), negative.getId()));
+        assertEquals(getIds(Filter.builder().top(3).bottom(10).left(3).right(10).build()),
+                Arrays.asList(small.getId()));
+
+        storeAdapter.remove(wide.toBuilder().build());
+        assertEquals(storeAdapter.getCellCount(), 2);
+        assertEquals(getIds(filter), Arrays.asList(small.getId(), negative.getId()));
+    }
+
+    @Test
+    public void testHugeWidget() {
+        // Размер виджета не влияет на количество ячеек
+        Widget huge = getWidget(-1_000_000_000, -1_000_000_000, 2_000_000_000, 2_000_000_000, 1);
+        storeAdapter.add(huge);
+        assertEquals(storeAdapter.getCellCount(), 1);
+
+        Filter filter = Filter.builder()
+                .top(-1_000_000_000).bottom(1_000_000_000).left(-1_000_000_000).right(1_000_000_000)
+                .build();
+        assertEquals(getIds(filter), Arrays.asList(huge.getId()));
+        assertEquals(storeAdapter.count(filter), 1);
+        storeAdapter.remove(huge);
+        assertEquals(storeAdapter.getCellCount(), 0);
+    }
+
+    @Test
+    public void testPushOutKeepsCellOrder() {
+        Widget first = getWidget(0, 0, 1, 1, 1);
+        Widget second = getWidget(1, 1, 1, 1, 2);
+        storeAdapter.add(first);
+        storeAdapter.add(second);
+
+        storeAdapter.pushOut(1, null);
+        Widget pusher = getWidget(2, 2, 1, 1, 1);
+        storeAdapter.add(pusher);
+
+        Filter filter = Filter.builder().top(0).bottom(3).left(0).right(3).build();
+        assertEquals(getIds(filter), Arrays.asList(pusher.getId(), first.getId(), second.getId()));
+        storeAdapter.remove(second);
+        assertEquals(getIds(filter), Arrays.asList(pusher.getId(), first.getId()));
+    }
+
+    private List<String> getIds(Filter filter) {
+        return storeAdapter.stream(filter).map(Widget::getId).collect(Collectors.toList());
+    }
+}
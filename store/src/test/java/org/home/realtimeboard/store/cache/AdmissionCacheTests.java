@@ -0,0 +1,90 @@
+package org.home.realtimeboard.store.cache;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+/**
+ * Тесты для {@link AdmissionCache}
+ */
+public class AdmissionCacheTests {
+    @Test
+    public void testGetPut() {
+        AdmissionCache<String, Integer> cache = new AdmissionCache<>(2);
+        assertNull(cache.get("a"));
+        assertTrue(cache.put("a", 1));
+        assertTrue(cache.put("b", 2));
+        assertEquals(cache.get("a").intValue(), 1);
+        assertEquals(cache.get("b").intValue(), 2);
+        assertEquals(cache.size(), 2);
+    }
+
+    @Test
+    public void testRejectRare() {
+        AdmissionCache<String, Integer> cache = new AdmissionCache<>(2);
+        for (int i = 0; i < 5; i++) {
+            cache.get("a");
+            cache.get("b");
+        }
+        cache.put("a", 1);
+        cache.put("b", 2);
+
+        // Однократный запрос не вытесняет популярные элементы
+        cache.get("c");
+        assertFalse(cache.put("c", 3));
+        assertNull(cache.get("c"));
+        assertEquals(cache.size(), 2);
+        assertEquals(cache.getRejectionCount(), 1);
+        assertEquals(cache.getEvictionCount(), 0);
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsed() {
+        AdmissionCache<String, Integer> cache = new AdmissionCache<>(2);
+        cache.get("a");
+        cache.put("a", 1);
+        cache.get("b");
+        cache.put("b", 2);
+        cache.get("a");
+
+        // Частый ключ вытесняет давно не использованный элемент
+        for (int i = 0; i < 5; i++) {
+            cache.get("c");
+        }
+        assertTrue(cache.put("c", 3));
+        assertNull(cache.get("b"));
+        assertEquals(cache.get("a").intValue(), 1);
+        assertEquals(cache.get("c").intValue(), 3);
+        assertEquals(cache.getEvictionCount(), 1);
+    }
+
+    @Test
+    public void testRemoveIf() {
+        AdmissionCache<String, Integer> cache = new AdmissionCache<>(10);
+        for (int i = 0; i < 10; i++) {
+            cache.put("key" + i, i);
+        }
+
+        assertEquals(cache.removeIf((key, value) -> value % 2 == 0), 5);
+        assertEquals(cache.size(), 5);
+        assertNull(cache.get("key0"));
+        assertEquals(cache.get("key1").intValue(), 1);
+        assertEquals(cache.clear(), 5);
+        assertEquals(cache.size(), 0);
+    }
+
+    @Test
+    public void testFrequencyAging() {
+        FrequencySketch sketch = new FrequencySketch(8);
+        for (int i = 0; i < 10; i++) {
+            sketch.increment("hot");
+        }
+        assertEquals(sketch.frequency("hot"), 10);
+
+        // После достаточного количества обращений к другому ключу частоты делятся пополам
+        for (int i = 0; i < 80; i++) {
+            sketch.increment("cold");
+        }
+        assertEquals(sketch.frequency("hot"), 5);
+    }
+}
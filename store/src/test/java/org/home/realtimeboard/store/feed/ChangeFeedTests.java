@@ -0,0 +1,141 @@
+package org.home.realtimeboard.store.feed;
+
+import org.home.realtimeboard.model.Widget;
+import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.*;
+
+/**
+ * Тесты для {@link ChangeFeed}
+ */
+public class ChangeFeedTests extends AbstractTestNGSpringContextTests {
+    private static final long INITIAL_VERSION = 100;
+
+    private ChangeFeed feed;
+
+    @BeforeMethod
+    public void setUp() {
+        feed = new ChangeFeed(8, INITIAL_VERSION);
+    }
+
+    @Test
+    public void testReadEmpty() {
+        ChangeBatch batch = feed.read(INITIAL_VERSION);
+        assertFalse(batch.isResync());
+        assertTrue(batch.isEmpty());
+        assertEquals(batch.getVersion(), INITIAL_VERSION);
+    }
+
+    @Test
+    public void testConflateUpdates() {
+        feed.append(101, Arrays.asList(WidgetChange.upsert(getWidget("a", 1)), WidgetChange.upsert(getWidget("b", 2))));
+        feed.append(102, Collections.singletonList(WidgetChange.upsert(getWidget("a", 3))));
+
+        ChangeBatch batch = feed.read(INITIAL_VERSION);
+        assertEquals(batch.getSince(), INITIAL_VERSION);
+        assertEquals(batch.getVersion(), 102);
+        assertEquals(batch.getUpdated().size(), 2);
+        assertEquals(batch.getUpdated().get(0).getId(), "a");
+        assertEquals(batch.getUpdated().get(0).getZIndex(), Integer.valueOf(3));
+        assertEquals(batch.getUpdated().get(1).getId(), "b");
+
+        // Читатель, знающий первую версию, получает только второе изменение
+        batch = feed.read(101);
+        assertEquals(batch.getUpdated().size(), 1);
+        assertEquals(batch.getUpdated().get(0).getZIndex(), Integer.valueOf(3));
+
+        assertTrue(feed.read(102).isEmpty());
+    }
+
+    @Test
+    public void testConflateDelete() {
+        feed.append(101, Collections.singletonList(WidgetChange.upsert(getWidget("a", 1))));
+        feed.append(102, Arrays.asList(WidgetChange.delete("a"), WidgetChange.delete("b")));
+
+        ChangeBatch batch = feed.read(INITIAL_VERSION);
+        assertTrue(batch.getUpdated().isEmpty());
+        assertEquals(batch.getDeleted(), Arrays.asList("a", "b"));
+    }
+
+    @Test
+    public void testPushOutShiftsUpdated() {
+        // Виджет, измененный до выпихивания, выдается с z-index после него, а измененный после - как есть
+        feed.append(101, Arrays.asList(WidgetChange.upsert(getWidget("a", 5)), WidgetChange.upsert(getWidget("b", 2))));
+        feed.append(102, Arrays.asList(WidgetChange.pushOut(2), WidgetChange.upsert(getWidget("c", 2))));
+
+        ChangeBatch batch = feed.read(INITIAL_VERSION);
+        assertEquals(batch.getPushOuts(), Collections.singletonList(2));
+        assertEquals(batch.getUpdated().get(0).getZIndex(), Integer.valueOf(6));
+        assertEquals(batch.getUpdated().get(1).getZIndex(), Integer.valueOf(3));
+        assertEquals(batch.getUpdated().get(2).getZIndex(), Integer.valueOf(2));
+    }
+
+    @Test
+    public void testResyncAfterEviction() {
+        for (int i = 1; i <= 5; i++) {
+            feed.append(INITIAL_VERSION + i, Arrays.asList(WidgetChange.upsert(getWidget("a" + i, i)),
+                    WidgetChange.upsert(getWidget("b" + i, i + 10))));
+        }
+
+        // Изменения первой версии вытеснены
+        assertTrue(feed.read(INITIAL_VERSION).isResync());
+        assertEquals(feed.read(INITIAL_VERSION).getVersion(), INITIAL_VERSION + 5);
+
+        ChangeBatch batch = feed.read(INITIAL_VERSION + 1);
+        assertFalse(batch.isResync());
+        assertEquals(batch.getUpdated().size(), 8);
+    }
+
+    @Test
+    public void testResyncUnknownVersion() {
+        assertTrue(feed.read(INITIAL_VERSION - 1).isResync());
+        assertTrue(feed.read(INITIAL_VERSION + 1).isResync());
+
+        // Версия без изменений тоже известна ленте
+        feed.append(INITIAL_VERSION + 1, Collections.emptyList());
+        assertFalse(feed.read(INITIAL_VERSION + 1).isResync());
+    }
+
+    @Test
+    public void testReset() {
+        feed.append(101, Collections.singletonList(WidgetChange.upsert(getWidget("a", 1))));
+        feed.reset(110);
+
+        assertTrue(feed.read(101).isResync());
+        assertTrue(feed.read(110).isEmpty());
+        assertEquals(feed.getVersion(), 110);
+    }
+
+    @Test
+    public void testListener() {
+        AtomicInteger calls = new AtomicInteger();
+        Runnable listener = calls::incrementAndGet;
+        feed.addListener(listener);
+
+        feed.append(101, Collections.emptyList());
+        assertEquals(calls.get(), 0);
+        feed.append(102, Collections.singletonList(WidgetChange.delete("a")));
+        assertEquals(calls.get(), 1);
+
+        feed.removeListener(listener);
+        feed.append(103, Collections.singletonList(WidgetChange.delete("b")));
+        assertEquals(calls.get(), 1);
+    }
+
+    private Widget getWidget(String id, int zIndex) {
+        return Widget.builder()
+                .id(id)
+                .x(0)
+                .y(0)
+                .width(10)
+                .height(10)
+                .zIndex(zIndex)
+                .build();
+    }
+}
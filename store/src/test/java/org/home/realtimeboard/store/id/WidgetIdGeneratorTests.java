@@ -0,0 +1,68 @@
+package org.home.realtimeboard.store.id;
+
+import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
+import org.testng.annotations.Test;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.testng.Assert.*;
+
+/**
+ * Тесты для {@link WidgetIdGenerator}
+ */
+public class WidgetIdGeneratorTests extends AbstractTestNGSpringContextTests {
+    @Test
+    public void testFormat() {
+        long now = System.currentTimeMillis();
+        UUID uuid = UUID.fromString(new WidgetIdGenerator(() -> now).next().toString());
+
+        assertEquals(uuid.version(), 7);
+        assertEquals(uuid.variant(), 2);
+        assertEquals(uuid.getMostSignificantBits() >>> 16, now);
+    }
+
+    @Test
+    public void testMonotonic() {
+        // Часы стоят на месте, затем идут назад: идентификаторы все равно должны возрастать
+        AtomicLong clock = new AtomicLong(1_000_000L);
+        WidgetIdGenerator generator = new WidgetIdGenerator(clock::get);
+
+        WidgetId previous = generator.next();
+        for (int i = 0; i < 10_000; i++) {
+            if (i == 5_000) {
+                clock.set(1_000L);
+            }
+            WidgetId next = generator.next();
+            assertTrue(next.compareTo(previous) > 0);
+            previous = next;
+        }
+    }
+
+    @Test
+    public void testConcurrentUnique() {
+        WidgetIdGenerator generator = new WidgetIdGenerator();
+        int threads = 4;
+        int perThread = 10_000;
+
+        List<CompletableFuture<List<WidgetId>>> futures = IntStream.range(0, threads)
+                .mapToObj(t -> CompletableFuture.supplyAsync(() -> IntStream.range(0, perThread)
+                        .mapToObj(i -> generator.next())
+                        .collect(Collectors.toList())))
+                .collect(Collectors.toList());
+
+        Set<WidgetId> ids = new HashSet<>();
+        for (CompletableFuture<List<WidgetId>> future : futures) {
+            List<WidgetId> generated = future.join();
+            // Идентификаторы каждого потока возрастают
+            for (int i = 1; i < generated.size(); i++) {
+                assertTrue(generated.get(i).compareTo(generated.get(i - 1)) > 0);
+            }
+            ids.addAll(generated);
+        }
+        assertEquals(ids.size(), threads * perThread);
+    }
+}
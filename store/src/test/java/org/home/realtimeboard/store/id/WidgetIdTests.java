@@ -0,0 +1,66 @@
+package org.home.realtimeboard.store.id;
+
+import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.UUID;
+
+import static org.testng.Assert.*;
+
+/**
+ * Тесты для {@link WidgetId}
+ */
+public class WidgetIdTests extends AbstractTestNGSpringContextTests {
+    @Test
+    public void testFormat() {
+        for (int i = 0; i < 1000; i++) {
+            UUID uuid = UUID.randomUUID();
+            WidgetId id = new WidgetId(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+            assertEquals(id.toString(), uuid.toString());
+        }
+    }
+
+    @Test
+    public void testParse() {
+        for (int i = 0; i < 1000; i++) {
+            UUID uuid = UUID.randomUUID();
+            WidgetId id = WidgetId.parse(uuid.toString());
+            assertNotNull(id);
+            assertEquals(id.getMostSignificantBits(), uuid.getMostSignificantBits());
+            assertEquals(id.getLeastSignificantBits(), uuid.getLeastSignificantBits());
+        }
+    }
+
+    @DataProvider(name = "testParseInvalidData")
+    public Object[][] getTestParseInvalidData() {
+        return new Object[][] {
+                {null},
+                {""},
+                {"not-an-id"},
+                {"123e4567-e89b-12d3-a456-42661417400"},
+                {"123e4567-e89b-12d3-a456-4266141740000"},
+                {"123e4567e-89b-12d3-a456-426614174000"},
+                {"123e4567-e89b-12d3-a456-42661417400g"},
+                {"123E4567-E89B-12D3-A456-426614174000"}
+        };
+    }
+
+    @Test(dataProvider = "testParseInvalidData")
+    public void testParseInvalid(String id) {
+        assertNull(WidgetId.parse(id));
+    }
+
+    @Test
+    public void testCompareTo() {
+        WidgetId first = WidgetId.parse("00000000-0000-0000-0000-000000000001");
+        WidgetId second = WidgetId.parse("7fffffff-ffff-ffff-0000-000000000000");
+        WidgetId third = WidgetId.parse("80000000-0000-0000-0000-000000000000");
+
+        assertTrue(first.compareTo(second) < 0);
+        assertTrue(second.compareTo(third) < 0);
+        assertTrue(third.compareTo(first) > 0);
+        assertEquals(first.compareTo(WidgetId.parse(first.toString())), 0);
+        assertEquals(first, WidgetId.parse(first.toString()));
+    }
+}
@@ -0,0 +1,126 @@
+package org.home.realtimeboard.store.index;
+
+import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.testng.Assert.*;
+
+/**
+ * Тесты для {@link GridHistogram}
+ */
+public class GridHistogramTests extends AbstractTestNGSpringContextTests {
+    // Количество прямоугольников в тестах на случайных данных
+    private static final int SAMPLE_SIZE = 2000;
+
+    private GridHistogram<int[]> histogram;
+    private List<int[]> boxes;
+    private Random random;
+
+    @BeforeMethod
+    public void setUp() {
+        histogram = new GridHistogram<>(256);
+        boxes = new ArrayList<>();
+        random = new Random(1);
+    }
+
+    @Test
+    public void testInsert() {
+        assertEquals(histogram.size(), 0);
+        fill();
+        assertEquals(histogram.size(), SAMPLE_SIZE);
+    }
+
+    @Test
+    public void testCountContained() {
+        fill();
+        for (int i = 0; i < 50; i++) {
+            checkQuery(randomQuery());
+        }
+        checkQuery(new int[]{Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE});
+        // Область точно по границам ячеек и область внутри одной ячейки
+        checkQuery(new int[]{256, 512, 2047, 4095});
+        checkQuery(new int[]{300, 300, 400, 400});
+    }
+
+    @Test
+    public void testNegativeCoordinates() {
+        int[] box = {-300, -10, -200, 10};
+        histogram.insert(box[0], box[1], box[2], box[3], box);
+        assertEquals(histogram.countContained(-300, -10, -200, 10), 1);
+        assertEquals(histogram.countContained(-299, -10, -200, 10), 0);
+        assertEquals(histogram.countContained(-512, -512, 0, 0), 0);
+        assertEquals(histogram.countContained(-512, -512, 0, 512), 1);
+    }
+
+    @Test
+    public void testRemove() {
+        fill();
+        Collections.shuffle(boxes, random);
+        List<int[]> removed = new ArrayList<>(boxes.subList(0, SAMPLE_SIZE / 2));
+        boxes.removeAll(removed);
+        for (int[] box : removed) {
+            assertTrue(histogram.remove(box[0], box[1], box[2], box[3], box));
+        }
+
+        assertEquals(histogram.size(), SAMPLE_SIZE / 2);
+        for (int i = 0; i < 50; i++) {
+            checkQuery(randomQuery());
+        }
+    }
+
+    @Test
+    public void testRemoveMissing() {
+        fill();
+        int[] box = boxes.get(0);
+        assertFalse(histogram.remove(box[0], box[1], box[2], box[3], new int[]{box[0], box[1], box[2], box[3]}));
+        assertEquals(histogram.size(), SAMPLE_SIZE);
+    }
+
+    @Test
+    public void testEstimateContained() {
+        fill();
+        // Оценка для всей плоскости и для областей по границам ячеек точна
+        assertEquals(histogram.estimateContained(Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE,
+                Integer.MAX_VALUE), SAMPLE_SIZE);
+
+        long error = 0;
+        long total = 0;
+        for (int i = 0; i < 50; i++) {
+            int[] query = randomQuery();
+            long count = histogram.countContained(query[0], query[1], query[2], query[3]);
+            error += Math.abs(histogram.estimateContained(query[0], query[1], query[2], query[3]) - count);
+            total += count;
+        }
+        assertTrue(error < total / 5, "Estimate error " + error + " of " + total);
+    }
+
+    private void fill() {
+        for (int i = 0; i < SAMPLE_SIZE; i++) {
+            int x = random.nextInt(10000);
+            int y = random.nextInt(10000);
+            int[] box = {x, y, x + random.nextInt(100), y + random.nextInt(100)};
+            boxes.add(box);
+            histogram.insert(box[0], box[1], box[2], box[3], box);
+        }
+    }
+
+    private int[] randomQuery() {
+        int left = random.nextInt(10000);
+        int top = random.nextInt(10000);
+        return new int[]{left, top, left + random.nextInt(5000), top + random.nextInt(5000)};
+    }
+
+    private void checkQuery(int[] query) {
+        long expected = boxes.stream()
+                .filter(box -> (box[0] >= query[0]) && (box[1] >= query[1]) &&
+                        (box[2] <= query[2]) && (box[3] <= query[3]))
+                .count();
+        assertEquals(histogram.countContained(query[0], query[1], query[2], query[3]), expected);
+    }
+}
@@ -0,0 +1,144 @@
+package org.home.realtimeboard.store.index;
+
+import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.*;
+
+import static org.testng.Assert.*;
+
+/**
+ * Тесты для {@link LazyShiftTreap}
+ */
+public class LazyShiftTreapTests extends AbstractTestNGSpringContextTests {
+    private LazyShiftTreap<String> treap;
+    // Эталонная модель: значение -> ключ
+    private Map<String, Integer> reference;
+    private Map<String, LazyShiftTreap.Node<String>> nodes;
+    private Random random;
+
+    @BeforeMethod
+    public void setUp() {
+        treap = new LazyShiftTreap<>();
+        reference = new HashMap<>();
+        nodes = new HashMap<>();
+        random = new Random(1);
+    }
+
+    @Test
+    public void testInsert() {
+        insert("a", 10);
+        insert("b", 5);
+        insert("c", 20);
+
+        assertEquals(treap.size(), 3);
+        assertTrue(treap.containsKey(5));
+        assertFalse(treap.containsKey(6));
+        assertEquals(treap.maxKey(), 20);
+        check();
+    }
+
+    @Test
+    public void testShift() {
+        insert("a", 1);
+        insert("b", 5);
+        insert("c", 10);
+
+        assertEquals(treap.shift(5, 1), 2);
+        assertEquals(treap.keyOf(nodes.get("a")), 1);
+        assertEquals(treap.keyOf(nodes.get("b")), 6);
+        assertEquals(treap.keyOf(nodes.get("c")), 11);
+        assertEquals(treap.shift(100, 1), 0);
+        assertEquals(treap.maxKey(), 11);
+    }
+
+    @Test
+    public void testRemove() {
+        insert("a", 1);
+        insert("b", 5);
+        insert("c", 10);
+        treap.shift(3, 2);
+        reference.replaceAll((value, key) -> key >= 3 ? key + 2 : key);
+
+        remove("b");
+        assertEquals(treap.size(), 2);
+        assertFalse(treap.containsKey(7));
+        check();
+    }
+
+    @Test(expectedExceptions = NoSuchElementException.class)
+    public void testMaxKeyEmpty() {
+        treap.maxKey();
+    }
+
+    @Test
+    public void testRandomOperations() {
+        for (int i = 0; i < 5000; i++) {
+            int operation = random.nextInt(10);
+            if ((operation < 5) || reference.isEmpty()) {
+                int key = random.nextInt(10000);
+                if (!reference.containsValue(key)) {
+                    insert("v" + i, key);
+                }
+            } else if (operation < 8) {
+                int fromKey = random.nextInt(10000);
+                int expected = (int) reference.values().stream().filter(k -> k >= fromKey).count();
+                assertEquals(treap.shift(fromKey, 1), expected);
+                reference.replaceAll((value, key) -> key >= fromKey ? key + 1 : key);
+            } else {
+                List<String> values = new ArrayList<>(reference.keySet());
+                remove(values.get(random.nextInt(values.size())));
+            }
+        }
+        check();
+    }
+
+    @Test
+    public void testForEach() {
+        for (int i = 0; i < 100; i++) {
+            insert("v" + i, i * 2);
+        }
+        treap.shift(50, 3);
+
+        List<Integer> keys = new ArrayList<>();
+        assertEquals(treap.forEach(20, 10, (value, key) -> keys.add(key)), 10);
+        assertEquals(keys, Arrays.asList(40, 42, 44, 46, 48, 53, 55, 57, 59, 61));
+        assertEquals(treap.forEach(95, 10, (value, key) -> {}), 5);
+        assertEquals(treap.forEach(100, 10, (value, key) -> {}), 0);
+    }
+
+    private void insert(String value, int key) {
+        nodes.put(value, treap.insert(key, value));
+        reference.put(value, key);
+    }
+
+    private void remove(String value) {
+        treap.remove(nodes.remove(value));
+        reference.remove(value);
+    }
+
+    private void check() {
+        assertEquals(treap.size(), reference.size());
+        reference.forEach((value, key) -> {
+            assertEquals(treap.keyOf(nodes.get(value)), key.intValue());
+            assertTrue(treap.containsKey(key));
+        });
+
+        List<Integer> keys = new ArrayList<>();
+        List<String> values = new ArrayList<>();
+        treap.forEach(0, Integer.MAX_VALUE, (value, key) -> {
+            values.add(value);
+            keys.add(key);
+        });
+        List<Integer> sortedKeys = new ArrayList<>(reference.values());
+        Collections.sort(sortedKeys);
+        assertEquals(keys, sortedKeys);
+        for (int i = 0; i < values.size(); i++) {
+            assertEquals(reference.get(values.get(i)), keys.get(i));
+        }
+        if (!reference.isEmpty()) {
+            assertEquals(treap.maxKey(), sortedKeys.get(sortedKeys.size() - 1).intValue());
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package org.home.realtimeboard.store.index;
+
+import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.*;
+
+import static org.testng.Assert.*;
+
+/**
+ * Тесты для {@link LongPairIntHashMap}
+ */
+public class LongPairIntHashMapTests extends AbstractTestNGSpringContextTests {
+    // Количество операций в тестах на случайных данных
+    private static final int SAMPLE_SIZE = 20000;
+
+    private Random random;
+
+    @BeforeMethod
+    public void setUp() {
+        random = new Random(1);
+    }
+
+    @Test
+    public void testPut() {
+        LongPairIntHashMap map = new LongPairIntHashMap();
+        assertTrue(map.isEmpty());
+
+        assertEquals(map.put(1, 2, 10), LongPairIntHashMap.NO_VALUE);
+        assertEquals(map.put(2, 1, 20), LongPairIntHashMap.NO_VALUE);
+        assertEquals(map.put(1, 2, 30), 10);
+
+        assertEquals(map.size(), 2);
+        assertEquals(map.get(1, 2), 30);
+        assertEquals(map.get(2, 1), 20);
+        assertEquals(map.get(1, 1), LongPairIntHashMap.NO_VALUE);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testPutNegative() {
+        new LongPairIntHashMap().put(1, 2, -1);
+    }
+
+    @Test
+    public void testRemove() {
+        LongPairIntHashMap map = new LongPairIntHashMap();
+        map.put(1, 2, 10);
+
+        assertEquals(map.remove(1, 3), LongPairIntHashMap.NO_VALUE);
+        assertEquals(map.remove(1, 2), 10);
+        assertEquals(map.remove(1, 2), LongPairIntHashMap.NO_VALUE);
+        assertTrue(map.isEmpty());
+        assertEquals(map.get(1, 2), LongPairIntHashMap.NO_VALUE);
+    }
+
+    @Test
+    public void testRandom() {
+        LongPairIntHashMap map = new LongPairIntHashMap();
+        Map<List<Long>, Integer> expected = new HashMap<>();
+        List<List<Long>> keys = new ArrayList<>();
+
+        // Маленький диапазон ключей дает много повторных вставок и удалений
+        for (int i = 0; i < SAMPLE_SIZE; i++) {
+            long high = random.nextInt(64);
+            long low = random.nextInt(64);
+            List<Long> key = Arrays.asList(high, low);
+
+            if (random.nextInt(3) == 0) {
+                Integer removed = expected.remove(key);
+                assertEquals(map.remove(high, low), Objects.isNull(removed) ? LongPairIntHashMap.NO_VALUE : removed);
+            } else {
+                int value = random.nextInt(Integer.MAX_VALUE);
+                Integer previous = expected.put(key, value);
+                assertEquals(map.put(high, low, value), Objects.isNull(previous) ? LongPairIntHashMap.NO_VALUE : previous);
+                keys.add(key);
+            }
+            assertEquals(map.size(), expected.size());
+        }
+
+        for (List<Long> key : keys) {
+            Integer value = expected.get(key);
+            assertEquals(map.get(key.get(0), key.get(1)), Objects.isNull(value) ? LongPairIntHashMap.NO_VALUE : value);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package org.home.realtimeboard.store.index;
+
+import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.testng.Assert.*;
+
+/**
+ * Тесты для {@link OrderStatisticTree}
+ */
+public class OrderStatisticTreeTests extends AbstractTestNGSpringContextTests {
+    // Количество элементов в тестах на случайных данных
+    private static final int SAMPLE_SIZE = 2000;
+
+    private OrderStatisticTree<Integer> tree;
+    private TreeSet<Integer> reference;
+    private Random random;
+
+    @BeforeMethod
+    public void setUp() {
+        tree = new OrderStatisticTree<>(Comparator.naturalOrder());
+        reference = new TreeSet<>();
+        random = new Random(1);
+    }
+
+    @Test
+    public void testAdd() {
+        assertTrue(tree.isEmpty());
+        assertTrue(tree.add(10));
+        assertFalse(tree.add(10));
+        assertTrue(tree.add(5));
+        assertEquals(tree.size(), 2);
+        assertTrue(tree.contains(5));
+        assertFalse(tree.contains(6));
+    }
+
+    @Test
+    public void testRemove() {
+        fill();
+        List<Integer> removed = reference.stream().filter(i -> random.nextBoolean()).collect(Collectors.toList());
+        for (Integer value : removed) {
+            assertTrue(tree.remove(value));
+            assertFalse(tree.remove(value));
+            reference.remove(value);
+        }
+
+        assertEquals(tree.size(), reference.size());
+        assertEquals(toList(tree.iterator()), new ArrayList<>(reference));
+    }
+
+    @Test
+    public void testGet() {
+        fill();
+        List<Integer> expected = new ArrayList<>(reference);
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(tree.get(i), expected.get(i));
+        }
+        assertEquals(tree.last(), reference.last());
+    }
+
+    @Test(expectedExceptions = IndexOutOfBoundsException.class)
+    public void testGetOutOfBounds() {
+        tree.add(1);
+        tree.get(1);
+    }
+
+    @Test
+    public void testRank() {
+        fill();
+        for (int i = 0; i < 100; i++) {
+            int value = random.nextInt(SAMPLE_SIZE * 10);
+            assertEquals(tree.rank(value), reference.headSet(value).size());
+        }
+    }
+
+    @Test
+    public void testIterator() {
+        fill();
+        List<Integer> expected = new ArrayList<>(reference);
+        for (int from : new int[]{0, 1, expected.size() / 2, expected.size() - 1, expected.size()}) {
+            assertEquals(toList(tree.iterator(from)), expected.subList(from, expected.size()));
+            assertEquals(tree.stream(from).collect(Collectors.toList()), expected.subList(from, expected.size()));
+        }
+    }
+
+    @Test
+    public void testSnapshotIterator() {
+        fill();
+        List<Integer> expected = new ArrayList<>(reference);
+        Iterator<Integer> iterator = tree.iterator();
+
+        // Итератор обходит состояние дерева на момент своего создания
+        reference.forEach(tree::remove);
+        assertTrue(tree.isEmpty());
+        assertEquals(toList(iterator), expected);
+    }
+
+    @Test
+    public void testSnapshot() {
+        fill();
+        List<Integer> expected = new ArrayList<>(reference);
+        OrderStatisticTree<Integer> snapshot = tree.snapshot();
+
+        // Изменения дерева не видны в копии и наоборот
+        reference.forEach(tree::remove);
+        snapshot.add(-1);
+        assertTrue(tree.isEmpty());
+        assertEquals(snapshot.size(), expected.size() + 1);
+        assertEquals(snapshot.stream(1).collect(Collectors.toList()), expected);
+    }
+
+    @Test
+    public void testMapFrom() {
+        fill();
+        List<Integer> expected = new ArrayList<>(reference);
+        OrderStatisticTree<Integer> snapshot = tree.snapshot();
+
+        for (int from : Arrays.asList(SAMPLE_SIZE, SAMPLE_SIZE / 2, 0)) {
+            List<Integer> mapped = new ArrayList<>();
+            tree.mapFrom(from, value -> {
+                mapped.add(value);
+                return value + 1;
+            });
+
+            // Функция вызывается для заменяемых элементов в порядке возрастания
+            assertEquals(mapped, expected.subList(Math.min(from, expected.size()), expected.size()));
+            for (int i = from; i < expected.size(); i++) {
+                expected.set(i, expected.get(i) + 1);
+            }
+            assertEquals(tree.stream().collect(Collectors.toList()), expected);
+            assertEquals(tree.size(), expected.size());
+        }
+
+        // Копия не затрагивается заменой
+        assertEquals(snapshot.stream().collect(Collectors.toList()), new ArrayList<>(reference));
+    }
+
+    private void fill() {
+        for (int i = 0; i < SAMPLE_SIZE; i++) {
+            int value = random.nextInt(SAMPLE_SIZE * 10);
+            assertEquals(tree.add(value), reference.add(value));
+        }
+    }
+
+    private static List<Integer> toList(Iterator<Integer> iterator) {
+        List<Integer> result = new ArrayList<>();
+        iterator.forEachRemaining(result::add);
+        return result;
+    }
+}
@@ -0,0 +1,156 @@
+package org.home.realtimeboard.store.index;
+
+import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.*;
+
+import static org.testng.Assert.*;
+
+/**
+ * Тесты для {@link PersistentHashMap}
+ */
+public class PersistentHashMapTests extends AbstractTestNGSpringContextTests {
+    // Количество операций в тестах на случайных данных
+    private static final int SAMPLE_SIZE = 5000;
+
+    private Random random;
+
+    @BeforeMethod
+    public void setUp() {
+        random = new Random(1);
+    }
+
+    @Test
+    public void testPut() {
+        PersistentHashMap<String, Integer> map = PersistentHashMap.empty();
+        assertTrue(map.isEmpty());
+
+        PersistentHashMap<String, Integer> updated = map.put("a", 1).put("b", 2).put("a", 3);
+        assertEquals(updated.size(), 2);
+        assertEquals(updated.get("a"), Integer.valueOf(3));
+        assertEquals(updated.get("b"), Integer.valueOf(2));
+        assertNull(updated.get("c"));
+
+        // Исходное отображение не меняется
+        assertTrue(map.isEmpty());
+        assertNull(map.get("a"));
+    }
+
+    @Test
+    public void testPutSameValue() {
+        Integer value = 1000;
+        PersistentHashMap<String, Integer> map = PersistentHashMap.<String, Integer>empty().put("a", value);
+        assertSame(map.put("a", value), map);
+    }
+
+    @Test
+    public void testRemove() {
+        PersistentHashMap<String, Integer> map = PersistentHashMap.<String, Integer>empty().put("a", 1).put("b", 2);
+        PersistentHashMap<String, Integer> removed = map.remove("a");
+
+        assertEquals(removed.size(), 1);
+        assertFalse(removed.containsKey("a"));
+        assertTrue(map.containsKey("a"));
+        assertSame(removed.remove("c"), removed);
+        assertTrue(removed.remove("b").isEmpty());
+    }
+
+    @Test
+    public void testRandomOperations() {
+        check(new Random(1)::nextInt);
+    }
+
+    @Test
+    public void testHashCollisions() {
+        // Ключи с небольшим количеством различных хешей попадают в узлы коллизий
+        check(() -> new CollidingKey(random.nextInt(SAMPLE_SIZE)));
+    }
+
+    @Test
+    public void testPersistence() {
+        List<PersistentHashMap<Integer, Integer>> versions = new ArrayList<>();
+        List<Map<Integer, Integer>> references = new ArrayList<>();
+
+        PersistentHashMap<Integer, Integer> map = PersistentHashMap.empty();
+        Map<Integer, Integer> reference = new HashMap<>();
+        for (int i = 0; i < SAMPLE_SIZE; i++) {
+            int key = random.nextInt(SAMPLE_SIZE / 5);
+            if (random.nextInt(3) == 0) {
+                map = map.remove(key);
+                reference.remove(key);
+            } else {
+                map = map.put(key, i);
+                reference.put(key, i);
+            }
+
+            if (i % 500 == 0) {
+                versions.add(map);
+                references.add(new HashMap<>(reference));
+            }
+        }
+
+        // Все промежуточные версии остались неизменными
+        for (int i = 0; i < versions.size(); i++) {
+            assertEquals(versions.get(i).size(), references.get(i).size());
+            for (int key = 0; key < SAMPLE_SIZE / 5; key++) {
+                assertEquals(versions.get(i).get(key), references.get(i).get(key));
+            }
+        }
+    }
+
+    private <K> void check(KeySource<K> keys) {
+        PersistentHashMap<K, Integer> map = PersistentHashMap.empty();
+        Map<K, Integer> reference = new HashMap<>();
+        List<K> used = new ArrayList<>();
+
+        for (int i = 0; i < SAMPLE_SIZE; i++) {
+            if (!used.isEmpty() && random.nextInt(3) == 0) {
+                K key = used.get(random.nextInt(used.size()));
+                map = map.remove(key);
+                reference.remove(key);
+            } else {
+                K key = keys.next();
+                used.add(key);
+                map = map.put(key, i);
+                reference.put(key, i);
+            }
+            assertEquals(map.size(), reference.size());
+        }
+
+        for (K key : used) {
+            assertEquals(map.get(key), reference.get(key));
+        }
+        for (K key : used) {
+            map = map.remove(key);
+        }
+        assertTrue(map.isEmpty());
+    }
+
+    @FunctionalInterface
+    private interface KeySource<K> {
+        K next();
+    }
+
+    /**
+     * Ключ с намеренно плохим хешем
+     */
+    private static final class CollidingKey {
+        private final int value;
+
+        CollidingKey(int value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return (o instanceof CollidingKey) && (((CollidingKey) o).value == value);
+        }
+
+        @Override
+        public int hashCode() {
+            return value % 16;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package org.home.realtimeboard.store.index;
+
+import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.*;
+
+import static org.testng.Assert.*;
+
+/**
+ * Тесты для {@link RTree}
+ */
+public class RTreeTests extends AbstractTestNGSpringContextTests {
+    // Количество прямоугольников в тестах на случайных данных
+    private static final int SAMPLE_SIZE = 2000;
+
+    private RTree<int[]> tree;
+    private List<int[]> boxes;
+    private Random random;
+
+    @BeforeMethod
+    public void setUp() {
+        tree = new RTree<>(8);
+        boxes = new ArrayList<>();
+        random = new Random(1);
+    }
+
+    @Test
+    public void testInsert() {
+        assertEquals(tree.size(), 0);
+        fill();
+        assertEquals(tree.size(), SAMPLE_SIZE);
+    }
+
+    @Test
+    public void testFindContained() {
+        fill();
+        for (int i = 0; i < 50; i++) {
+            checkQuery(randomQuery());
+        }
+    }
+
+    @Test
+    public void testRemove() {
+        fill();
+        Collections.shuffle(boxes, random);
+        List<int[]> removed = new ArrayList<>(boxes.subList(0, SAMPLE_SIZE / 2));
+        boxes.removeAll(removed);
+        for (int[] box : removed) {
+            assertTrue(tree.remove(box[0], box[1], box[2], box[3], box));
+        }
+
+        assertEquals(tree.size(), SAMPLE_SIZE / 2);
+        for (int i = 0; i < 50; i++) {
+            checkQuery(randomQuery());
+        }
+    }
+
+    @Test
+    public void testRemoveAll() {
+        fill();
+        for (int[] box : boxes) {
+            assertTrue(tree.remove(box[0], box[1], box[2], box[3], box));
+        }
+        boxes.clear();
+
+        assertEquals(tree.size(), 0);
+        checkQuery(new int[]{Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE});
+    }
+
+    @Test
+    public void testRemoveMissing() {
+        fill();
+        int[] box = boxes.get(0);
+        assertFalse(tree.remove(box[0], box[1], box[2], box[3], new int[]{box[0], box[1], box[2], box[3]}));
+        assertEquals(tree.size(), SAMPLE_SIZE);
+    }
+
+    private void fill() {
+        for (int i = 0; i < SAMPLE_SIZE; i++) {
+            int x = random.nextInt(10000);
+            int y = random.nextInt(10000);
+            int[] box = {x, y, x + random.nextInt(500), y + random.nextInt(500)};
+            boxes.add(box);
+            tree.insert(box[0], box[1], box[2], box[3], box);
+        }
+    }
+
+    private int[] randomQuery() {
+        int left = random.nextInt(10000);
+        int top = random.nextInt(10000);
+        return new int[]{left, top, left + random.nextInt(5000), top + random.nextInt(5000)};
+    }
+
+    private void checkQuery(int[] query) {
+        Set<int[]> expected = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int[] box : boxes) {
+            if ((box[0] >= query[0]) && (box[1] >= query[1]) && (box[2] <= query[2]) && (box[3] <= query[3])) {
+                expected.add(box);
+            }
+        }
+
+        Set<int[]> found = Collections.newSetFromMap(new IdentityHashMap<>());
+        tree.findContained(query[0], query[1], query[2], query[3], found::add);
+        assertEquals(found, expected);
+    }
+}
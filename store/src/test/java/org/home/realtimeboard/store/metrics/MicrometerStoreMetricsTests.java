@@ -0,0 +1,76 @@
+package org.home.realtimeboard.store.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.home.realtimeboard.model.Filter;
+import org.home.realtimeboard.model.Widget;
+import org.home.realtimeboard.store.AdaptedWidgetStore;
+import org.home.realtimeboard.store.adapter.CombinedStoreAdapter;
+import org.springframework.data.domain.PageRequest;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Тесты для {@link MicrometerStoreMetrics}
+ */
+public class MicrometerStoreMetricsTests {
+    private MeterRegistry registry;
+    private AdaptedWidgetStore widgetStore;
+
+    @BeforeMethod
+    public void setUp() {
+        registry = new SimpleMeterRegistry();
+        MicrometerStoreMetrics metrics = new MicrometerStoreMetrics(registry);
+        widgetStore = new AdaptedWidgetStore(new CombinedStoreAdapter(), 0, metrics);
+        metrics.monitor(widgetStore);
+    }
+
+    @Test
+    public void testStoreMetrics() {
+        // Последнее добавление выпихивает виджеты с z-index'ами 2 и 3
+        Arrays.asList(1, 2, 3, 2).forEach(z -> widgetStore.add(Widget.builder().zIndex(z).build()));
+        widgetStore.findAll(Filter.builder().build(), PageRequest.of(1, 3));
+
+        assertEquals(registry.get("store.lock.wait").tag("mode", "write").functionTimer().count(), 4.0);
+        DistributionSummary shifted = registry.get("store.pushout.shifted").summary();
+        assertEquals(shifted.count(), 4);
+        assertEquals(shifted.totalAmount(), 2.0);
+        assertEquals(shifted.max(), 2.0);
+        // Отсортированное хранилище переходит сразу ко второй странице
+        assertEquals(registry.get("store.findall.rows").tag("result", "scanned").functionCounter().count(), 1.0);
+        assertEquals(registry.get("store.findall.rows").tag("result", "returned").functionCounter().count(), 1.0);
+        assertEquals(registry.get("store.size").gauge().value(), 4.0);
+        assertEquals(registry.get("store.max.zindex").gauge().value(), 4.0);
+    }
+
+    @Test
+    public void testUncontendedRead() {
+        widgetStore.add(Widget.builder().build());
+        widgetStore.findAll(Filter.builder().build(), PageRequest.of(0, 10));
+
+        // Без параллельной записи чтение выполняется с первой попытки, без блокировки
+        assertEquals(registry.get("store.read.retries").functionCounter().count(), 0.0);
+        assertEquals(registry.get("store.lock.wait").tag("mode", "read").functionTimer().count(), 0.0);
+    }
+
+    @Test
+    public void testSharedMetrics() {
+        // Метрики с одним набором тегов суммируются по всем хранилищам, которым они переданы
+        MicrometerStoreMetrics metrics = new MicrometerStoreMetrics(registry, Tags.of("store", "boards"));
+        AdaptedWidgetStore first = new AdaptedWidgetStore(new CombinedStoreAdapter(), 0, metrics);
+        AdaptedWidgetStore second = new AdaptedWidgetStore(new CombinedStoreAdapter(), 0, metrics);
+        first.add(Widget.builder().zIndex(1).build());
+        second.add(Widget.builder().zIndex(1).build());
+        widgetStore.add(Widget.builder().zIndex(1).build());
+
+        assertEquals(registry.get("store.lock.wait").tags("store", "boards", "mode", "write").functionTimer().count(),
+                2.0);
+        assertEquals(registry.get("store.pushout.shifted").tag("store", "boards").summary().count(), 2);
+    }
+}
@@ -0,0 +1,132 @@
+package org.home.realtimeboard.store.persistence;
+
+import org.home.realtimeboard.model.Widget;
+import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.testng.Assert.*;
+
+/**
+ * Тесты для {@link StoreSnapshot}
+ */
+public class StoreSnapshotTests extends AbstractTestNGSpringContextTests {
+    private Path path;
+    private Random random;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        path = Files.createTempFile("widgets", ".snapshot");
+        random = new Random(1);
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    @Test
+    public void testWriteRead() {
+        List<Widget> widgets = getWidgets(5000);
+        new StoreSnapshot(12345L, widgets).write(path);
+
+        StoreSnapshot snapshot = StoreSnapshot.read(path);
+        assertEquals(snapshot.getWalPosition(), 12345L);
+        assertEquals(snapshot.getWidgets(), widgets);
+    }
+
+    @Test
+    public void testEmpty() {
+        new StoreSnapshot(0, Collections.emptyList()).write(path);
+
+        StoreSnapshot snapshot = StoreSnapshot.read(path);
+        assertEquals(snapshot.getWalPosition(), 0L);
+        assertTrue(snapshot.getWidgets().isEmpty());
+    }
+
+    @Test
+    public void testCompact() throws IOException {
+        int count = 10000;
+        new StoreSnapshot(0, getWidgets(count)).write(path);
+
+        // Одно только строковое представление идентификаторов заняло бы 36 байт на виджет
+        assertTrue(Files.size(path) < count * 36L, "Snapshot size: " + Files.size(path));
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testCorrupted() throws IOException {
+        new StoreSnapshot(0, getWidgets(100)).write(path);
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(file.length() - 10);
+            file.write(file.read() ^ 0xFF);
+        }
+
+        StoreSnapshot.read(path);
+    }
+
+    @Test
+    public void testCorruptedHeader() throws IOException {
+        // Повреждение любого байта заголовка после сигнатуры и версии, включая позицию журнала, количество виджетов
+        // и каталог колонок, обнаруживается при чтении
+        for (int offset = 8; offset < 88; offset++) {
+            new StoreSnapshot(0, getWidgets(100)).write(path);
+            try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+                file.seek(offset);
+                int value = file.read();
+                file.seek(offset);
+                file.write(value ^ 0xFF);
+            }
+
+            expectThrows(IllegalStateException.class, () -> StoreSnapshot.read(path));
+        }
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testTruncated() throws IOException {
+        new StoreSnapshot(0, getWidgets(100)).write(path);
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.setLength(file.length() - 1);
+        }
+
+        StoreSnapshot.read(path);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testNotSnapshot() throws IOException {
+        Files.write(path, new byte[100]);
+
+        StoreSnapshot.read(path);
+    }
+
+    private List<Widget> getWidgets(int count) {
+        List<Widget> widgets = new ArrayList<>();
+        int zIndex = -100;
+        for (int i = 0; i < count; i++) {
+            zIndex += random.nextInt(5) + 1;
+            widgets.add(Widget.builder()
+                    .id(UUID.randomUUID().toString())
+                    .x(random.nextInt(10) == 0 ? null : random.nextInt(20000) - 10000)
+                    .y(random.nextInt(10) == 0 ? null : random.nextInt(20000) - 10000)
+                    .width(random.nextInt(10) == 0 ? null : random.nextInt(1000))
+                    .height(random.nextInt(10) == 0 ? null : random.nextInt(1000))
+                    .zIndex(zIndex)
+                    .lastModified(random.nextInt(10) == 0
+                            ? null
+                            : Instant.ofEpochSecond(1_500_000_000L + random.nextInt(1000), random.nextInt(1_000_000_000)))
+                    .build());
+        }
+        return widgets;
+    }
+}
@@ -0,0 +1,68 @@
+package org.home.realtimeboard.store.persistence;
+
+import org.home.realtimeboard.model.Widget;
+import org.home.realtimeboard.store.WidgetMutation;
+import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.testng.Assert.*;
+
+/**
+ * Тесты для {@link WidgetCodec}
+ */
+public class WidgetCodecTests extends AbstractTestNGSpringContextTests {
+    @DataProvider(name = "testWidgetData")
+    public Object[][] getTestWidgetData() {
+        return new Object[][] {
+                {Widget.builder().id(UUID.randomUUID().toString()).build()},
+                {Widget.builder().id(UUID.randomUUID().toString()).x(-1).height(Integer.MAX_VALUE).zIndex(3).build()},
+                {Widget.builder()
+                        .id(UUID.randomUUID().toString())
+                        .x(1)
+                        .y(2)
+                        .width(3)
+                        .height(4)
+                        .zIndex(Integer.MIN_VALUE)
+                        .lastModified(Instant.ofEpochSecond(1_500_000_000L, 999_999_999))
+                        .build()}
+        };
+    }
+
+    @Test(dataProvider = "testWidgetData")
+    public void testWidget(Widget widget) {
+        ByteBuffer buffer = ByteBuffer.allocate(WidgetCodec.MAX_MUTATION_SIZE);
+        WidgetCodec.writeWidget(buffer, widget);
+        buffer.flip();
+
+        assertEquals(WidgetCodec.readWidget(buffer), widget);
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test(dataProvider = "testWidgetData")
+    public void testMutation(Widget widget) {
+        WidgetMutation[] mutations = {
+                WidgetMutation.add(widget),
+                WidgetMutation.update(widget.getId(), widget),
+                WidgetMutation.delete(widget.getId())
+        };
+
+        for (WidgetMutation mutation : mutations) {
+            ByteBuffer buffer = ByteBuffer.allocate(WidgetCodec.MAX_MUTATION_SIZE);
+            WidgetCodec.writeMutation(buffer, mutation);
+            buffer.flip();
+
+            assertEquals(WidgetCodec.readMutation(buffer), mutation);
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidId() {
+        WidgetCodec.writeWidget(ByteBuffer.allocate(WidgetCodec.MAX_MUTATION_SIZE),
+                Widget.builder().id("not-an-id").build());
+    }
+}
@@ -0,0 +1,198 @@
+package org.home.realtimeboard.store.persistence;
+
+import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.testng.Assert.*;
+
+/**
+ * Тесты для {@link WriteAheadLog}
+ */
+public class WriteAheadLogTests extends AbstractTestNGSpringContextTests {
+    private Path path;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        path = Files.createTempFile("widgets", ".wal");
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    @Test
+    public void testReplay() {
+        try (WriteAheadLog log = new WriteAheadLog(path, Durability.PER_OPERATION)) {
+            assertEquals(log.replay(data -> fail("Log must be empty")), 0);
+            log.sync(log.append(encode("first")));
+            log.sync(log.append(encode("second")));
+        }
+
+        try (WriteAheadLog log = new WriteAheadLog(path, Durability.NONE)) {
+            assertEquals(replay(log), listOf("first", "second"));
+            log.append(encode("third"));
+        }
+
+        try (WriteAheadLog log = new WriteAheadLog(path, Durability.NONE)) {
+            assertEquals(replay(log), listOf("first", "second", "third"));
+        }
+    }
+
+    @Test
+    public void testTornTail() throws IOException {
+        try (WriteAheadLog log = new WriteAheadLog(path, Durability.NONE)) {
+            log.replay(data -> fail("Log must be empty"));
+            log.append(encode("first"));
+            log.append(encode("second"));
+        }
+        long validSize = Files.size(path);
+
+        // Недописанная запись: заголовок есть, данных меньше, чем указано в заголовке
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(validSize);
+            file.writeInt(100);
+            file.writeInt(0);
+            file.write(new byte[10]);
+        }
+
+        try (WriteAheadLog log = new WriteAheadLog(path, Durability.NONE)) {
+            assertEquals(replay(log), listOf("first", "second"));
+            assertEquals(Files.size(path), validSize);
+            log.append(encode("third"));
+        }
+
+        try (WriteAheadLog log = new WriteAheadLog(path, Durability.NONE)) {
+            assertEquals(replay(log), listOf("first", "second", "third"));
+        }
+    }
+
+    @Test
+    public void testCorruptedRecord() throws IOException {
+        long firstSize;
+        try (WriteAheadLog log = new WriteAheadLog(path, Durability.NONE)) {
+            log.replay(data -> fail("Log must be empty"));
+            firstSize = log.append(encode("first"));
+            log.append(encode("second"));
+            log.append(encode("third"));
+        }
+
+        // Повреждение данных второй записи: она и все последующие отбрасываются
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(firstSize + 8);
+            file.write('X');
+        }
+
+        try (WriteAheadLog log = new WriteAheadLog(path, Durability.NONE)) {
+            assertEquals(replay(log), listOf("first"));
+            assertEquals(Files.size(path), firstSize);
+        }
+    }
+
+    @Test
+    public void testCompact() throws IOException {
+        long firstSize;
+        long secondSize;
+        long thirdSize;
+        try (WriteAheadLog log = new WriteAheadLog(path, Durability.NONE)) {
+            log.replay(data -> fail("Log must be empty"));
+            firstSize = log.append(encode("first"));
+            secondSize = log.append(encode("second"));
+            log.compact(firstSize);
+
+            // Позиции записей при сжатии не меняются, а файл содержит только записи после позиции сжатия
+            assertEquals(log.getPosition(), secondSize);
+            thirdSize = log.append(encode("third"));
+            assertEquals(thirdSize, secondSize + 8 + 5);
+            assertTrue(Files.size(path) < thirdSize);
+        }
+
+        try (WriteAheadLog log = new WriteAheadLog(path, Durability.NONE)) {
+            expectThrows(IllegalStateException.class, () -> replay(log));
+            assertEquals(replay(log, firstSize), listOf("second", "third"));
+
+            // Сжатие уже сжатого журнала, в том числе до конца последней записи
+            log.compact(secondSize);
+            log.compact(thirdSize);
+            log.append(encode("fourth"));
+        }
+
+        try (WriteAheadLog log = new WriteAheadLog(path, Durability.NONE)) {
+            expectThrows(IllegalStateException.class, () -> replay(log, secondSize));
+            assertEquals(replay(log, thirdSize), listOf("fourth"));
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testCompactBeyondEnd() {
+        try (WriteAheadLog log = new WriteAheadLog(path, Durability.NONE)) {
+            log.replay(data -> fail("Log must be empty"));
+            log.compact(log.append(encode("first")) + 1);
+        }
+    }
+
+    @Test
+    public void testGroupCommit() {
+        int threadCount = 8;
+        int recordsPerThread = 200;
+
+        try (WriteAheadLog log = new WriteAheadLog(path, Durability.GROUP_COMMIT)) {
+            log.replay(data -> fail("Log must be empty"));
+            List<CompletableFuture<Void>> writers = IntStream.range(0, threadCount)
+                    .mapToObj(i -> CompletableFuture.runAsync(() -> {
+                        for (int j = 0; j < recordsPerThread; j++) {
+                            log.sync(log.append(encode(i + ":" + j)));
+                        }
+                    }))
+                    .collect(Collectors.toList());
+            writers.forEach(CompletableFuture::join);
+        }
+
+        try (WriteAheadLog log = new WriteAheadLog(path, Durability.NONE)) {
+            Set<String> records = new HashSet<>(replay(log));
+            assertEquals(records.size(), threadCount * recordsPerThread);
+        }
+    }
+
+    private static ByteBuffer encode(String value) {
+        return ByteBuffer.wrap(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<String> replay(WriteAheadLog log) {
+        return replay(log, 0);
+    }
+
+    private static List<String> replay(WriteAheadLog log, long fromPosition) {
+        List<String> records = new ArrayList<>();
+        log.replay(fromPosition, data -> {
+            byte[] bytes = new byte[data.remaining()];
+            data.get(bytes);
+            records.add(new String(bytes, StandardCharsets.UTF_8));
+        });
+        return records;
+    }
+
+    private static List<String> listOf(String... values) {
+        List<String> list = new ArrayList<>();
+        for (String value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+}